@@ -47,6 +47,13 @@ public enum CipherExecutor {
 
     public final static int FRAME_SHIFT = 14; // 16384 (max TLS fragment)
     public final static int FRAME_SIZE = 1 << FRAME_SHIFT;
+    /**
+     * TLS frames up to this size are encrypted or decrypted right on the network thread
+     * when nothing else of their connection is waiting for the cipher pool. For small
+     * messages the hand off to the pool and back costs more than the cipher work.
+     * 0 sends every frame to the pool.
+     */
+    public final static int INLINE_FRAME_SIZE = Integer.getInteger("TLS_INLINE_FRAME_SIZE", 4096);
 
     volatile ListeningExecutorService m_es;
     AtomicBoolean m_active = new AtomicBoolean(false);
@@ -26,8 +26,10 @@ import java.util.concurrent.TimeUnit;
 
 import org.voltcore.logging.Level;
 import org.voltcore.logging.VoltLogger;
+import org.voltcore.utils.DBBPool;
 import org.voltcore.utils.DBBPool.BBContainer;
 import org.voltcore.utils.DeferredSerialization;
+import org.voltcore.utils.GatheringDeferredSerialization;
 import org.voltcore.utils.RateLimitedLogger;
 
 /**
@@ -39,6 +41,13 @@ import org.voltcore.utils.RateLimitedLogger;
 public abstract class NIOWriteStreamBase {
     protected static final VoltLogger networkLog = new VoltLogger("NETWORK");
 
+    /**
+     * Messages of at least this size that implement {@link GatheringDeferredSerialization}
+     * are written from their own buffers instead of being copied to the network buffers
+     */
+    public static final int GATHERING_WRITE_MIN_BYTES = Integer.getInteger("GATHERING_WRITE_MIN_BYTES", 64 * 1024);
+    static final int GATHERED_SLICE_BYTES = Integer.getInteger("GATHERED_SLICE_BYTES", 64 * 1024);
+
     protected boolean m_isShutdown = false;
 
     protected BBContainer m_currentWriteBuffer = null;
@@ -107,6 +116,14 @@ public abstract class NIOWriteStreamBase {
             processedWrites++;
             final int serializedSize = ds.getSerializedSize();
             if (serializedSize == DeferredSerialization.EMPTY_MESSAGE_LENGTH) continue;
+            if (serializedSize >= GATHERING_WRITE_MIN_BYTES && ds instanceof GatheringDeferredSerialization) {
+                final ByteBuffer[] gathered = ((GatheringDeferredSerialization) ds).getGatheredBuffers();
+                if (gathered != null) {
+                    queueGathered(pool, (GatheringDeferredSerialization) ds, serializedSize, gathered);
+                    bytesQueued += serializedSize;
+                    continue;
+                }
+            }
             BBContainer outCont = m_queuedBuffers.peekLast();
             ByteBuffer outbuf = null;
             if (outCont == null || !outCont.b().hasRemaining()) {
@@ -135,29 +152,70 @@ public abstract class NIOWriteStreamBase {
                 checkSloppySerialization(buf, ds);
                 buf.position(0);
                 bytesQueued += buf.remaining();
-                // Copy data allocated in heap buffer to direct buffer
-                while (buf.hasRemaining()) {
-                    if (!outbuf.hasRemaining()) {
-                        outCont = pool.acquire();
-                        outbuf = outCont.b();
-                        outbuf.clear();
-                        m_queuedBuffers.offer(outCont);
-                    }
-                    if (outbuf.remaining() >= buf.remaining()) {
-                        outbuf.put(buf);
-                    } else {
-                        final int oldLimit = buf.limit();
-                        buf.limit(buf.position() + outbuf.remaining());
-                        outbuf.put(buf);
-                        buf.limit(oldLimit);
-                    }
-                }
+                copyToQueuedBuffers(pool, buf);
             }
         }
         updateQueued(bytesQueued, true);
         return processedWrites;
     }
 
+    /**
+     * Copy data allocated in a heap buffer to the direct buffers at the end of the queue
+     */
+    private void copyToQueuedBuffers(final NetworkDBBPool pool, ByteBuffer buf) {
+        BBContainer outCont = m_queuedBuffers.peekLast();
+        ByteBuffer outbuf = outCont == null ? null : outCont.b();
+        while (buf.hasRemaining()) {
+            if (outbuf == null || !outbuf.hasRemaining()) {
+                outCont = pool.acquire();
+                outbuf = outCont.b();
+                outbuf.clear();
+                m_queuedBuffers.offer(outCont);
+            }
+            if (outbuf.remaining() >= buf.remaining()) {
+                outbuf.put(buf);
+            } else {
+                final int oldLimit = buf.limit();
+                buf.limit(buf.position() + outbuf.remaining());
+                outbuf.put(buf);
+                buf.limit(oldLimit);
+            }
+        }
+    }
+
+    /**
+     * Queue a message that carries most of its bytes in buffers of its own. Only
+     * the head is copied to the direct buffers, the gathered buffers are queued
+     * behind it in slices of at most GATHERED_SLICE_BYTES. Java copies a heap
+     * buffer to a temporary direct buffer of the same size to write it, so the
+     * slices keep those copies small and close to what the socket can take.
+     */
+    private void queueGathered(final NetworkDBBPool pool, GatheringDeferredSerialization ds,
+            int serializedSize, ByteBuffer[] gathered) throws IOException {
+        int headSize = serializedSize;
+        for (ByteBuffer buf : gathered) {
+            headSize -= buf.remaining();
+        }
+        final ByteBuffer head = ByteBuffer.allocate(headSize);
+        ds.serializeHead(head);
+        checkSloppySerialization(head, ds);
+        head.position(0);
+        copyToQueuedBuffers(pool, head);
+        for (ByteBuffer buf : gathered) {
+            final ByteBuffer dup = buf.duplicate();
+            while (dup.hasRemaining()) {
+                final int oldLimit = dup.limit();
+                dup.limit(Math.min(oldLimit, dup.position() + GATHERED_SLICE_BYTES));
+                final ByteBuffer slice = dup.slice();
+                dup.position(dup.limit());
+                dup.limit(oldLimit);
+                // Queued buffers are flipped before they are written
+                slice.position(slice.limit());
+                m_queuedBuffers.offer(DBBPool.wrapBB(slice));
+            }
+        }
+    }
+
     private static final boolean ASSERT_ON;
     static {
         boolean assertOn = false;
@@ -0,0 +1,102 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2018 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltcore.network;
+
+import java.io.IOException;
+import java.nio.channels.Selector;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Readiness selection for the thread of a {@link VoltNetwork} or {@link PicoNetwork}.
+ *
+ * Other threads hand work to the network thread through its task queue and then
+ * wake it up. Waking a selector writes to a pipe and makes the next select read it
+ * back, which is wasted when the network thread is not blocked in select anyway.
+ * Wakeups are only passed on to the selector while the thread is blocked, and only
+ * the first one until it returns. Before blocking the thread checks its task queue,
+ * so a task offered just before it started blocking is never missed.
+ *
+ * With a busy poll time the thread keeps doing non-blocking selects for that long
+ * after it last had work before it blocks again. That trades a core for lower
+ * latency on the next message, and other threads never have to wake it up while
+ * it spins. The JDK selector is already epoll based on Linux.
+ */
+class NetworkSelector {
+
+    /** How long a network thread spins after it had work, 0 to block right away */
+    static final long BUSY_POLL_NANOS =
+            TimeUnit.MICROSECONDS.toNanos(Long.getLong("NETWORK_BUSY_POLL_US", 0));
+
+    private final Selector m_selector;
+    private final Queue<Runnable> m_tasks;
+    private final long m_busyPollNanos;
+
+    private volatile boolean m_blocking = false;
+    private final AtomicBoolean m_wakeupPending = new AtomicBoolean(false);
+    private long m_lastWorkNanos = 0;
+
+    NetworkSelector(Selector selector, Queue<Runnable> tasks, long busyPollNanos) {
+        m_selector = selector;
+        m_tasks = tasks;
+        m_busyPollNanos = busyPollNanos;
+    }
+
+    Selector selector() {
+        return m_selector;
+    }
+
+    /**
+     * Tell the selector the network thread just did some work, which starts the busy poll time again.
+     */
+    void workDone() {
+        if (m_busyPollNanos > 0) {
+            m_lastWorkNanos = System.nanoTime();
+        }
+    }
+
+    /**
+     * Select ready keys, blocking unless <code>nonBlocking</code> is set, the busy poll
+     * time has not run out yet, or there are tasks waiting. Only the network thread calls this.
+     */
+    int select(boolean nonBlocking) throws IOException {
+        if (nonBlocking || (m_busyPollNanos > 0 && System.nanoTime() - m_lastWorkNanos < m_busyPollNanos)) {
+            return m_selector.selectNow();
+        }
+        m_blocking = true;
+        try {
+            if (!m_tasks.isEmpty()) {
+                return m_selector.selectNow();
+            }
+            return m_selector.select();
+        } finally {
+            m_blocking = false;
+            m_wakeupPending.set(false);
+        }
+    }
+
+    /**
+     * Wake up the network thread after offering it a task.
+     */
+    void wakeup() {
+        if (m_blocking && m_wakeupPending.compareAndSet(false, true)) {
+            m_selector.wakeup();
+        }
+    }
+}
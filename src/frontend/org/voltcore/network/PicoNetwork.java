@@ -98,6 +98,7 @@ public class PicoNetwork implements Runnable, Connection, IOStatsIntf
     protected static final VoltLogger networkLog = new VoltLogger("NETWORK");
 
     protected final Selector m_selector;
+    protected final NetworkSelector m_networkSelector;
     protected final NetworkDBBPool m_pool = new NetworkDBBPool(64);
     protected final NIOReadStream m_readStream = new NIOReadStream();
     protected PicoNIOWriteStream m_writeStream;
@@ -165,6 +166,7 @@ public class PicoNetwork implements Runnable, Connection, IOStatsIntf
             m_selector = Selector.open();
             m_interestOps = SelectionKey.OP_READ;
             m_key = m_sc.register(m_selector, m_interestOps);
+            m_networkSelector = new NetworkSelector(m_selector, m_tasks, NetworkSelector.BUSY_POLL_NANOS);
         } catch (IOException ex) {
             m_logger.fatal(null, ex);
             throw new RuntimeException(ex);
@@ -193,11 +195,7 @@ public class PicoNetwork implements Runnable, Connection, IOStatsIntf
                 LatencyWatchdog.pet();
 
                 //Choose a non-blocking select if things are busy
-                if (m_hadWork) {
-                    m_selector.selectNow();
-                } else {
-                    m_selector.select();
-                }
+                m_networkSelector.select(m_hadWork);
 
                 m_hadWork = false;
                 Runnable task = null;
@@ -207,6 +205,9 @@ public class PicoNetwork implements Runnable, Connection, IOStatsIntf
                 }
                 dispatchReadStream();
                 drainWriteStream();
+                if (m_hadWork) {
+                    m_networkSelector.workDone();
+                }
             }
         } catch (CancelledKeyException e) {
             networkLog.warn(
@@ -424,7 +425,7 @@ public class PicoNetwork implements Runnable, Connection, IOStatsIntf
         FutureTask<Map<Long, Pair<String, long[]>>> ft = new FutureTask<Map<Long, Pair<String, long[]>>>(task);
 
         m_tasks.offer(ft);
-        m_selector.wakeup();
+        m_networkSelector.wakeup();
 
         return ft;
     }
@@ -519,7 +520,7 @@ public class PicoNetwork implements Runnable, Connection, IOStatsIntf
                 m_writeStream.enqueue(ds);
             }
         });
-        m_selector.wakeup();
+        m_networkSelector.wakeup();
     }
 
     public void enqueue(final ByteBuffer buf) {
@@ -529,7 +530,7 @@ public class PicoNetwork implements Runnable, Connection, IOStatsIntf
                 m_writeStream.enqueue(buf);
             }
         });
-        m_selector.wakeup();
+        m_networkSelector.wakeup();
     }
 
     public FutureTask<Void> enqueueAndDrain(final ByteBuffer buf) {
@@ -542,10 +543,14 @@ public class PicoNetwork implements Runnable, Connection, IOStatsIntf
         };
         FutureTask<Void> ft = new FutureTask<Void>(task);
         m_tasks.offer(ft);
-        m_selector.wakeup();
+        m_networkSelector.wakeup();
         return ft;
     }
 
+    protected boolean isNetworkThread() {
+        return Thread.currentThread() == m_thread;
+    }
+
     boolean readyForRead() {
         return (m_key.readyOps() & SelectionKey.OP_READ) != 0 && (m_interestOps & SelectionKey.OP_READ) != 0;
     }
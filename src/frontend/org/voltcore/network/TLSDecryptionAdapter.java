@@ -234,17 +234,30 @@ public class TLSDecryptionAdapter {
         private final ConcurrentLinkedDeque<NIOReadStream.Slice> m_q = new ConcurrentLinkedDeque<>();
         private final CompositeByteBuf m_msgbb = Unpooled.compositeBuffer();
 
-        synchronized void offer(NIOReadStream.Slice slice) {
+        void offer(NIOReadStream.Slice slice) {
+            if (queue(slice)) {
+                decrypt(true);
+            }
+        }
+
+        /**
+         * @return true if the frame is small and first in line, so the caller should decrypt it
+         */
+        private synchronized boolean queue(NIOReadStream.Slice slice) {
             if (isDead()) {
                 slice.markConsumed().discard();
-                return;
+                return false;
             }
             final boolean wasEmpty = m_q.isEmpty();
             m_q.offer(slice);
+            m_inFlight.reducePermits(1);
             if (wasEmpty) {
+                if (slice.bb.readableBytes() <= CipherExecutor.INLINE_FRAME_SIZE) {
+                    return true;
+                }
                 submitSelf();
             }
-            m_inFlight.reducePermits(1);
+            return false;
         }
 
         synchronized void die() {
@@ -275,6 +288,14 @@ public class TLSDecryptionAdapter {
 
         @Override
         public void run() {
+            decrypt(false);
+        }
+
+        /**
+         * Decrypt the frame at the head of the queue. Inline the caller is the network
+         * thread, which hands the decrypted messages on next and needs no signal.
+         */
+        private void decrypt(boolean inline) {
             final NIOReadStream.Slice slice = m_q.peek();
             if (slice == null) return;
 
@@ -345,7 +366,9 @@ public class TLSDecryptionAdapter {
                 }
                 if (read > 0) {
                     m_msgbb.discardReadComponents();
-                    m_connection.enableWriteSelection();
+                    if (!inline) {
+                        m_connection.enableWriteSelection();
+                    }
                 }
             } else { // it isDead()
                 dest.release();
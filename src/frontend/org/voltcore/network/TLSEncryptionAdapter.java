@@ -336,7 +336,16 @@ public class TLSEncryptionAdapter {
         private final ConcurrentLinkedDeque<EncryptFrame> m_q = new ConcurrentLinkedDeque<>();
         private final int COALESCE_THRESHOLD = CipherExecutor.FRAME_SIZE - 4096;
 
-        synchronized void offer(EncryptFrame frame) throws IOException {
+        void offer(EncryptFrame frame) throws IOException {
+            if (queue(frame)) {
+                encrypt(true);
+            }
+        }
+
+        /**
+         * @return true if the frame is small and first in line, so the caller should encrypt it
+         */
+        private synchronized boolean queue(EncryptFrame frame) throws IOException {
             final boolean wasEmpty = m_q.isEmpty();
 
             List<EncryptFrame> chunks = frame.chunked(
@@ -346,8 +355,12 @@ public class TLSEncryptionAdapter {
             m_inFlight.reducePermits(chunks.size());
 
             if (wasEmpty) {
+                if (chunks.size() == 1 && frame.frame.readableBytes() <= CipherExecutor.INLINE_FRAME_SIZE) {
+                    return true;
+                }
                 submitSelf();
             }
+            return false;
         }
 
         /**
@@ -406,6 +419,14 @@ public class TLSEncryptionAdapter {
 
         @Override
         public void run() {
+            encrypt(false);
+        }
+
+        /**
+         * Encrypt the frame at the head of the queue. Inline the caller is the network
+         * thread, which drains the encrypted frames next and needs no signal.
+         */
+        private void encrypt(boolean inline) {
             EncryptFrame frame = m_q.peek();
             if (frame == null) return;
 
@@ -436,7 +457,7 @@ public class TLSEncryptionAdapter {
                  * lost queued writes where the write is queued
                  * but the write interest op is not set.
                  */
-                if (frame.isLast()) {
+                if (frame.isLast() && !inline) {
                     try {
                         m_connection.enableWriteSelection();
                     } catch(CancelledKeyException e) {
@@ -119,6 +119,26 @@ public class TLSPicoNetwork extends PicoNetwork
         }
     }
 
+    /**
+     * Cipher pool threads call this when decrypted messages or encrypted frames are ready.
+     * The interest ops belong to the network thread, which may be blocked in select, so
+     * hand the change to it and wake it up.
+     */
+    @Override
+    public void enableWriteSelection() {
+        if (isNetworkThread()) {
+            super.enableWriteSelection();
+        } else {
+            m_tasks.offer(new Runnable() {
+                @Override
+                public void run() {
+                    TLSPicoNetwork.super.enableWriteSelection();
+                }
+            });
+            m_networkSelector.wakeup();
+        }
+    }
+
     protected void safeStopping() {
         // It is OK if this is called multiple times.
         // So we can skip the m_isStopping checks in parent class.
@@ -23,6 +23,7 @@ import java.nio.channels.GatheringByteChannel;
 import java.util.ArrayDeque;
 
 import org.voltcore.logging.VoltLogger;
+import org.voltcore.utils.DBBPool.BBContainer;
 import org.voltcore.utils.DeferredSerialization;
 import org.voltcore.utils.EstTime;
 
@@ -69,6 +70,12 @@ public class VoltNIOWriteStream extends NIOWriteStreamBase implements WriteStrea
 
     protected final QueueMonitor m_monitor;
 
+    // Buffers written with one gathering write, network thread only
+    static final int MAX_GATHERED_BUFFERS = 16;
+    private final BBContainer[] m_gatherContainers = new BBContainer[MAX_GATHERED_BUFFERS];
+    private final ByteBuffer[] m_gatherBuffers = new ByteBuffer[MAX_GATHERED_BUFFERS];
+    private final ArrayDeque<BBContainer> m_unwritten = new ArrayDeque<BBContainer>();
+
     /**
      * Set to -1 when there are no pending writes. If there is a pending write it is set to the time
      * of the last successful write or the time the oldest pending write was queued.
@@ -330,28 +337,53 @@ public class VoltNIOWriteStream extends NIOWriteStreamBase implements WriteStrea
                     return bytesWritten;
                 }
 
-                ByteBuffer buffer = null;
                 if (m_currentWriteBuffer == null) {
                     m_currentWriteBuffer = m_queuedBuffers.poll();
-                    buffer = m_currentWriteBuffer.b();
-                    buffer.flip();
-                } else {
-                    buffer = m_currentWriteBuffer.b();
+                    m_currentWriteBuffer.b().flip();
                 }
 
-                rc = channel.write(buffer);
+                // Write the current buffer together with the ones queued behind it
+                m_gatherContainers[0] = m_currentWriteBuffer;
+                m_gatherBuffers[0] = m_currentWriteBuffer.b();
+                int count = 1;
+                while (count < MAX_GATHERED_BUFFERS && !m_queuedBuffers.isEmpty()) {
+                    final BBContainer c = m_queuedBuffers.poll();
+                    c.b().flip();
+                    m_gatherContainers[count] = c;
+                    m_gatherBuffers[count] = c.b();
+                    count++;
+                }
 
-                //Discard the buffer back to a pool if no data remains
-                if (buffer.hasRemaining()) {
-                    if (!m_hadBackPressure) {
-                        backpressureStarted();
-                    }
-                } else {
-                    m_currentWriteBuffer.discard();
+                try {
+                    rc = count == 1 ? channel.write(m_gatherBuffers[0]) : channel.write(m_gatherBuffers, 0, count);
+                    bytesWritten += rc;
+                } finally {
+                    //Discard the buffers back to a pool if no data remains, the rest are queued again
                     m_currentWriteBuffer = null;
-                    m_messagesWritten++;
+                    for (int i = 0; i < count; i++) {
+                        final BBContainer c = m_gatherContainers[i];
+                        m_gatherContainers[i] = null;
+                        m_gatherBuffers[i] = null;
+                        if (m_currentWriteBuffer == null && !c.b().hasRemaining()) {
+                            c.discard();
+                            m_messagesWritten++;
+                        } else if (m_currentWriteBuffer == null) {
+                            m_currentWriteBuffer = c;
+                        } else {
+                            // Not touched by the write, flip it back for the queue
+                            final ByteBuffer b = c.b();
+                            b.position(b.limit());
+                            b.limit(b.capacity());
+                            m_unwritten.push(c);
+                        }
+                    }
+                    while (!m_unwritten.isEmpty()) {
+                        m_queuedBuffers.offerFirst(m_unwritten.pop());
+                    }
+                }
+                if (m_currentWriteBuffer != null && !m_hadBackPressure) {
+                    backpressureStarted();
                 }
-                bytesWritten += rc;
 
             } while (rc > 0);
         } finally {
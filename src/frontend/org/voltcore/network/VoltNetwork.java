@@ -109,6 +109,7 @@ class VoltNetwork implements Runnable, IOStatsIntf
     final String networkThreadName;
 
     private final NinjaKeySet m_ninjaSelectedKeys;
+    private final NetworkSelector m_networkSelector;
 
     /**
      * Start this VoltNetwork's thread;
@@ -134,6 +135,7 @@ class VoltNetwork implements Runnable, IOStatsIntf
             throw new RuntimeException(ex);
         }
         m_ninjaSelectedKeys = NinjaKeySet.instrumentSelector(m_selector);
+        m_networkSelector = new NetworkSelector(m_selector, m_tasks, NetworkSelector.BUSY_POLL_NANOS);
     }
 
     VoltNetwork( Selector s) {
@@ -142,6 +144,7 @@ class VoltNetwork implements Runnable, IOStatsIntf
         m_coreBindId = null;
         networkThreadName = new String("Test Selector Thread");
         m_ninjaSelectedKeys = NinjaKeySet.instrumentSelector(m_selector);
+        m_networkSelector = new NetworkSelector(m_selector, m_tasks, NetworkSelector.BUSY_POLL_NANOS);
     }
 
     /** Instruct the network to stop after the current loop */
@@ -225,7 +228,7 @@ class VoltNetwork implements Runnable, IOStatsIntf
 
         FutureTask<Connection> ft = new FutureTask<Connection>(registerTask);
         m_tasks.offer(ft);
-        m_selector.wakeup();
+        m_networkSelector.wakeup();
 
         try {
             return ft.get();
@@ -271,7 +274,7 @@ class VoltNetwork implements Runnable, IOStatsIntf
     Future<?> unregisterChannel (Connection c) {
         FutureTask<Object> ft = new FutureTask<Object>(getUnregisterRunnable(c), null);
         m_tasks.offer(ft);
-        m_selector.wakeup();
+        m_networkSelector.wakeup();
         return ft;
     }
 
@@ -296,7 +299,7 @@ class VoltNetwork implements Runnable, IOStatsIntf
                 }
             });
         }
-        m_selector.wakeup();
+        m_networkSelector.wakeup();
     }
 
     @Override
@@ -313,7 +316,8 @@ class VoltNetwork implements Runnable, IOStatsIntf
                     while (m_shouldStop == false) {
                         LatencyWatchdog.pet();
 
-                        final int readyKeys = m_selector.select();
+                        final int readyKeys = m_networkSelector.select(false);
+                        boolean hadWork = readyKeys > 0;
 
                         /*
                          * Run the task queue immediately after selection to catch
@@ -321,6 +325,7 @@ class VoltNetwork implements Runnable, IOStatsIntf
                          */
                         Runnable task = null;
                         while ((task = m_tasks.poll()) != null) {
+                            hadWork = true;
                             task.run();
                         }
 
@@ -338,8 +343,13 @@ class VoltNetwork implements Runnable, IOStatsIntf
                          */
                         task = null;
                         while ((task = m_tasks.poll()) != null) {
+                            hadWork = true;
                             task.run();
                         }
+
+                        if (hadWork) {
+                            m_networkSelector.workDone();
+                        }
                     }
                 } catch (Throwable ex) {
                     ex.printStackTrace();
@@ -547,7 +557,7 @@ class VoltNetwork implements Runnable, IOStatsIntf
         FutureTask<Map<Long, Pair<String, long[]>>> ft = new FutureTask<Map<Long, Pair<String, long[]>>>(task);
 
         m_tasks.offer(ft);
-        m_selector.wakeup();
+        m_networkSelector.wakeup();
 
         return ft;
     }
@@ -558,7 +568,7 @@ class VoltNetwork implements Runnable, IOStatsIntf
 
     void queueTask(Runnable r) {
         m_tasks.offer(r);
-        m_selector.wakeup();
+        m_networkSelector.wakeup();
     }
 
     int numPorts() {
@@ -0,0 +1,48 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2018 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltcore.utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * A {@link DeferredSerialization} whose message is mostly buffers that already
+ * hold their serialized form. Rather than copying those buffers into the
+ * network buffers, the write stream serializes only the head of the message
+ * and queues the buffers behind it as they are, to be written with one
+ * gathering write.
+ *
+ * The write stream decides which path to take after calling
+ * {@link #getSerializedSize()}, small messages are serialized as usual.
+ */
+public interface GatheringDeferredSerialization extends DeferredSerialization {
+
+    /**
+     * @return the buffers holding the end of the message, written from their
+     * position to their limit, or null to serialize the whole message instead.
+     * The buffers must not change until they are written.
+     */
+    ByteBuffer[] getGatheredBuffers();
+
+    /**
+     * Serialize the start of the message, everything that comes before the
+     * gathered buffers. Called instead of {@link #serialize(ByteBuffer)}.
+     * @param buf buffer with exactly the room the head of the message needs
+     */
+    void serializeHead(ByteBuffer buf) throws IOException;
+}
@@ -0,0 +1,281 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2018 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltcore.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * A map from primitive longs to objects for the per transaction bookkeeping
+ * on the initiator and client interface paths. Keys are kept in a long array
+ * with open addressing and linear probing, so put and remove don't allocate
+ * entries or box keys. The arrays only grow, a map that stays at a steady size
+ * doesn't allocate at all.
+ *
+ * Removal shifts the following entries of the probe sequence back rather than
+ * leaving tombstones, and the {@link Cursor} walks the table backwards from an
+ * empty slot so removing through it never skips or repeats an entry.
+ *
+ * Null values are not allowed. Not thread safe.
+ */
+public class LongHashMap<V> {
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final long PHI = 0x9E3779B97F4A7C15L;
+
+    private long[] m_keys;
+    private Object[] m_values;
+    private int m_mask;
+    private int m_shift;
+    private int m_size = 0;
+    private int m_threshold;
+
+    public LongHashMap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public LongHashMap(int expectedSize) {
+        int capacity = DEFAULT_CAPACITY;
+        while (capacity < expectedSize * 2) {
+            capacity <<= 1;
+        }
+        allocate(capacity);
+    }
+
+    private void allocate(int capacity) {
+        m_keys = new long[capacity];
+        m_values = new Object[capacity];
+        m_mask = capacity - 1;
+        m_shift = 64 - Integer.numberOfTrailingZeros(capacity);
+        // at most 3/4 full, there is always an empty slot to stop a probe
+        m_threshold = capacity - (capacity >> 2);
+    }
+
+    private int slot(long key) {
+        return (int) ((key * PHI) >>> m_shift);
+    }
+
+    private int find(long key) {
+        int i = slot(key);
+        while (m_values[i] != null) {
+            if (m_keys[i] == key) {
+                return i;
+            }
+            i = (i + 1) & m_mask;
+        }
+        return -1;
+    }
+
+    public int size() {
+        return m_size;
+    }
+
+    public boolean isEmpty() {
+        return m_size == 0;
+    }
+
+    public boolean containsKey(long key) {
+        return find(key) >= 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        final int i = find(key);
+        return i < 0 ? null : (V) m_values[i];
+    }
+
+    /**
+     * @return the value previously mapped to key, or null
+     */
+    @SuppressWarnings("unchecked")
+    public V put(long key, V value) {
+        if (value == null) {
+            throw new NullPointerException("LongHashMap doesn't take null values");
+        }
+        int i = slot(key);
+        while (m_values[i] != null) {
+            if (m_keys[i] == key) {
+                final V old = (V) m_values[i];
+                m_values[i] = value;
+                return old;
+            }
+            i = (i + 1) & m_mask;
+        }
+        m_keys[i] = key;
+        m_values[i] = value;
+        if (++m_size > m_threshold) {
+            rehash(m_keys.length << 1);
+        }
+        return null;
+    }
+
+    /**
+     * @return the value that was mapped to key, or null
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(long key) {
+        final int i = find(key);
+        if (i < 0) {
+            return null;
+        }
+        final V old = (V) m_values[i];
+        removeSlot(i);
+        return old;
+    }
+
+    public void clear() {
+        Arrays.fill(m_values, null);
+        m_size = 0;
+    }
+
+    /**
+     * @return a copy of the keys, in no particular order
+     */
+    public List<Long> keys() {
+        final List<Long> keys = new ArrayList<Long>(m_size);
+        for (int i = 0; i < m_values.length; i++) {
+            if (m_values[i] != null) {
+                keys.add(m_keys[i]);
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * @return a copy of the values, in no particular order
+     */
+    @SuppressWarnings("unchecked")
+    public List<V> values() {
+        final List<V> values = new ArrayList<V>(m_size);
+        for (int i = 0; i < m_values.length; i++) {
+            if (m_values[i] != null) {
+                values.add((V) m_values[i]);
+            }
+        }
+        return values;
+    }
+
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * Empty slot i and move back the entries after it whose probe sequence
+     * went through i, so lookups never need to look past an empty slot.
+     */
+    private void removeSlot(int i) {
+        int hole = i;
+        int j = (i + 1) & m_mask;
+        while (m_values[j] != null) {
+            final int home = slot(m_keys[j]);
+            // move j into the hole unless its home slot is cyclically in (hole, j]
+            if (((j - home) & m_mask) >= ((j - hole) & m_mask)) {
+                m_keys[hole] = m_keys[j];
+                m_values[hole] = m_values[j];
+                hole = j;
+            }
+            j = (j + 1) & m_mask;
+        }
+        m_values[hole] = null;
+        m_size--;
+    }
+
+    private void rehash(int capacity) {
+        final long[] keys = m_keys;
+        final Object[] values = m_values;
+        allocate(capacity);
+        for (int i = 0; i < keys.length; i++) {
+            if (values[i] != null) {
+                int j = slot(keys[i]);
+                while (m_values[j] != null) {
+                    j = (j + 1) & m_mask;
+                }
+                m_keys[j] = keys[i];
+                m_values[j] = values[i];
+            }
+        }
+    }
+
+    /**
+     * Walks the entries of the map, supports removing the current entry.
+     * The map must not be added to while a cursor is in use.
+     */
+    public class Cursor {
+        private int m_next;
+        private int m_remaining;
+        private long m_key;
+        private V m_value;
+
+        private Cursor() {
+            // start at an empty slot and go backwards, entries moved by a
+            // removal then always come from slots that were visited already
+            int start = 0;
+            while (m_values[start] != null) {
+                start++;
+            }
+            m_next = (start - 1) & m_mask;
+            m_remaining = m_keys.length - 1;
+        }
+
+        /**
+         * Move to the next entry.
+         * @return false if there are no more entries
+         */
+        @SuppressWarnings("unchecked")
+        public boolean advance() {
+            while (m_remaining > 0) {
+                final int i = m_next;
+                m_next = (i - 1) & m_mask;
+                m_remaining--;
+                if (m_values[i] != null) {
+                    m_key = m_keys[i];
+                    m_value = (V) m_values[i];
+                    return true;
+                }
+            }
+            m_value = null;
+            return false;
+        }
+
+        public long key() {
+            if (m_value == null) {
+                throw new NoSuchElementException();
+            }
+            return m_key;
+        }
+
+        public V value() {
+            if (m_value == null) {
+                throw new NoSuchElementException();
+            }
+            return m_value;
+        }
+
+        /**
+         * Remove the current entry from the map.
+         */
+        public void remove() {
+            if (m_value == null) {
+                throw new IllegalStateException();
+            }
+            removeSlot((m_next + 1) & m_mask);
+            m_value = null;
+        }
+    }
+}
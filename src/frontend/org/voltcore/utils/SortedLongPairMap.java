@@ -0,0 +1,288 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2018 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltcore.utils;
+
+import java.util.Arrays;
+
+/**
+ * A sorted map keyed by pairs of primitive longs, ordered by the first long
+ * and then the second, like the (txnId, spHandle) keys of the duplicate
+ * counters. Entries are kept in sorted parallel arrays and looked up with a
+ * binary search.
+ *
+ * The entries start at a head offset in the arrays, so removing the first
+ * entry, which is what acks of in-order transactions do, only moves the head.
+ * Keys mostly arrive in increasing order, so inserts land at the end. Other
+ * inserts and removals move the shorter side of the arrays, and the map holds
+ * at most the transactions in flight on a site, so that stays cheap. Nothing
+ * is allocated unless the map grows.
+ *
+ * Entries are addressed by their index in key order, which stays valid until
+ * the map is next changed. Null values are not allowed. Not thread safe.
+ */
+public class SortedLongPairMap<V> {
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private long[] m_firsts;
+    private long[] m_seconds;
+    private Object[] m_values;
+    // the entries are at [m_head, m_head + m_size) in the arrays
+    private int m_head = 0;
+    private int m_size = 0;
+
+    public SortedLongPairMap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public SortedLongPairMap(int capacity) {
+        capacity = Math.max(1, capacity);
+        m_firsts = new long[capacity];
+        m_seconds = new long[capacity];
+        m_values = new Object[capacity];
+    }
+
+    private static int compare(long first1, long second1, long first2, long second2) {
+        if (first1 != first2) {
+            return first1 < first2 ? -1 : 1;
+        }
+        return second1 < second2 ? -1 : (second1 == second2 ? 0 : 1);
+    }
+
+    /**
+     * @return the index of the key, or (-(insertion point) - 1) if it isn't in the map
+     */
+    private int search(long first, long second) {
+        // the common case, a key past the last one
+        final int last = m_head + m_size - 1;
+        if (m_size == 0 || compare(first, second, m_firsts[last], m_seconds[last]) > 0) {
+            return -m_size - 1;
+        }
+        int low = 0;
+        int high = m_size - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            final int cmp = compare(m_firsts[m_head + mid], m_seconds[m_head + mid], first, second);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -low - 1;
+    }
+
+    public int size() {
+        return m_size;
+    }
+
+    public boolean isEmpty() {
+        return m_size == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(m_values, m_head, m_head + m_size, null);
+        m_head = 0;
+        m_size = 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(long first, long second) {
+        final int i = search(first, second);
+        return i < 0 ? null : (V) m_values[m_head + i];
+    }
+
+    /**
+     * @return the value previously mapped to the key, or null
+     */
+    @SuppressWarnings("unchecked")
+    public V put(long first, long second, V value) {
+        if (value == null) {
+            throw new NullPointerException("SortedLongPairMap doesn't take null values");
+        }
+        int i = search(first, second);
+        if (i >= 0) {
+            final V old = (V) m_values[m_head + i];
+            m_values[m_head + i] = value;
+            return old;
+        }
+        i = -i - 1;
+        if (i == 0 && m_head > 0) {
+            // a key before the first one goes in front of the head
+            m_head--;
+        } else {
+            if (m_head + m_size == m_values.length) {
+                makeRoom();
+            }
+            final int at = m_head + i;
+            final int moved = m_size - i;
+            if (moved > 0) {
+                System.arraycopy(m_firsts, at, m_firsts, at + 1, moved);
+                System.arraycopy(m_seconds, at, m_seconds, at + 1, moved);
+                System.arraycopy(m_values, at, m_values, at + 1, moved);
+            }
+        }
+        m_firsts[m_head + i] = first;
+        m_seconds[m_head + i] = second;
+        m_values[m_head + i] = value;
+        m_size++;
+        return null;
+    }
+
+    /**
+     * Make room after the last entry by moving the entries to the start of the
+     * arrays, or to new arrays twice the size if they are more than half full.
+     */
+    private void makeRoom() {
+        final int capacity = m_values.length;
+        if (m_size < capacity / 2) {
+            System.arraycopy(m_firsts, m_head, m_firsts, 0, m_size);
+            System.arraycopy(m_seconds, m_head, m_seconds, 0, m_size);
+            System.arraycopy(m_values, m_head, m_values, 0, m_size);
+            Arrays.fill(m_values, Math.max(m_size, m_head), m_head + m_size, null);
+        } else {
+            final long[] firsts = new long[capacity << 1];
+            final long[] seconds = new long[capacity << 1];
+            final Object[] values = new Object[capacity << 1];
+            System.arraycopy(m_firsts, m_head, firsts, 0, m_size);
+            System.arraycopy(m_seconds, m_head, seconds, 0, m_size);
+            System.arraycopy(m_values, m_head, values, 0, m_size);
+            m_firsts = firsts;
+            m_seconds = seconds;
+            m_values = values;
+        }
+        m_head = 0;
+    }
+
+    /**
+     * @return the value that was mapped to the key, or null
+     */
+    public V remove(long first, long second) {
+        final int i = search(first, second);
+        return i < 0 ? null : removeAt(i);
+    }
+
+    /**
+     * Remove the entry at index i, the entries after it move down by one.
+     * Removing the first entry takes constant time.
+     * @return the value of the removed entry
+     */
+    @SuppressWarnings("unchecked")
+    public V removeAt(int i) {
+        checkIndex(i);
+        final int at = m_head + i;
+        final V old = (V) m_values[at];
+        if (i < m_size / 2) {
+            // fewer entries before it, move them up and the head with them
+            if (i > 0) {
+                System.arraycopy(m_firsts, m_head, m_firsts, m_head + 1, i);
+                System.arraycopy(m_seconds, m_head, m_seconds, m_head + 1, i);
+                System.arraycopy(m_values, m_head, m_values, m_head + 1, i);
+            }
+            m_values[m_head++] = null;
+        } else {
+            final int moved = m_size - i - 1;
+            if (moved > 0) {
+                System.arraycopy(m_firsts, at + 1, m_firsts, at, moved);
+                System.arraycopy(m_seconds, at + 1, m_seconds, at, moved);
+                System.arraycopy(m_values, at + 1, m_values, at, moved);
+            }
+            m_values[m_head + m_size - 1] = null;
+        }
+        if (--m_size == 0) {
+            m_head = 0;
+        }
+        return old;
+    }
+
+    /**
+     * Remove every entry whose first long is <code>first</code>.
+     * @return the number of entries removed
+     */
+    public int removeFirst(long first) {
+        final int from = ceilingIndex(first, Long.MIN_VALUE);
+        if (from < 0) {
+            return 0;
+        }
+        int to = from;
+        while (to < m_size && m_firsts[m_head + to] == first) {
+            to++;
+        }
+        final int removed = to - from;
+        if (removed == 0) {
+            return 0;
+        }
+        if (from == 0) {
+            Arrays.fill(m_values, m_head, m_head + removed, null);
+            m_head += removed;
+        } else {
+            final int moved = m_size - to;
+            System.arraycopy(m_firsts, m_head + to, m_firsts, m_head + from, moved);
+            System.arraycopy(m_seconds, m_head + to, m_seconds, m_head + from, moved);
+            System.arraycopy(m_values, m_head + to, m_values, m_head + from, moved);
+            Arrays.fill(m_values, m_head + m_size - removed, m_head + m_size, null);
+        }
+        m_size -= removed;
+        if (m_size == 0) {
+            m_head = 0;
+        }
+        return removed;
+    }
+
+    /**
+     * @return the index of the greatest key less than or equal to the given key, or -1
+     */
+    public int floorIndex(long first, long second) {
+        final int i = search(first, second);
+        return i >= 0 ? i : -i - 2;
+    }
+
+    /**
+     * @return the index of the least key greater than or equal to the given key, or -1
+     */
+    public int ceilingIndex(long first, long second) {
+        int i = search(first, second);
+        if (i < 0) {
+            i = -i - 1;
+        }
+        return i < m_size ? i : -1;
+    }
+
+    public long firstAt(int i) {
+        checkIndex(i);
+        return m_firsts[m_head + i];
+    }
+
+    public long secondAt(int i) {
+        checkIndex(i);
+        return m_seconds[m_head + i];
+    }
+
+    @SuppressWarnings("unchecked")
+    public V valueAt(int i) {
+        checkIndex(i);
+        return (V) m_values[m_head + i];
+    }
+
+    private void checkIndex(int i) {
+        if (i < 0 || i >= m_size) {
+            throw new IndexOutOfBoundsException("Index " + i + ", size " + m_size);
+        }
+    }
+}
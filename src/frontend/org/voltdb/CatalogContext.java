@@ -22,6 +22,7 @@ import java.io.File;
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.Map;
+import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
 import java.util.UUID;
@@ -73,6 +74,9 @@ public class CatalogContext {
         public final UUID m_deploymentHashForConfig;
         public Catalog m_catalog;
         public ConcurrentLinkedQueue<ImmutableMap<String, ProcedureRunner>> m_preparedProcRunners;
+        // User procedures the update changes, the prepared runners are for these only.
+        // Null if the runners of all procedures were prepared.
+        public Set<String> m_changedProcedures;
 
         public CatalogInfo(byte[] catalogBytes, byte[] catalogBytesHash, byte[] deploymentBytes) {
             if (deploymentBytes == null) {
@@ -298,10 +302,22 @@ public class CatalogContext {
         return retval;
     }
 
+    /**
+     * @return the user procedures changed by the catalog update that created this
+     * context, or null if they should all be reloaded
+     */
+    public Set<String> getChangedProcedures() {
+        return m_catalogInfo.m_changedProcedures;
+    }
+
     public ImmutableMap<String, ProcedureRunner> getPreparedUserProcedureRunners(SiteProcedureConnection site) {
 
         ImmutableMap<String, ProcedureRunner> userProcRunner = m_catalogInfo.m_preparedProcRunners.poll();
 
+        if (userProcRunner == null && m_catalogInfo.m_changedProcedures != null) {
+            // the site loads the changed procedures it has no runner for itself
+            return ImmutableMap.of();
+        }
         if (userProcRunner == null) {
             // somehow there is no prepared user procedure runner map left, then prepare it again
 
@@ -47,6 +47,7 @@ import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 
 import javax.net.ssl.SSLContext;
@@ -65,6 +66,7 @@ import org.voltcore.messaging.VoltMessage;
 import org.voltcore.network.CipherExecutor;
 import org.voltcore.network.Connection;
 import org.voltcore.network.NIOReadStream;
+import org.voltcore.network.NIOWriteStreamBase;
 import org.voltcore.network.QueueMonitor;
 import org.voltcore.network.ReverseDNSPolicy;
 import org.voltcore.network.VoltNetworkPool;
@@ -74,6 +76,7 @@ import org.voltcore.network.WriteStream;
 import org.voltcore.utils.CoreUtils;
 import org.voltcore.utils.DeferredSerialization;
 import org.voltcore.utils.EstTime;
+import org.voltcore.utils.GatheringDeferredSerialization;
 import org.voltcore.utils.Pair;
 import org.voltcore.utils.RateLimitedLogger;
 import org.voltcore.utils.ssl.MessagingChannel;
@@ -95,6 +98,7 @@ import org.voltdb.iv2.Cartographer;
 import org.voltdb.iv2.Iv2Trace;
 import org.voltdb.iv2.MigratePartitionLeaderInfo;
 import org.voltdb.iv2.MpInitiator;
+import org.voltdb.largequery.LargeBlockManager;
 import org.voltdb.messaging.FastDeserializer;
 import org.voltdb.messaging.InitiateResponseMessage;
 import org.voltdb.messaging.Iv2EndOfLogMessage;
@@ -169,6 +173,22 @@ public class ClientInterface implements SnapshotDaemon.DaemonInitiator {
     public static final long INTERNAL_CID                      = Long.MIN_VALUE + setBaseValue(6);
 
     private static final VoltLogger log = new VoltLogger(ClientInterface.class.getName());
+
+    // Coalesce the responses that complete while a connection's network thread is busy
+    // into a single write instead of queueing and writing each one by itself
+    private static final boolean BATCH_CLIENT_RESPONSES =
+            Boolean.valueOf(System.getProperty("BATCH_CLIENT_RESPONSES", "true"));
+    private static final int MAX_RESPONSES_PER_BATCH =
+            Integer.getInteger("MAX_RESPONSES_PER_BATCH", 256);
+    // Keep batches well inside one pooled network buffer so they never take the heap copy path
+    private static final int MAX_RESPONSE_BATCH_BYTES =
+            Integer.getInteger("MAX_RESPONSE_BATCH_BYTES", 16 * 1024);
+
+    // Totals for the response batching columns of @Statistics COMMANDLOG
+    private final AtomicLong m_responsesWritten = new AtomicLong();
+    private final AtomicLong m_responseBatches = new AtomicLong();
+    private final AtomicLong m_durableResponses = new AtomicLong();
+    private final AtomicLong m_durableToSendNanos = new AtomicLong();
     private static final VoltLogger authLog = new VoltLogger("AUTH");
     private static final VoltLogger hostLog = new VoltLogger("HOST");
     private static final VoltLogger networkLog = new VoltLogger("NETWORK");
@@ -857,6 +877,12 @@ public class ClientInterface implements SnapshotDaemon.DaemonInitiator {
             }
 
             m_notifier.removeConnection(c);
+
+            // result cursors can only be read over the connection that opened them
+            LargeBlockManager largeBlockManager = LargeBlockManager.getInstance();
+            if (largeBlockManager != null) {
+                largeBlockManager.getResultCursors().closeConnection(c.connectionId());
+            }
         }
 
         /*
@@ -920,12 +946,13 @@ public class ClientInterface implements SnapshotDaemon.DaemonInitiator {
      * Runs on the network thread to prepare client response. If a transaction needs to be
      * restarted, it will get restarted here.
      */
-    public class ClientResponseWork implements DeferredSerialization {
+    public class ClientResponseWork implements GatheringDeferredSerialization {
         private final ClientInterfaceHandleManager cihm;
         private final InitiateResponseMessage response;
         private final Procedure catProc;
         private ClientResponseImpl clientResponse;
         private boolean restartMispartitionedTxn;
+        private int m_serializedSize;
 
         private ClientResponseWork(InitiateResponseMessage response,
                                    ClientInterfaceHandleManager cihm,
@@ -945,6 +972,22 @@ public class ClientInterface implements SnapshotDaemon.DaemonInitiator {
             clientResponse.flattenToBuffer(buf);
         }
 
+        /**
+         * Large results packed by the site are written from the packed buffer,
+         * behind a header serialized by {@link #serializeHead(ByteBuffer)}.
+         */
+        @Override
+        public ByteBuffer[] getGatheredBuffers() {
+            final ByteBuffer packed = clientResponse.getPackedResults();
+            return packed == null ? null : new ByteBuffer[] { packed };
+        }
+
+        @Override
+        public void serializeHead(ByteBuffer buf) throws IOException {
+            buf.putInt(m_serializedSize - 4);
+            clientResponse.flattenHeaderToBuffer(buf);
+        }
+
         @Override
         public void cancel() {
         }
@@ -1005,7 +1048,8 @@ public class ClientInterface implements SnapshotDaemon.DaemonInitiator {
             clientResponse.setClusterRoundtrip((int)TimeUnit.NANOSECONDS.toMillis(delta));
             clientResponse.setHashes(null); // not part of wire protocol
 
-            return clientResponse.getSerializedSize() + 4;
+            m_serializedSize = clientResponse.getSerializedSize() + 4;
+            return m_serializedSize;
         }
 
         @Override
@@ -1070,6 +1114,155 @@ public class ClientInterface implements SnapshotDaemon.DaemonInitiator {
         }
     }
 
+    /**
+     * All the responses for one connection that were ready before its network thread got
+     * around to writing them. Site threads add to the batch until the network thread
+     * starts serializing it, then everything is serialized back to back and goes out
+     * in one write. Under synchronous command logging this gathers the responses of
+     * transactions that became durable in the same fsync.
+     */
+    public class ClientResponseBatch implements DeferredSerialization {
+        private final ClientInterfaceHandleManager m_cihm;
+        private final ArrayList<ClientResponseWork> m_works = new ArrayList<ClientResponseWork>();
+        private int m_estimatedBytes = 0;
+        private int[] m_sizes;
+
+        private ClientResponseBatch(ClientInterfaceHandleManager cihm) {
+            m_cihm = cihm;
+        }
+
+        @Override
+        public int getSerializedSize() throws IOException {
+            // Close the batch, later responses start a new one
+            synchronized (m_cihm.m_responseBatchLock) {
+                if (m_cihm.m_openResponseBatch == this) {
+                    m_cihm.m_openResponseBatch = null;
+                }
+            }
+            m_sizes = new int[m_works.size()];
+            int size = 0;
+            boolean empty = true;
+            for (int i = 0; i < m_sizes.length; i++) {
+                m_sizes[i] = m_works.get(i).getSerializedSize();
+                if (m_sizes[i] != DeferredSerialization.EMPTY_MESSAGE_LENGTH) {
+                    size += m_sizes[i];
+                    empty = false;
+                }
+            }
+            return empty ? DeferredSerialization.EMPTY_MESSAGE_LENGTH : size;
+        }
+
+        @Override
+        public void serialize(ByteBuffer buf) throws IOException {
+            final long now = System.nanoTime();
+            int responses = 0;
+            for (int i = 0; i < m_sizes.length; i++) {
+                if (m_sizes[i] == DeferredSerialization.EMPTY_MESSAGE_LENGTH) {
+                    continue;
+                }
+                // Each response writes its length prefix from the capacity of its buffer
+                final ClientResponseWork work = m_works.get(i);
+                final int end = buf.position() + m_sizes[i];
+                buf.limit(end);
+                work.serialize(buf.slice());
+                buf.position(end);
+                responses++;
+                if (work.response.m_durableNanos != 0) {
+                    m_durableResponses.incrementAndGet();
+                    m_durableToSendNanos.addAndGet(now - work.response.m_durableNanos);
+                }
+            }
+            buf.limit(buf.capacity());
+            m_responsesWritten.addAndGet(responses);
+            m_responseBatches.incrementAndGet();
+        }
+
+        @Override
+        public void cancel() {
+            for (ClientResponseWork work : m_works) {
+                work.cancel();
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "ClientResponseBatch of " + m_works.size();
+        }
+    }
+
+    /**
+     * Hand a response to the network thread of its connection, joining the batch
+     * that is still waiting there if there is one.
+     */
+    private void queueClientResponse(ClientInterfaceHandleManager cihm, ClientResponseWork work) {
+        if (!BATCH_CLIENT_RESPONSES) {
+            cihm.connection.writeStream().fastEnqueue(work);
+            return;
+        }
+        final int estimatedBytes = estimateResponseBytes(work.clientResponse);
+        synchronized (cihm.m_responseBatchLock) {
+            ClientResponseBatch batch = cihm.m_openResponseBatch;
+            if (estimatedBytes >= NIOWriteStreamBase.GATHERING_WRITE_MIN_BYTES) {
+                // Large responses go on their own so their tables can be written without a copy,
+                // close the open batch so responses still reach the connection in order
+                cihm.m_openResponseBatch = null;
+                cihm.connection.writeStream().fastEnqueue(work);
+                return;
+            }
+            if (batch != null &&
+                    batch.m_works.size() < MAX_RESPONSES_PER_BATCH &&
+                    batch.m_estimatedBytes + estimatedBytes <= MAX_RESPONSE_BATCH_BYTES) {
+                batch.m_works.add(work);
+                batch.m_estimatedBytes += estimatedBytes;
+                return;
+            }
+            batch = new ClientResponseBatch(cihm);
+            batch.m_works.add(work);
+            batch.m_estimatedBytes = estimatedBytes;
+            cihm.m_openResponseBatch = batch;
+            // Enqueue while holding the lock so batches reach the connection in the order they were opened
+            cihm.connection.writeStream().fastEnqueue(batch);
+        }
+    }
+
+    /**
+     * Rough size of a response on the wire, from its result tables and status strings.
+     * Unlike getSerializedSize() it leaves the response alone, that is done on the
+     * network thread when the response is written.
+     */
+    private static int estimateResponseBytes(ClientResponseImpl response) {
+        if (response == null) {
+            return 0;
+        }
+        int bytes = 4 // length prefix
+                  + 64; // header
+        if (response.getStatusString() != null) {
+            bytes += response.getStatusString().length();
+        }
+        if (response.getAppStatusString() != null) {
+            bytes += response.getAppStatusString().length();
+        }
+        for (VoltTable table : response.getResults()) {
+            bytes += table.getSerializedSize();
+        }
+        return bytes;
+    }
+
+    /**
+     * Totals for the response batching columns of @Statistics COMMANDLOG.
+     * @return the number of responses serialized in batches, the number of batches,
+     * the number of those responses that waited for the command log, and the total
+     * nanoseconds from their transactions becoming durable to their serialization
+     */
+    long[] getResponseBatchingStats() {
+        return new long[] {
+                m_responsesWritten.get(),
+                m_responseBatches.get(),
+                m_durableResponses.get(),
+                m_durableToSendNanos.get()
+        };
+    }
+
     CatalogContext getCatalogContext() {
         return m_catalogContext.get();
     }
@@ -1210,7 +1403,7 @@ public class ClientInterface implements SnapshotDaemon.DaemonInitiator {
                     if (cihm != null) {
                         //Pass it to the network thread like a ninja
                         //Only the network can use the CIHM
-                        cihm.connection.writeStream().fastEnqueue(new ClientResponseWork(response, cihm, procedure));
+                        queueClientResponse(cihm, new ClientResponseWork(response, cihm, procedure));
                         Iv2Trace.logFinishTransaction(response, m_mailbox.getHSId());
                     }
                 }
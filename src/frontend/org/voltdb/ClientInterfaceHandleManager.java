@@ -18,14 +18,11 @@
 package org.voltdb;
 
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
-import java.util.Map.Entry;
 
 import org.voltcore.logging.VoltLogger;
 import org.voltcore.network.Connection;
+import org.voltcore.utils.LongHashMap;
 
 import com.google_voltpatches.common.collect.ImmutableMap;
 import com.google_voltpatches.common.collect.ImmutableMap.Builder;
@@ -64,6 +61,11 @@ public class ClientInterfaceHandleManager
 
     private volatile boolean m_wantsTopologyUpdates = false;
 
+    // Responses waiting for the network thread, see ClientInterface.ClientResponseBatch.
+    // Site threads and the network thread share it under m_responseBatchLock.
+    final Object m_responseBatchLock = new Object();
+    ClientInterface.ClientResponseBatch m_openResponseBatch = null;
+
     private ImmutableMap<Integer, PartitionInFlightTracker> m_trackerMap
         = new Builder<Integer, PartitionInFlightTracker>().build();
 
@@ -108,7 +110,7 @@ public class ClientInterfaceHandleManager
 
     static class PartitionInFlightTracker {
         private final HandleGenerator m_generator;
-        private final Map<Long, Iv2InFlight> m_inFlights = new HashMap<Long, Iv2InFlight>();
+        private final LongHashMap<Iv2InFlight> m_inFlights = new LongHashMap<Iv2InFlight>();
 
         private PartitionInFlightTracker(int partitionId) {
             m_generator = new HandleGenerator(partitionId);
@@ -297,17 +299,17 @@ public class ClientInterfaceHandleManager
     private void collectAndRemovePartitionInFlightRequests(Integer partitionId, Long initiatorHSId, List<Iv2InFlight> retval) {
         PartitionInFlightTracker partitionStuff = m_trackerMap.get(partitionId);
         if (partitionStuff != null) {
-            Iterator<Entry<Long, Iv2InFlight>> iter = partitionStuff.m_inFlights.entrySet().iterator();
-            while (iter.hasNext()) {
-                Entry<Long, Iv2InFlight> entry = iter.next();
-                if (entry.getValue().m_initiatorHSId != initiatorHSId) {
+            LongHashMap<Iv2InFlight>.Cursor iter = partitionStuff.m_inFlights.cursor();
+            while (iter.advance()) {
+                Iv2InFlight inFlight = iter.value();
+                if (inFlight.m_initiatorHSId != initiatorHSId) {
                     if (tmLog.isTraceEnabled()) {
-                        tmLog.trace("cleared response for handle " + entry.getKey());
+                        tmLog.trace("cleared response for handle " + iter.key());
                     }
                     iter.remove();
-                    retval.add(entry.getValue());
+                    retval.add(inFlight);
                     m_outstandingTxns--;
-                    m_acg.reduceBackpressure(entry.getValue().m_messageSize);
+                    m_acg.reduceBackpressure(inFlight.m_messageSize);
                 }
             }
         }
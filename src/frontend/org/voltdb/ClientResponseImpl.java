@@ -45,6 +45,13 @@ public class ClientResponseImpl implements ClientResponse, JSONString {
     private byte encodedAppStatusString[];
     private VoltTable[] results = new VoltTable[0];
     private int[] m_hashes = null;
+    // All result tables back to back as they are serialized (length prefixed),
+    // or null when each table is flattened from its own buffer.
+    // See packResultTables().
+    private ByteBuffer m_packedResults = null;
+    // SpHandle of the partition state the response reflects, only returned
+    // to session consistent invocations. See getSpHandle().
+    private long m_spHandle = NO_SPHANDLE;
 
     private int clusterRoundTripTime = 0;
     private int clientRoundTripTime = 0;
@@ -63,6 +70,8 @@ public class ClientResponseImpl implements ClientResponse, JSONString {
     // transaction is a duplicate
     public static final String IGNORED_TRANSACTION = "Ignored replayed transaction";
 
+    public static final long NO_SPHANDLE = -1;
+
     /** opaque data optionally provided by and returned to the client */
     private long clientHandle = -1;
 
@@ -131,6 +140,67 @@ public class ClientResponseImpl implements ClientResponse, JSONString {
         this.results = results;
         this.statusString = statusString;
         this.setProperly = true;
+        m_packedResults = null;
+    }
+
+    /**
+     * Make sure no result table still refers to a buffer owned by the EE, which
+     * is reused by the next batch the site executes.
+     *
+     * When every table is a view over an EE buffer, they are all copied at once
+     * into a single heap buffer that is already laid out the way the tables are
+     * serialized, and each table is repointed at its slice of it. The response
+     * is then flattened with one bulk copy instead of one copy per table, and
+     * large responses can hand that buffer to a gathering write as is.
+     *
+     * This is not zero copy. The data is still copied out of the EE buffer, as
+     * the per table conversion does, because the site reuses that buffer for
+     * its next batch long before the network thread writes the response. What
+     * it saves is one allocation and one copy call per table.
+     *
+     * If any table is on the heap already (built by the procedure, or copied
+     * by an earlier call) the tables are converted one by one as before.
+     *
+     * Tables are repointed in place, so a procedure that kept a reference to
+     * one of them keeps seeing valid data after the EE buffer is reused.
+     *
+     * @return true if the results were packed into a single buffer
+     */
+    public boolean packResultTables() {
+        boolean allDirect = results.length > 0;
+        for (VoltTable table : results) {
+            if (!table.m_buffer.isDirect()) {
+                allDirect = false;
+                break;
+            }
+        }
+        if (!allDirect) {
+            for (VoltTable table : results) {
+                table.convertToHeapBuffer();
+            }
+            return false;
+        }
+        m_packedResults = VoltTable.packToHeapBuffer(results);
+        return true;
+    }
+
+    /**
+     * @return the packed result tables (without the table count), or null if the
+     * results are not packed. See {@link #packResultTables()}.
+     */
+    public ByteBuffer getPackedResults() {
+        if (m_packedResults == null) {
+            return null;
+        }
+        // Someone may have swapped a table in the result array since the results were packed
+        final byte[] packedArray = m_packedResults.array();
+        for (VoltTable table : results) {
+            if (!table.m_buffer.hasArray() || table.m_buffer.array() != packedArray) {
+                m_packedResults = null;
+                return null;
+            }
+        }
+        return m_packedResults.duplicate();
     }
 
     public void setHashes(int[] hashes) {
@@ -168,6 +238,22 @@ public class ClientResponseImpl implements ClientResponse, JSONString {
         return m_hashes;
     }
 
+    /**
+     * Set the SpHandle of the last transaction visible to a single partition
+     * invocation. Only set for invocations that asked for session consistency.
+     */
+    public void setSpHandle(long spHandle) {
+        m_spHandle = spHandle;
+    }
+
+    /**
+     * @return the SpHandle of the last transaction the procedure observed on its
+     * partition, or {@link #NO_SPHANDLE} if the response doesn't carry one.
+     */
+    public long getSpHandle() {
+        return m_spHandle;
+    }
+
     public void initFromBuffer(ByteBuffer buf) throws IOException {
         buf.get();//Skip version byte
         clientHandle = buf.getLong();
@@ -197,11 +283,17 @@ public class ClientResponseImpl implements ClientResponse, JSONString {
         } else {
             m_hashes = null;
         }
+        if ((presentFields & (1 << 3)) != 0) {
+            m_spHandle = buf.getLong();
+        } else {
+            m_spHandle = NO_SPHANDLE;
+        }
         int tableCount = buf.getShort();
         if (tableCount < 0) {
             throw new IOException("Table count is negative: " + tableCount);
         }
         results = new VoltTable[tableCount];
+        m_packedResults = null;
         for (int i = 0; i < tableCount; i++) {
             int tableSize = buf.getInt();
             final int originalLimit = buf.limit();
@@ -235,8 +327,16 @@ public class ClientResponseImpl implements ClientResponse, JSONString {
             msgsize += 2; // short array len
             msgsize += m_hashes.length * 4; // array of ints
         }
-        for (VoltTable vt : results) {
-            msgsize += vt.getSerializedSize();
+        if (m_spHandle != NO_SPHANDLE) {
+            msgsize += 8; // spHandle
+        }
+        final ByteBuffer packed = getPackedResults();
+        if (packed != null) {
+            msgsize += packed.remaining();
+        } else {
+            for (VoltTable vt : results) {
+                msgsize += vt.getSerializedSize();
+            }
         }
 
         return msgsize;
@@ -246,6 +346,25 @@ public class ClientResponseImpl implements ClientResponse, JSONString {
      * @return buf to allow call chaining.
      */
     public ByteBuffer flattenToBuffer(ByteBuffer buf) {
+        flattenHeaderToBuffer(buf);
+        final ByteBuffer packed = getPackedResults();
+        if (packed != null) {
+            buf.put(packed);
+        } else {
+            for (VoltTable vt : results)
+            {
+                vt.flattenToBuffer(buf);
+            }
+        }
+        return buf;
+    }
+
+    /**
+     * Flatten everything up to and including the table count, the packed
+     * results are written after it from their own buffer.
+     * See {@link #getPackedResults()}.
+     */
+    public void flattenHeaderToBuffer(ByteBuffer buf) {
         assert setProperly;
         buf.put((byte)0); //version
         buf.putLong(clientHandle);
@@ -259,6 +378,9 @@ public class ClientResponseImpl implements ClientResponse, JSONString {
         if (m_hashes != null) {
             presentFields |= 1 << 4;
         }
+        if (m_spHandle != NO_SPHANDLE) {
+            presentFields |= 1 << 3;
+        }
         buf.put(presentFields);
         buf.put(status);
         if (statusString != null) {
@@ -278,12 +400,10 @@ public class ClientResponseImpl implements ClientResponse, JSONString {
                 buf.putInt(hash);
             }
         }
-        buf.putShort((short) results.length);
-        for (VoltTable vt : results)
-        {
-            vt.flattenToBuffer(buf);
+        if (m_spHandle != NO_SPHANDLE) {
+            buf.putLong(m_spHandle);
         }
-        return buf;
+        buf.putShort((short) results.length);
     }
 
     @Override
@@ -390,5 +510,6 @@ public class ClientResponseImpl implements ClientResponse, JSONString {
 
     public void dropResultTable() {
         results = new VoltTable[] {};
+        m_packedResults = null;
     }
 }
@@ -26,12 +26,21 @@ public class CommandLogStats extends StatsSource {
 
     private final CommandLog m_commandLog;
 
+    // Whether to return the response batching columns since the last poll or since the start
+    private boolean m_interval = false;
+    // The response batching totals at the last interval poll
+    private long[] m_lastBatching = new long[4];
+
     public enum StatName {
         OUTSTANDING_BYTES,
         OUTSTANDING_TXNS,
         IN_USE_SEGMENT_COUNT,
         SEGMENT_COUNT,
-        FSYNC_INTERVAL
+        FSYNC_INTERVAL,
+        RESPONSES_PER_BATCH,
+        AVG_DURABLE_TO_SEND_NANOS,
+        FSYNCS,
+        FSYNCS_PER_TXN
     };
 
     public CommandLogStats(CommandLog commandLog) {
@@ -47,16 +56,43 @@ public class CommandLogStats extends StatsSource {
         columns.add(new VoltTable.ColumnInfo(StatName.IN_USE_SEGMENT_COUNT.name(), VoltType.INTEGER));
         columns.add(new VoltTable.ColumnInfo(StatName.SEGMENT_COUNT.name(), VoltType.INTEGER));
         columns.add(new VoltTable.ColumnInfo(StatName.FSYNC_INTERVAL.name(), VoltType.INTEGER));
+        columns.add(new VoltTable.ColumnInfo(StatName.RESPONSES_PER_BATCH.name(), VoltType.FLOAT));
+        columns.add(new VoltTable.ColumnInfo(StatName.AVG_DURABLE_TO_SEND_NANOS.name(), VoltType.BIGINT));
+        columns.add(new VoltTable.ColumnInfo(StatName.FSYNCS.name(), VoltType.BIGINT));
+        columns.add(new VoltTable.ColumnInfo(StatName.FSYNCS_PER_TXN.name(), VoltType.FLOAT));
     }
 
     @Override
     protected void updateStatsRow(Object rowKey, Object[] rowValues) {
+        // Not every command log counts its fsyncs
+        rowValues[columnNameToIndex.get(StatName.FSYNCS.name())] = 0L;
+        rowValues[columnNameToIndex.get(StatName.FSYNCS_PER_TXN.name())] = 0.0;
         m_commandLog.populateCommandLogStats(columnNameToIndex, rowValues);
+        // How well client responses are being grouped after each fsync. A batch is what
+        // one connection had ready when its network thread serialized it, the network
+        // may still gather several batches into one socket write.
+        long[] batching = new long[4];
+        final ClientInterface ci = VoltDB.instance().getClientInterface();
+        if (ci != null) {
+            batching = ci.getResponseBatchingStats();
+        }
+        final long[] totals = batching.clone();
+        if (m_interval) {
+            for (int i = 0; i < batching.length; i++) {
+                batching[i] -= m_lastBatching[i];
+            }
+            m_lastBatching = totals;
+        }
+        rowValues[columnNameToIndex.get(StatName.RESPONSES_PER_BATCH.name())] =
+                batching[1] == 0 ? 0.0 : (double) batching[0] / batching[1];
+        rowValues[columnNameToIndex.get(StatName.AVG_DURABLE_TO_SEND_NANOS.name())] =
+                batching[2] == 0 ? 0L : batching[3] / batching[2];
         super.updateStatsRow(rowKey, rowValues);
     }
 
     @Override
     protected Iterator<Object> getStatsRowKeyIterator(boolean interval) {
+        m_interval = interval;
         return new Iterator<Object>() {
             boolean returnRow = true;
 
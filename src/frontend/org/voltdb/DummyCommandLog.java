@@ -86,6 +86,8 @@ public class DummyCommandLog implements CommandLog {
         rowValues[columnNameToIndex.get(CommandLogStats.StatName.IN_USE_SEGMENT_COUNT.name())] = 0;
         rowValues[columnNameToIndex.get(CommandLogStats.StatName.SEGMENT_COUNT.name())] = 0;
         rowValues[columnNameToIndex.get(CommandLogStats.StatName.FSYNC_INTERVAL.name())] = 0;
+        rowValues[columnNameToIndex.get(CommandLogStats.StatName.FSYNCS.name())] = 0;
+        rowValues[columnNameToIndex.get(CommandLogStats.StatName.FSYNCS_PER_TXN.name())] = 0.0;
     }
 
     public boolean isSynchronous() {
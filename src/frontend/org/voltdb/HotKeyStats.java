@@ -0,0 +1,93 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2018 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.voltdb.VoltTable.ColumnInfo;
+import org.voltdb.utils.SpaceSavingSketch;
+
+/**
+ * The most frequent partition keys of each single partition procedure routed
+ * by this host, from the sketches of the {@link HotKeyTracker}. Keys are
+ * sampled, ESTIMATED_INVOCATIONS may be high by up to MAX_ERROR.
+ * PERCENT_OF_PROCEDURE is the estimated share of the procedure's invocations
+ * that used the key.
+ *
+ * Rows always cover the last one to two HOT_KEYS_WINDOW_MS, interval has no effect.
+ */
+public class HotKeyStats extends StatsSource {
+
+    private static class Row {
+        final HotKeyTracker.ProcedureKeys m_procedure;
+        final int m_rank;
+        final SpaceSavingSketch.Counter m_key;
+
+        Row(HotKeyTracker.ProcedureKeys procedure, int rank, SpaceSavingSketch.Counter key) {
+            m_procedure = procedure;
+            m_rank = rank;
+            m_key = key;
+        }
+    }
+
+    private final HotKeyTracker m_tracker;
+
+    public HotKeyStats(HotKeyTracker tracker) {
+        super(false);
+        m_tracker = tracker;
+    }
+
+    @Override
+    protected void populateColumnSchema(ArrayList<ColumnInfo> columns) {
+        super.populateColumnSchema(columns);
+        columns.add(new ColumnInfo("PROCEDURE", VoltType.STRING));
+        columns.add(new ColumnInfo("RANK", VoltType.INTEGER));
+        columns.add(new ColumnInfo("PARTITION_KEY", VoltType.STRING));
+        columns.add(new ColumnInfo("ESTIMATED_INVOCATIONS", VoltType.BIGINT));
+        columns.add(new ColumnInfo("MAX_ERROR", VoltType.BIGINT));
+        columns.add(new ColumnInfo("PERCENT_OF_PROCEDURE", VoltType.FLOAT));
+    }
+
+    @Override
+    protected void updateStatsRow(Object rowKey, Object rowValues[]) {
+        final Row row = (Row) rowKey;
+        final long estimatedTotal = row.m_procedure.m_sampledInvocations * m_tracker.getSampleRate();
+        rowValues[columnNameToIndex.get("PROCEDURE")] = row.m_procedure.m_procedure;
+        rowValues[columnNameToIndex.get("RANK")] = row.m_rank;
+        rowValues[columnNameToIndex.get("PARTITION_KEY")] = row.m_key.m_key;
+        rowValues[columnNameToIndex.get("ESTIMATED_INVOCATIONS")] = row.m_key.m_count;
+        rowValues[columnNameToIndex.get("MAX_ERROR")] = row.m_key.m_error;
+        rowValues[columnNameToIndex.get("PERCENT_OF_PROCEDURE")] =
+                estimatedTotal == 0 ? 0.0 : Math.min(100.0, 100.0 * row.m_key.m_count / estimatedTotal);
+        super.updateStatsRow(rowKey, rowValues);
+    }
+
+    @Override
+    protected Iterator<Object> getStatsRowKeyIterator(boolean interval) {
+        final List<Object> rows = new ArrayList<>();
+        for (HotKeyTracker.ProcedureKeys procedure : m_tracker.getTopKeys()) {
+            int rank = 1;
+            for (SpaceSavingSketch.Counter key : procedure.m_keys) {
+                rows.add(new Row(procedure, rank++, key));
+            }
+        }
+        return rows.iterator();
+    }
+}
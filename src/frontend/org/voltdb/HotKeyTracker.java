@@ -0,0 +1,224 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2018 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.voltcore.utils.EstTime;
+import org.voltdb.utils.Encoder;
+import org.voltdb.utils.SpaceSavingSketch;
+
+/**
+ * Which partitions and partition keys the single partition invocations routed
+ * by this host go to, to find hot keys and skewed partitions before a site
+ * saturates.
+ *
+ * Every routed invocation is counted for its partition. One in
+ * HOT_KEYS_SAMPLE_RATE invocations also offers its partition key to a
+ * {@link SpaceSavingSketch} of its procedure. Sketches cover a window of
+ * HOT_KEYS_WINDOW_MS: the window in progress and the one before it are kept,
+ * so the reported keys are always from the last one to two windows.
+ *
+ * Called by the network threads as they dispatch, the stats thread reads.
+ */
+public class HotKeyTracker {
+
+    public static final boolean ENABLED = Boolean.valueOf(System.getProperty("HOT_KEYS", "true"));
+    static final int SAMPLE_RATE = Math.max(1, Integer.getInteger("HOT_KEYS_SAMPLE_RATE", 16));
+    // counters per procedure, the keys more frequent than 1 / CAPACITY of the samples are found
+    static final int CAPACITY = Integer.getInteger("HOT_KEYS_CAPACITY", 64);
+    static final int TOP_K = Integer.getInteger("HOT_KEYS_TOP_K", 10);
+    static final long WINDOW_MS = Long.getLong("HOT_KEYS_WINDOW_MS", 60 * 1000);
+
+    /**
+     * The top keys of a procedure, counts are estimates of all invocations,
+     * not just the sampled ones
+     */
+    public static class ProcedureKeys {
+        public final String m_procedure;
+        public final long m_sampledInvocations;
+        public final List<SpaceSavingSketch.Counter> m_keys;
+
+        ProcedureKeys(String procedure, long sampledInvocations, List<SpaceSavingSketch.Counter> keys) {
+            m_procedure = procedure;
+            m_sampledInvocations = sampledInvocations;
+            m_keys = keys;
+        }
+    }
+
+    private final long m_windowMs;
+    private final int m_sampleRate;
+
+    // invocations by partition id, grown when a larger id shows up
+    private volatile LongAdder[] m_partitionInvocations = new LongAdder[0];
+    private volatile int[] m_knownPartitions = new int[0];
+
+    // sketches of the window in progress and of the previous window, by procedure
+    private volatile ConcurrentHashMap<String, SpaceSavingSketch> m_current = new ConcurrentHashMap<>();
+    private volatile ConcurrentHashMap<String, SpaceSavingSketch> m_previous = new ConcurrentHashMap<>();
+    private volatile long m_windowStartMs;
+
+    public HotKeyTracker() {
+        this(WINDOW_MS, SAMPLE_RATE);
+    }
+
+    HotKeyTracker(long windowMs, int sampleRate) {
+        m_windowMs = windowMs;
+        m_sampleRate = sampleRate;
+        m_windowStartMs = EstTime.currentTimeMillis();
+    }
+
+    /**
+     * Set the partitions of the cluster, so partitions that get no invocations
+     * are reported too.
+     */
+    public void setPartitions(Collection<Integer> partitions) {
+        final int[] known = new int[partitions.size()];
+        int ii = 0;
+        for (int partition : partitions) {
+            known[ii++] = partition;
+            counter(partition);
+        }
+        Arrays.sort(known);
+        m_knownPartitions = known;
+    }
+
+    /**
+     * Count a single partition invocation.
+     * @param key the partition key, null if the invocation has none
+     */
+    public void record(String procName, Object key, int partition) {
+        counter(partition).increment();
+        if (key == null || ThreadLocalRandom.current().nextInt(m_sampleRate) != 0) {
+            return;
+        }
+        record(procName, key, EstTime.currentTimeMillis());
+    }
+
+    void record(String procName, Object key, long nowMs) {
+        if (nowMs - m_windowStartMs >= m_windowMs) {
+            rotate(nowMs);
+        }
+        final ConcurrentHashMap<String, SpaceSavingSketch> current = m_current;
+        SpaceSavingSketch sketch = current.get(procName);
+        if (sketch == null) {
+            sketch = current.computeIfAbsent(procName, name -> new SpaceSavingSketch(CAPACITY));
+        }
+        sketch.offer(key instanceof byte[] ? Encoder.hexEncode((byte[]) key) : String.valueOf(key));
+    }
+
+    private synchronized void rotate(long nowMs) {
+        if (nowMs - m_windowStartMs < m_windowMs) {
+            return;
+        }
+        // skip the previous window if no sample came for more than a whole window
+        m_previous = nowMs - m_windowStartMs < 2 * m_windowMs ? m_current : new ConcurrentHashMap<>();
+        m_current = new ConcurrentHashMap<>();
+        m_windowStartMs = nowMs;
+    }
+
+    private LongAdder counter(int partition) {
+        LongAdder[] counters = m_partitionInvocations;
+        if (partition >= counters.length) {
+            counters = grow(partition);
+        }
+        return counters[partition];
+    }
+
+    private synchronized LongAdder[] grow(int partition) {
+        LongAdder[] counters = m_partitionInvocations;
+        if (partition < counters.length) {
+            return counters;
+        }
+        final LongAdder[] grown = Arrays.copyOf(counters, Math.max(partition + 1, counters.length * 2));
+        for (int ii = counters.length; ii < grown.length; ii++) {
+            grown[ii] = new LongAdder();
+        }
+        m_partitionInvocations = grown;
+        return grown;
+    }
+
+    /**
+     * @return the invocations of every known partition and every partition that
+     * got invocations, by partition id
+     */
+    public Map<Integer, Long> getPartitionInvocations() {
+        final Map<Integer, Long> result = new TreeMap<>();
+        for (int partition : m_knownPartitions) {
+            result.put(partition, 0L);
+        }
+        final LongAdder[] counters = m_partitionInvocations;
+        for (int ii = 0; ii < counters.length; ii++) {
+            final long count = counters[ii].sum();
+            if (count > 0) {
+                result.put(ii, count);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the top keys of each procedure over the last one to two windows
+     */
+    public List<ProcedureKeys> getTopKeys() {
+        final Map<String, SpaceSavingSketch> current;
+        final Map<String, SpaceSavingSketch> previous;
+        synchronized (this) {
+            // windows only rotate when samples come in
+            final long age = EstTime.currentTimeMillis() - m_windowStartMs;
+            if (age >= 2 * m_windowMs) {
+                return new ArrayList<>();
+            }
+            current = m_current;
+            previous = age >= m_windowMs ? new ConcurrentHashMap<String, SpaceSavingSketch>() : m_previous;
+        }
+        final Map<String, List<SpaceSavingSketch>> byProcedure = new TreeMap<>();
+        for (Map.Entry<String, SpaceSavingSketch> e : previous.entrySet()) {
+            byProcedure.computeIfAbsent(e.getKey(), name -> new ArrayList<>()).add(e.getValue());
+        }
+        for (Map.Entry<String, SpaceSavingSketch> e : current.entrySet()) {
+            byProcedure.computeIfAbsent(e.getKey(), name -> new ArrayList<>()).add(e.getValue());
+        }
+        final List<ProcedureKeys> result = new ArrayList<>(byProcedure.size());
+        for (Map.Entry<String, List<SpaceSavingSketch>> e : byProcedure.entrySet()) {
+            long sampled = 0;
+            for (SpaceSavingSketch sketch : e.getValue()) {
+                sampled += sketch.getTotal();
+            }
+            final List<SpaceSavingSketch.Counter> keys = SpaceSavingSketch.top(e.getValue(), TOP_K);
+            for (SpaceSavingSketch.Counter key : keys) {
+                key.m_count *= m_sampleRate;
+                key.m_error *= m_sampleRate;
+            }
+            result.add(new ProcedureKeys(e.getKey(), sampled, keys));
+        }
+        return result;
+    }
+
+    int getSampleRate() {
+        return m_sampleRate;
+    }
+}
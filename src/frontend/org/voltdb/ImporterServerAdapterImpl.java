@@ -22,6 +22,7 @@ import org.voltdb.importer.AbstractImporter;
 import org.voltdb.importer.ImporterServerAdapter;
 import org.voltdb.importer.ImporterStatsCollector;
 
+import java.util.List;
 import java.util.function.Function;
 
 /**
@@ -48,6 +49,18 @@ public class ImporterServerAdapterImpl implements ImporterServerAdapter {
                 .callProcedure(importer, backPressurePredicate, m_statsCollector, procCallback, proc, fieldList);
     }
 
+    @Override
+    public int getBatchPartition(String proc, Object... fieldList) {
+        return getInternalConnectionHandler().getBatchPartition(proc, fieldList);
+    }
+
+    @Override
+    public void callProcedureBatch(AbstractImporter importer, Function<Integer, Boolean> backPressurePredicate,
+            String proc, int partition, List<Object[]> records, List<ProcedureCallback> callbacks) {
+        getInternalConnectionHandler()
+                .callBatchedInsert(importer, backPressurePredicate, m_statsCollector, proc, partition, records, callbacks);
+    }
+
     private InternalConnectionHandler getInternalConnectionHandler() {
         return VoltDB.instance().getClientInterface().getInternalConnectionHandler();
     }
@@ -44,6 +44,7 @@ import org.json_voltpatches.JSONStringer;
 import org.voltcore.logging.VoltLogger;
 import org.voltcore.utils.Pair;
 import org.voltdb.catalog.Catalog;
+import org.voltdb.commandlog.GroupCommitCommandLog;
 import org.voltdb.common.Constants;
 import org.voltdb.common.NodeState;
 import org.voltdb.compiler.deploymentfile.DeploymentType;
@@ -485,6 +486,12 @@ public class Inits {
                     } catch (Exception e) {
                         VoltDB.crashLocalVoltDB("Unable to instantiate command log", true, e);
                     }
+                } else if (GroupCommitCommandLog.ENABLED) {
+                    m_rvdb.m_commandLog = new GroupCommitCommandLog(logConfig.getSynchronous(),
+                                                                    logConfig.getFsyncinterval(),
+                                                                    logConfig.getMaxtxns(),
+                                                                    VoltDB.instance().getCommandLogPath(),
+                                                                    VoltDB.instance().getCommandLogSnapshotPath());
                 }
             }
         }
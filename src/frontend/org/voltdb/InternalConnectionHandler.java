@@ -17,12 +17,19 @@
 
 package org.voltdb;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
 
 import org.voltcore.logging.Level;
 import org.voltcore.logging.VoltLogger;
+import org.voltcore.utils.CoreUtils;
 import org.voltdb.AuthSystem.AuthUser;
 import org.voltdb.catalog.Procedure;
 import org.voltdb.catalog.Table;
@@ -30,6 +37,7 @@ import org.voltdb.client.BatchTimeoutOverrideType;
 import org.voltdb.client.ClientResponse;
 import org.voltdb.client.ProcedureCallback;
 import org.voltdb.iv2.MpInitiator;
+import org.voltdb.utils.CatalogUtil;
 import org.voltdb.utils.MiscUtils;
 
 import com.google_voltpatches.common.collect.ImmutableMap;
@@ -40,6 +48,7 @@ import com.google_voltpatches.common.collect.ImmutableMap;
  */
 public class InternalConnectionHandler {
     final static String DEFAULT_INTERNAL_ADAPTER_NAME = "+!_InternalAdapter_!+";
+    final static String BATCH_LOAD_PROC = "@LoadSinglepartitionTable";
 
     public final static long SUPPRESS_INTERVAL = 60;
     private static final VoltLogger m_logger = new VoltLogger("InternalConnectionHandler");
@@ -48,6 +57,23 @@ public class InternalConnectionHandler {
     private final AtomicLong m_failedCount = new AtomicLong();
     private final AtomicLong m_submitSuccessCount = new AtomicLong();
     private volatile Map<Integer, InternalClientResponseAdapter> m_adapters = ImmutableMap.of();
+    // Records of failed bulk loads are resubmitted from here rather than from the response
+    // executor, which would otherwise wait on the permits only it can release
+    private final ExecutorService m_batchRetryExecutor =
+            CoreUtils.getCachedSingleThreadExecutor("Importer batch retry", 60 * 1000);
+
+    // The partition column of the procedures importers call, resolved once per catalog
+    private static class BatchTargets {
+        final CatalogContext m_context;
+        // empty for procedures that can't be batched
+        final ConcurrentMap<String, Optional<CatalogContext.ProcedurePartitionInfo>> m_byProc =
+                new ConcurrentHashMap<>();
+
+        BatchTargets(CatalogContext context) {
+            m_context = context;
+        }
+    }
+    private volatile BatchTargets m_batchTargets;
 
     // Synchronized in case multiple partitions are added concurrently.
     public synchronized void addAdapter(int pid, InternalClientResponseAdapter adapter)
@@ -213,4 +239,190 @@ public class InternalConnectionHandler {
         m_submitSuccessCount.incrementAndGet();
         return true;
     }
+
+    /**
+     * Find out whether calls to a procedure can be loaded in bulk, and where to.
+     *
+     * @return the partition the record hashes to if <code>proc</code> is the default
+     * insert procedure of a partitioned table, -1 otherwise
+     */
+    public int getBatchPartition(String proc, Object... fieldList) {
+        final CatalogContext context = getCatalogContext();
+        BatchTargets targets = m_batchTargets;
+        if (targets == null || targets.m_context != context) {
+            targets = new BatchTargets(context);
+            m_batchTargets = targets;
+        }
+        Optional<CatalogContext.ProcedurePartitionInfo> target = targets.m_byProc.get(proc);
+        if (target == null) {
+            target = Optional.ofNullable(getBatchTarget(context, proc));
+            targets.m_byProc.put(proc, target);
+        }
+        if (!target.isPresent() || target.get().index >= fieldList.length) {
+            return -1;
+        }
+        final CatalogContext.ProcedurePartitionInfo ppi = target.get();
+        try {
+            return TheHashinator.getPartitionForParameter(ppi.type, fieldList[ppi.index]);
+        } catch (Exception e) {
+            // Let the single record path report it
+            return -1;
+        }
+    }
+
+    /**
+     * @return the partition column of <code>proc</code> if it is the default insert
+     * procedure of a partitioned table, null otherwise
+     */
+    private static CatalogContext.ProcedurePartitionInfo getBatchTarget(CatalogContext context, String proc) {
+        Procedure catProc = InvocationDispatcher.getProcedureFromName(proc, context);
+        if (catProc == null || !catProc.getDefaultproc() || !catProc.getSinglepartition() ||
+                !proc.toLowerCase().endsWith(".insert")) {
+            return null;
+        }
+        Table table = catProc.getPartitiontable();
+        if (table == null || CatalogUtil.isTableExportOnly(context.database, table)) {
+            return null;
+        }
+        return (CatalogContext.ProcedurePartitionInfo) catProc.getAttachment();
+    }
+
+    /**
+     * Insert records that all go to the same partition with one @LoadSinglepartitionTable
+     * transaction instead of one default insert procedure call each. Every record gets its
+     * own completion: on success each callback sees a one row insert, on failure of the
+     * bulk transaction the records are retried one by one through the default insert
+     * procedure so that only the bad records fail.
+     *
+     * @param proc a procedure for which {@link #getBatchPartition} returned <code>partition</code>
+     * @param records the procedure parameters of each record
+     * @param callbacks the callback of each record, entries may be null
+     */
+    public void callBatchedInsert(InternalConnectionContext caller,
+                                  Function<Integer, Boolean> backPressurePredicate,
+                                  InternalConnectionStatsCollector statsCollector,
+                                  String proc, int partition,
+                                  List<Object[]> records, List<ProcedureCallback> callbacks) {
+        final CatalogContext catalogContext = getCatalogContext();
+        final Procedure catProc = InvocationDispatcher.getProcedureFromName(proc, catalogContext);
+        final Procedure loadProc = InvocationDispatcher.getProcedureFromName(BATCH_LOAD_PROC, catalogContext);
+        if (catProc == null || loadProc == null || catProc.getPartitiontable() == null) {
+            retryIndividually(caller, backPressurePredicate, statsCollector, proc, records, callbacks);
+            return;
+        }
+
+        final Table catTable = catProc.getPartitiontable();
+        final VoltTable table = CatalogUtil.getVoltTable(catTable);
+        final int columnCount = table.getColumnCount();
+        final List<Object[]> loaded = new ArrayList<>(records.size());
+        final List<ProcedureCallback> loadedCallbacks = new ArrayList<>(records.size());
+        final List<Object[]> rejected = new ArrayList<>();
+        final List<ProcedureCallback> rejectedCallbacks = new ArrayList<>();
+        for (int i = 0; i < records.size(); i++) {
+            final Object[] record = records.get(i);
+            try {
+                if (record.length != columnCount) {
+                    throw new IllegalArgumentException("Wrong number of columns");
+                }
+                // Same conversions the default insert procedure would apply to its parameters
+                Object[] row = new Object[columnCount];
+                for (int c = 0; c < columnCount; c++) {
+                    row[c] = ParameterConverter.tryToMakeCompatible(table.getColumnType(c).classFromType(), record[c]);
+                }
+                table.addRow(row);
+                loaded.add(record);
+                loadedCallbacks.add(callbacks.get(i));
+            } catch (Exception e) {
+                // The default insert procedure will produce the proper error for this record
+                rejected.add(record);
+                rejectedCallbacks.add(callbacks.get(i));
+            }
+        }
+        if (!rejected.isEmpty()) {
+            retryIndividually(caller, backPressurePredicate, statsCollector, proc, rejected, rejectedCallbacks);
+        }
+        if (loaded.isEmpty()) {
+            return;
+        }
+
+        final CatalogContext.ProcedurePartitionInfo ppi = (CatalogContext.ProcedurePartitionInfo) catProc.getAttachment();
+        StoredProcedureInvocation task = new StoredProcedureInvocation();
+        task.setProcName(BATCH_LOAD_PROC);
+        try {
+            byte[] partitionParam = VoltType.valueToBytes(table.fetchRow(0).get(ppi.index, ppi.type));
+            task.setParams(partitionParam, catTable.getTypeName(), (byte) 0, table);
+            task = MiscUtils.roundTripForCL(task);
+        } catch (Exception e) {
+            retryIndividually(caller, backPressurePredicate, statsCollector, proc, loaded, loadedCallbacks);
+            return;
+        }
+
+        final InternalClientResponseAdapter adapter = m_adapters.get(partition);
+        if (adapter == null) {
+            retryIndividually(caller, backPressurePredicate, statsCollector, proc, loaded, loadedCallbacks);
+            return;
+        }
+        final InternalAdapterTaskAttributes kattrs = new InternalAdapterTaskAttributes(caller, adapter.connectionId());
+        final AuthUser user = catalogContext.authSystem.getImporterUser();
+        final ProcedureCallback batchCallback = new ProcedureCallback() {
+            @Override
+            public void clientCallback(ClientResponse response) throws Exception {
+                if (response.getStatus() != ClientResponse.SUCCESS) {
+                    m_batchRetryExecutor.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            retryIndividually(caller, backPressurePredicate, statsCollector, proc, loaded, loadedCallbacks);
+                        }
+                    });
+                    return;
+                }
+                for (ProcedureCallback cb : loadedCallbacks) {
+                    VoltTable modified = new VoltTable(new VoltTable.ColumnInfo("modified_tuples", VoltType.BIGINT));
+                    modified.addRow(1L);
+                    ClientResponseImpl recordResponse = new ClientResponseImpl(ClientResponse.SUCCESS,
+                            new VoltTable[] { modified }, null);
+                    if (statsCollector != null) {
+                        statsCollector.reportCompletion(caller.getName(), proc, recordResponse);
+                    }
+                    if (cb != null) {
+                        cb.clientCallback(recordResponse);
+                    }
+                }
+            }
+        };
+
+        // The bulk transaction itself is not counted, each record reports its completion above
+        if (!adapter.createTransaction(kattrs, BATCH_LOAD_PROC, loadProc, batchCallback, null, task, user,
+                new int[] { partition }, false, backPressurePredicate)) {
+            retryIndividually(caller, backPressurePredicate, statsCollector, proc, loaded, loadedCallbacks);
+            return;
+        }
+        m_submitSuccessCount.addAndGet(loaded.size());
+    }
+
+    private void retryIndividually(InternalConnectionContext caller,
+                                   Function<Integer, Boolean> backPressurePredicate,
+                                   InternalConnectionStatsCollector statsCollector,
+                                   String proc, List<Object[]> records, List<ProcedureCallback> callbacks) {
+        for (int i = 0; i < records.size(); i++) {
+            final ProcedureCallback cb = callbacks.get(i);
+            if (callProcedure(caller, backPressurePredicate, statsCollector, cb, proc, records.get(i))) {
+                continue;
+            }
+            // The record was already reported as queued, so it has to complete
+            ClientResponseImpl failure = new ClientResponseImpl(ClientResponse.GRACEFUL_FAILURE,
+                    new VoltTable[0], "Unable to queue imported record for procedure " + proc);
+            if (statsCollector != null) {
+                statsCollector.reportCompletion(caller.getName(), proc, failure);
+            }
+            if (cb != null) {
+                try {
+                    cb.clientCallback(failure);
+                } catch (Exception e) {
+                    m_logger.rateLimitedLog(SUPPRESS_INTERVAL, Level.WARN, e,
+                            "Error processing failure of imported record for procedure %s", proc);
+                }
+            }
+        }
+    }
 }
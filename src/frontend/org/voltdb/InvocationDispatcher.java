@@ -119,6 +119,8 @@ public final class InvocationDispatcher {
 
     private final NTProcedureService m_NTProcedureService;
 
+    private final HotKeyTracker m_hotKeys = HotKeyTracker.ENABLED ? new HotKeyTracker() : null;
+
     // Next partition to service adhoc replicated table reads
     private static int m_nextPartition = -1;
     // Number of partitions, will NOT change when new node joins cluster
@@ -223,6 +225,17 @@ public final class InvocationDispatcher {
 
         // update the partition count and partition keys for routing purpose
         updatePartitionInformation();
+        if (m_hotKeys != null) {
+            m_hotKeys.setPartitions(m_partitionIds);
+        }
+    }
+
+    /**
+     * @return the tracker of the partitions and keys single partition invocations
+     * go to, null if it is turned off
+     */
+    public HotKeyTracker getHotKeyTracker() {
+        return m_hotKeys;
     }
 
     /**
@@ -496,6 +509,11 @@ public final class InvocationDispatcher {
             // unable to hash to a site, return an error
             return getMispartitionedErrorResponse(task, catProc, e);
         }
+        if (m_hotKeys != null && catProc.getSinglepartition()) {
+            final CatalogContext.ProcedurePartitionInfo ppi =
+                    (CatalogContext.ProcedurePartitionInfo) catProc.getAttachment();
+            m_hotKeys.record(task.getProcName(), task.getParameterAtIndex(ppi.index), partitions[0]);
+        }
         boolean success = createTransaction(handler.connectionId(),
                         task,
                         catProc.getReadonly(),
@@ -825,6 +843,9 @@ public final class InvocationDispatcher {
                                           new VoltTable[0], e.getMessage(), task.clientHandle);
         }
         assert(partition != -1);
+        if (m_hotKeys != null) {
+            m_hotKeys.record(task.getProcName(), task.getParameterAtIndex(0), partition);
+        }
         createTransaction(handler.connectionId(),
                           task,
                           catProc.getReadonly(),
@@ -1216,11 +1237,21 @@ public final class InvocationDispatcher {
         Long initiatorHSId = null;
         boolean isShortCircuitRead = false;
         /*
-         * Send the read to the partition leader only
+         * Send the read to the partition leader only, unless the client asked for session
+         * consistency. Those reads may run at a local replica, which holds them back until it
+         * has caught up with what the client has already seen.
          * @MigratePartitionLeader always goes to partition leader
          */
         if (isSinglePartition && !isEveryPartition) {
-            initiatorHSId = m_cartographer.getHSIdForSinglePartitionMaster(partitions[0]);
+            if (isReadOnly && invocation.hasReadAfterSpHandle()) {
+                initiatorHSId = m_localReplicas.get().get(partitions[0]);
+                // The replica is on this host, so it can't fail without this client interface.
+                // Keep its reads out of the per-partition tracking that leader changes clean up.
+                isShortCircuitRead = initiatorHSId != null;
+            }
+            if (initiatorHSId == null) {
+                initiatorHSId = m_cartographer.getHSIdForSinglePartitionMaster(partitions[0]);
+            }
         } else {
             // Multi-part transactions go to the multi-part coordinator
             initiatorHSId = m_cartographer.getHSIdForMultiPartitionInitiator();
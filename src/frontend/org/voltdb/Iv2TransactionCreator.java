@@ -70,6 +70,26 @@ public class Iv2TransactionCreator implements TransactionCreator
                 true);
     }
 
+    @Override
+    public final boolean createNPartitionTransaction(long connectionId,
+            long txnId,
+            long uniqueId,
+            StoredProcedureInvocation invocation,
+            int[] partitions, int messageSize, long nowNanos)
+    {
+        return m_ci.getDispatcher().createTransaction(connectionId,
+                txnId,
+                uniqueId,
+                invocation,
+                false,
+                false,
+                false,
+                partitions,
+                messageSize,
+                nowNanos,
+                true);
+    }
+
     @Override
     public ClientResponseImpl dispatch(StoredProcedureInvocation invocation,
             Connection connection, boolean isAdmin, OverrideCheck bypass) {
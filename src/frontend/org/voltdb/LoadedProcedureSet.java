@@ -17,7 +17,12 @@
 
 package org.voltdb;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
@@ -25,12 +30,14 @@ import java.util.Set;
 import org.voltcore.logging.Level;
 import org.voltcore.logging.VoltLogger;
 import org.voltdb.SystemProcedureCatalog.Config;
+import org.voltdb.catalog.Catalog;
 import org.voltdb.catalog.Column;
 import org.voltdb.catalog.Procedure;
 import org.voltdb.catalog.Table;
 import org.voltdb.compiler.PlannerTool;
 import org.voltdb.compiler.StatementCompiler;
 import org.voltdb.sysprocs.LowImpactDelete.ComparisonOperation;
+import org.voltdb.utils.InMemoryJarfile;
 import org.voltdb.utils.LogKeys;
 
 import com.google_voltpatches.common.collect.ImmutableMap;
@@ -110,13 +117,147 @@ public class LoadedProcedureSet {
                                                        m_site);
             } else {
                 // When catalog updates, only user procedures needs to be reloaded.
-                m_userProcs = catalogContext.getPreparedUserProcedureRunners(m_site);
+                m_userProcs = reloadUserProcedureRunners(catalogContext);
             }
         } catch (Exception e) {
             VoltDB.crashLocalVoltDB("Error trying to load user procedures: " + e.getMessage());
         }
     }
 
+    /**
+     * Runners for the user procedures after a catalog update. Procedures the update
+     * did not change keep the runners this site already has, pointed at the new
+     * catalog. The others get the runners prepared for the update, or are loaded
+     * here if none was prepared.
+     */
+    private ImmutableMap<String, ProcedureRunner> reloadUserProcedureRunners(CatalogContext catalogContext)
+            throws Exception
+    {
+        ImmutableMap<String, ProcedureRunner> prepared = catalogContext.getPreparedUserProcedureRunners(m_site);
+        final Set<String> changed = catalogContext.getChangedProcedures();
+        if (changed == null) {
+            return prepared;
+        }
+        if (prepared == null) {
+            prepared = ImmutableMap.of();
+        }
+
+        ImmutableMap.Builder<String, ProcedureRunner> builder = ImmutableMap.<String, ProcedureRunner>builder();
+        List<Procedure> unprepared = new ArrayList<>();
+        int reused = 0;
+        for (Procedure proc : catalogContext.database.getProcedures()) {
+            if (proc.getTypeName().startsWith("@") || proc.getTransactional() == false) {
+                continue;
+            }
+            final String name = proc.getTypeName();
+            ProcedureRunner runner = prepared.get(name);
+            if (runner == null && !changed.contains(name)) {
+                runner = m_userProcs.get(name);
+                if (runner != null) {
+                    runner.rebindCatalogProcedure(proc);
+                    // the procedure statistics were flushed with the old catalog
+                    runner.initSiteAndStats(m_site);
+                    reused++;
+                }
+            }
+            if (runner == null) {
+                unprepared.add(proc);
+            } else {
+                builder.put(name.intern(), runner);
+            }
+        }
+        if (!unprepared.isEmpty()) {
+            builder.putAll(loadUserProcedureRunners(unprepared, catalogContext.getCatalogJar().getLoader(),
+                                                    null, m_site));
+        }
+        if (hostLog.isDebugEnabled()) {
+            hostLog.debug("Site " + m_site.getCorrespondingSiteId() + " kept " + reused +
+                    " user procedure runners, loaded " + unprepared.size() + " after the catalog update");
+        }
+        return builder.build();
+    }
+
+    /**
+     * Work out which user procedures a catalog update changes, so the runners of the
+     * others can be kept. A procedure changes if a diff command touches it, which
+     * covers statements, plans and partitioning. A changed class in the jar changes
+     * all java procedures, as there is no telling which of them use the class.
+     *
+     * @return the names of added, changed and dropped procedures, or null if every
+     * procedure should be considered changed
+     */
+    public static Set<String> getChangedProcedures(String diffCommands,
+                                                   InMemoryJarfile oldJar,
+                                                   InMemoryJarfile newJar,
+                                                   Iterable<Procedure> newProcedures)
+    {
+        if (diffCommands == null || oldJar == null || newJar == null) {
+            return null;
+        }
+        Set<String> changed = new HashSet<>();
+        String prevPath = null;
+        for (String stmt : diffCommands.split("\n")) {
+            if (stmt.trim().isEmpty()) {
+                continue;
+            }
+            Catalog.CatalogCmd cmd = Catalog.parseStmt(stmt);
+            if (cmd.path.startsWith("$")) {
+                // $PREV, the path of the last command that named one
+                if (prevPath == null) {
+                    return null;
+                }
+                cmd.path = prevPath;
+            } else {
+                prevPath = cmd.path;
+            }
+            if (!cmd.isProcedureRelatedCmd()) {
+                continue;
+            }
+            final int start = cmd.path.indexOf("procedures#");
+            if (start == -1) {
+                // add or delete of a procedure on the database
+                changed.add(cmd.arg2);
+            } else {
+                final int nameStart = start + "procedures#".length();
+                final int end = cmd.path.indexOf('/', nameStart);
+                changed.add(end == -1 ? cmd.path.substring(nameStart) : cmd.path.substring(nameStart, end));
+            }
+        }
+        if (!sameClasses(oldJar, newJar)) {
+            for (Procedure proc : newProcedures) {
+                if (proc.getHasjava()) {
+                    changed.add(proc.getTypeName());
+                }
+            }
+        }
+        return changed;
+    }
+
+    private static boolean sameClasses(InMemoryJarfile oldJar, InMemoryJarfile newJar) {
+        Iterator<Entry<String, byte[]>> oldClasses = classEntries(oldJar).iterator();
+        Iterator<Entry<String, byte[]>> newClasses = classEntries(newJar).iterator();
+        // both jars are sorted by entry name
+        while (oldClasses.hasNext() && newClasses.hasNext()) {
+            Entry<String, byte[]> oldClass = oldClasses.next();
+            Entry<String, byte[]> newClass = newClasses.next();
+            if (!oldClass.getKey().equals(newClass.getKey()) ||
+                    !Arrays.equals(oldClass.getValue(), newClass.getValue())) {
+                return false;
+            }
+        }
+        return !oldClasses.hasNext() && !newClasses.hasNext();
+    }
+
+    private static List<Entry<String, byte[]>> classEntries(InMemoryJarfile jar) {
+        List<Entry<String, byte[]>> classes = new ArrayList<>();
+        for (Entry<String, byte[]> entry : jar.entrySet()) {
+            if (entry.getKey().endsWith(".class")) {
+                classes.add(entry);
+            }
+        }
+        return classes;
+    }
+
     public static ImmutableMap<String, ProcedureRunner> loadUserProcedureRunners(
             Iterable<Procedure> catalogProcedures,
             ClassLoader loader,
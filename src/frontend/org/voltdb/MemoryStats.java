@@ -22,6 +22,7 @@ import java.util.Iterator;
 import java.util.Map;
 import java.util.TreeMap;
 
+import org.voltcore.utils.DBBPool;
 import org.voltdb.VoltTable.ColumnInfo;
 import org.voltdb.utils.PlatformProperties;
 import org.voltdb.utils.SystemStatsCollector;
@@ -82,6 +83,9 @@ public class MemoryStats extends StatsSource {
         columns.add(new VoltTable.ColumnInfo("POOLEDMEMORY", VoltType.BIGINT));
         columns.add(new VoltTable.ColumnInfo("PHYSICALMEMORY", VoltType.BIGINT));
         columns.add(new VoltTable.ColumnInfo("JAVAMAXHEAP", VoltType.INTEGER));
+        columns.add(new VoltTable.ColumnInfo("DIRECTPOOLEDMEMORY", VoltType.BIGINT));
+        columns.add(new VoltTable.ColumnInfo("DIRECTPOOLHITS", VoltType.BIGINT));
+        columns.add(new VoltTable.ColumnInfo("DIRECTPOOLMISSES", VoltType.BIGINT));
     }
 
     @Override
@@ -119,6 +123,17 @@ public class MemoryStats extends StatsSource {
         //in kb to make math simpler with other mem values.
         rowValues[columnNameToIndex.get("PHYSICALMEMORY")] = PlatformProperties.getPlatformProperties().ramInMegabytes * 1024;
         rowValues[columnNameToIndex.get("JAVAMAXHEAP")] = Runtime.getRuntime().maxMemory() / 1024;
+
+        // pooled direct buffers of the java heap side, summed over all buffer sizes
+        long directPooled = 0; long directHits = 0; long directMisses = 0;
+        for (DBBPool.BucketStats bucket : DBBPool.getBucketStats()) {
+            directPooled += bucket.retainedBytes;
+            directHits += bucket.hits;
+            directMisses += bucket.misses;
+        }
+        rowValues[columnNameToIndex.get("DIRECTPOOLEDMEMORY")] = directPooled / 1024;
+        rowValues[columnNameToIndex.get("DIRECTPOOLHITS")] = directHits;
+        rowValues[columnNameToIndex.get("DIRECTPOOLMISSES")] = directMisses;
         super.updateStatsRow(rowKey, rowValues);
     }
 
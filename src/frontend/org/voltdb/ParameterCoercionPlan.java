@@ -0,0 +1,200 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2018 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb;
+
+import org.voltdb.types.GeographyPointValue;
+import org.voltdb.types.GeographyValue;
+import org.voltdb.types.TimestampType;
+
+/**
+ * Per-parameter coercion information computed once, when a procedure or
+ * a {@link SQLStmt} is loaded, instead of on every call.
+ *
+ * For each parameter the plan records the one argument class that needs
+ * no conversion or feasibility check at all. When the runtime class of an
+ * argument is identical to that class the {@link ProcedureRunner} skips
+ * {@link ParameterConverter#tryToMakeCompatible(Class, Object)} (for
+ * procedure parameters) or the feasibility check (for statement
+ * parameters). Any other class takes the existing slow path, so the
+ * accepted conversions and the error messages are unchanged.
+ */
+final class ParameterCoercionPlan {
+
+    // Argument classes that pass through unchanged, null if there is none.
+    private final Class<?>[] m_exactClasses;
+    // Expected statement parameter types, null for procedure plans.
+    private final VoltType[] m_types;
+    // Null substitutes for statement parameters, null for procedure plans.
+    private final Object[] m_nullValues;
+
+    private ParameterCoercionPlan(Class<?>[] exactClasses, VoltType[] types, Object[] nullValues) {
+        m_exactClasses = exactClasses;
+        m_types = types;
+        m_nullValues = nullValues;
+    }
+
+    /**
+     * Build the plan for the parameters of a procedure's run method
+     * (or the widened parameter classes of a single statement procedure).
+     */
+    static ParameterCoercionPlan forProcedure(Class<?>[] paramTypes) {
+        Class<?>[] exactClasses = new Class<?>[paramTypes.length];
+        for (int i = 0; i < paramTypes.length; i++) {
+            exactClasses[i] = identityClassForProcedureParam(paramTypes[i]);
+        }
+        return new ParameterCoercionPlan(exactClasses, null, null);
+    }
+
+    /**
+     * Build the plan for the parameters of a planned statement.
+     */
+    static ParameterCoercionPlan forStatement(byte[] statementParamTypes) {
+        final int count = statementParamTypes.length;
+        Class<?>[] exactClasses = new Class<?>[count];
+        VoltType[] types = new VoltType[count];
+        Object[] nullValues = new Object[count];
+        for (int i = 0; i < count; i++) {
+            VoltType type = VoltType.get(statementParamTypes[i]);
+            types[i] = type;
+            exactClasses[i] = identityClassForStatementParam(type);
+            nullValues[i] = nullValueForStatementParam(type);
+        }
+        return new ParameterCoercionPlan(exactClasses, types, nullValues);
+    }
+
+    int getParameterCount() {
+        return m_exactClasses.length;
+    }
+
+    /**
+     * @return true if an argument of class <code>argClass</code> can be used
+     * for parameter <code>index</code> without any conversion or check.
+     */
+    boolean isExactMatch(int index, Class<?> argClass) {
+        return m_exactClasses[index] == argClass;
+    }
+
+    VoltType getStatementParamType(int index) {
+        return m_types[index];
+    }
+
+    /**
+     * @return the value that represents SQL NULL for statement parameter
+     * <code>index</code>, or null if the type has no NULL representation.
+     */
+    Object getNullValue(int index) {
+        return m_nullValues[index];
+    }
+
+    /**
+     * Classes for which {@link ParameterConverter#tryToMakeCompatible(Class, Object)}
+     * returns its argument untouched whatever the value. Boxed expected classes are
+     * excluded on purpose: their null sigils must still be turned into java nulls.
+     */
+    private static Class<?> identityClassForProcedureParam(Class<?> expectedClz) {
+        if (expectedClz == long.class) {
+            return Long.class;
+        }
+        if (expectedClz == int.class) {
+            return Integer.class;
+        }
+        if (expectedClz == short.class) {
+            return Short.class;
+        }
+        if (expectedClz == byte.class) {
+            return Byte.class;
+        }
+        if (expectedClz == double.class) {
+            return Double.class;
+        }
+        if (expectedClz == byte[].class ||
+                expectedClz == TimestampType.class ||
+                expectedClz == GeographyPointValue.class ||
+                expectedClz == GeographyValue.class ||
+                expectedClz == VoltTable.class) {
+            return expectedClz;
+        }
+        return null;
+    }
+
+    /**
+     * The class that maps straight back to <code>type</code>, for which the
+     * statement parameter feasibility check would always succeed.
+     */
+    private static Class<?> identityClassForStatementParam(VoltType type) {
+        switch (type) {
+        case TINYINT:
+            return Byte.class;
+        case SMALLINT:
+            return Short.class;
+        case INTEGER:
+            return Integer.class;
+        case BIGINT:
+            return Long.class;
+        case FLOAT:
+            return Double.class;
+        case TIMESTAMP:
+            return TimestampType.class;
+        case STRING:
+            return String.class;
+        case VARBINARY:
+            return byte[].class;
+        case DECIMAL:
+            return java.math.BigDecimal.class;
+        case GEOGRAPHY_POINT:
+            return GeographyPointValue.class;
+        case GEOGRAPHY:
+            return GeographyValue.class;
+        case INLIST_OF_BIGINT:
+            return long[].class;
+        case INLIST_OF_STRING:
+            return String[].class;
+        default:
+            return null;
+        }
+    }
+
+    private static Object nullValueForStatementParam(VoltType type) {
+        switch (type) {
+        case TINYINT:
+            return Byte.MIN_VALUE;
+        case SMALLINT:
+            return Short.MIN_VALUE;
+        case INTEGER:
+            return Integer.MIN_VALUE;
+        case BIGINT:
+            return Long.MIN_VALUE;
+        case FLOAT:
+            return VoltType.NULL_FLOAT;
+        case TIMESTAMP:
+            // TimestampType is immutable, so one instance can be shared by all calls
+            return new TimestampType(Long.MIN_VALUE);
+        case STRING:
+        case VARBINARY:
+            return VoltType.NULL_STRING_OR_VARBINARY;
+        case DECIMAL:
+            return VoltType.NULL_DECIMAL;
+        case GEOGRAPHY_POINT:
+            return VoltType.NULL_POINT;
+        case GEOGRAPHY:
+            return VoltType.NULL_GEOGRAPHY;
+        default:
+            return null;
+        }
+    }
+}
@@ -641,6 +641,17 @@ public class ParameterConverter {
      * @throws InvocationTargetException
      */
     final static public VoltTable[] getResultsFromRawResults(String procedureName, Object result) throws InvocationTargetException {
+        return getResultsFromRawResults(procedureName, result, true);
+    }
+
+    /**
+     * Given the results of a procedure, convert it into a sensible array of VoltTables.
+     * @param convertToHeap false if the caller takes care of moving tables out of ee cache
+     * buffers itself, see {@link ClientResponseImpl#packResultTables()}
+     * @throws InvocationTargetException
+     */
+    final static public VoltTable[] getResultsFromRawResults(String procedureName, Object result,
+            boolean convertToHeap) throws InvocationTargetException {
         if (result == null) {
             return new VoltTable[0];
         }
@@ -651,16 +662,20 @@ public class ParameterConverter {
                     Exception e = new RuntimeException("VoltTable arrays with non-zero length cannot contain null values.");
                     throw new InvocationTargetException(e);
                 }
-                // Make sure this table does not use an ee cache buffer
-                table.convertToHeapBuffer();
+                if (convertToHeap) {
+                    // Make sure this table does not use an ee cache buffer
+                    table.convertToHeapBuffer();
+                }
             }
 
             return retval;
         }
         if (result instanceof VoltTable) {
             VoltTable vt = (VoltTable) result;
-            // Make sure this table does not use an ee cache buffer
-            vt.convertToHeapBuffer();
+            if (convertToHeap) {
+                // Make sure this table does not use an ee cache buffer
+                vt.convertToHeapBuffer();
+            }
             return new VoltTable[] { vt };
         }
         if (result instanceof Long) {
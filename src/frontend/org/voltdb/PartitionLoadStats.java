@@ -0,0 +1,88 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2018 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.voltdb.VoltTable.ColumnInfo;
+
+/**
+ * How the single partition invocations routed by this host are spread over
+ * the partitions, from the {@link HotKeyTracker}. PERCENT_OF_INVOCATIONS is
+ * the share of the partition, IMBALANCE its invocations over the mean of all
+ * partitions: 1 is an even load, the highest IMBALANCE is the imbalance ratio
+ * of the cluster as seen from this host.
+ */
+public class PartitionLoadStats extends StatsSource {
+
+    private final HotKeyTracker m_tracker;
+
+    // invocations at the last interval collection by partition, stats thread only
+    private final Map<Integer, Long> m_last = new HashMap<>();
+    private Map<Integer, Long> m_invocations;
+    private long m_total;
+    private double m_mean;
+
+    public PartitionLoadStats(HotKeyTracker tracker) {
+        super(false);
+        m_tracker = tracker;
+    }
+
+    @Override
+    protected void populateColumnSchema(ArrayList<ColumnInfo> columns) {
+        super.populateColumnSchema(columns);
+        columns.add(new ColumnInfo("PARTITION_ID", VoltType.INTEGER));
+        columns.add(new ColumnInfo("INVOCATIONS", VoltType.BIGINT));
+        columns.add(new ColumnInfo("PERCENT_OF_INVOCATIONS", VoltType.FLOAT));
+        columns.add(new ColumnInfo("IMBALANCE", VoltType.FLOAT));
+    }
+
+    @Override
+    protected void updateStatsRow(Object rowKey, Object rowValues[]) {
+        final Integer partition = (Integer) rowKey;
+        final long invocations = m_invocations.get(partition);
+        rowValues[columnNameToIndex.get("PARTITION_ID")] = partition;
+        rowValues[columnNameToIndex.get("INVOCATIONS")] = invocations;
+        rowValues[columnNameToIndex.get("PERCENT_OF_INVOCATIONS")] = m_total == 0 ? 0.0 : 100.0 * invocations / m_total;
+        rowValues[columnNameToIndex.get("IMBALANCE")] = m_mean == 0 ? 0.0 : invocations / m_mean;
+        super.updateStatsRow(rowKey, rowValues);
+    }
+
+    @Override
+    protected Iterator<Object> getStatsRowKeyIterator(boolean interval) {
+        final Map<Integer, Long> totals = m_tracker.getPartitionInvocations();
+        m_invocations = new HashMap<>(totals);
+        if (interval) {
+            for (Map.Entry<Integer, Long> e : totals.entrySet()) {
+                final Long last = m_last.put(e.getKey(), e.getValue());
+                if (last != null) {
+                    m_invocations.put(e.getKey(), e.getValue() - last);
+                }
+            }
+        }
+        m_total = 0;
+        for (long invocations : m_invocations.values()) {
+            m_total += invocations;
+        }
+        m_mean = m_invocations.isEmpty() ? 0 : (double) m_total / m_invocations.size();
+        return new ArrayList<Object>(totals.keySet()).iterator();
+    }
+}
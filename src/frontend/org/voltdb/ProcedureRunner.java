@@ -21,6 +21,9 @@ import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.io.Writer;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
@@ -68,7 +71,6 @@ import org.voltdb.planner.ActivePlanRepository;
 import org.voltdb.sysprocs.AdHocBase;
 import org.voltdb.sysprocs.AdHocNTBase;
 import org.voltdb.sysprocs.AdHoc_RO_SP;
-import org.voltdb.types.TimestampType;
 import org.voltdb.utils.CompressionService;
 import org.voltdb.utils.Encoder;
 import org.voltdb.utils.MiscUtils;
@@ -84,6 +86,12 @@ public class ProcedureRunner {
         HOST_TRACE_ENABLED = log.isTraceEnabled();
     }
 
+    // Move result tables out of the EE buffers into a single serialization-ready
+    // buffer per response instead of one heap buffer per table, still one copy.
+    // See ClientResponseImpl.packResultTables().
+    private static final boolean PACK_EE_RESULT_TABLES =
+            Boolean.valueOf(System.getProperty("PACK_EE_RESULT_TABLES", "true"));
+
     // SQL statement queue info
     //
     // This must be less than or equal to MAX_BATCH_COUNT in src/ee/execution/VoltDBEngine.h
@@ -113,6 +121,10 @@ public class ProcedureRunner {
     protected final VoltProcedure m_procedure;
     protected Method m_procMethod;
     protected Class<?>[] m_paramTypes;
+    // m_procMethod as a spreading method handle, null if it could not be unreflected
+    private MethodHandle m_procHandle;
+    // built from m_paramTypes when the procedure is loaded
+    private ParameterCoercionPlan m_paramPlan;
 
     // per txn state (are reset after call)
     //
@@ -136,7 +148,7 @@ public class ProcedureRunner {
     protected ArrayList<String> m_stmtList;
     protected ProcedureStatsCollector m_statsCollector;
     protected SingleCallStatsToken m_perCallStats;
-    protected final Procedure m_catProc;
+    protected Procedure m_catProc;
     protected final boolean m_isSysProc;
     protected final boolean m_isSinglePartition;
     protected final boolean m_hasJava;
@@ -198,6 +210,15 @@ public class ProcedureRunner {
         }
     }
 
+    /**
+     * Keep this runner across a catalog update. The procedure of the new catalog
+     * must have the same definition as the one the runner was created from.
+     */
+    void rebindCatalogProcedure(Procedure catProc) {
+        assert(catProc.getTypeName().equals(m_catProc.getTypeName()));
+        m_catProc = catProc;
+    }
+
     public void initSiteAndStats(SiteProcedureConnection site) {
         m_site = site;
         // Normally m_statsCollector is returned as it is and there is no affect to assign it to itself.
@@ -362,6 +383,10 @@ public class ProcedureRunner {
             }
 
             for (int i = 0; i < m_paramTypes.length; i++) {
+                // fast path: the argument already has the exact class the parameter expects
+                if (paramList[i] != null && m_paramPlan.isExactMatch(i, paramList[i].getClass())) {
+                    continue;
+                }
                 try {
                     paramList[i] = ParameterConverter.tryToMakeCompatible(m_paramTypes[i], paramList[i]);
                     // check the result type in an assert
@@ -381,9 +406,20 @@ public class ProcedureRunner {
                         log.trace("invoking... procMethod=" + m_procMethod.getName() + ", class=" + m_procMethod.getDeclaringClass().getName());
                     }
                     try {
-                        Object rawResult = m_procMethod.invoke(m_procedure, paramList);
+                        Object rawResult;
+                        if (m_procHandle != null) {
+                            try {
+                                rawResult = (Object) m_procHandle.invokeExact(m_procedure, paramList);
+                            } catch (Throwable t) {
+                                // Wrap as reflection would so the error handling below is shared
+                                throw new InvocationTargetException(t);
+                            }
+                        } else {
+                            rawResult = m_procMethod.invoke(m_procedure, paramList);
+                        }
 
-                        results = ParameterConverter.getResultsFromRawResults(m_procedureName, rawResult);
+                        results = ParameterConverter.getResultsFromRawResults(m_procedureName, rawResult,
+                                !PACK_EE_RESULT_TABLES);
                     } catch (IllegalAccessException e) {
                         // If reflection fails, invoke the same error handling that other exceptions do
                         throw new InvocationTargetException(e);
@@ -444,7 +480,9 @@ public class ProcedureRunner {
                     if (getNonVoltDBBackendIfExists() == null) {
                         m_batch.addAll(m_sqlStmts);
                         results = voltExecuteSQL(true);
-                        results = convertTablesToHeapBuffers(results);
+                        if (!PACK_EE_RESULT_TABLES) {
+                            results = convertTablesToHeapBuffers(results);
+                        }
                     }
                 } catch (SerializableException ex) {
                     retval = getErrorResponse(m_procedureName,
@@ -477,6 +515,10 @@ public class ProcedureRunner {
                         m_appStatusString,
                         results,
                         m_statusString);
+                if (PACK_EE_RESULT_TABLES) {
+                    // Make sure no table uses an ee cache buffer
+                    retval.packResultTables();
+                }
             }
 
             // Even when the transaction fails, the computed hashes are valuable for diagnostic purpose,
@@ -958,8 +1000,8 @@ public class ProcedureRunner {
     }
 
     private final ParameterSet getCleanParams(SQLStmt stmt, boolean verifyTypeConv, Object... inArgs) {
-        final byte stmtParamTypes[] = stmt.statementParamTypes;
-        final int numParamTypes = stmtParamTypes.length;
+        final ParameterCoercionPlan plan = stmt.getParameterPlan();
+        final int numParamTypes = plan.getParameterCount();
         final Object[] args = new Object[numParamTypes];
 
         if (inArgs.length != numParamTypes) {
@@ -968,55 +1010,30 @@ public class ProcedureRunner {
         }
 
         for (int ii = 0; ii < numParamTypes; ii++) {
-            VoltType type = VoltType.get(stmtParamTypes[ii]);
             // handle non-null values
             if (inArgs[ii] != null) {
                 args[ii] = inArgs[ii];
-                assert(type != VoltType.INVALID);
-                if (verifyTypeConv && type != VoltType.INVALID) {
-                    throwIfInfeasibleTypeConversion(stmt, args[ii].getClass(), ii, type);
+                if (verifyTypeConv) {
+                    // the exact class of the parameter type never needs a check
+                    Class<?> argClass = args[ii].getClass();
+                    if (plan.isExactMatch(ii, argClass)) {
+                        continue;
+                    }
+                    VoltType type = plan.getStatementParamType(ii);
+                    assert(type != VoltType.INVALID);
+                    if (type != VoltType.INVALID) {
+                        throwIfInfeasibleTypeConversion(stmt, argClass, ii, type);
+                    }
                 }
                 continue;
             }
 
             // handle null values
-            switch (type) {
-            case TINYINT:
-                args[ii] = Byte.MIN_VALUE;
-                break;
-            case SMALLINT:
-                args[ii] = Short.MIN_VALUE;
-                break;
-            case INTEGER:
-                args[ii] = Integer.MIN_VALUE;
-                break;
-            case BIGINT:
-                args[ii] = Long.MIN_VALUE;
-                break;
-            case FLOAT:
-                args[ii] = VoltType.NULL_FLOAT;
-                break;
-            case TIMESTAMP:
-                args[ii] = new TimestampType(Long.MIN_VALUE);
-                break;
-            case STRING:
-                args[ii] = VoltType.NULL_STRING_OR_VARBINARY;
-                break;
-            case VARBINARY:
-                args[ii] = VoltType.NULL_STRING_OR_VARBINARY;
-                break;
-            case DECIMAL:
-                args[ii] = VoltType.NULL_DECIMAL;
-                break;
-            case GEOGRAPHY_POINT:
-                args[ii] = VoltType.NULL_POINT;
-                break;
-            case GEOGRAPHY:
-                args[ii] = VoltType.NULL_GEOGRAPHY;
-                break;
-            default:
+            args[ii] = plan.getNullValue(ii);
+            if (args[ii] == null) {
                 throw new VoltAbortException(
-                        "Unknown type " + type + " can not be converted to NULL representation for arg " + ii
+                        "Unknown type " + plan.getStatementParamType(ii) +
+                        " can not be converted to NULL representation for arg " + ii
                                 + " for SQL stmt: " + stmt.getText());
             }
         }
@@ -1063,6 +1080,7 @@ public class ProcedureRunner {
             }
             stmt.statementParamTypes[index] = expectType.getValue();
         }
+        stmt.parameterPlan = ParameterCoercionPlan.forStatement(stmt.statementParamTypes);
     }
 
     // Returns a list that contains the names of the statements which are
@@ -1130,6 +1148,7 @@ public class ProcedureRunner {
             if (m_procMethod == null) {
                 throw new RuntimeException("No \"run\" method found in: " + m_procedure.getClass().getName());
             }
+            m_procHandle = unreflectRunMethod(m_procMethod);
             // iterate through the fields and deal with sql statements
             try {
                 stmtMap = ProcedureCompiler.getValidSQLStmts(null, m_procedureName, m_procedure.getClass(), m_procedure,
@@ -1140,6 +1159,10 @@ public class ProcedureRunner {
             }
         }
 
+        if (m_paramTypes != null) {
+            m_paramPlan = ParameterCoercionPlan.forProcedure(m_paramTypes);
+        }
+
         ArrayList<String> stmtNames = new ArrayList<String>(stmtMap.entrySet().size());
         for (final Entry<String, SQLStmt> entry : stmtMap.entrySet()) {
             String name = entry.getKey();
@@ -1166,6 +1189,25 @@ public class ProcedureRunner {
         return stmtNames;
     }
 
+    /**
+     * Turn the procedure's run method into a handle that takes the procedure
+     * and the parameter array, so each call avoids reflective dispatch and
+     * the per-call argument checks of {@link Method#invoke(Object, Object...)}.
+     * @return the handle, or null if the method is not accessible this way,
+     * in which case the caller keeps using reflection.
+     */
+    private static MethodHandle unreflectRunMethod(Method runMethod) {
+        try {
+            return MethodHandles.lookup().unreflect(runMethod)
+                    .asSpreader(Object[].class, runMethod.getParameterTypes().length)
+                    .asType(MethodType.methodType(Object.class, VoltProcedure.class, Object[].class));
+        } catch (IllegalAccessException e) {
+            log.debug("Falling back to reflection to invoke " + runMethod.getDeclaringClass().getName() +
+                    ".run: " + e.getMessage());
+            return null;
+        }
+    }
+
     /**
      * Test whether or not the given stack frame is within a procedure invocation
      * @param The name of the procedure
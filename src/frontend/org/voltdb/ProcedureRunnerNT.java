@@ -595,6 +595,10 @@ public class ProcedureRunnerNT {
         return m_user.m_name;
     }
 
+    protected long getClientConnectionId() {
+        return m_ccxn.connectionId(m_clientHandle);
+    }
+
     protected boolean isRestoring() {
         return m_ntProcService.isRestoring;
     }
@@ -73,6 +73,17 @@ public class QueueDepthTracker extends SiteStatsSource {
         m_tasks = tasks;
     }
 
+    public int getDepth() {
+        return m_depth.get();
+    }
+
+    /**
+     * @return the longest a task waited in the queue in the last half second or so
+     */
+    public long getRecentMaxWaitNanos() {
+        return m_recentMaxWaitTime;
+    }
+
     public void offerUpdate() {
         m_depth.incrementAndGet();
     }
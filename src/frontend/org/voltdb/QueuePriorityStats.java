@@ -0,0 +1,169 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2018 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+
+import org.voltdb.VoltTable.ColumnInfo;
+import org.voltdb.client.ProcedureInvocationExtensions;
+
+/**
+ * Queue depth and wait times of a site, per request priority.
+ * The admission wait is the time a single partition call spent in its priority
+ * lane at the partition leader before it was sequenced, the queue wait the time
+ * its task then spent in the site task queue. Wait times are in microseconds.
+ *
+ * Admissions are recorded under the initiator lock, queue waits on the site
+ * thread, so each counter has a single writer.
+ */
+public class QueuePriorityStats extends SiteStatsSource {
+
+    private static final int LANES = ProcedureInvocationExtensions.PRIORITY_LANES;
+
+    private final int[] m_laneDepth = new int[LANES];
+    private final long[] m_admitted = new long[LANES];
+    private final long[] m_admissionWait = new long[LANES];
+    private final long[] m_admissionMaxWait = new long[LANES];
+    private final long[] m_polled = new long[LANES];
+    private final long[] m_queueWait = new long[LANES];
+    private final long[] m_queueMaxWait = new long[LANES];
+    // Calls admitted because they had waited too long, not because of their priority
+    private final long[] m_aged = new long[LANES];
+
+    // values at the last interval collection
+    private final long[] m_lastAdmitted = new long[LANES];
+    private final long[] m_lastAdmissionWait = new long[LANES];
+    private final long[] m_lastPolled = new long[LANES];
+    private final long[] m_lastQueueWait = new long[LANES];
+    private final long[] m_lastAged = new long[LANES];
+    private final long[] m_intervalAdmissionMaxWait = new long[LANES];
+    private final long[] m_intervalQueueMaxWait = new long[LANES];
+
+    private boolean m_interval;
+
+    public QueuePriorityStats(long siteId) {
+        super(siteId, false);
+    }
+
+    private static int lane(int priority) {
+        return Math.max(ProcedureInvocationExtensions.HIGHEST_PRIORITY,
+                Math.min(ProcedureInvocationExtensions.LOWEST_PRIORITY, priority));
+    }
+
+    public void setLaneDepth(int priority, int depth) {
+        m_laneDepth[lane(priority)] = depth;
+    }
+
+    public void admitted(int priority, long waitNanos, boolean aged) {
+        final int lane = lane(priority);
+        m_admitted[lane]++;
+        m_admissionWait[lane] += waitNanos;
+        m_admissionMaxWait[lane] = Math.max(m_admissionMaxWait[lane], waitNanos);
+        m_intervalAdmissionMaxWait[lane] = Math.max(m_intervalAdmissionMaxWait[lane], waitNanos);
+        if (aged) {
+            m_aged[lane]++;
+        }
+    }
+
+    public void polled(int priority, long waitNanos) {
+        final int lane = lane(priority);
+        m_polled[lane]++;
+        m_queueWait[lane] += waitNanos;
+        m_queueMaxWait[lane] = Math.max(m_queueMaxWait[lane], waitNanos);
+        m_intervalQueueMaxWait[lane] = Math.max(m_intervalQueueMaxWait[lane], waitNanos);
+    }
+
+    @Override
+    protected void populateColumnSchema(ArrayList<ColumnInfo> columns) {
+        super.populateColumnSchema(columns);
+        columns.add(new ColumnInfo("PRIORITY", VoltType.INTEGER));
+        columns.add(new ColumnInfo("CURRENT_DEPTH", VoltType.INTEGER));
+        columns.add(new ColumnInfo("ADMITTED", VoltType.BIGINT));
+        columns.add(new ColumnInfo("AGED", VoltType.BIGINT));
+        columns.add(new ColumnInfo("AVG_ADMISSION_WAIT", VoltType.BIGINT));
+        columns.add(new ColumnInfo("MAX_ADMISSION_WAIT", VoltType.BIGINT));
+        columns.add(new ColumnInfo("POLL_COUNT", VoltType.BIGINT));
+        columns.add(new ColumnInfo("AVG_QUEUE_WAIT", VoltType.BIGINT));
+        columns.add(new ColumnInfo("MAX_QUEUE_WAIT", VoltType.BIGINT));
+    }
+
+    @Override
+    protected void updateStatsRow(Object rowKey, Object rowValues[]) {
+        final int lane = (Integer) rowKey;
+        long admitted = m_admitted[lane];
+        long admissionWait = m_admissionWait[lane];
+        long admissionMaxWait = m_admissionMaxWait[lane];
+        long polled = m_polled[lane];
+        long queueWait = m_queueWait[lane];
+        long queueMaxWait = m_queueMaxWait[lane];
+        long aged = m_aged[lane];
+        if (m_interval) {
+            admitted -= m_lastAdmitted[lane];
+            admissionWait -= m_lastAdmissionWait[lane];
+            polled -= m_lastPolled[lane];
+            queueWait -= m_lastQueueWait[lane];
+            aged -= m_lastAged[lane];
+            admissionMaxWait = m_intervalAdmissionMaxWait[lane];
+            queueMaxWait = m_intervalQueueMaxWait[lane];
+            m_lastAdmitted[lane] = m_admitted[lane];
+            m_lastAdmissionWait[lane] = m_admissionWait[lane];
+            m_lastPolled[lane] = m_polled[lane];
+            m_lastQueueWait[lane] = m_queueWait[lane];
+            m_lastAged[lane] = m_aged[lane];
+            m_intervalAdmissionMaxWait[lane] = 0;
+            m_intervalQueueMaxWait[lane] = 0;
+        }
+        rowValues[columnNameToIndex.get("PRIORITY")] = lane;
+        rowValues[columnNameToIndex.get("CURRENT_DEPTH")] = m_laneDepth[lane];
+        rowValues[columnNameToIndex.get("ADMITTED")] = admitted;
+        rowValues[columnNameToIndex.get("AGED")] = aged;
+        rowValues[columnNameToIndex.get("AVG_ADMISSION_WAIT")] = (admissionWait / Math.max(1, admitted)) / 1000;
+        rowValues[columnNameToIndex.get("MAX_ADMISSION_WAIT")] = admissionMaxWait / 1000;
+        rowValues[columnNameToIndex.get("POLL_COUNT")] = polled;
+        rowValues[columnNameToIndex.get("AVG_QUEUE_WAIT")] = (queueWait / Math.max(1, polled)) / 1000;
+        rowValues[columnNameToIndex.get("MAX_QUEUE_WAIT")] = queueMaxWait / 1000;
+        super.updateStatsRow(rowKey, rowValues);
+    }
+
+    @Override
+    protected Iterator<Object> getStatsRowKeyIterator(final boolean interval) {
+        m_interval = interval;
+        return new Iterator<Object>() {
+            int m_lane = 0;
+            @Override
+            public boolean hasNext() {
+                return m_lane < LANES;
+            }
+
+            @Override
+            public Object next() {
+                if (m_lane < LANES) {
+                    return m_lane++;
+                } else {
+                    return null;
+                }
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+}
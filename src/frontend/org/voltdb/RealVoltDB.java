@@ -184,6 +184,7 @@ import org.voltdb.utils.LogKeys;
 import org.voltdb.utils.MiscUtils;
 import org.voltdb.utils.PlatformProperties;
 import org.voltdb.utils.SystemStatsCollector;
+import org.voltdb.utils.ThreadStatsCollector;
 import org.voltdb.utils.TopologyZKUtils;
 import org.voltdb.utils.VoltFile;
 import org.voltdb.utils.VoltSampler;
@@ -255,6 +256,8 @@ public class RealVoltDB implements VoltDBInterface, RestoreAgent.Callback, HostM
     private MemoryStats m_memoryStats = null;
     private CpuStats m_cpuStats = null;
     private GcStats m_gcStats = null;
+    private ThreadStatsCollector m_threadStatsCollector = null;
+    private StatsHistory m_statsHistory = null;
     private CommandLogStats m_commandLogStats = null;
     private DRRoleStats m_drRoleStats = null;
     private StatsManager m_statsManager = null;
@@ -1323,6 +1326,12 @@ public class RealVoltDB implements VoltDBInterface, RestoreAgent.Callback, HostM
             m_gcStats = new GcStats();
             getStatsAgent().registerStatsSource(StatsSelector.GC,
                     0, m_gcStats);
+            m_threadStatsCollector = new ThreadStatsCollector();
+            getStatsAgent().registerStatsSource(StatsSelector.THREADS,
+                    0, new ThreadStats(m_threadStatsCollector));
+            if (StatsHistory.ENABLED) {
+                m_statsHistory = new StatsHistory(getStatsAgent());
+            }
             // ENG-6321
             m_commandLogStats = new CommandLogStats(m_commandLog);
             getStatsAgent().registerStatsSource(StatsSelector.COMMANDLOG, 0, m_commandLogStats);
@@ -1384,6 +1393,11 @@ public class RealVoltDB implements VoltDBInterface, RestoreAgent.Callback, HostM
                         adminIntf,
                         config.m_adminPort,
                         m_config.m_sslExternal ? m_config.m_sslContext : null);
+                final HotKeyTracker hotKeys = m_clientInterface.getDispatcher().getHotKeyTracker();
+                if (hotKeys != null) {
+                    getStatsAgent().registerStatsSource(StatsSelector.HOTKEYSPROCEDURE, 0, new HotKeyStats(hotKeys));
+                    getStatsAgent().registerStatsSource(StatsSelector.HOTKEYSPARTITION, 0, new PartitionLoadStats(hotKeys));
+                }
             } catch (Exception e) {
                 VoltDB.crashLocalVoltDB(e.getMessage(), true, e);
             }
@@ -1530,10 +1544,7 @@ public class RealVoltDB implements VoltDBInterface, RestoreAgent.Callback, HostM
             if (m_configuredReplicationFactor == 0) {
                 consoleLog.warn("This is not a highly available cluster. K-Safety is set to 0.");
             }
-            boolean usingCommandLog = m_config.m_isEnterprise
-                    && (m_catalogContext.cluster.getLogconfig() != null)
-                    && (m_catalogContext.cluster.getLogconfig().get("log") != null)
-                    && m_catalogContext.cluster.getLogconfig().get("log").getEnabled();
+            boolean usingCommandLog = m_commandLog.isEnabled();
             if (!usingCommandLog) {
                 // figure out if using a snapshot schedule
                 boolean usingPeridoicSnapshots = false;
@@ -2198,6 +2209,26 @@ public class RealVoltDB implements VoltDBInterface, RestoreAgent.Callback, HostM
             }
         }, 0, 6, TimeUnit.MINUTES));
 
+        // per thread resource usage
+        if (m_threadStatsCollector != null && ThreadStatsCollector.isSupported()) {
+            m_periodicWorks.add(scheduleWork(new Runnable() {
+                @Override
+                public void run() {
+                    m_threadStatsCollector.sample();
+                }
+            }, 0, ThreadStatsCollector.INTERVAL_MS, TimeUnit.MILLISECONDS));
+        }
+
+        // statistics history served at /metrics
+        if (m_statsHistory != null) {
+            m_periodicWorks.add(scheduleWork(new Runnable() {
+                @Override
+                public void run() {
+                    m_statsHistory.sample();
+                }
+            }, StatsHistory.INTERVAL_MS, StatsHistory.INTERVAL_MS, TimeUnit.MILLISECONDS));
+        }
+
         // other enterprise setup
         EnterpriseMaintenance em = EnterpriseMaintenance.get();
         if (em != null) { em.setupMaintenaceTasks(); }
@@ -3581,8 +3612,10 @@ public class RealVoltDB implements VoltDBInterface, RestoreAgent.Callback, HostM
             return e.getMessage();
         }
 
+        final long startNanos = System.nanoTime();
         CatalogContext ctx = VoltDB.instance().getCatalogContext();
         Catalog newCatalog = ctx.getNewCatalog(diffCommands);
+        final long diffAppliedNanos = System.nanoTime();
 
         Database db = newCatalog.getClusters().get("cluster").getDatabases().get("database");
         CatalogMap<Procedure> catalogProcedures = db.getProcedures();
@@ -3593,10 +3626,22 @@ public class RealVoltDB implements VoltDBInterface, RestoreAgent.Callback, HostM
         ctx.m_preparedCatalogInfo.m_catalog = newCatalog;
         ctx.m_preparedCatalogInfo.m_preparedProcRunners = new ConcurrentLinkedQueue<>();
 
+        // The sites keep the runners of the procedures this update does not change
+        Set<String> changedProcs = LoadedProcedureSet.getChangedProcedures(diffCommands,
+                ctx.getCatalogJar(), newCatalogJar, catalogProcedures);
+        ctx.m_preparedCatalogInfo.m_changedProcedures = changedProcs;
+        List<Procedure> proceduresToPrepare = new ArrayList<>();
+        for (Procedure proc : catalogProcedures) {
+            if (changedProcs == null || changedProcs.contains(proc.getTypeName())) {
+                proceduresToPrepare.add(proc);
+            }
+        }
+        final long diffCheckedNanos = System.nanoTime();
+
         for (long i = 0; i < siteCount; i++) {
             try {
                 ImmutableMap<String, ProcedureRunner> userProcRunner =
-                    LoadedProcedureSet.loadUserProcedureRunners(catalogProcedures, null,
+                    LoadedProcedureSet.loadUserProcedureRunners(proceduresToPrepare, null,
                                                                 classesMap.build(), null);
 
                 ctx.m_preparedCatalogInfo.m_preparedProcRunners.offer(userProcRunner);
@@ -3608,6 +3653,14 @@ public class RealVoltDB implements VoltDBInterface, RestoreAgent.Callback, HostM
             }
         }
 
+        hostLog.info(String.format("Prepared catalog update in %d ms: applied diff in %d ms, " +
+                "found %s of %d procedures changed in %d ms, prepared their runners in %d ms",
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos),
+                TimeUnit.NANOSECONDS.toMillis(diffAppliedNanos - startNanos),
+                changedProcs == null ? "all" : Integer.toString(proceduresToPrepare.size()),
+                catalogProcedures.size(),
+                TimeUnit.NANOSECONDS.toMillis(diffCheckedNanos - diffAppliedNanos),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - diffCheckedNanos)));
         return null;
     }
 
@@ -3638,6 +3691,7 @@ public class RealVoltDB implements VoltDBInterface, RestoreAgent.Callback, HostM
     {
         try {
             synchronized(m_catalogUpdateLock) {
+                final long startNanos = System.nanoTime();
                 final ReplicationRole oldRole = getReplicationRole();
 
                 m_statusTracker.setNodeState(NodeState.UPDATING);
@@ -3696,6 +3750,7 @@ public class RealVoltDB implements VoltDBInterface, RestoreAgent.Callback, HostM
                                                            deploymentBytes,
                                                            m_messenger,
                                                            hasSchemaChange);
+                final long contextUpdatedNanos = System.nanoTime();
 
                 //Construct the list of partitions and sites because it simply doesn't exist anymore
                 SiteTracker siteTracker = VoltDB.instance().getSiteTrackerForSnapshot();
@@ -3805,6 +3860,10 @@ public class RealVoltDB implements VoltDBInterface, RestoreAgent.Callback, HostM
 
                 checkThreadsSanity();
 
+                hostLog.info(String.format("Updated to catalog version %d in %d ms, %d ms of it creating the catalog context",
+                        m_catalogContext.catalogVersion,
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos),
+                        TimeUnit.NANOSECONDS.toMillis(contextUpdatedNanos - startNanos)));
                 return m_catalogContext;
             }
         } finally {
@@ -3915,6 +3974,11 @@ public class RealVoltDB implements VoltDBInterface, RestoreAgent.Callback, HostM
         return (StatsAgent)statsAgent;
     }
 
+    @Override
+    public StatsHistory getStatsHistory() {
+        return m_statsHistory;
+    }
+
     @Override
     public MemoryStats getMemoryStatsSource() {
         return m_memoryStats;
@@ -4083,7 +4147,7 @@ public class RealVoltDB implements VoltDBInterface, RestoreAgent.Callback, HostM
         try {
             final ZooKeeper zk = m_messenger.getZK();
             boolean logRecoveryCompleted = false;
-            if (getCommandLog().getClass().getName().equals("org.voltdb.CommandLogImpl")) {
+            if (getCommandLog().isEnabled()) {
                 String requestNode = zk.create(VoltZK.request_truncation_snapshot_node, null,
                         Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT_SEQUENTIAL);
                 if (m_rejoinTruncationReqId == null) {
@@ -55,6 +55,8 @@ public class SQLStmt {
     int sqlCRC;
 
     byte statementParamTypes[];
+    // built from statementParamTypes on first use, see getParameterPlan()
+    ParameterCoercionPlan parameterPlan;
 
     Frag aggregator;
     Frag collector;
@@ -182,6 +184,7 @@ public class SQLStmt {
             for (int i = 0; i < params.length; i++) {
                 stmt.statementParamTypes[i] = params[i].getValue();
             }
+            stmt.parameterPlan = ParameterCoercionPlan.forStatement(stmt.statementParamTypes);
         }
 
         stmt.isReadOnly = isReadOnly;
@@ -193,6 +196,19 @@ public class SQLStmt {
         return stmt;
     }
 
+    /**
+     * Get the precomputed parameter coercion plan for this statement,
+     * building it if the statement was created without one.
+     */
+    ParameterCoercionPlan getParameterPlan() {
+        ParameterCoercionPlan plan = parameterPlan;
+        if (plan == null) {
+            plan = ParameterCoercionPlan.forStatement(statementParamTypes);
+            parameterPlan = plan;
+        }
+        return plan;
+    }
+
     /**
      * Get the text of the SQL statement represented.
      *
@@ -53,6 +53,8 @@ import org.voltdb.catalog.Table;
 import org.voltdb.iv2.MpInitiator;
 import org.voltdb.iv2.SiteTaskerQueue;
 import org.voltdb.iv2.SnapshotTask;
+import org.voltdb.join.MigrationThrottle;
+import org.voltdb.rejoin.StreamSnapshotDataTarget;
 import org.voltdb.rejoin.StreamSnapshotDataTarget.StreamSnapshotTimeoutException;
 import org.voltdb.sysprocs.saverestore.SnapshotPredicates;
 import org.voltdb.utils.CatalogUtil;
@@ -202,6 +204,14 @@ public class SnapshotSiteProcessor {
 
     private final IdlePredicate m_idlePredicate;
 
+    /*
+     * Paces streamed snapshots (rejoin and elastic join) by the queue waits of the site,
+     * null if the site doesn't throttle. m_throttling is true while a streamed snapshot runs.
+     */
+    private final MigrationThrottle m_throttle;
+    private volatile boolean m_throttling = false;
+    private final Map<Integer, Integer> m_maxRowBytes = new HashMap<Integer, Integer>();
+
     /*
      * Synchronization is handled by SnapshotSaveAPI.startSnapshotting
      * Store the export sequence numbers for every table and partition. This will
@@ -261,9 +271,15 @@ public class SnapshotSiteProcessor {
     }
 
     public SnapshotSiteProcessor(SiteTaskerQueue siteQueue, int snapshotPriority, IdlePredicate idlePredicate) {
+        this(siteQueue, snapshotPriority, idlePredicate, null);
+    }
+
+    public SnapshotSiteProcessor(SiteTaskerQueue siteQueue, int snapshotPriority, IdlePredicate idlePredicate,
+                                 MigrationThrottle throttle) {
         m_siteTaskerQueue = siteQueue;
         m_snapshotPriority = snapshotPriority;
         m_idlePredicate = idlePredicate;
+        m_throttle = throttle;
     }
 
     public void shutdown() throws InterruptedException {
@@ -323,7 +339,27 @@ public class SnapshotSiteProcessor {
          * If snapshot priority is 0 then running the jigger immediately is the specified
          * policy anyways. 10 would be the largest delay
          */
-        if (m_snapshotPriority > 0) {
+        if (m_throttling) {
+            // The throttle sets the wait between chunks of a streamed snapshot,
+            // unless the site is idle and there is no latency to protect
+            final int delayMs = m_throttle.getDelayMs();
+            if (delayMs <= 0 ||
+                    (!DISABLE_IMMEDIATE_SNAPSHOT_RESCHEDULING && m_idlePredicate.idle(System.currentTimeMillis()))) {
+                m_siteTaskerQueue.offer(new SnapshotTask());
+            } else {
+                VoltDB.instance().schedulePriorityWork(
+                        new Runnable() {
+                            @Override
+                            public void run()
+                            {
+                                m_siteTaskerQueue.offer(new SnapshotTask());
+                            }
+                        },
+                        delayMs,
+                        0,
+                        TimeUnit.MILLISECONDS);
+            }
+        } else if (m_snapshotPriority > 0) {
             final long now = System.currentTimeMillis();
             //Unless disabled, ask if the site is idle, and if it is queue the work immediately
             if (!DISABLE_IMMEDIATE_SNAPSHOT_RESCHEDULING && m_idlePredicate.idle(now)) {
@@ -383,6 +419,17 @@ public class SnapshotSiteProcessor {
         }
     }
 
+    // Only streams to new partitions are throttled, rejoin restores k-safety and runs flat out
+    private static boolean isElasticJoin(Collection<SnapshotTableTask> tasks) {
+        for (SnapshotTableTask task : tasks) {
+            final SnapshotDataTarget target = task.getTarget(true);
+            if (target instanceof StreamSnapshotDataTarget && ((StreamSnapshotDataTarget) target).isElasticJoin()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     public void initiateSnapshots(
             SystemProcedureExecutionContext context,
             SnapshotFormat format,
@@ -414,6 +461,18 @@ public class SnapshotSiteProcessor {
             m_streamers.put(tableId, streamer);
         }
 
+        m_throttling = false;
+        if (m_throttle != null && m_throttle.isEnabled() && format == SnapshotFormat.STREAM &&
+                isElasticJoin(m_snapshotTableTasks.values())) {
+            m_maxRowBytes.clear();
+            for (Map.Entry<Integer, Collection<SnapshotTableTask>> e : m_snapshotTableTasks.asMap().entrySet()) {
+                m_maxRowBytes.put(e.getKey(),
+                        MigrationThrottle.maxSerializedRowBytes(e.getValue().iterator().next().m_table));
+            }
+            m_throttle.start(m_streamers.size());
+            m_throttling = true;
+        }
+
         /*
          * Resize the buffer pool to contain enough buffers for the number of tasks. The buffer
          * pool will be cleaned up at the end of the snapshot.
@@ -580,6 +639,10 @@ public class SnapshotSiteProcessor {
          * successfully serialized, break out of the loop and release the site thread for more
          * transaction work.
          */
+        if (m_throttling) {
+            m_throttle.observe(System.nanoTime(), m_siteTaskerQueue.getRecentMaxWaitNanos());
+        }
+
         Iterator<Map.Entry<Integer, Collection<SnapshotTableTask>>> taskIter =
                 m_snapshotTableTasks.asMap().entrySet().iterator();
         while (taskIter.hasNext()) {
@@ -598,8 +661,16 @@ public class SnapshotSiteProcessor {
 
 
             // Stream more and add a listener to handle any failures
-            Pair<ListenableFuture<?>, Boolean> streamResult =
-                    m_streamers.get(tableId).streamMore(context, outputBuffers, null);
+            final TableStreamer streamer = m_streamers.get(tableId);
+            final Pair<ListenableFuture<?>, Boolean> streamResult;
+            if (m_throttling) {
+                final int[] rowCount = new int[1];
+                streamResult = streamer.streamMore(context, outputBuffers, rowCount,
+                        m_throttle.getChunkBytes(m_maxRowBytes.get(tableId)));
+                m_throttle.migrated(streamer.getLastSerializedBytes(), rowCount[0], streamer.getRemainingTuples());
+            } else {
+                streamResult = streamer.streamMore(context, outputBuffers, null);
+            }
             if (streamResult.getFirst() != null) {
                 final ListenableFuture<?> writeFutures = streamResult.getFirst();
                 writeFutures.addListener(new Runnable() {
@@ -632,6 +703,9 @@ public class SnapshotSiteProcessor {
              * enclosing loop ensures that the next table is then addressed.
              */
             if (!streamResult.getSecond()) {
+                if (m_throttling) {
+                    m_throttle.tableDone();
+                }
                 asyncTerminateReplicatedTableTasks(tableTasks);
                 // XXX: Guava's multimap will clear the tableTasks collection when the entry is
                 // removed from the containing map, so don't use the collection after removal!
@@ -649,6 +723,10 @@ public class SnapshotSiteProcessor {
          */
         if (m_snapshotTableTasks.isEmpty()) {
             SNAP_LOG.debug("Finished with tasks");
+            if (m_throttling) {
+                m_throttling = false;
+                m_throttle.finish();
+            }
             // In case this is a non-blocking snapshot, do the post-snapshot tasks here.
             runPostSnapshotTasks(context);
             final ArrayList<SnapshotDataTarget> snapshotTargets = m_snapshotTargets;
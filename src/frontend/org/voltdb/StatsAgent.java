@@ -524,6 +524,27 @@ public class StatsAgent extends OpsAgent
         case QUEUE:
             stats = collectStats(StatsSelector.QUEUE, interval);
             break;
+        case QUEUEPRIORITY:
+            stats = collectStats(StatsSelector.QUEUEPRIORITY, interval);
+            break;
+        case SITE_PROFILE:
+            stats = collectStats(StatsSelector.SITE_PROFILE, interval);
+            break;
+        case THREADS:
+            stats = collectStats(StatsSelector.THREADS, interval);
+            break;
+        case MIGRATION:
+            stats = collectStats(StatsSelector.MIGRATION, interval);
+            break;
+        case HOTKEYS:
+            stats = collectHotKeyStats(interval);
+            break;
+        case HOTKEYSPROCEDURE:
+            stats = collectStats(StatsSelector.HOTKEYSPROCEDURE, interval);
+            break;
+        case HOTKEYSPARTITION:
+            stats = collectStats(StatsSelector.HOTKEYSPARTITION, interval);
+            break;
         case PLANNER:
             stats = collectStats(StatsSelector.PLANNER, interval);
             break;
@@ -597,6 +618,20 @@ public class StatsAgent extends OpsAgent
         return stats;
     }
 
+    private VoltTable[] collectHotKeyStats(boolean interval)
+    {
+        VoltTable[] stats = null;
+
+        VoltTable[] keyStats = collectStats(StatsSelector.HOTKEYSPROCEDURE, interval);
+        VoltTable[] partitionStats = collectStats(StatsSelector.HOTKEYSPARTITION, interval);
+        if (keyStats != null && partitionStats != null) {
+            stats = new VoltTable[2];
+            stats[0] = keyStats[0];
+            stats[1] = partitionStats[0];
+        }
+        return stats;
+    }
+
     private VoltTable[] collectDRConsumerStats() {
         VoltTable[] stats = null;
 
@@ -0,0 +1,425 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2018 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.voltcore.logging.Level;
+import org.voltcore.logging.VoltLogger;
+import org.voltcore.utils.RateLimitedLogger;
+
+/**
+ * A history of the statistics of this host, kept in memory. At a fixed
+ * interval the statistics of a few selectors are read from the local
+ * {@link StatsSource}s, without a transaction and without asking the other
+ * hosts, and every numeric column of every row becomes one point of a time
+ * series. The string and id columns of the row label the series.
+ *
+ * Each series keeps the points of the last hour in a ring, and averages over
+ * five minutes for the last day in another, both sizes are configurable.
+ * All series share the time axis of the rings, so a point costs one double.
+ * Series that haven't been seen for longer than the rings cover are dropped.
+ *
+ * The history is served in the OpenMetrics text format at /metrics by the
+ * HTTP interface, see {@link #write}.
+ */
+public class StatsHistory {
+    private static final VoltLogger s_logger = new VoltLogger("HOST");
+    private static final RateLimitedLogger s_rateLimitedLogger =
+            new RateLimitedLogger(60 * 1000, s_logger, Level.WARN);
+
+    public static final boolean ENABLED = Boolean.valueOf(System.getProperty("STATS_HISTORY", "true"));
+    public static final long INTERVAL_MS = Long.getLong("STATS_HISTORY_INTERVAL_MS", 10 * 1000);
+    static final int POINTS = Integer.getInteger("STATS_HISTORY_POINTS", 360);
+    static final long ROLLUP_MS = Long.getLong("STATS_HISTORY_ROLLUP_MS", 5 * 60 * 1000);
+    static final int ROLLUP_POINTS = Integer.getInteger("STATS_HISTORY_ROLLUP_POINTS", 288);
+    static final int MAX_SERIES = Integer.getInteger("STATS_HISTORY_MAX_SERIES", 5000);
+    static final String DEFAULT_SELECTORS = System.getProperty("STATS_HISTORY_SELECTORS",
+            "MEMORY,CPU,GC,IOSTATS,LATENCY,INITIATOR,QUEUE,COMMANDLOG");
+    static final String PREFIX = "voltdb_";
+
+    public static final String OPENMETRICS_CONTENT_TYPE = "application/openmetrics-text; version=1.0.0; charset=utf-8";
+    public static final String PROMETHEUS_CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    /**
+     * Which points {@link StatsHistory#write} writes.
+     */
+    public enum Range {
+        LATEST,   // the latest point of every series
+        RAW,      // every point in the ring of samples
+        ROLLUP    // every point in the ring of averages
+    }
+
+    /**
+     * One value of one sample, before it goes into its series.
+     */
+    static class Point {
+        final String m_name;
+        final String m_labels;
+        final double m_value;
+
+        Point(String name, String labels, double value) {
+            m_name = name;
+            m_labels = labels;
+            m_value = value;
+        }
+    }
+
+    /**
+     * The times of the points in a ring, the series hold the values.
+     */
+    static class Ring {
+        final long[] m_times;
+        int m_next = 0;
+        int m_size = 0;
+
+        Ring(int points) {
+            m_times = new long[points];
+        }
+
+        int add(long timeMs) {
+            final int slot = m_next;
+            m_times[slot] = timeMs;
+            m_next = (m_next + 1) % m_times.length;
+            m_size = Math.min(m_size + 1, m_times.length);
+            return slot;
+        }
+
+        int latest() {
+            return (m_next + m_times.length - 1) % m_times.length;
+        }
+
+        int oldest() {
+            return (m_next + m_times.length - m_size) % m_times.length;
+        }
+    }
+
+    static class Series {
+        final String m_name;
+        final String m_labels;
+        final double[] m_points;
+        final double[] m_rollups;
+        // of the rollup being filled
+        double m_sum = 0;
+        int m_count = 0;
+        long m_lastSeenMs;
+
+        Series(String name, String labels, int points, int rollups) {
+            m_name = name;
+            m_labels = labels;
+            m_points = new double[points];
+            m_rollups = new double[rollups];
+            Arrays.fill(m_points, Double.NaN);
+            Arrays.fill(m_rollups, Double.NaN);
+        }
+    }
+
+    private final StatsAgent m_agent;
+    private final EnumSet<StatsSelector> m_selectors;
+    private final long m_intervalMs;
+    private final long m_rollupMs;
+
+    // guarded by this, keyed by name, a space and the labels so that the series of a
+    // metric sort together, the space sorts before every character of a metric name
+    private final TreeMap<String, Series> m_series = new TreeMap<>();
+    private final Ring m_points;
+    private final Ring m_rollups;
+    private long m_rollupBucket = -1;
+
+    public StatsHistory(StatsAgent agent) {
+        this(agent, parseSelectors(DEFAULT_SELECTORS), INTERVAL_MS, POINTS, ROLLUP_MS, ROLLUP_POINTS);
+    }
+
+    StatsHistory(StatsAgent agent, EnumSet<StatsSelector> selectors,
+            long intervalMs, int points, long rollupMs, int rollupPoints) {
+        m_agent = agent;
+        m_selectors = selectors;
+        m_intervalMs = intervalMs;
+        m_rollupMs = rollupMs;
+        m_points = new Ring(points);
+        m_rollups = new Ring(rollupPoints);
+    }
+
+    static EnumSet<StatsSelector> parseSelectors(String selectors) {
+        final EnumSet<StatsSelector> parsed = EnumSet.noneOf(StatsSelector.class);
+        for (String selector : selectors.split(",")) {
+            selector = selector.trim();
+            if (selector.isEmpty()) {
+                continue;
+            }
+            try {
+                parsed.add(StatsSelector.valueOf(selector.toUpperCase()));
+            } catch (IllegalArgumentException e) {
+                s_logger.warn("Ignoring unknown statistics selector " + selector + " in STATS_HISTORY_SELECTORS");
+            }
+        }
+        return parsed;
+    }
+
+    /**
+     * Read the statistics of the selectors and add them to the history.
+     * Called at a fixed interval.
+     */
+    public void sample() {
+        final long now = System.currentTimeMillis();
+        final List<Point> points = new ArrayList<>();
+        for (StatsSelector selector : m_selectors) {
+            final VoltTable stats;
+            try {
+                stats = m_agent.getStatsAggregate(selector, false, now);
+            } catch (Exception e) {
+                s_rateLimitedLogger.log("Failed to collect " + selector + " statistics for the history: " + e,
+                        now);
+                continue;
+            }
+            if (stats != null) {
+                toPoints(selector, stats, points);
+            }
+        }
+        record(now, points);
+    }
+
+    /**
+     * Turn every numeric column of every row of a statistics table into a point.
+     */
+    static void toPoints(StatsSelector selector, VoltTable stats, List<Point> points) {
+        final String prefix = PREFIX + metricName(selector.name()) + "_";
+        final int columns = stats.getColumnCount();
+        final boolean[] isLabel = new boolean[columns];
+        final boolean[] isValue = new boolean[columns];
+        for (int ii = 0; ii < columns; ii++) {
+            final String name = stats.getColumnName(ii);
+            if (name.equals("TIMESTAMP")) {
+                continue;
+            }
+            switch (stats.getColumnType(ii)) {
+            case STRING:
+                isLabel[ii] = true;
+                break;
+            case TINYINT:
+            case SMALLINT:
+            case INTEGER:
+            case BIGINT:
+                isLabel[ii] = name.endsWith("_ID") || name.equals("ID");
+                isValue[ii] = !isLabel[ii];
+                break;
+            case FLOAT:
+            case DECIMAL:
+                isValue[ii] = true;
+                break;
+            default:
+                break;
+            }
+        }
+
+        final StringBuilder sb = new StringBuilder();
+        stats.resetRowPosition();
+        while (stats.advanceRow()) {
+            sb.setLength(0);
+            for (int ii = 0; ii < columns; ii++) {
+                if (!isLabel[ii]) {
+                    continue;
+                }
+                final Object value = stats.get(ii, stats.getColumnType(ii));
+                if (stats.wasNull()) {
+                    continue;
+                }
+                sb.append(sb.length() == 0 ? '{' : ',');
+                sb.append(metricName(stats.getColumnName(ii))).append("=\"");
+                escapeLabelValue(value.toString(), sb);
+                sb.append('"');
+            }
+            if (sb.length() > 0) {
+                sb.append('}');
+            }
+            final String labels = sb.toString();
+            for (int ii = 0; ii < columns; ii++) {
+                if (!isValue[ii]) {
+                    continue;
+                }
+                final Object value = stats.get(ii, stats.getColumnType(ii));
+                if (stats.wasNull()) {
+                    continue;
+                }
+                points.add(new Point(prefix + metricName(stats.getColumnName(ii)), labels,
+                        ((Number) value).doubleValue()));
+            }
+        }
+    }
+
+    static String metricName(String name) {
+        final StringBuilder sb = new StringBuilder(name.length());
+        for (int ii = 0; ii < name.length(); ii++) {
+            final char c = Character.toLowerCase(name.charAt(ii));
+            sb.append((c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '_' ? c : '_');
+        }
+        return sb.toString();
+    }
+
+    static void escapeLabelValue(String value, StringBuilder sb) {
+        for (int ii = 0; ii < value.length(); ii++) {
+            final char c = value.charAt(ii);
+            switch (c) {
+            case '\\':
+                sb.append("\\\\");
+                break;
+            case '"':
+                sb.append("\\\"");
+                break;
+            case '\n':
+                sb.append("\\n");
+                break;
+            default:
+                sb.append(c);
+            }
+        }
+    }
+
+    synchronized void record(long nowMs, List<Point> points) {
+        // close the rollup the previous samples went into
+        final long bucket = nowMs / m_rollupMs;
+        if (bucket != m_rollupBucket) {
+            if (m_rollupBucket >= 0) {
+                final int slot = m_rollups.add(m_rollupBucket * m_rollupMs);
+                for (Series series : m_series.values()) {
+                    series.m_rollups[slot] = series.m_count == 0 ? Double.NaN : series.m_sum / series.m_count;
+                    series.m_sum = 0;
+                    series.m_count = 0;
+                }
+            }
+            m_rollupBucket = bucket;
+        }
+
+        final int slot = m_points.add(nowMs);
+        for (Series series : m_series.values()) {
+            series.m_points[slot] = Double.NaN;
+        }
+        for (Point point : points) {
+            final String key = point.m_name + ' ' + point.m_labels;
+            Series series = m_series.get(key);
+            if (series == null) {
+                if (m_series.size() >= MAX_SERIES) {
+                    s_rateLimitedLogger.log("The statistics history holds " + MAX_SERIES +
+                            " series already, not adding more. Set STATS_HISTORY_MAX_SERIES to keep more.", nowMs);
+                    continue;
+                }
+                series = new Series(point.m_name, point.m_labels,
+                        m_points.m_times.length, m_rollups.m_times.length);
+                m_series.put(key, series);
+            }
+            series.m_points[slot] = point.m_value;
+            series.m_sum += point.m_value;
+            series.m_count++;
+            series.m_lastSeenMs = nowMs;
+        }
+
+        // drop the series that are gone from both rings
+        final long retentionMs = Math.max(m_points.m_times.length * m_intervalMs,
+                m_rollups.m_times.length * m_rollupMs);
+        final Iterator<Series> it = m_series.values().iterator();
+        while (it.hasNext()) {
+            if (nowMs - it.next().m_lastSeenMs > retentionMs) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Write the history in the OpenMetrics text format, or in the older
+     * Prometheus text format, which has no end marker and times in
+     * milliseconds. Every series is a metric of unknown type.
+     * @param prefix only write the metrics whose names start with it
+     */
+    public void write(Writer out, boolean openMetrics, Range range, String prefix) throws IOException {
+        final StringBuilder sb = new StringBuilder(1024 * 64);
+        String lastName = null;
+        // Build the whole response before writing it, a slow client must not hold
+        // up record() and the periodic work thread it runs on
+        synchronized (this) {
+            final Map<String, Series> series = prefix == null || prefix.isEmpty() ? m_series :
+                m_series.subMap(prefix, true, prefix + Character.MAX_VALUE, true);
+            for (Series s : series.values()) {
+                if (!s.m_name.equals(lastName)) {
+                    lastName = s.m_name;
+                    sb.append("# TYPE ").append(s.m_name).append(openMetrics ? " unknown\n" : " untyped\n");
+                }
+                switch (range) {
+                case LATEST:
+                    if (m_points.m_size > 0) {
+                        final int slot = m_points.latest();
+                        appendPoint(sb, s, s.m_points[slot], m_points.m_times[slot], openMetrics);
+                    }
+                    break;
+                case RAW:
+                    appendPoints(sb, s, s.m_points, m_points, openMetrics);
+                    break;
+                case ROLLUP:
+                    appendPoints(sb, s, s.m_rollups, m_rollups, openMetrics);
+                    break;
+                }
+            }
+        }
+        if (openMetrics) {
+            sb.append("# EOF\n");
+        }
+        out.write(sb.toString());
+    }
+
+    private static void appendPoints(StringBuilder sb, Series series, double[] values, Ring ring,
+            boolean openMetrics) {
+        int slot = ring.oldest();
+        for (int ii = 0; ii < ring.m_size; ii++) {
+            appendPoint(sb, series, values[slot], ring.m_times[slot], openMetrics);
+            slot = (slot + 1) % values.length;
+        }
+    }
+
+    private static void appendPoint(StringBuilder sb, Series series, double value, long timeMs,
+            boolean openMetrics) {
+        if (Double.isNaN(value)) {
+            return;
+        }
+        sb.append(series.m_name).append(series.m_labels).append(' ');
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            sb.append((long) value);
+        } else {
+            sb.append(value);
+        }
+        sb.append(' ');
+        if (openMetrics) {
+            sb.append(timeMs / 1000).append('.');
+            final long millis = timeMs % 1000;
+            sb.append(millis < 10 ? "00" : millis < 100 ? "0" : "").append(millis);
+        } else {
+            sb.append(timeMs);
+        }
+        sb.append('\n');
+    }
+
+    synchronized int getSeriesCount() {
+        return m_series.size();
+    }
+}
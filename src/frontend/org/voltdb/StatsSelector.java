@@ -22,6 +22,17 @@ public enum StatsSelector {
     PROCEDURE,        // invoked as @stat procedure
     STARVATION,
     QUEUE,
+    QUEUEPRIORITY,    // queue depth and waits per request priority
+    SITE_PROFILE,     // CPU, EE time and allocations of each site per procedure
+    THREADS,          // CPU, context switches and I/O of each thread, from procfs
+    MIGRATION,        // data streamed by each site during join and rejoin, and its throttle
+    /*
+     * HOTKEYSPROCEDURE and HOTKEYSPARTITION are internal names
+     * Externally the selector is "HOTKEYS"
+     */
+    HOTKEYS,          // top partition keys per procedure and the load of each partition
+    HOTKEYSPROCEDURE,
+    HOTKEYSPARTITION,
     INITIATOR,        // invoked as @stat initiator
     LATENCY,          // invoked as @stat latency
     LATENCY_COMPRESSED,  // before V7.3 this was @Statistics LATENCY
@@ -72,6 +72,8 @@ public class StoredProcedureInvocation implements JSONString {
 
     private int m_batchTimeout = BatchTimeoutOverrideType.NO_TIMEOUT;
     private boolean m_allPartition = false;
+    private long m_readAfterSpHandle = ProcedureInvocationExtensions.NO_READ_AFTER_SPHANDLE;
+    private int m_priority = ProcedureInvocationExtensions.DEFAULT_PRIORITY;
 
     public StoredProcedureInvocation getShallowCopy()
     {
@@ -92,6 +94,8 @@ public class StoredProcedureInvocation implements JSONString {
 
         copy.m_batchTimeout = m_batchTimeout;
         copy.m_allPartition = m_allPartition;
+        copy.m_readAfterSpHandle = m_readAfterSpHandle;
+        copy.m_priority = m_priority;
 
         return copy;
     }
@@ -185,6 +189,36 @@ public class StoredProcedureInvocation implements JSONString {
         return m_allPartition;
     }
 
+    /**
+     * A read-only invocation sent in session consistency mode carries the
+     * SpHandle of the last transaction the client saw on the partition.
+     * A replica must not run it until it has scheduled that transaction.
+     */
+    public void setReadAfterSpHandle(long spHandle) {
+        m_readAfterSpHandle = spHandle;
+    }
+
+    public long getReadAfterSpHandle() {
+        return m_readAfterSpHandle;
+    }
+
+    public boolean hasReadAfterSpHandle() {
+        return m_readAfterSpHandle != ProcedureInvocationExtensions.NO_READ_AFTER_SPHANDLE;
+    }
+
+    /**
+     * Scheduling priority the client asked for, from
+     * {@link ProcedureInvocationExtensions#HIGHEST_PRIORITY} to
+     * {@link ProcedureInvocationExtensions#LOWEST_PRIORITY}.
+     */
+    public void setPriority(int priority) {
+        m_priority = priority;
+    }
+
+    public int getPriority() {
+        return m_priority;
+    }
+
     /** Read into an serialized parameter buffer to extract a single parameter */
     Object getParameterAtIndex(int partitionIndex) {
         try {
@@ -215,6 +249,10 @@ public class StoredProcedureInvocation implements JSONString {
         int batchExtensionSize = m_batchTimeout != BatchTimeoutOverrideType.NO_TIMEOUT ? 6 : 0;
         // 2 is one byte for ext type, one for size
         int allPartitionExtensionSize = m_allPartition ? 2 : 0;
+        // 10 is one byte for ext type, one for size, and 8 for long value
+        int readAfterExtensionSize = hasReadAfterSpHandle() ? 10 : 0;
+        // 3 is one byte for ext type, one for size, and 1 for the priority
+        int priorityExtensionSize = m_priority != ProcedureInvocationExtensions.DEFAULT_PRIORITY ? 3 : 0;
 
         // compute the size
         int size =
@@ -222,7 +260,8 @@ public class StoredProcedureInvocation implements JSONString {
                 4 + getProcNameBytes().length + // procname
                 8 + // client handle
                 1 + // extension count
-                batchExtensionSize + allPartitionExtensionSize;
+                batchExtensionSize + allPartitionExtensionSize + readAfterExtensionSize +
+                priorityExtensionSize;
         return size;
     }
 
@@ -322,10 +361,12 @@ public class StoredProcedureInvocation implements JSONString {
 
         buf.putLong(clientHandle);
 
-        // there are two possible extensions, count which apply
+        // there are four possible extensions, count which apply
         byte extensionCount = 0;
         if (m_batchTimeout != BatchTimeoutOverrideType.NO_TIMEOUT) ++extensionCount;
         if (m_allPartition) ++extensionCount;
+        if (hasReadAfterSpHandle()) ++extensionCount;
+        if (m_priority != ProcedureInvocationExtensions.DEFAULT_PRIORITY) ++extensionCount;
         // write the count as one byte
         buf.put(extensionCount);
         // write any extensions that apply
@@ -335,6 +376,12 @@ public class StoredProcedureInvocation implements JSONString {
         if (m_allPartition) {
             ProcedureInvocationExtensions.writeAllPartitionWithTypeByte(buf);
         }
+        if (hasReadAfterSpHandle()) {
+            ProcedureInvocationExtensions.writeReadAfterSpHandleWithTypeByte(buf, m_readAfterSpHandle);
+        }
+        if (m_priority != ProcedureInvocationExtensions.DEFAULT_PRIORITY) {
+            ProcedureInvocationExtensions.writeRequestPriorityWithTypeByte(buf, m_priority);
+        }
 
         serializeParams(buf);
 
@@ -408,6 +455,8 @@ public class StoredProcedureInvocation implements JSONString {
         // set these to defaults so old versions don't worry about them
         m_batchTimeout = BatchTimeoutOverrideType.NO_TIMEOUT;
         m_allPartition = false;
+        m_readAfterSpHandle = ProcedureInvocationExtensions.NO_READ_AFTER_SPHANDLE;
+        m_priority = ProcedureInvocationExtensions.DEFAULT_PRIORITY;
 
         switch (type) {
             case ORIGINAL:
@@ -490,6 +539,12 @@ public class StoredProcedureInvocation implements JSONString {
                 // note this always returns true as it's just a flag
                 m_allPartition = ProcedureInvocationExtensions.readAllPartition(buf);
                 break;
+            case ProcedureInvocationExtensions.READ_AFTER_SPHANDLE:
+                m_readAfterSpHandle = ProcedureInvocationExtensions.readReadAfterSpHandle(buf);
+                break;
+            case ProcedureInvocationExtensions.REQUEST_PRIORITY:
+                m_priority = ProcedureInvocationExtensions.readRequestPriority(buf);
+                break;
             default:
                 ProcedureInvocationExtensions.skipUnknownExtension(buf);
                 break;
@@ -524,6 +579,12 @@ public class StoredProcedureInvocation implements JSONString {
         retval += ")";
         retval += " type=" + String.valueOf(type);
         retval += " batchTimeout=" + BatchTimeoutOverrideType.toString(m_batchTimeout);
+        if (hasReadAfterSpHandle()) {
+            retval += " readAfterSpHandle=" + String.valueOf(m_readAfterSpHandle);
+        }
+        if (m_priority != ProcedureInvocationExtensions.DEFAULT_PRIORITY) {
+            retval += " priority=" + String.valueOf(m_priority);
+        }
         retval += " clientHandle=" + String.valueOf(clientHandle);
 
         return retval;
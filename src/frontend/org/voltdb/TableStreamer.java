@@ -51,6 +51,9 @@ public class TableStreamer {
     private final int m_tableId;
     private final TableStreamType m_type;
     private final ImmutableList<SnapshotTableTask> m_tableTasks;
+    // bytes serialized and tuples left after the last call to streamMore()
+    private long m_lastSerializedBytes = 0;
+    private long m_remainingTuples = 0;
 
     public TableStreamer(int tableId, TableStreamType type, List<SnapshotTableTask> tableTasks)
     {
@@ -101,10 +104,23 @@ public class TableStreamer {
     public Pair<ListenableFuture<?>, Boolean> streamMore(SystemProcedureExecutionContext context,
                                                       List<DBBPool.BBContainer> outputBuffers,
                                                       int[] rowCountAccumulator)
+    {
+        return streamMore(context, outputBuffers, rowCountAccumulator, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Streams more tuples from the table, at most <code>maxChunkBytes</code> into each buffer.
+     * The limit must leave room for the largest row of the table.
+     */
+    public Pair<ListenableFuture<?>, Boolean> streamMore(SystemProcedureExecutionContext context,
+                                                      List<DBBPool.BBContainer> outputBuffers,
+                                                      int[] rowCountAccumulator,
+                                                      int maxChunkBytes)
     {
         ListenableFuture<?> writeFuture = null;
+        m_lastSerializedBytes = 0;
 
-        prepareBuffers(outputBuffers);
+        prepareBuffers(outputBuffers, maxChunkBytes);
 
         Pair<Long, int[]> serializeResult = context.tableStreamSerializeMore(m_tableId, m_type, outputBuffers);
         if (serializeResult.getFirst() == SERIALIZATION_ERROR) {
@@ -119,7 +135,11 @@ public class TableStreamer {
             return Pair.of(null, false);
         }
 
+        m_remainingTuples = serializeResult.getFirst();
         if (serializeResult.getSecond()[0] > 0) {
+            for (int serialized : serializeResult.getSecond()) {
+                m_lastSerializedBytes += serialized;
+            }
             if (rowCountAccumulator != null && rowCountAccumulator.length == 1) {
                 rowCountAccumulator[0] += getTupleDataRowCount(outputBuffers);
             }
@@ -134,6 +154,22 @@ public class TableStreamer {
         return Pair.of(writeFuture, serializeResult.getFirst() > 0);
     }
 
+    /**
+     * @return the bytes the last call to streamMore() serialized into all the buffers
+     */
+    public long getLastSerializedBytes()
+    {
+        return m_lastSerializedBytes;
+    }
+
+    /**
+     * @return the tuples left to stream after the last call to streamMore()
+     */
+    public long getRemainingTuples()
+    {
+        return m_remainingTuples;
+    }
+
     /**
      * Get the number of rows contained of rows contained within the given list of {@link BBContainer}
      * @param outputBuffers a list of tuple data BBContainers
@@ -153,9 +189,10 @@ public class TableStreamer {
     }
 
     /**
-     * Set the positions of the buffers to the start of the content, leaving some room for the headers.
+     * Set the positions of the buffers to the start of the content, leaving some room for the headers,
+     * and limit the content to <code>maxChunkBytes</code>.
      */
-    private void prepareBuffers(List<DBBPool.BBContainer> buffers)
+    private void prepareBuffers(List<DBBPool.BBContainer> buffers, int maxChunkBytes)
     {
         Preconditions.checkArgument(buffers.size() == m_tableTasks.size());
 
@@ -164,6 +201,9 @@ public class TableStreamer {
             int headerSize = iterator.next().m_target.getHeaderSize();
             final ByteBuffer buf = container.b();
             buf.clear();
+            if (maxChunkBytes < buf.capacity() - headerSize) {
+                buf.limit(headerSize + maxChunkBytes);
+            }
             buf.position(headerSize);
         }
     }
@@ -0,0 +1,145 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2018 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.voltdb.VoltTable.ColumnInfo;
+import org.voltdb.utils.ThreadStatsCollector;
+import org.voltdb.utils.ThreadStatsCollector.Kind;
+import org.voltdb.utils.ThreadStatsCollector.Sample;
+
+/**
+ * CPU time, context switches and I/O of every thread of this host, as of the
+ * latest sample of the {@link ThreadStatsCollector}, with one more row for the
+ * whole process. THREAD_KIND tells what the thread works on: SITE, NETWORK,
+ * EXPORT, SNAPSHOT, PLANNER or OTHER. PERCENT_CPU is the share of one CPU the
+ * thread used between the last two samples, a thread near 100 is saturated.
+ *
+ * CPU times are in milliseconds. The table is empty where procfs isn't there.
+ */
+public class ThreadStats extends StatsSource {
+
+    // key for the process row, thread ids are positive
+    private static final int PROCESS_KEY = -1;
+
+    private final ThreadStatsCollector m_collector;
+
+    // counters at the last interval collection by thread id, stats thread only
+    private final Map<Integer, long[]> m_last = new HashMap<>();
+    private boolean m_interval;
+
+    public ThreadStats(ThreadStatsCollector collector) {
+        super(false);
+        m_collector = collector;
+    }
+
+    @Override
+    protected void populateColumnSchema(ArrayList<ColumnInfo> columns) {
+        super.populateColumnSchema(columns);
+        columns.add(new ColumnInfo("THREAD_ID", VoltType.BIGINT));
+        columns.add(new ColumnInfo("THREAD_NAME", VoltType.STRING));
+        columns.add(new ColumnInfo("THREAD_KIND", VoltType.STRING));
+        columns.add(new ColumnInfo("PERCENT_CPU", VoltType.FLOAT));
+        columns.add(new ColumnInfo("USER_CPU_TIME", VoltType.BIGINT));
+        columns.add(new ColumnInfo("SYSTEM_CPU_TIME", VoltType.BIGINT));
+        columns.add(new ColumnInfo("VOLUNTARY_SWITCHES", VoltType.BIGINT));
+        columns.add(new ColumnInfo("INVOLUNTARY_SWITCHES", VoltType.BIGINT));
+        columns.add(new ColumnInfo("READ_BYTES", VoltType.BIGINT));
+        columns.add(new ColumnInfo("WRITE_BYTES", VoltType.BIGINT));
+        columns.add(new ColumnInfo("DISK_READ_BYTES", VoltType.BIGINT));
+        columns.add(new ColumnInfo("DISK_WRITE_BYTES", VoltType.BIGINT));
+    }
+
+    @Override
+    protected void updateStatsRow(Object rowKey, Object rowValues[]) {
+        final Sample sample = (Sample) rowKey;
+        final long[] counters = new long[] {
+                sample.m_userMs,
+                sample.m_systemMs,
+                sample.m_voluntarySwitches,
+                sample.m_involuntarySwitches,
+                sample.m_readBytes,
+                sample.m_writeBytes,
+                sample.m_diskReadBytes,
+                sample.m_diskWriteBytes };
+        final long[] values = counters.clone();
+        if (m_interval) {
+            final long[] last = m_last.put(key(sample), counters);
+            if (last != null) {
+                for (int ii = 0; ii < values.length; ii++) {
+                    values[ii] -= last[ii];
+                }
+            }
+        }
+        rowValues[columnNameToIndex.get("THREAD_ID")] = sample.m_tid;
+        rowValues[columnNameToIndex.get("THREAD_NAME")] = sample.m_name;
+        rowValues[columnNameToIndex.get("THREAD_KIND")] = sample.m_kind.name();
+        rowValues[columnNameToIndex.get("PERCENT_CPU")] = sample.m_percentCpu;
+        rowValues[columnNameToIndex.get("USER_CPU_TIME")] = values[0];
+        rowValues[columnNameToIndex.get("SYSTEM_CPU_TIME")] = values[1];
+        rowValues[columnNameToIndex.get("VOLUNTARY_SWITCHES")] = values[2];
+        rowValues[columnNameToIndex.get("INVOLUNTARY_SWITCHES")] = values[3];
+        rowValues[columnNameToIndex.get("READ_BYTES")] = values[4];
+        rowValues[columnNameToIndex.get("WRITE_BYTES")] = values[5];
+        rowValues[columnNameToIndex.get("DISK_READ_BYTES")] = values[6];
+        rowValues[columnNameToIndex.get("DISK_WRITE_BYTES")] = values[7];
+        super.updateStatsRow(rowKey, rowValues);
+    }
+
+    private static int key(Sample sample) {
+        return sample.m_kind == Kind.PROCESS ? PROCESS_KEY : sample.m_tid;
+    }
+
+    @Override
+    protected Iterator<Object> getStatsRowKeyIterator(final boolean interval) {
+        m_interval = interval;
+        final List<Sample> samples = m_collector.getSamples();
+        if (interval) {
+            // forget the threads that are gone
+            final Set<Integer> keys = new HashSet<>();
+            for (Sample sample : samples) {
+                keys.add(key(sample));
+            }
+            m_last.keySet().retainAll(keys);
+        }
+        final Iterator<Sample> it = samples.iterator();
+        return new Iterator<Object>() {
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+
+            @Override
+            public Object next() {
+                return it.next();
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+}
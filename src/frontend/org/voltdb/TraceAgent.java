@@ -20,6 +20,7 @@ package org.voltdb;
 import org.json_voltpatches.JSONObject;
 import org.voltcore.network.Connection;
 import org.voltdb.client.ClientResponse;
+import org.voltdb.utils.SamplingProfiler;
 import org.voltdb.utils.VoltTrace;
 
 import java.io.File;
@@ -78,14 +79,26 @@ public class TraceAgent extends OpsAgent {
             if (!(subselector.equalsIgnoreCase("enable") ||
                   subselector.equalsIgnoreCase("disable") ||
                   subselector.equalsIgnoreCase("status") ||
-                  subselector.equalsIgnoreCase("dump"))) {
+                  subselector.equalsIgnoreCase("dump") ||
+                  subselector.equalsIgnoreCase("profile_start") ||
+                  subselector.equalsIgnoreCase("profile_stop") ||
+                  subselector.equalsIgnoreCase("profile_dump"))) {
                 return "Invalid @Trace selector " + subselector;
             }
         }
         // Would be nice to have subselector validation here, maybe.  Maybe later.
         obj.put("subselector", subselector);
         if (params.toArray().length >= 2) {
-            obj.put("categories", params.toArray()[1]);
+            if (subselector.equalsIgnoreCase("profile_start")) {
+                // optional interval between samples in milliseconds
+                try {
+                    obj.put("sample_ms", Integer.parseInt(params.toArray()[1].toString()));
+                } catch (NumberFormatException e) {
+                    return "Invalid @Trace profile_start interval " + params.toArray()[1];
+                }
+            } else {
+                obj.put("categories", params.toArray()[1]);
+            }
         }
         obj.put("interval", false);
 
@@ -121,6 +134,19 @@ public class TraceAgent extends OpsAgent {
             } else {
                 results[0].addRow(enabledCategories.toString());
             }
+            results[0].addRow(SamplingProfiler.status());
+        } else if (subselector.equalsIgnoreCase("profile_start")) {
+            SamplingProfiler.start(obj.optInt("sample_ms", SamplingProfiler.DEFAULT_INTERVAL_MS));
+            results[0].addRow(SamplingProfiler.status());
+        } else if (subselector.equalsIgnoreCase("profile_stop")) {
+            SamplingProfiler.stop();
+        } else if (subselector.equalsIgnoreCase("profile_dump")) {
+            final String filePath = SamplingProfiler.dump(new File(VoltDB.instance().getVoltDBRootPath(), "trace_logs").getAbsolutePath());
+            if (filePath != null) {
+                results[0].addRow(filePath);
+            } else {
+                results[0].addRow("The sampling profiler is not running");
+            }
         }
 
         sendOpsResponse(results, obj);
@@ -126,6 +126,8 @@ public interface VoltDBInterface
     // Keep this method to centralize the cast to StatsAgent for
     // existing code
     public StatsAgent getStatsAgent();
+    /** The statistics history of this host, null if it is disabled */
+    public StatsHistory getStatsHistory();
     public MemoryStats getMemoryStatsSource();
     public BackendTarget getBackendTargetType();
     public String getLocalMetadata();
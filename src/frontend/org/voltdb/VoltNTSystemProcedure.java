@@ -51,6 +51,10 @@ public class VoltNTSystemProcedure extends VoltNonTransactionalProcedure {
         return m_runner.getUsername();
     }
 
+    protected long getClientConnectionId() {
+        return m_runner.getClientConnectionId();
+    }
+
     protected boolean isRestoring() {
         return m_runner.isRestoring();
     }
@@ -142,6 +142,9 @@ public final class VoltTable extends VoltTableRow implements JSONString {
     private int m_memoizedRowOffset = NO_MEMOIZED_ROW_OFFSET;
     private int m_memoizedBufferOffset;
 
+    // created by rowWriter()
+    private RowWriter m_rowWriter;
+
     // JSON KEYS FOR SERIALIZATION
     static final String JSON_NAME_KEY = "name";
     static final String JSON_TYPE_KEY = "type";
@@ -1195,6 +1198,382 @@ public final class VoltTable extends VoltTableRow implements JSONString {
         m_buffer = buf2;
     }
 
+    /**
+     * Returns the {@link RowWriter} of this table, an alternative to
+     * {@link #addRow(Object...)} that takes unboxed values one column at a time.
+     * The writer is created on first use and reused after that.
+     * @return The row writer of this table.
+     */
+    public final RowWriter rowWriter() {
+        if (m_rowWriter == null) {
+            m_rowWriter = new RowWriter();
+        }
+        return m_rowWriter;
+    }
+
+    /**
+     * <p>Appends rows to a {@link VoltTable} by writing typed values straight
+     * into the table's buffer, one column after the other, without boxing the
+     * values or building an <tt>Object[]</tt> per row. Call one <tt>put</tt>
+     * method per column, in column order, then {@link #endRow()}:</p>
+     *
+     * <p><tt>RowWriter w = table.rowWriter();<br>
+     * w.putLong(id).putString(name).putDecimal(price).endRow();</tt></p>
+     *
+     * <p>The conversions are the ones {@link VoltTable#addRow(Object...)} allows.
+     * If a value can't be stored in its column the partly written row is
+     * dropped and the exception is thrown, the rows before it are kept. The
+     * table must not be read or changed in other ways while a row is open.</p>
+     */
+    public final class RowWriter {
+        private final VoltType[] m_types;
+        // start of the open row, or -1 if there is none
+        private int m_rowPos = -1;
+        private int m_col = 0;
+
+        private RowWriter() {
+            m_types = new VoltType[m_colCount];
+            for (int i = 0; i < m_colCount; i++) {
+                m_types[i] = getColumnType(i);
+            }
+        }
+
+        // Returns the type of the next column, opening a row if needed
+        private VoltType nextColumn(int bytes) {
+            if (m_rowPos == -1) {
+                if (m_readOnly) {
+                    throw new IllegalStateException("Table is read-only. Make a copy before changing.");
+                }
+                if (m_colCount == 0) {
+                    throw new IllegalStateException("Table has no columns defined");
+                }
+                m_rowPos = m_buffer.position();
+                m_buffer.limit(m_buffer.capacity());
+                ensureRemaining(ROW_HEADER_SIZE);
+                m_buffer.position(m_rowPos + ROW_HEADER_SIZE);
+            }
+            if (m_col >= m_colCount) {
+                abortRow();
+                throw new IllegalArgumentException("Row has more than the table's " + m_colCount + " columns");
+            }
+            ensureRemaining(bytes);
+            return m_types[m_col];
+        }
+
+        private void ensureRemaining(int bytes) {
+            while (m_buffer.remaining() < bytes) {
+                expandBuffer();
+                m_buffer.limit(m_buffer.capacity());
+            }
+        }
+
+        private RuntimeException typeMismatch(String what) {
+            final int col = m_col;
+            abortRow();
+            return new VoltTypeException("Value for column " + col + " (" +
+                    getColumnName(col) + ") is type " + what + " when type " + m_types[col] +
+                    " was expected.");
+        }
+
+        private RuntimeException overflow(long value) {
+            final int col = m_col;
+            abortRow();
+            return new VoltTypeException("Cast of " + value + " to " + m_types[col] + " would overflow");
+        }
+
+        private void checkSize(int length) {
+            final int maxColSize = m_extraMetadata == null ?
+                    VoltType.MAX_VALUE_LENGTH : m_extraMetadata.originalColumnInfos[m_col].size;
+            if (length > maxColSize) {
+                abortRow();
+                throw new VoltOverflowException(
+                        "Value in VoltTable.addRow(...) larger than allowed max " +
+                                VoltType.humanReadableSize(maxColSize));
+            }
+        }
+
+        /**
+         * Store a null in the next column.
+         * @return This writer.
+         */
+        public RowWriter putNull() {
+            return put(null);
+        }
+
+        /**
+         * Store an integer in the next column, which can be any integer type,
+         * a timestamp in microseconds or a float.
+         * @param value The value.
+         * @return This writer.
+         */
+        public RowWriter putLong(long value) {
+            final VoltType type = nextColumn(8);
+            switch (type) {
+            case TINYINT:
+                if (value <= Byte.MIN_VALUE || value > Byte.MAX_VALUE) {
+                    throw overflow(value);
+                }
+                m_buffer.put((byte) value);
+                break;
+            case SMALLINT:
+                if (value <= Short.MIN_VALUE || value > Short.MAX_VALUE) {
+                    throw overflow(value);
+                }
+                m_buffer.putShort((short) value);
+                break;
+            case INTEGER:
+                if (value <= Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+                    throw overflow(value);
+                }
+                m_buffer.putInt((int) value);
+                break;
+            case BIGINT:
+            case TIMESTAMP:
+                m_buffer.putLong(value);
+                break;
+            case FLOAT:
+                m_buffer.putDouble(value);
+                break;
+            default:
+                throw typeMismatch("long");
+            }
+            m_col++;
+            return this;
+        }
+
+        /**
+         * Store a double in the next column, which must be a float.
+         * @param value The value.
+         * @return This writer.
+         */
+        public RowWriter putDouble(double value) {
+            if (nextColumn(8) != VoltType.FLOAT) {
+                throw typeMismatch("double");
+            }
+            m_buffer.putDouble(value);
+            m_col++;
+            return this;
+        }
+
+        /**
+         * Store a string in the next column, which must be a string. The
+         * characters are encoded as UTF-8 straight into the table.
+         * @param value The value, or null.
+         * @return This writer.
+         */
+        public RowWriter putString(CharSequence value) {
+            if (value == null) {
+                return putNull();
+            }
+            final int length = value.length();
+            if (nextColumn(STRING_LEN_SIZE) != VoltType.STRING) {
+                throw typeMismatch("CharSequence");
+            }
+            checkSize(length);
+            // a char never takes more than 3 bytes in UTF-8
+            ensureRemaining(STRING_LEN_SIZE + length * 3);
+            final int lenPos = m_buffer.position();
+            int pos = lenPos + STRING_LEN_SIZE;
+            if (m_buffer.hasArray()) {
+                final byte[] array = m_buffer.array();
+                final int offset = m_buffer.arrayOffset();
+                int i = 0;
+                // ASCII fast path
+                for (; i < length; i++) {
+                    final char c = value.charAt(i);
+                    if (c >= 0x80) {
+                        break;
+                    }
+                    array[offset + pos++] = (byte) c;
+                }
+                if (i < length) {
+                    pos = encodeUTF8(value, i, pos);
+                }
+            }
+            else {
+                pos = encodeUTF8(value, 0, pos);
+            }
+            m_buffer.putInt(lenPos, pos - lenPos - STRING_LEN_SIZE);
+            m_buffer.position(pos);
+            m_col++;
+            return this;
+        }
+
+        // Encodes chars from start on at pos, returns the end position
+        private int encodeUTF8(CharSequence value, int start, int pos) {
+            final int length = value.length();
+            for (int i = start; i < length; i++) {
+                final char c = value.charAt(i);
+                if (c < 0x80) {
+                    m_buffer.put(pos++, (byte) c);
+                }
+                else if (c < 0x800) {
+                    m_buffer.put(pos++, (byte) (0xc0 | (c >> 6)));
+                    m_buffer.put(pos++, (byte) (0x80 | (c & 0x3f)));
+                }
+                else if (Character.isHighSurrogate(c) && i + 1 < length &&
+                        Character.isLowSurrogate(value.charAt(i + 1))) {
+                    final int cp = Character.toCodePoint(c, value.charAt(++i));
+                    m_buffer.put(pos++, (byte) (0xf0 | (cp >> 18)));
+                    m_buffer.put(pos++, (byte) (0x80 | ((cp >> 12) & 0x3f)));
+                    m_buffer.put(pos++, (byte) (0x80 | ((cp >> 6) & 0x3f)));
+                    m_buffer.put(pos++, (byte) (0x80 | (cp & 0x3f)));
+                }
+                else if (Character.isSurrogate(c)) {
+                    // unpaired surrogate, replaced the same way String.getBytes() does
+                    m_buffer.put(pos++, (byte) '?');
+                }
+                else {
+                    m_buffer.put(pos++, (byte) (0xe0 | (c >> 12)));
+                    m_buffer.put(pos++, (byte) (0x80 | ((c >> 6) & 0x3f)));
+                    m_buffer.put(pos++, (byte) (0x80 | (c & 0x3f)));
+                }
+            }
+            return pos;
+        }
+
+        /**
+         * Store a UTF-8 encoded string in the next column, which must be a string.
+         * @param utf8 The encoded value, or null.
+         * @return This writer.
+         */
+        public RowWriter putStringBytes(byte[] utf8) {
+            if (utf8 == null) {
+                return putNull();
+            }
+            if (nextColumn(STRING_LEN_SIZE) != VoltType.STRING) {
+                throw typeMismatch("byte[]");
+            }
+            checkSize(utf8.length);
+            ensureRemaining(STRING_LEN_SIZE + utf8.length);
+            assert(testForUTF8Encoding(utf8));
+            m_buffer.putInt(utf8.length);
+            m_buffer.put(utf8);
+            m_col++;
+            return this;
+        }
+
+        /**
+         * Store bytes in the next column, which must be a varbinary.
+         * @param value The value, or null.
+         * @return This writer.
+         */
+        public RowWriter putVarbinary(byte[] value) {
+            if (value == null) {
+                return putNull();
+            }
+            return putVarbinary(ByteBuffer.wrap(value));
+        }
+
+        /**
+         * Store the remaining bytes of a buffer in the next column, which must
+         * be a varbinary. The position of the buffer is not changed.
+         * @param value The value, or null.
+         * @return This writer.
+         */
+        public RowWriter putVarbinary(ByteBuffer value) {
+            if (value == null) {
+                return putNull();
+            }
+            final int length = value.remaining();
+            if (nextColumn(VARBINARY_LEN_SIZE) != VoltType.VARBINARY) {
+                throw typeMismatch("ByteBuffer");
+            }
+            checkSize(length);
+            ensureRemaining(VARBINARY_LEN_SIZE + length);
+            m_buffer.putInt(length);
+            m_buffer.put(value.duplicate());
+            m_col++;
+            return this;
+        }
+
+        /**
+         * Store a decimal in the next column, which must be a decimal.
+         * @param value The value, or null.
+         * @return This writer.
+         */
+        public RowWriter putDecimal(BigDecimal value) {
+            if (value == null) {
+                return putNull();
+            }
+            if (nextColumn(VoltType.DECIMAL.getLengthInBytesForFixedTypes()) != VoltType.DECIMAL) {
+                throw typeMismatch("BigDecimal");
+            }
+            try {
+                VoltDecimalHelper.serializeBigDecimal(value, m_buffer);
+            }
+            catch (RuntimeException e) {
+                abortRow();
+                throw e;
+            }
+            m_col++;
+            return this;
+        }
+
+        /**
+         * Store a value of any type {@link VoltTable#addRow(Object...)} takes
+         * in the next column.
+         * @param value The value, or null.
+         * @return This writer.
+         */
+        public RowWriter put(Object value) {
+            final VoltType type = nextColumn(0);
+            final int pos = m_buffer.position();
+            while (true) {
+                try {
+                    addColumnValue(value, type, m_col);
+                    break;
+                }
+                catch (BufferOverflowException e) {
+                    m_buffer.position(pos);
+                    ensureRemaining(m_buffer.capacity() - pos + 1);
+                }
+                catch (RuntimeException e) {
+                    abortRow();
+                    throw e;
+                }
+            }
+            m_col++;
+            return this;
+        }
+
+        /**
+         * Finish the row. Every column must have been given a value.
+         */
+        public void endRow() {
+            if (m_col != m_colCount) {
+                final int col = m_col;
+                abortRow();
+                throw new IllegalArgumentException(col + " values but table has " + m_colCount + " columns");
+            }
+            final int rowsize = m_buffer.position() - m_rowPos - ROW_HEADER_SIZE;
+            if (rowsize > VoltTableRow.MAX_TUPLE_LENGTH) {
+                abortRow();
+                throw new VoltOverflowException(
+                        "Table row total length larger than allowed max " + VoltTableRow.MAX_TUPLE_LENGTH_STR);
+            }
+            m_buffer.putInt(m_rowPos, rowsize);
+            m_buffer.limit(m_buffer.position());
+            m_rowCount++;
+            m_buffer.putInt(m_rowStart, m_rowCount);
+            m_rowPos = -1;
+            m_col = 0;
+            assert(verifyTableInvariants());
+        }
+
+        /**
+         * Drop the partly written row, if there is one.
+         */
+        public void abortRow() {
+            if (m_rowPos != -1) {
+                m_buffer.position(m_rowPos);
+                m_buffer.limit(m_rowPos);
+                m_rowPos = -1;
+            }
+            m_col = 0;
+        }
+    }
+
     /**
      * Tables containing a single row and a single integer column can be read using this convenience
      * method.
@@ -1965,6 +2344,37 @@ public final class VoltTable extends VoltTableRow implements JSONString {
         }
     }
 
+    /**
+     * Copy a set of tables into one heap buffer, each preceded by its length
+     * as {@link #flattenToBuffer(ByteBuffer)} would write it, and repoint
+     * every table at its own slice of that buffer. Used to move result tables
+     * out of an EE cache buffer with a single allocation.
+     *
+     * @return the packed buffer, positioned at 0 with the limit at the end of
+     * the last table
+     */
+    static ByteBuffer packToHeapBuffer(VoltTable[] tables) {
+        int size = 0;
+        for (VoltTable table : tables) {
+            size += table.getSerializedSize();
+        }
+        ByteBuffer packed = ByteBuffer.allocate(size);
+        for (VoltTable table : tables) {
+            ByteBuffer dup = table.m_buffer.duplicate();
+            final int len = dup.limit();
+            dup.position(0);
+            packed.putInt(len);
+            final int start = packed.position();
+            packed.put(dup);
+            ByteBuffer slice = ByteBuffer.wrap(packed.array(), start, len).slice();
+            // same state convertToHeapBuffer() leaves the buffer in
+            slice.position(len);
+            table.m_buffer = slice;
+        }
+        packed.flip();
+        return packed;
+    }
+
     void initFromBuffer(ByteBuffer buf) {
         // Note: some of the snapshot and save/restore code makes assumptions
         // about the binary layout of tables.
@@ -625,6 +625,219 @@ public abstract class VoltTableRow {
         return getVarbinary(colIndex);
     }
 
+    /**
+     * Retrieve the <tt>string</tt> value stored in the column specified by index
+     * as a read-only view of its UTF-8 bytes in the table, without copying them.
+     * The view is only valid as long as the table is not changed.
+     * Looking at the return value is not a reliable way to check if the value
+     * is <tt>null</tt>. Use {@link #wasNull()} instead.
+     * @param columnIndex Index of the column
+     * @return <tt>string</tt> value stored in the specified column as a <tt>ByteBuffer</tt>
+     * @see #wasNull()
+     */
+    public final ByteBuffer getStringAsByteBuffer(int columnIndex) {
+        validateColumnType(columnIndex, VoltType.STRING);
+        return viewVariableLength(getOffset(columnIndex));
+    }
+
+    /**
+     * Retrieve the varbinary value stored in the column specified by index
+     * as a read-only view of the bytes in the table, without copying them.
+     * The view is only valid as long as the table is not changed.
+     * Looking at the return value is not a reliable way to check if the value
+     * is <tt>null</tt>. Use {@link #wasNull()} instead.
+     * @param columnIndex Index of the column
+     * @return Varbinary value stored in the specified column as a <tt>ByteBuffer</tt>
+     * @see #wasNull()
+     */
+    public final ByteBuffer getVarbinaryAsByteBuffer(int columnIndex) {
+        validateColumnType(columnIndex, VoltType.VARBINARY);
+        return viewVariableLength(getOffset(columnIndex));
+    }
+
+    /**
+     * Point <tt>view</tt> at the <tt>string</tt> value stored in the column
+     * specified by index. Reusing one {@link StringView} across rows reads
+     * strings without allocating. The view is only valid until it is pointed at
+     * another value or the table is changed.
+     * Looking at the return value is not a reliable way to check if the value
+     * is <tt>null</tt>. Use {@link #wasNull()} instead.
+     * @param columnIndex Index of the column
+     * @param view The view to reuse
+     * @return <tt>view</tt>, or null if the value is null
+     * @see #wasNull()
+     */
+    public final CharSequence getStringView(int columnIndex, StringView view) {
+        validateColumnType(columnIndex, VoltType.STRING);
+        final int position = getOffset(columnIndex);
+        final int len = checkVariableLength(position);
+        if (len == VoltTable.NULL_STRING_INDICATOR) {
+            m_wasNull = true;
+            return null;
+        }
+        m_wasNull = false;
+        view.set(m_buffer, position + STRING_LEN_SIZE, len);
+        return view;
+    }
+
+    // Returns the length of the string or varbinary at position, checked against the buffer
+    private int checkVariableLength(int position) {
+        if (STRING_LEN_SIZE > m_buffer.limit() - position) {
+            throw new RuntimeException(String.format(
+                    "VoltTableRow: Can't read value size as %d byte integer " +
+                    "from buffer with %d bytes remaining.",
+                    STRING_LEN_SIZE, m_buffer.limit() - position));
+        }
+        final int len = m_buffer.getInt(position);
+        if (len == VoltTable.NULL_STRING_INDICATOR) {
+            return len;
+        }
+        if (len < 0) {
+            throw new RuntimeException("Invalid object length.");
+        }
+        if (position + STRING_LEN_SIZE + len > m_buffer.limit()) {
+            throw new RuntimeException(String.format(
+                    "VoltTableRow: Can't read %d byte value " +
+                    "from buffer with %d bytes remaining.",
+                    len, m_buffer.limit() - position - STRING_LEN_SIZE));
+        }
+        return len;
+    }
+
+    private ByteBuffer viewVariableLength(int position) {
+        final int len = checkVariableLength(position);
+        if (len == VoltTable.NULL_STRING_INDICATOR) {
+            m_wasNull = true;
+            return null;
+        }
+        m_wasNull = false;
+        final ByteBuffer view = m_buffer.asReadOnlyBuffer();
+        view.limit(position + STRING_LEN_SIZE + len);
+        view.position(position + STRING_LEN_SIZE);
+        return view.slice();
+    }
+
+    /**
+     * <p>A reusable {@link CharSequence} over a UTF-8 string stored in a
+     * {@link VoltTable}, filled in by {@link VoltTableRow#getStringView(int, StringView)}.
+     * ASCII strings are read from the table in place, other strings are
+     * decoded into a char array that the view keeps for the next string.</p>
+     *
+     * <p>{@link #toString()} creates a {@link String}, which is what the view
+     * is there to avoid, use {@link #contentEquals(CharSequence)} to compare.</p>
+     */
+    public static final class StringView implements CharSequence {
+        private ByteBuffer m_buffer;
+        private int m_offset;
+        private int m_byteLength;
+        private boolean m_ascii;
+        private char[] m_chars = new char[0];
+        private int m_charLength;
+
+        void set(ByteBuffer buffer, int offset, int byteLength) {
+            m_buffer = buffer;
+            m_offset = offset;
+            m_byteLength = byteLength;
+            m_ascii = true;
+            final int end = offset + byteLength;
+            for (int i = offset; i < end; i++) {
+                if (buffer.get(i) < 0) {
+                    m_ascii = false;
+                    decode(i);
+                    return;
+                }
+            }
+        }
+
+        // Decodes the string into m_chars, bytes before firstNonAscii are ASCII
+        private void decode(int firstNonAscii) {
+            // never more chars than bytes
+            if (m_chars.length < m_byteLength) {
+                m_chars = new char[m_byteLength];
+            }
+            int n = 0;
+            for (int i = m_offset; i < firstNonAscii; i++) {
+                m_chars[n++] = (char) m_buffer.get(i);
+            }
+            final int end = m_offset + m_byteLength;
+            int i = firstNonAscii;
+            while (i < end) {
+                final int b = m_buffer.get(i) & 0xff;
+                if (b < 0x80) {
+                    m_chars[n++] = (char) b;
+                    i++;
+                }
+                else if ((b >> 5) == 0x6 && i + 1 < end) {
+                    m_chars[n++] = (char) (((b & 0x1f) << 6) | (m_buffer.get(i + 1) & 0x3f));
+                    i += 2;
+                }
+                else if ((b >> 4) == 0xe && i + 2 < end) {
+                    m_chars[n++] = (char) (((b & 0x0f) << 12) | ((m_buffer.get(i + 1) & 0x3f) << 6) |
+                            (m_buffer.get(i + 2) & 0x3f));
+                    i += 3;
+                }
+                else if ((b >> 3) == 0x1e && i + 3 < end) {
+                    final int cp = ((b & 0x07) << 18) | ((m_buffer.get(i + 1) & 0x3f) << 12) |
+                            ((m_buffer.get(i + 2) & 0x3f) << 6) | (m_buffer.get(i + 3) & 0x3f);
+                    m_chars[n++] = Character.highSurrogate(cp);
+                    m_chars[n++] = Character.lowSurrogate(cp);
+                    i += 4;
+                }
+                else {
+                    m_chars[n++] = '\uFFFD';
+                    i++;
+                }
+            }
+            m_charLength = n;
+        }
+
+        @Override
+        public int length() {
+            return m_ascii ? m_byteLength : m_charLength;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (index < 0 || index >= length()) {
+                throw new IndexOutOfBoundsException("Index " + index + " is outside of the string");
+            }
+            return m_ascii ? (char) m_buffer.get(m_offset + index) : m_chars[index];
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return toString().substring(start, end);
+        }
+
+        /**
+         * @return true if the string has the same characters as <tt>other</tt>
+         */
+        public boolean contentEquals(CharSequence other) {
+            final int length = length();
+            if (other.length() != length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (charAt(i) != other.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            if (m_ascii) {
+                final char[] chars = new char[m_byteLength];
+                for (int i = 0; i < m_byteLength; i++) {
+                    chars[i] = (char) m_buffer.get(m_offset + i);
+                }
+                return new String(chars);
+            }
+            return new String(m_chars, 0, m_charLength);
+        }
+    }
+
     /**
      * Retrieve the GeographyPointValue value stored in the column specified by index.
      * Looking at the return value is not a reliable way to check if the value is
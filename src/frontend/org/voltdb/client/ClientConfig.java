@@ -66,6 +66,8 @@ public class ClientConfig {
     long m_initialConnectionRetryIntervalMS = DEFAULT_INITIAL_CONNECTION_RETRY_INTERVAL_MS;
     long m_maxConnectionRetryIntervalMS = DEFAULT_MAX_CONNECTION_RETRY_INTERVAL_MS;
     boolean m_sendReadsToReplicasBytDefaultIfCAEnabled = false;
+    boolean m_sessionConsistency = false;
+    int m_requestPriority = ProcedureInvocationExtensions.DEFAULT_PRIORITY;
     SslConfig m_sslConfig;
     boolean m_topologyChangeAware = false;
     boolean m_enableSSL = false;
@@ -381,6 +383,47 @@ public class ClientConfig {
         m_sendReadsToReplicasBytDefaultIfCAEnabled = on;
     }
 
+    /**
+     * <p>Enable session consistency. Every response to a single partition procedure
+     * tells the client how far its partition had progressed, and the client passes the
+     * highest point it has seen on to its later calls. Read-only single partition
+     * procedures are then load balanced across partition replicas, preferring ones known
+     * to have caught up. A replica that hasn't caught up holds the read until it has, so a
+     * client always reads its own writes and never goes back in time on a partition.</p>
+     *
+     * <p>The guarantee covers calls made through this client instance only.</p>
+     *
+     * <p>Defaults to FALSE. Has no effect if Client Affinity is disabled.</p>
+     *
+     * @param on Enable or disable session consistent reads from replicas.
+     */
+    public void setSessionConsistency(boolean on) {
+        m_sessionConsistency = on;
+    }
+
+    /**
+     * <p>Set the priority of every procedure call made through this client, from
+     * {@link ProcedureInvocationExtensions#HIGHEST_PRIORITY} (0) to
+     * {@link ProcedureInvocationExtensions#LOWEST_PRIORITY} (3). When a partition
+     * has a backlog, the server starts its queued single partition calls most urgent
+     * first, so a bulk loader given a low priority doesn't hold up latency critical
+     * calls. Calls of the same priority keep their order, and a call that has waited
+     * too long runs next whatever its priority.</p>
+     *
+     * <p>Defaults to {@link ProcedureInvocationExtensions#DEFAULT_PRIORITY} (1).</p>
+     *
+     * @param priority Priority of the calls of this client, lower is more urgent.
+     */
+    public void setRequestPriority(int priority) {
+        if (priority < ProcedureInvocationExtensions.HIGHEST_PRIORITY ||
+                priority > ProcedureInvocationExtensions.LOWEST_PRIORITY) {
+            throw new IllegalArgumentException("Request priority must be between " +
+                    ProcedureInvocationExtensions.HIGHEST_PRIORITY + " and " +
+                    ProcedureInvocationExtensions.LOWEST_PRIORITY + ", was " + priority);
+        }
+        m_requestPriority = priority;
+    }
+
     /**
      * <p>Attempts to reconnect to a node with retry after connection loss. See the {@link ReconnectStatusListener}.</p>
      *
@@ -145,6 +145,8 @@ public final class ClientImpl implements Client {
         }
         m_username = username;
         m_distributer.setTopologyChangeAware(config.m_topologyChangeAware);
+        m_distributer.setSessionConsistency(config.m_sessionConsistency);
+        m_distributer.setRequestPriority(config.m_requestPriority);
         if (config.m_topologyChangeAware) {
             m_ex = Executors.newSingleThreadScheduledExecutor(CoreUtils.getThreadFactory("Topoaware thread"));
         }
@@ -422,6 +424,33 @@ public final class ClientImpl implements Client {
         return internalAsyncCallProcedure(callback, clientTimeoutUnit.toNanos(clientTimeout), invocation);
     }
 
+    /**
+     * Asynchronously invoke a procedure call on the connection to one host,
+     * for calls that depend on state the host keeps for the connection.
+     * @param callback TransactionCallback that will be invoked with procedure results.
+     * @param hostId id of the host to send the call to
+     * @param procName class name (not qualified by package) of the procedure to execute.
+     * @param parameters vararg list of procedure's parameter values.
+     * @return True if the procedure was queued and false otherwise
+     * @throws NoConnectionsException if the client isn't connected to the host
+     */
+    boolean callProcedureOnHost(
+            ProcedureCallback callback,
+            int hostId,
+            String procName,
+            Object... parameters)
+                    throws IOException, NoConnectionsException
+    {
+        final ProcedureInvocation invocation = new ProcedureInvocation(m_handle.getAndIncrement(), procName, parameters);
+        if (m_isShutdown) {
+            return false;
+        }
+        if (callback == null) {
+            callback = NULL_CALLBACK;
+        }
+        return internalAsyncCallProcedure(callback, Distributer.USE_DEFAULT_CLIENT_TIMEOUT, invocation, hostId);
+    }
+
     @Deprecated
     @Override
     public int calculateInvocationSerializedSize(
@@ -487,13 +516,22 @@ public final class ClientImpl implements Client {
             long clientTimeoutNanos,
             ProcedureInvocation invocation)
             throws IOException, NoConnectionsException {
+        return internalAsyncCallProcedure(callback, clientTimeoutNanos, invocation, Distributer.ANY_HOST);
+    }
+
+    private final boolean internalAsyncCallProcedure(
+            ProcedureCallback callback,
+            long clientTimeoutNanos,
+            ProcedureInvocation invocation,
+            int hostId)
+            throws IOException, NoConnectionsException {
         assert( ! m_isShutdown);
         assert(callback != null);
 
         final long nowNanos = System.nanoTime();
         //Blessed threads (the ones that invoke callbacks) are not subject to backpressure
         boolean isBlessed = m_blessedThreadIds.contains(Thread.currentThread().getId());
-        while (!m_distributer.queue(invocation, callback, isBlessed, nowNanos, clientTimeoutNanos)) {
+        while (!m_distributer.queue(invocation, callback, isBlessed, nowNanos, clientTimeoutNanos, hostId)) {
             if ( ! m_blockingQueue) {
                 return false;
             }
@@ -1003,6 +1041,11 @@ public final class ClientImpl implements Client {
         return m_distributer.isHashinatorInitialized();
     }
 
+    //Hidden method for routing a procedure call, -1 if unknown or multi-partition
+    public int getPartitionForProcedure(String procName, Object... parameters) {
+        return m_distributer.getPartitionForProcedure(procName, parameters);
+    }
+
     //Hidden method for getPartitionForParameter
     public long getPartitionForParameter(byte typeValue, Object value) {
         return m_distributer.getPartitionForParameter(typeValue, value);
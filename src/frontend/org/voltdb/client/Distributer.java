@@ -93,6 +93,8 @@ class Distributer {
     public static final Long ASYNC_TOPO_HANDLE = PING_HANDLE - 1;
     public static final Long ASYNC_PROC_HANDLE = PING_HANDLE - 2;
     static final long USE_DEFAULT_CLIENT_TIMEOUT = 0;
+    // queue() may pick the connection to any host
+    static final int ANY_HOST = -1;
     static long PARTITION_KEYS_INFO_REFRESH_FREQUENCY = Long.getLong("PARTITION_KEYS_INFO_REFRESH_FREQUENCY", 1000);
 
     // handles used internally are negative and decrement for each call
@@ -157,6 +159,13 @@ class Distributer {
     private AtomicBoolean m_createConnectionUponTopoChangeInProgress = new AtomicBoolean(false);
     private boolean m_topologyChangeAware;
 
+    // Session consistency: every single partition read carries the highest SpHandle this
+    // client has seen on its partition, so no replica answers with older data.
+    private boolean m_sessionConsistency = false;
+    // Priority given to every invocation of this client
+    private int m_requestPriority = ProcedureInvocationExtensions.DEFAULT_PRIORITY;
+    private final SessionTracker m_session = new SessionTracker();
+
     //private final Timer m_timer;
     private final ScheduledExecutorService m_ex =
         Executors.newSingleThreadScheduledExecutor(
@@ -406,17 +415,22 @@ class Distributer {
     }
 
     class NodeConnection extends VoltProtocolHandler implements org.voltcore.network.QueueMonitor {
+        private final int m_hostId;
         private final AtomicInteger m_callbacksToInvoke = new AtomicInteger(0);
         private final ConcurrentMap<Long, CallbackBookeeping> m_callbacks = new ConcurrentHashMap<>();
         private final NonBlockingHashMap<String, ClientStats> m_stats = new NonBlockingHashMap<>();
         private Connection m_connection;
         private volatile boolean m_isConnected = true;
+        // The highest SpHandle per partition answered through this connection in session consistency mode
+        private final ConcurrentMap<Integer, AtomicLong> m_observedSpHandles = new ConcurrentHashMap<>();
 
         volatile long m_lastResponseTimeNanos = System.nanoTime();
         boolean m_outstandingPing = false;
         ClientStatusListenerExt.DisconnectCause m_closeCause = DisconnectCause.CONNECTION_CLOSED;
 
-        public NodeConnection(long ids[]) {}
+        public NodeConnection(long ids[]) {
+            m_hostId = (int)ids[0];
+        }
 
         /*
          * NodeConnection uses ignoreBackpressure to get rate limiter to not
@@ -1138,11 +1152,30 @@ class Distributer {
             ProcedureCallback cb,
             final boolean ignoreBackpressure, final long nowNanos, final long timeoutNanos)
             throws NoConnectionsException {
+        return queue(invocation, cb, ignoreBackpressure, nowNanos, timeoutNanos, ANY_HOST);
+    }
+
+    /**
+     * Queue invocation on the connection to a host, or on any connection if hostId is ANY_HOST.
+     * @param hostId id of the host to send the invocation to, or ANY_HOST
+     * @throws NoConnectionsException if there is no connection to the host
+     * @see #queue(ProcedureInvocation, ProcedureCallback, boolean, long, long)
+     */
+    boolean queue(
+            ProcedureInvocation invocation,
+            ProcedureCallback cb,
+            final boolean ignoreBackpressure, final long nowNanos, final long timeoutNanos,
+            final int hostId)
+            throws NoConnectionsException {
         assert(invocation != null);
         assert(cb != null);
 
         NodeConnection cxn = null;
         boolean backpressure = true;
+        int sessionPartition = -1;
+        boolean sessionRead = false;
+        long sessionWrites = 0;
+        invocation.setPriority(m_requestPriority);
 
         /*
          * Synchronization is necessary to ensure that m_connections is not modified
@@ -1155,12 +1188,26 @@ class Distributer {
                 throw new NoConnectionsException("No connections.");
             }
 
+            if (hostId != ANY_HOST) {
+                for (NodeConnection nc : m_connections) {
+                    if (nc.m_hostId == hostId && nc.m_isConnected) {
+                        cxn = nc;
+                        break;
+                    }
+                }
+                if (cxn == null) {
+                    throw new NoConnectionsException("No connection to host " + hostId + ".");
+                }
+                if (!cxn.hadBackPressure() || ignoreBackpressure) {
+                    backpressure = false;
+                }
+            }
             /*
              * Check if the master for the partition is known. No back pressure check to ensure correct
              * routing, but backpressure will be managed anyways. This is where we guess partition based on client
              * affinity and known topology (hashinator initialized).
              */
-            if (m_useClientAffinity && (m_hashinator != null)) {
+            else if (m_useClientAffinity && (m_hashinator != null)) {
                 final ImmutableSortedMap<String, Procedure> procedures = m_procedureInfo.get();
                 Procedure procedureInfo = null;
                 if (procedures != null) {
@@ -1178,11 +1225,31 @@ class Distributer {
                                 procedureInfo.partitionParameterType,
                                 invocation.getPartitionParamValue(procedureInfo.partitionParameter));
                     }
+                    if (!procedureInfo.multiPart && m_sessionConsistency) {
+                        sessionPartition = hashedPartition;
+                        if (procedureInfo.readOnly) {
+                            sessionRead = true;
+                            invocation.setReadAfterSpHandle(m_session.getSpHandle(hashedPartition));
+                            sessionWrites = m_session.getUncoveredWrites(hashedPartition);
+                        }
+                    }
+                    /*
+                     * Session consistent reads go to a replica that has caught up with this client,
+                     * or to the leader after a write
+                     */
+                    if (!procedureInfo.multiPart && procedureInfo.readOnly && m_sessionConsistency) {
+                        cxn = sessionWrites == 0 ?
+                                selectSessionReplica(hashedPartition, invocation.getReadAfterSpHandle()) :
+                                m_partitionMasters.get(hashedPartition);
+                        if (cxn != null && (!cxn.hadBackPressure() || ignoreBackpressure)) {
+                            backpressure = false;
+                        }
+                    }
                     /*
                      * If the procedure is read only and single part and the user wants it, load balance across replicas
                      * This is probably slower for SAFE consistency.
                      */
-                    if (!procedureInfo.multiPart && procedureInfo.readOnly && m_sendReadsToReplicasBytDefaultIfCAEnabled) {
+                    else if (!procedureInfo.multiPart && procedureInfo.readOnly && m_sendReadsToReplicasBytDefaultIfCAEnabled) {
                         NodeConnection partitionReplicas[] = m_partitionReplicas.get(hashedPartition);
                         if (partitionReplicas != null && partitionReplicas.length > 0) {
                             cxn = partitionReplicas[ThreadLocalRandom.current().nextInt(partitionReplicas.length)];
@@ -1240,6 +1307,7 @@ class Distributer {
                 }
             }
             if (cxn == null) {
+                assert(hostId == ANY_HOST);
                 for (int i=0; i < totalConnections; ++i) {
                     cxn = m_connections.get(Math.abs(++m_nextConnection % totalConnections));
                     if (!cxn.hadBackPressure() || ignoreBackpressure) {
@@ -1269,6 +1337,9 @@ class Distributer {
             } catch (Exception e) {
                 Throwables.propagate(e);
             }
+            if (sessionPartition != -1) {
+                cb = new SessionCallback(cb, sessionPartition, sessionRead, sessionWrites, cxn);
+            }
             cxn.createWork(nowNanos, invocation.getHandle(), invocation.getProcName(), buf, cb, ignoreBackpressure, timeoutNanos);
         }
         if (m_topologyChangeAware) {
@@ -1541,6 +1612,27 @@ class Distributer {
         return m_hashinator.getHashedPartitionForParameter(typeValue, value);
     }
 
+    /**
+     * The partition a call to a single partition procedure hashes to.
+     *
+     * @return the partition id, or -1 if the hashinator or the procedure isn't
+     * known yet, or the procedure is multi-partition
+     */
+    public int getPartitionForProcedure(String procName, Object[] parameters) {
+        final HashinatorLite hashinator = m_hashinator;
+        final ImmutableSortedMap<String, Procedure> procedures = m_procedureInfo.get();
+        if (hashinator == null || procedures == null) {
+            return -1;
+        }
+        final Procedure procedureInfo = procedures.get(procName);
+        if (procedureInfo == null || procedureInfo.multiPart ||
+                procedureInfo.partitionParameter >= parameters.length) {
+            return -1;
+        }
+        return hashinator.getHashedPartitionForParameter(
+                procedureInfo.partitionParameterType, parameters[procedureInfo.partitionParameter]);
+    }
+
     private ByteBuffer serializeSPI(ProcedureInvocation pi) throws IOException {
         ByteBuffer buf = ByteBuffer.allocate(pi.getSerializedSize() + 4);
         buf.putInt(buf.capacity() - 4);
@@ -1599,6 +1691,79 @@ class Distributer {
         }
     }
 
+    void setSessionConsistency(boolean sessionConsistency) {
+        m_sessionConsistency = sessionConsistency;
+    }
+
+    void setRequestPriority(int priority) {
+        m_requestPriority = priority;
+    }
+
+    /**
+     * Pick a replica for a session consistent read. Replicas other than the leader are
+     * preferred to take load off it, and among those the ones that are known to have
+     * caught up with <code>spHandle</code> through an earlier response. If none is known
+     * to be caught up, any replica will do, it parks the read until it is.
+     */
+    private NodeConnection selectSessionReplica(int partition, long spHandle) {
+        NodeConnection partitionReplicas[] = m_partitionReplicas.get(partition);
+        NodeConnection leader = m_partitionMasters.get(partition);
+        if (partitionReplicas == null || partitionReplicas.length == 0) {
+            return leader;
+        }
+        NodeConnection fallback = null;
+        final int start = ThreadLocalRandom.current().nextInt(partitionReplicas.length);
+        for (int i = 0; i < partitionReplicas.length; i++) {
+            NodeConnection nc = partitionReplicas[(start + i) % partitionReplicas.length];
+            if (nc == leader || !nc.m_isConnected || nc.hadBackPressure()) {
+                continue;
+            }
+            AtomicLong observed = nc.m_observedSpHandles.get(partition);
+            if (observed != null && observed.get() >= spHandle) {
+                return nc;
+            }
+            if (fallback == null) {
+                fallback = nc;
+            }
+        }
+        return fallback != null ? fallback : leader;
+    }
+
+    /**
+     * Records the SpHandle a session consistent read response carries, or the completion
+     * of a write, before handing the response on.
+     */
+    private class SessionCallback implements ProcedureCallback {
+        private final ProcedureCallback m_callback;
+        private final int m_partition;
+        private final boolean m_isRead;
+        private final long m_uncoveredWrites;
+        private final NodeConnection m_cxn;
+
+        SessionCallback(ProcedureCallback callback, int partition, boolean isRead, long uncoveredWrites,
+                NodeConnection cxn) {
+            m_callback = callback;
+            m_partition = partition;
+            m_isRead = isRead;
+            m_uncoveredWrites = uncoveredWrites;
+            m_cxn = cxn;
+        }
+
+        @Override
+        public void clientCallback(ClientResponse response) throws Exception {
+            if (!m_isRead) {
+                // Even a failed write may have been applied
+                m_session.writeCompleted(m_partition);
+            } else {
+                final long spHandle = ((ClientResponseImpl) response).getSpHandle();
+                if (m_session.readCompleted(m_partition, spHandle, m_uncoveredWrites)) {
+                    SessionTracker.advance(m_cxn.m_observedSpHandles, m_partition, spHandle);
+                }
+            }
+            m_callback.clientCallback(response);
+        }
+    }
+
     void setTopologyChangeAware(boolean topoAware) {
         m_topologyChangeAware = topoAware;
     }
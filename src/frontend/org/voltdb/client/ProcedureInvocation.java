@@ -38,6 +38,10 @@ public class ProcedureInvocation {
     private final int m_batchTimeout;
     private final ParameterSet m_parameters;
     private final boolean m_allPartition;
+    // set by the Distributer when the client runs in session consistency mode
+    private long m_readAfterSpHandle = ProcedureInvocationExtensions.NO_READ_AFTER_SPHANDLE;
+    // set by the Distributer from the priority the client was configured with
+    private int m_priority = ProcedureInvocationExtensions.DEFAULT_PRIORITY;
 
     // pre-cache this for serialization
     // this duplicates some other code, but it's nice to keep the client code
@@ -96,6 +100,22 @@ public class ProcedureInvocation {
         return m_allPartition;
     }
 
+    long getReadAfterSpHandle() {
+        return m_readAfterSpHandle;
+    }
+
+    void setReadAfterSpHandle(long spHandle) {
+        m_readAfterSpHandle = spHandle;
+    }
+
+    int getPriority() {
+        return m_priority;
+    }
+
+    void setPriority(int priority) {
+        m_priority = priority;
+    }
+
     public int getSerializedSize() {
         // convert proc name to bytes if needed
         if (m_procNameBytes == null) {
@@ -107,13 +127,19 @@ public class ProcedureInvocation {
         int batchExtensionSize = m_batchTimeout != BatchTimeoutOverrideType.NO_TIMEOUT ? 6 : 0;
         // 2 is one byte for ext type, one for size
         int allPartitionExtensionSize = m_allPartition ? 2 : 0;
+        // 10 is one byte for ext type, one for size, and 8 for long value
+        int readAfterExtensionSize =
+                m_readAfterSpHandle != ProcedureInvocationExtensions.NO_READ_AFTER_SPHANDLE ? 10 : 0;
+        // 3 is one byte for ext type, one for size, and 1 for the priority
+        int priorityExtensionSize = m_priority != ProcedureInvocationExtensions.DEFAULT_PRIORITY ? 3 : 0;
 
         int size =
             1 + // type
             4 + m_procNameBytes.length + // procname
             8 + // client handle
             1 + // extension count
-            batchExtensionSize + allPartitionExtensionSize + // extensions
+            batchExtensionSize + allPartitionExtensionSize + readAfterExtensionSize +
+            priorityExtensionSize + // extensions
             m_parameters.getSerializedSize(); // parameters
         assert(size > 0); // sanity
         return size;
@@ -131,10 +157,12 @@ public class ProcedureInvocation {
 
         buf.putLong(m_clientHandle);
 
-        // there are two possible extensions, count which apply
+        // there are four possible extensions, count which apply
         byte extensionCount = 0;
         if (m_batchTimeout != BatchTimeoutOverrideType.NO_TIMEOUT) ++extensionCount;
         if (m_allPartition) ++extensionCount;
+        if (m_readAfterSpHandle != ProcedureInvocationExtensions.NO_READ_AFTER_SPHANDLE) ++extensionCount;
+        if (m_priority != ProcedureInvocationExtensions.DEFAULT_PRIORITY) ++extensionCount;
         // write the count as one byte
         buf.put(extensionCount);
         // write any extensions that apply
@@ -144,6 +172,12 @@ public class ProcedureInvocation {
         if (m_allPartition) {
             ProcedureInvocationExtensions.writeAllPartitionWithTypeByte(buf);
         }
+        if (m_readAfterSpHandle != ProcedureInvocationExtensions.NO_READ_AFTER_SPHANDLE) {
+            ProcedureInvocationExtensions.writeReadAfterSpHandleWithTypeByte(buf, m_readAfterSpHandle);
+        }
+        if (m_priority != ProcedureInvocationExtensions.DEFAULT_PRIORITY) {
+            ProcedureInvocationExtensions.writeRequestPriorityWithTypeByte(buf, m_priority);
+        }
 
         m_parameters.flattenToBuffer(buf);
 
@@ -47,8 +47,21 @@ import java.nio.ByteBuffer;
 public abstract class ProcedureInvocationExtensions {
     public static final byte BATCH_TIMEOUT = 1;  // batch timeout
     public static final byte ALL_PARTITION = 2; // whether proc is part of run-everywhere
+    public static final byte READ_AFTER_SPHANDLE = 3; // session consistency point for replica reads
+    public static final byte REQUEST_PRIORITY = 4; // scheduling priority of the invocation
+
+    // value of the read-after-SpHandle extension when the invocation doesn't carry it
+    public static final long NO_READ_AFTER_SPHANDLE = -1;
+
+    // request priorities, a lower value is more urgent
+    public static final int HIGHEST_PRIORITY = 0;
+    public static final int LOWEST_PRIORITY = 3;
+    // priority of invocations that don't carry the extension
+    public static final int DEFAULT_PRIORITY = 1;
+    public static final int PRIORITY_LANES = LOWEST_PRIORITY + 1;
 
     private static final int INTEGER_SIZE = 4;
+    private static final int LONG_SIZE = 8;
 
     public static byte readNextType(ByteBuffer buf) {
         return buf.get();
@@ -87,6 +100,40 @@ public abstract class ProcedureInvocationExtensions {
         return true;
     }
 
+    public static void writeReadAfterSpHandleWithTypeByte(ByteBuffer buf, long spHandle) {
+        buf.put(READ_AFTER_SPHANDLE);
+        writeLength(buf, LONG_SIZE);
+        buf.putLong(spHandle);
+    }
+
+    public static long readReadAfterSpHandle(ByteBuffer buf) {
+        int len = readLength(buf);
+        if (len != LONG_SIZE) {
+            throw new IllegalStateException(
+                    "Read-after-SpHandle extension serialization length expected to be 8");
+        }
+        return buf.getLong();
+    }
+
+    public static void writeRequestPriorityWithTypeByte(ByteBuffer buf, int priority) {
+        buf.put(REQUEST_PRIORITY);
+        writeLength(buf, 1);
+        buf.put((byte) priority);
+    }
+
+    public static int readRequestPriority(ByteBuffer buf) {
+        int len = readLength(buf);
+        if (len != 1) {
+            throw new IllegalStateException(
+                    "Request priority extension serialization length expected to be 1");
+        }
+        int priority = buf.get();
+        if (priority < HIGHEST_PRIORITY || priority > LOWEST_PRIORITY) {
+            throw new IllegalStateException("Invalid request priority deserialized: " + priority);
+        }
+        return priority;
+    }
+
     public static void skipUnknownExtension(ByteBuffer buf) {
         int len = readLength(buf);
         buf.position(buf.position() + len); // skip ahead
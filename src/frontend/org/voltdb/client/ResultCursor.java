@@ -0,0 +1,204 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2018 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.client;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+
+import org.voltdb.VoltTable;
+
+/**
+ * <p>Reads the result of a SELECT statement a chunk of rows at a time, so the
+ * client never holds the whole result. The server keeps the rows that haven't
+ * been read yet in its large query swap directory. The result is still limited
+ * to the size of a query result on the server.</p>
+ *
+ * <p>While the application works on one chunk the cursor fetches the next one,
+ * so at most two chunks are held on the client. Rows can only be read forward
+ * and each chunk is returned once. A cursor must be closed if it is not read
+ * to the end, or the server holds its rows until the cursor times out.</p>
+ *
+ * <p>The server keeps the cursor for the connection that opened it, so the
+ * fetches go to the same host. If the client loses that connection the
+ * server closes the cursor.</p>
+ *
+ * <pre>
+ * ResultCursor cursor = ResultCursor.open(client, 10000, "SELECT * FROM events WHERE day = ?;", day);
+ * try {
+ *     VoltTable rows;
+ *     while ((rows = cursor.next()) != null) {
+ *         ...
+ *     }
+ * } finally {
+ *     cursor.close();
+ * }
+ * </pre>
+ *
+ * <p>A cursor is not thread safe.</p>
+ */
+public class ResultCursor implements AutoCloseable {
+    // the server puts the id of the host holding a cursor in the top bits of its id,
+    // see org.voltdb.largequery.ResultCursorManager
+    private static final int HOST_ID_SHIFT = 48;
+
+    private final Client m_client;
+    private final int m_fetchRows;
+    private final long m_cursorId;
+    // rows on the server that haven't been fetched yet
+    private long m_serverRows;
+    // the rows returned with the open call, until next() hands them out
+    private VoltTable m_first;
+    // the fetch of the next chunk, if one is in flight
+    private SyncCallback m_pending;
+    private boolean m_closed = false;
+
+    private ResultCursor(Client client, int fetchRows, ClientResponse response) {
+        m_client = client;
+        m_fetchRows = fetchRows;
+        m_first = response.getResults()[0];
+        final VoltTable status = response.getResults()[1];
+        status.advanceRow();
+        m_cursorId = status.getLong("CURSOR_ID");
+        m_serverRows = status.getLong("ROWS_REMAINING");
+    }
+
+    /**
+     * Run a SELECT statement and open a cursor over its result.
+     *
+     * @param client      client to run the statement and fetch the rows with
+     * @param fetchRows   the maximum number of rows in a chunk
+     * @param sql         a single SELECT statement
+     * @param params      the parameters of the statement
+     * @return the cursor, positioned before the first chunk
+     * @throws IOException if the call can't be queued
+     * @throws ProcCallException if the statement fails
+     */
+    public static ResultCursor open(Client client, int fetchRows, String sql, Object... params)
+            throws IOException, ProcCallException {
+        if (fetchRows <= 0) {
+            throw new IllegalArgumentException("The number of rows per fetch must be positive: " + fetchRows);
+        }
+        final Object[] args = new Object[params.length + 2];
+        args[0] = fetchRows;
+        args[1] = sql;
+        System.arraycopy(params, 0, args, 2, params.length);
+        return new ResultCursor(client, fetchRows, client.callProcedure("@CursorOpen", args));
+    }
+
+    /**
+     * Get the next chunk of rows.
+     *
+     * @return the rows, or null after the last chunk
+     * @throws IOException if the fetch can't be queued or is interrupted
+     * @throws ProcCallException if the fetch fails, for instance because
+     * the cursor timed out on the server
+     */
+    public VoltTable next() throws IOException, ProcCallException {
+        if (m_closed) {
+            return null;
+        }
+        VoltTable rows = m_first;
+        m_first = null;
+        if (rows == null) {
+            if (m_pending == null) {
+                return null;
+            }
+            final ClientResponse response = await();
+            if (response.getStatus() != ClientResponse.SUCCESS) {
+                m_serverRows = 0;
+                throw new ProcCallException(response, response.getStatusString(), null);
+            }
+            rows = response.getResults()[0];
+            final VoltTable status = response.getResults()[1];
+            status.advanceRow();
+            m_serverRows = status.getLong("ROWS_REMAINING");
+        }
+        if (m_serverRows > 0) {
+            m_pending = new SyncCallback();
+            if (!call(m_pending, "@CursorFetch", m_cursorId, m_fetchRows)) {
+                m_pending = null;
+                throw new IOException("Unable to queue the fetch of result cursor " + m_cursorId);
+            }
+        }
+        return rows;
+    }
+
+    private ClientResponse await() throws IOException {
+        final SyncCallback pending = m_pending;
+        m_pending = null;
+        try {
+            pending.waitForResponse();
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException("Interrupted while fetching from result cursor " + m_cursorId);
+        }
+        return pending.getResponse();
+    }
+
+    /**
+     * @return the number of rows the server still holds for this cursor,
+     * not counting the chunk being fetched
+     */
+    public long getServerRowsRemaining() {
+        return m_serverRows;
+    }
+
+    /**
+     * Close the cursor, the server deletes the rows that haven't been read.
+     * Does nothing if the cursor was read to the end or is closed already.
+     */
+    @Override
+    public void close() throws IOException, ProcCallException {
+        if (m_closed) {
+            return;
+        }
+        m_closed = true;
+        m_first = null;
+        if (m_pending != null) {
+            final ClientResponse response = await();
+            if (response.getStatus() == ClientResponse.SUCCESS) {
+                final VoltTable status = response.getResults()[1];
+                status.advanceRow();
+                m_serverRows = status.getLong("ROWS_REMAINING");
+            }
+        }
+        if (m_serverRows > 0) {
+            m_serverRows = 0;
+            final SyncCallback cb = new SyncCallback();
+            if (!call(cb, "@CursorClose", m_cursorId)) {
+                throw new IOException("Unable to queue the close of result cursor " + m_cursorId);
+            }
+            try {
+                cb.waitForResponse();
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException("Interrupted while closing result cursor " + m_cursorId);
+            }
+            if (cb.getResponse().getStatus() != ClientResponse.SUCCESS) {
+                throw new ProcCallException(cb.getResponse(), cb.getResponse().getStatusString(), null);
+            }
+        }
+    }
+
+    // send a call to the host that holds the cursor
+    private boolean call(ProcedureCallback callback, String procName, Object... params) throws IOException {
+        if (m_client instanceof ClientImpl) {
+            final int hostId = (int) (m_cursorId >>> HOST_ID_SHIFT);
+            return ((ClientImpl) m_client).callProcedureOnHost(callback, hostId, procName, params);
+        }
+        return m_client.callProcedure(callback, procName, params);
+    }
+}
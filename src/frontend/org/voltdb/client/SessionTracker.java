@@ -0,0 +1,119 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2018 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.client;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.voltdb.ClientResponseImpl;
+
+/**
+ * The session state of a session consistent client, per partition. Only reads
+ * carry the session point, the SpHandle of the newest transaction the client
+ * has seen on the partition, and only their responses report how far the
+ * partition had got.
+ *
+ * A write doesn't tell the client its SpHandle, so after a write completes the
+ * next read of its partition goes to the leader, which has the write. The
+ * SpHandle that read reports covers the write, and reads can go to replicas
+ * again.
+ */
+class SessionTracker {
+    // SpHandles carry the partition id in their low 14 bits, see org.voltdb.iv2.TxnEgo
+    private static final long SPHANDLE_PARTITION_MASK = (1L << 14) - 1;
+
+    private final ConcurrentMap<Integer, AtomicLong> m_spHandles = new ConcurrentHashMap<>();
+    // Count of completed writes per partition, and how many of them a read at the leader has covered
+    private final ConcurrentMap<Integer, AtomicLong> m_writes = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Integer, AtomicLong> m_coveredWrites = new ConcurrentHashMap<>();
+
+    /**
+     * @return the session point a read of <code>partition</code> carries
+     */
+    long getSpHandle(int partition) {
+        AtomicLong spHandle = m_spHandles.get(partition);
+        // zero is older than any real SpHandle, it still asks for one back
+        return spHandle == null ? 0 : spHandle.get();
+    }
+
+    /**
+     * @return 0 if any caught up replica can serve the next read of <code>partition</code>,
+     * otherwise the read has to go to the leader and pass the value to {@link #readCompleted}
+     */
+    long getUncoveredWrites(int partition) {
+        AtomicLong writes = m_writes.get(partition);
+        if (writes == null) {
+            return 0;
+        }
+        final long count = writes.get();
+        AtomicLong covered = m_coveredWrites.get(partition);
+        return covered != null && covered.get() >= count ? 0 : count;
+    }
+
+    void writeCompleted(int partition) {
+        AtomicLong writes = m_writes.get(partition);
+        if (writes == null) {
+            AtomicLong created = new AtomicLong();
+            writes = m_writes.putIfAbsent(partition, created);
+            if (writes == null) {
+                writes = created;
+            }
+        }
+        writes.incrementAndGet();
+    }
+
+    /**
+     * Record the SpHandle a read response carries.
+     * @param uncoveredWrites what {@link #getUncoveredWrites} returned when the read was sent
+     * @return false if the response carries no SpHandle of the partition
+     */
+    boolean readCompleted(int partition, long spHandle, long uncoveredWrites) {
+        if (!isSpHandleOf(partition, spHandle)) {
+            return false;
+        }
+        advance(m_spHandles, partition, spHandle);
+        if (uncoveredWrites != 0) {
+            // Writes that completed after the read was sent stay uncovered
+            advance(m_coveredWrites, partition, uncoveredWrites);
+        }
+        return true;
+    }
+
+    // Ignore handles from another partition, the hashinator may have changed under the call
+    static boolean isSpHandleOf(int partition, long spHandle) {
+        return spHandle != ClientResponseImpl.NO_SPHANDLE && (spHandle & SPHANDLE_PARTITION_MASK) == partition;
+    }
+
+    static void advance(ConcurrentMap<Integer, AtomicLong> spHandles, int partition, long spHandle) {
+        AtomicLong current = spHandles.get(partition);
+        if (current == null) {
+            AtomicLong created = new AtomicLong(spHandle);
+            current = spHandles.putIfAbsent(partition, created);
+            if (current == null) {
+                return;
+            }
+        }
+        long seen;
+        while ((seen = current.get()) < spHandle) {
+            if (current.compareAndSet(seen, spHandle)) {
+                return;
+            }
+        }
+    }
+}
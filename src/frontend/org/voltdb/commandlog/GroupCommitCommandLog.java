@@ -0,0 +1,639 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2018 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.commandlog;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.zookeeper_voltpatches.AsyncCallback.StringCallback;
+import org.apache.zookeeper_voltpatches.CreateMode;
+import org.apache.zookeeper_voltpatches.KeeperException;
+import org.apache.zookeeper_voltpatches.ZooDefs.Ids;
+import org.apache.zookeeper_voltpatches.ZooKeeper;
+import org.voltcore.logging.Level;
+import org.voltcore.logging.VoltLogger;
+import org.voltcore.messaging.HostMessenger;
+import org.voltcore.utils.InstanceId;
+import org.voltcore.utils.Pair;
+import org.voltcore.utils.RateLimitedLogger;
+import org.voltdb.CommandLog;
+import org.voltdb.CommandLogStats;
+import org.voltdb.SnapshotCompletionInterest;
+import org.voltdb.SnapshotCompletionMonitor;
+import org.voltdb.VoltDB;
+import org.voltdb.VoltZK;
+import org.voltdb.iv2.Cartographer;
+import org.voltdb.iv2.TransactionTask;
+import org.voltdb.messaging.Iv2InitiateTaskMessage;
+
+import com.google_voltpatches.common.util.concurrent.Futures;
+import com.google_voltpatches.common.util.concurrent.ListenableFuture;
+import com.google_voltpatches.common.util.concurrent.SettableFuture;
+
+/**
+ * A command log that writes the initiations of all the sites of the host to
+ * preallocated {@link LogSegment}s with group commit: initiations are copied
+ * to a staging buffer as they are logged, and a writer thread writes and
+ * fsyncs everything staged once per window, the fsync interval or the maximum
+ * number of transactions, whichever ends first. One fsync makes the whole
+ * group durable.
+ *
+ * In synchronous mode the sites hold the transactions back until the writer
+ * hands the completion checks of the group to the durability listeners. In
+ * asynchronous mode the transactions run right away, and {@link #log} returns
+ * a future that stays incomplete while more than the maximum outstanding
+ * bytes wait to be written, which is how the sites see backpressure.
+ *
+ * Segments are recycled once a truncation snapshot has every transaction in
+ * them. When half of the segments are in use a truncation snapshot is
+ * requested.
+ *
+ * Used when there is no enterprise command log and GROUP_COMMIT_COMMAND_LOG
+ * is set.
+ */
+public class GroupCommitCommandLog implements CommandLog, SnapshotCompletionInterest {
+    private static final VoltLogger LOG = new VoltLogger("LOGGING");
+
+    public static final boolean ENABLED = Boolean.valueOf(System.getProperty("GROUP_COMMIT_COMMAND_LOG", "false"));
+    static final long SEGMENT_SIZE = Long.getLong("COMMAND_LOG_SEGMENT_MB", 64) * 1024 * 1024;
+    static final int MAX_OUTSTANDING_BYTES = Integer.getInteger("COMMAND_LOG_MAX_OUTSTANDING_BYTES", 64 * 1024 * 1024);
+    private static final int INITIAL_STAGING_SIZE = 1024 * 1024;
+
+    private static final ListenableFuture<Object> COMPLETED = Futures.immediateFuture(null);
+
+    private static final ThreadLocal<ByteBuffer> SCRATCH = new ThreadLocal<ByteBuffer>() {
+        @Override
+        protected ByteBuffer initialValue() {
+            return ByteBuffer.allocate(4096);
+        }
+    };
+
+    private final boolean m_synchronous;
+    private final long m_fsyncIntervalNanos;
+    private final int m_fsyncInterval;
+    private final int m_maxTxns;
+    private final File m_logDir;
+
+    // Everything below is guarded by m_lock
+    private final Object m_lock = new Object();
+    private final List<DurabilityListener> m_listeners = new ArrayList<>();
+    private ByteBuffer m_staging = ByteBuffer.allocateDirect(INITIAL_STAGING_SIZE);
+    private ByteBuffer m_spare = ByteBuffer.allocateDirect(INITIAL_STAGING_SIZE);
+    private int m_stagedTxns = 0;
+    private List<SettableFuture<Boolean>> m_stagedFaults = new ArrayList<>();
+    private long m_windowStartNanos = 0;
+    private int m_writingBytes = 0;
+    private int m_writingTxns = 0;
+    private final List<SettableFuture<Object>> m_backpressure = new ArrayList<>();
+    private long m_fsyncs = 0;
+    private long m_durableTxns = 0;
+    private boolean m_initialized = false;
+    private boolean m_shutdown = false;
+    private Thread m_writer;
+
+    // Segments, guarded by m_segments. The current segment is only used by the writer.
+    private final ArrayDeque<LogSegment> m_segments = new ArrayDeque<>();
+    private final ArrayDeque<LogSegment> m_freeSegments = new ArrayDeque<>();
+    private LogSegment m_current;
+    private long m_lastSegmentId = 0;
+    private int m_maxSegments = 2;
+    private InstanceId m_instanceId = new InstanceId(0, 0);
+    private long m_truncationTxnId = Long.MIN_VALUE;
+    private int m_partitionCount = 0;
+    private Map<Integer, Long> m_truncationTxnIds = new HashMap<>();
+    private boolean m_truncationPending = false;
+    private final RateLimitedLogger m_fullLogger = new RateLimitedLogger(TimeUnit.MINUTES.toMillis(1), LOG, Level.WARN);
+
+    public GroupCommitCommandLog(boolean synchronous, int fsyncInterval, int maxTxns, String logPath,
+            String snapshotPath) {
+        m_synchronous = synchronous;
+        m_fsyncInterval = fsyncInterval;
+        m_fsyncIntervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, fsyncInterval));
+        m_maxTxns = Math.max(1, maxTxns);
+        m_logDir = new File(logPath);
+    }
+
+    @Override
+    public void init(int logSize, long txnId, int partitionCount, String coreBinding,
+            Map<Integer, Long> perPartitionTxnId) {
+        initForRejoin(logSize, txnId, partitionCount, false, coreBinding, perPartitionTxnId);
+    }
+
+    @Override
+    public void initForRejoin(int logSize, long txnId, int partitionCount, boolean isRejoin,
+            String coreBinding, Map<Integer, Long> perPartitionTxnId) {
+        synchronized (m_lock) {
+            if (m_initialized) {
+                return;
+            }
+            try {
+                if (!m_logDir.exists() && !m_logDir.mkdirs()) {
+                    throw new IOException("Failed to create command log directory " + m_logDir.getAbsolutePath());
+                }
+                final HostMessenger messenger = VoltDB.instance() == null ? null : VoltDB.instance().getHostMessenger();
+                synchronized (m_segments) {
+                    m_maxSegments = (int) Math.max(2, logSize * 1024L * 1024L / SEGMENT_SIZE);
+                    if (messenger != null) {
+                        m_instanceId = messenger.getInstanceId();
+                    }
+                    m_truncationTxnId = txnId;
+                    m_partitionCount = partitionCount;
+                    m_truncationTxnIds = perPartitionTxnId == null ? new HashMap<Integer, Long>()
+                                                                   : new HashMap<>(perPartitionTxnId);
+                    adoptSegments(isRejoin);
+                    m_current = nextSegment(0);
+                }
+            } catch (IOException e) {
+                VoltDB.crashLocalVoltDB("Unable to initialize the command log in " + m_logDir, true, e);
+            }
+            final SnapshotCompletionMonitor monitor = VoltDB.instance() == null ? null :
+                VoltDB.instance().getSnapshotCompletionMonitor();
+            if (monitor != null) {
+                monitor.addInterest(this);
+            }
+            m_writer = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    writeLoop();
+                }
+            }, "Command log writer");
+            m_writer.setDaemon(true);
+            m_initialized = true;
+            m_writer.start();
+        }
+        LOG.info("Group commit command log in " + m_logDir + ", " + (m_synchronous ? "synchronous" : "asynchronous") +
+                ", fsync every " + m_fsyncInterval + " ms or " + m_maxTxns + " transactions");
+    }
+
+    /**
+     * Keep the segments of the log that was replayed, they are needed until the
+     * next truncation snapshot. On rejoin the node gets its data from a snapshot
+     * and the old log is of no use.
+     */
+    private void adoptSegments(boolean isRejoin) throws IOException {
+        for (File file : LogSegment.list(m_logDir)) {
+            m_lastSegmentId = Math.max(m_lastSegmentId, LogSegment.segmentId(file.getName()));
+            if (isRejoin) {
+                if (!file.delete()) {
+                    throw new IOException("Failed to delete command log segment " + file);
+                }
+                continue;
+            }
+            LogSegment segment;
+            try {
+                segment = LogSegment.open(file);
+                segment.readEntries();
+            } catch (IOException e) {
+                LOG.warn("Discarding unreadable command log segment " + file + ": " + e.getMessage());
+                if (!file.delete()) {
+                    throw new IOException("Failed to delete command log segment " + file);
+                }
+                continue;
+            }
+            segment.close();
+            if (segment.isCoveredBy(m_truncationTxnIds)) {
+                m_freeSegments.add(segment);
+            } else {
+                m_segments.add(segment);
+            }
+        }
+    }
+
+    /**
+     * Start a new segment, reusing a free one if it is large enough. Called
+     * with m_segments held.
+     */
+    private LogSegment nextSegment(int minBatchSize) throws IOException {
+        final long size = Math.max(SEGMENT_SIZE, LogSegment.HEADER_SIZE + LogSegment.batchSize(minBatchSize));
+        final LogSegment.Header header = new LogSegment.Header(++m_lastSegmentId, m_instanceId,
+                m_truncationTxnId, partitionCount(), m_truncationTxnIds);
+        LogSegment segment = null;
+        final LogSegment free = m_freeSegments.peek();
+        if (free != null && free.m_size >= size) {
+            segment = m_freeSegments.poll().recycle(m_logDir, header);
+        } else {
+            if (m_segments.size() + m_freeSegments.size() + 1 > m_maxSegments) {
+                m_fullLogger.log("Every command log segment is waiting for a truncation snapshot, "
+                        + "adding a segment beyond the configured log size", System.currentTimeMillis());
+            }
+            segment = LogSegment.create(m_logDir, header, size);
+        }
+        if (m_segments.size() + 1 >= m_maxSegments / 2) {
+            requestTruncationSnapshot(false);
+        }
+        return segment;
+    }
+
+    /**
+     * The replay checks the partition count of every header, and partitions may
+     * have been added since init. On join the cartographer learns about the new
+     * partitions after init, so the count only grows. Called with m_segments held.
+     */
+    private int partitionCount() {
+        final Cartographer cartographer = VoltDB.instance() == null ? null : VoltDB.instance().getCartographer();
+        if (cartographer != null) {
+            m_partitionCount = Math.max(m_partitionCount, cartographer.getPartitionCount());
+        }
+        return m_partitionCount;
+    }
+
+    @Override
+    public boolean needsInitialization() {
+        synchronized (m_lock) {
+            return !m_initialized;
+        }
+    }
+
+    private static ByteBuffer scratch(int size) {
+        ByteBuffer buf = SCRATCH.get();
+        if (buf.capacity() < size) {
+            buf = ByteBuffer.allocate(Integer.highestOneBit(size) << 1);
+            SCRATCH.set(buf);
+        }
+        buf.clear();
+        return buf;
+    }
+
+    /**
+     * An initiate entry is the SpHandle, the involved partitions of a multi
+     * partition transaction and the serialized initiation.
+     */
+    static ByteBuffer serializeInitiate(Iv2InitiateTaskMessage message, long spHandle, int[] involvedPartitions)
+            throws IOException {
+        final int involved = involvedPartitions == null ? 0 : involvedPartitions.length;
+        final int messageSize = message.getSerializedSize();
+        final ByteBuffer buf = scratch(LogSegment.ENTRY_HEADER_SIZE + 8 + 4 + 4 * involved + messageSize);
+        buf.position(LogSegment.ENTRY_HEADER_SIZE);
+        buf.putLong(spHandle);
+        buf.putInt(involved);
+        for (int i = 0; i < involved; i++) {
+            buf.putInt(involvedPartitions[i]);
+        }
+        // The message wants a buffer of exactly its size
+        final int messageStart = buf.position();
+        buf.limit(messageStart + messageSize);
+        message.flattenToBuffer(buf.slice());
+        buf.limit(buf.capacity());
+        buf.position(messageStart + messageSize);
+        LogSegment.frame(buf, 0, LogSegment.INITIATE_ENTRY);
+        buf.flip();
+        return buf;
+    }
+
+    static ByteBuffer serializeFault(long writerHSId, Set<Long> survivorHSIds, int partitionId, long spHandle) {
+        final ByteBuffer buf = scratch(LogSegment.ENTRY_HEADER_SIZE + 8 + 4 + 8 + 4 + 8 * survivorHSIds.size());
+        buf.position(LogSegment.ENTRY_HEADER_SIZE);
+        buf.putLong(writerHSId);
+        buf.putInt(partitionId);
+        buf.putLong(spHandle);
+        buf.putInt(survivorHSIds.size());
+        for (long hsId : survivorHSIds) {
+            buf.putLong(hsId);
+        }
+        LogSegment.frame(buf, 0, LogSegment.FAULT_ENTRY);
+        buf.flip();
+        return buf;
+    }
+
+    // Called with m_lock held
+    private void stage(ByteBuffer entry) {
+        if (m_staging.remaining() < entry.remaining()) {
+            final ByteBuffer bigger = ByteBuffer.allocateDirect(
+                    Integer.highestOneBit(m_staging.position() + entry.remaining()) << 1);
+            m_staging.flip();
+            bigger.put(m_staging);
+            m_staging = bigger;
+        }
+        m_staging.put(entry);
+    }
+
+    // Called with m_lock held
+    private void startWindow() {
+        if (m_stagedTxns == 0 && m_stagedFaults.isEmpty()) {
+            m_windowStartNanos = System.nanoTime();
+            m_lock.notifyAll();
+        }
+    }
+
+    @Override
+    public ListenableFuture<Object> log(Iv2InitiateTaskMessage message, long spHandle, int[] involvedPartitions,
+            DurabilityListener listener, TransactionTask durabilityHandle) {
+        ByteBuffer entry = null;
+        if (message != null) {
+            try {
+                entry = serializeInitiate(message, spHandle, involvedPartitions);
+            } catch (IOException e) {
+                VoltDB.crashLocalVoltDB("Unable to serialize a command log entry", true, e);
+            }
+        }
+        synchronized (m_lock) {
+            startWindow();
+            if (entry != null) {
+                stage(entry);
+            }
+            if (durabilityHandle != null) {
+                listener.addTransaction(durabilityHandle);
+            }
+            if (++m_stagedTxns >= m_maxTxns) {
+                m_lock.notifyAll();
+            }
+            if (m_synchronous) {
+                return null;
+            }
+            if (m_staging.position() + m_writingBytes <= MAX_OUTSTANDING_BYTES) {
+                return COMPLETED;
+            }
+            final SettableFuture<Object> backpressure = SettableFuture.create();
+            m_backpressure.add(backpressure);
+            return backpressure;
+        }
+    }
+
+    @Override
+    public SettableFuture<Boolean> logIv2Fault(long writerHSId, Set<Long> survivorHSId, int partitionId,
+            long spHandle) {
+        final ByteBuffer entry = serializeFault(writerHSId, survivorHSId, partitionId, spHandle);
+        final SettableFuture<Boolean> written = SettableFuture.create();
+        synchronized (m_lock) {
+            startWindow();
+            stage(entry);
+            m_stagedFaults.add(written);
+        }
+        return written;
+    }
+
+    private void writeLoop() {
+        try {
+            while (true) {
+                final ByteBuffer batch;
+                final List<Pair<DurabilityListener, CompletionChecks>> checks = new ArrayList<>();
+                final List<SettableFuture<Boolean>> faults;
+                synchronized (m_lock) {
+                    while (!m_shutdown && m_stagedTxns == 0 && m_stagedFaults.isEmpty()) {
+                        m_lock.wait();
+                    }
+                    if (m_stagedTxns == 0 && m_stagedFaults.isEmpty()) {
+                        return;
+                    }
+                    // Wait for the group to fill up or the window to end
+                    final long deadline = m_windowStartNanos + m_fsyncIntervalNanos;
+                    long waitNanos;
+                    while (!m_shutdown && m_stagedTxns < m_maxTxns &&
+                            (waitNanos = deadline - System.nanoTime()) > 0) {
+                        TimeUnit.NANOSECONDS.timedWait(m_lock, waitNanos);
+                    }
+                    batch = m_staging;
+                    batch.flip();
+                    m_staging = m_spare;
+                    m_staging.clear();
+                    m_spare = null;
+                    m_writingBytes = batch.remaining();
+                    m_writingTxns = m_stagedTxns;
+                    m_stagedTxns = 0;
+                    faults = m_stagedFaults;
+                    m_stagedFaults = new ArrayList<>();
+                    for (DurabilityListener listener : m_listeners) {
+                        checks.add(Pair.of(listener, listener.startNewTaskList(listener.getNumberOfTasks())));
+                    }
+                }
+
+                writeBatch(batch);
+
+                synchronized (m_lock) {
+                    m_fsyncs++;
+                    m_durableTxns += m_writingTxns;
+                    m_writingBytes = 0;
+                    m_writingTxns = 0;
+                    batch.clear();
+                    m_spare = batch;
+                    if (m_staging.position() <= MAX_OUTSTANDING_BYTES) {
+                        for (SettableFuture<Object> f : m_backpressure) {
+                            f.set(null);
+                        }
+                        m_backpressure.clear();
+                    }
+                }
+                for (Pair<DurabilityListener, CompletionChecks> check : checks) {
+                    check.getFirst().processDurabilityChecks(check.getSecond());
+                }
+                for (SettableFuture<Boolean> fault : faults) {
+                    fault.set(true);
+                }
+            }
+        } catch (Throwable t) {
+            VoltDB.crashLocalVoltDB("Unable to write to the command log in " + m_logDir, true, t);
+        }
+    }
+
+    /**
+     * Write the staged entries, as many as fit in the current segment at a
+     * time, and force every segment written to.
+     */
+    private void writeBatch(ByteBuffer batch) throws IOException {
+        final List<LogSegment> written = new ArrayList<>(2);
+        while (batch.hasRemaining()) {
+            final int start = batch.position();
+            int end = start;
+            while (end < batch.limit()) {
+                final int entrySize = LogSegment.ENTRY_HEADER_SIZE + batch.getInt(end);
+                if (LogSegment.batchSize(end + entrySize - start) > m_current.remaining()) {
+                    break;
+                }
+                if (batch.get(end + 8) == LogSegment.INITIATE_ENTRY) {
+                    m_current.noteSpHandle(batch.getLong(end + LogSegment.ENTRY_HEADER_SIZE));
+                }
+                end += entrySize;
+            }
+            if (end == start) {
+                // The next entry doesn't fit, move on to a new segment
+                final int entrySize = LogSegment.ENTRY_HEADER_SIZE + batch.getInt(start);
+                if (!written.contains(m_current)) {
+                    m_current.force();
+                }
+                synchronized (m_segments) {
+                    m_segments.add(m_current);
+                    m_current = nextSegment(entrySize);
+                }
+                continue;
+            }
+            final ByteBuffer entries = batch.duplicate();
+            entries.limit(end);
+            m_current.write(entries);
+            batch.position(end);
+            if (!written.contains(m_current)) {
+                written.add(m_current);
+            }
+        }
+        for (LogSegment segment : written) {
+            segment.force();
+        }
+    }
+
+    @Override
+    public CountDownLatch snapshotCompleted(SnapshotCompletionEvent event) {
+        if (event.truncationSnapshot && event.didSucceed) {
+            synchronized (m_segments) {
+                m_truncationPending = false;
+                m_truncationTxnId = event.multipartTxnId;
+                m_truncationTxnIds = new HashMap<>(event.partitionTxnIds);
+                int recycled = 0;
+                while (!m_segments.isEmpty() && m_segments.peek().isCoveredBy(m_truncationTxnIds)) {
+                    m_freeSegments.add(m_segments.poll());
+                    recycled++;
+                }
+                if (recycled > 0) {
+                    LOG.info("Truncation snapshot freed " + recycled + " command log segments");
+                }
+                // The log now starts at this snapshot, the replay reads that from the newest header
+                if (m_current != null) {
+                    try {
+                        m_current.updateHeader(new LogSegment.Header(m_current.getId(), m_instanceId,
+                                m_truncationTxnId, partitionCount(), m_truncationTxnIds));
+                    } catch (IOException e) {
+                        LOG.warn("Failed to update the command log segment header", e);
+                    }
+                }
+            }
+        }
+        return new CountDownLatch(0);
+    }
+
+    @Override
+    public void shutdown() throws InterruptedException {
+        final Thread writer;
+        synchronized (m_lock) {
+            m_shutdown = true;
+            m_lock.notifyAll();
+            writer = m_writer;
+        }
+        if (writer != null) {
+            writer.join();
+        }
+        final SnapshotCompletionMonitor monitor = VoltDB.instance() == null ? null :
+            VoltDB.instance().getSnapshotCompletionMonitor();
+        if (monitor != null) {
+            monitor.removeInterest(this);
+        }
+        synchronized (m_segments) {
+            try {
+                if (m_current != null) {
+                    m_current.close();
+                }
+                for (LogSegment segment : m_segments) {
+                    segment.close();
+                }
+                for (LogSegment segment : m_freeSegments) {
+                    segment.close();
+                }
+            } catch (IOException e) {
+                LOG.warn("Failed to close the command log segments", e);
+            }
+        }
+    }
+
+    @Override
+    public void initializeLastDurableUniqueId(DurabilityListener listener, long uniqueId) {
+        synchronized (m_lock) {
+            listener.initializeLastDurableUniqueId(uniqueId);
+        }
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+
+    @Override
+    public void requestTruncationSnapshot(boolean queueIfPending) {
+        synchronized (m_segments) {
+            if (m_truncationPending && !queueIfPending) {
+                return;
+            }
+            m_truncationPending = true;
+        }
+        final HostMessenger messenger = VoltDB.instance() == null ? null : VoltDB.instance().getHostMessenger();
+        if (messenger == null) {
+            return;
+        }
+        // Asynchronous, this may be called by the writer thread
+        final ZooKeeper zk = messenger.getZK();
+        zk.create(VoltZK.request_truncation_snapshot_node, null, Ids.OPEN_ACL_UNSAFE,
+                CreateMode.PERSISTENT_SEQUENTIAL, new StringCallback() {
+                    @Override
+                    public void processResult(int rc, String path, Object ctx, String name) {
+                        if (rc != KeeperException.Code.OK.intValue()) {
+                            LOG.warn("Failed to request a truncation snapshot for the command log: " +
+                                    KeeperException.Code.get(rc));
+                            synchronized (m_segments) {
+                                m_truncationPending = false;
+                            }
+                        }
+                    }
+                }, null);
+    }
+
+    @Override
+    public void populateCommandLogStats(Map<String, Integer> columnNameToIndex, Object[] rowValues) {
+        final long fsyncs;
+        final long durableTxns;
+        synchronized (m_lock) {
+            rowValues[columnNameToIndex.get(CommandLogStats.StatName.OUTSTANDING_BYTES.name())] =
+                    (long) (m_staging.position() + m_writingBytes);
+            rowValues[columnNameToIndex.get(CommandLogStats.StatName.OUTSTANDING_TXNS.name())] =
+                    (long) (m_stagedTxns + m_writingTxns);
+            fsyncs = m_fsyncs;
+            durableTxns = m_durableTxns;
+        }
+        synchronized (m_segments) {
+            final int inUse = m_segments.size() + (m_current == null ? 0 : 1);
+            rowValues[columnNameToIndex.get(CommandLogStats.StatName.IN_USE_SEGMENT_COUNT.name())] = inUse;
+            rowValues[columnNameToIndex.get(CommandLogStats.StatName.SEGMENT_COUNT.name())] =
+                    inUse + m_freeSegments.size();
+        }
+        rowValues[columnNameToIndex.get(CommandLogStats.StatName.FSYNC_INTERVAL.name())] = m_fsyncInterval;
+        rowValues[columnNameToIndex.get(CommandLogStats.StatName.FSYNCS.name())] = fsyncs;
+        rowValues[columnNameToIndex.get(CommandLogStats.StatName.FSYNCS_PER_TXN.name())] =
+                durableTxns == 0 ? 0.0 : (double) fsyncs / durableTxns;
+    }
+
+    @Override
+    public boolean isSynchronous() {
+        return m_synchronous;
+    }
+
+    @Override
+    public boolean canOfferTask() {
+        return !m_synchronous;
+    }
+
+    @Override
+    public void registerDurabilityListener(DurabilityListener durabilityListener) {
+        synchronized (m_lock) {
+            m_listeners.add(durabilityListener);
+        }
+    }
+}
@@ -0,0 +1,550 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2018 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.commandlog;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.zookeeper_voltpatches.CreateMode;
+import org.apache.zookeeper_voltpatches.ZooDefs.Ids;
+import org.apache.zookeeper_voltpatches.ZooKeeper;
+import org.voltcore.logging.VoltLogger;
+import org.voltcore.messaging.HostMessenger;
+import org.voltcore.utils.CoreUtils;
+import org.voltcore.utils.InstanceId;
+import org.voltcore.zk.ZKUtil;
+import org.voltcore.zk.ZKUtil.FutureWatcher;
+import org.voltdb.ClientInterface;
+import org.voltdb.CommandLogReinitiator;
+import org.voltdb.RestoreAgent;
+import org.voltdb.SimpleClientResponseAdapter;
+import org.voltdb.StartAction;
+import org.voltdb.StoredProcedureInvocation;
+import org.voltdb.VoltDB;
+import org.voltdb.VoltZK;
+import org.voltdb.client.ClientResponse;
+import org.voltdb.dtxn.TransactionCreator;
+import org.voltdb.iv2.Cartographer;
+import org.voltdb.iv2.MpInitiator;
+import org.voltdb.iv2.TxnEgo;
+import org.voltdb.messaging.Iv2InitiateTaskMessage;
+import org.voltdb.messaging.VoltDbMessageFactory;
+import org.voltdb.utils.MiscUtils;
+
+/**
+ * Replays the segments written by {@link GroupCommitCommandLog}.
+ *
+ * A reader thread reads the segments in order and hands the entries of every
+ * partition led by this host to a thread of that partition, which decodes
+ * them and reinitiates them in log order. The SpSchedulers sequence the
+ * replayed transactions with their ReplaySequencers. Where a partition's log
+ * has a multi partition transaction the partition thread sends a sentinel, and
+ * the host of the MPI reinitiates each multi partition transaction once, in
+ * transaction id order, then sends the end of log to the MPI. A transaction
+ * that involved only some of the partitions is reinitiated on exactly those,
+ * as they are the only ones with its sentinel.
+ *
+ * The log can only be replayed on the partitions it was written for, the
+ * replay fails if the partition count changed since.
+ *
+ * Entries the restored snapshot already has are skipped. The hosts wait for
+ * each other in ZooKeeper after all entries are reinitiated, so the MPI ends
+ * the log only after every sentinel was sent, and again after every replayed
+ * transaction completed, so the truncation snapshot that follows has all of
+ * them.
+ */
+public class GroupCommitLogReinitiator implements CommandLogReinitiator {
+    private static final VoltLogger LOG = new VoltLogger("LOGGING");
+
+    // Transactions a partition may have in flight during replay
+    static final int REPLAY_WINDOW = Integer.getInteger("COMMAND_LOG_REPLAY_WINDOW", 5000);
+    private static final int QUEUE_DEPTH = 4096;
+    private static final LogSegment.Entry END_OF_LOG = new LogSegment.Entry((byte) 0, null);
+
+    private final int m_hostId;
+    private final HostMessenger m_messenger;
+    private final File m_logDir;
+    private final Set<Integer> m_liveHosts;
+    private final List<File> m_segmentFiles = new ArrayList<>();
+    private final List<LogSegment.Header> m_headers = new ArrayList<>();
+
+    private Callback m_callback;
+    private TransactionCreator m_initiator;
+    private Map<Integer, Long> m_snapshotTxnIds = new HashMap<>();
+    private long m_snapshotMpTxnId = Long.MIN_VALUE;
+
+    private final AtomicLong m_replayedTxns = new AtomicLong();
+    private final AtomicLong m_failedTxns = new AtomicLong();
+    private final AtomicLong m_skippedTxns = new AtomicLong();
+
+    public GroupCommitLogReinitiator(int hostId, StartAction action, HostMessenger messenger, String clPath,
+            Set<Integer> liveHosts) {
+        m_hostId = hostId;
+        m_messenger = messenger;
+        m_logDir = new File(clPath);
+        m_liveHosts = liveHosts;
+        if (action.doesRecover()) {
+            for (File file : LogSegment.list(m_logDir)) {
+                try {
+                    final LogSegment segment = LogSegment.open(file);
+                    m_headers.add(segment.getHeader());
+                    m_segmentFiles.add(file);
+                    segment.close();
+                } catch (IOException e) {
+                    LOG.warn("Skipping unreadable command log segment " + file + ": " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    @Override
+    public void setSnapshotTxnId(RestoreAgent.SnapshotInfo info) {
+        if (info == null) {
+            m_snapshotTxnIds = new HashMap<>();
+            m_snapshotMpTxnId = Long.MIN_VALUE;
+        } else {
+            m_snapshotTxnIds = new HashMap<>(info.partitionToTxnId);
+            final Long mpTxnId = info.partitionToTxnId.get(MpInitiator.MP_INIT_PID);
+            m_snapshotMpTxnId = mpTxnId == null ? info.txnId : mpTxnId;
+        }
+    }
+
+    @Override
+    public void setCallback(Callback callback) {
+        m_callback = callback;
+    }
+
+    @Override
+    public void setInitiator(TransactionCreator initiator) {
+        m_initiator = initiator;
+    }
+
+    @Override
+    public void initPartitionTracking() {}
+
+    @Override
+    public void generateReplayPlan(long snapshotTimeStamp, long snapshotTxnId, int newPartitionCount,
+            boolean isMPINode) {
+        // Every partition replays its own entries, there is nothing to plan
+    }
+
+    @Override
+    public void replay() {
+        final Thread replayThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    doReplay();
+                } catch (Exception e) {
+                    VoltDB.crashGlobalVoltDB("Command log replay failed", true, e);
+                }
+            }
+        }, "Command log replay");
+        replayThread.setDaemon(true);
+        replayThread.start();
+    }
+
+    /**
+     * Decode the initiation of an initiate entry.
+     */
+    static Iv2InitiateTaskMessage decodeInitiate(VoltDbMessageFactory factory, ByteBuffer payload)
+            throws IOException {
+        final ByteBuffer buf = payload.duplicate();
+        buf.position(8);
+        final int involved = buf.getInt();
+        buf.position(buf.position() + 4 * involved);
+        return (Iv2InitiateTaskMessage) factory.createMessageFromBuffer(buf.slice(), -1);
+    }
+
+    /**
+     * @return the number of partitions a multi partition entry involves, 0 for a single partition one
+     */
+    static int involvedPartitions(ByteBuffer payload) {
+        return payload.getInt(8);
+    }
+
+    /**
+     * @return the partitions an n-partition entry involves, null if it involves all of them
+     */
+    static int[] nPartitions(ByteBuffer payload, int partitionCount) {
+        final int involved = involvedPartitions(payload);
+        if (involved >= partitionCount) {
+            return null;
+        }
+        final int[] partitions = new int[involved];
+        for (int i = 0; i < involved; i++) {
+            partitions[i] = payload.getInt(12 + 4 * i);
+        }
+        return partitions;
+    }
+
+    /**
+     * Entries are reinitiated at the partition they were logged on, and multi
+     * partition ones on the partitions of the time, so the log can't be
+     * replayed after the partition count changed.
+     */
+    static void checkPartitionCount(List<LogSegment.Header> headers, int partitionCount) throws IOException {
+        for (LogSegment.Header header : headers) {
+            if (header.m_partitionCount != partitionCount) {
+                throw new IOException("Command log segment " + header.m_segmentId + " was written with " +
+                        header.m_partitionCount + " partitions, the cluster has " + partitionCount +
+                        ". The command log can't be replayed on a different number of partitions, " +
+                        "restore the last snapshot instead");
+            }
+        }
+    }
+
+    private boolean isCoveredBySnapshot(int partition, long spHandle) {
+        final Long txnId = m_snapshotTxnIds.get(partition);
+        return txnId != null && spHandle <= txnId;
+    }
+
+    private void doReplay() throws Exception {
+        final long startNanos = System.nanoTime();
+        final Cartographer cartographer = VoltDB.instance().getCartographer();
+        final boolean isMPINode =
+            CoreUtils.getHostIdFromHSId(cartographer.getHSIdForMultiPartitionInitiator()) == m_hostId;
+        final int partitionCount = cartographer.getPartitionCount();
+        checkPartitionCount(m_headers, partitionCount);
+
+        // Multi partition transactions are collected in a first pass so they can be
+        // reinitiated in order while the partitions replay
+        MultiPartitionReplayer mpReplayer = null;
+        if (isMPINode && !m_segmentFiles.isEmpty()) {
+            mpReplayer = new MultiPartitionReplayer(collectMultiPartitionTxns(partitionCount));
+            mpReplayer.start();
+        }
+
+        final Map<Integer, PartitionReplayer> replayers = new HashMap<>();
+        for (File file : m_segmentFiles) {
+            final LogSegment segment = LogSegment.open(file);
+            final List<LogSegment.Entry> entries;
+            try {
+                entries = segment.readEntries();
+            } finally {
+                segment.close();
+            }
+            for (LogSegment.Entry entry : entries) {
+                if (entry.m_type != LogSegment.INITIATE_ENTRY) {
+                    continue;
+                }
+                final int partition = TxnEgo.getPartitionId(entry.m_payload.getLong(0));
+                PartitionReplayer replayer = replayers.get(partition);
+                if (replayer == null) {
+                    final long masterHSId = cartographer.getHSIdForMaster(partition);
+                    if (CoreUtils.getHostIdFromHSId(masterHSId) != m_hostId) {
+                        continue;
+                    }
+                    replayer = new PartitionReplayer(partition);
+                    replayers.put(partition, replayer);
+                    replayer.start();
+                }
+                replayer.m_queue.put(entry);
+            }
+        }
+        for (PartitionReplayer replayer : replayers.values()) {
+            replayer.m_queue.put(END_OF_LOG);
+        }
+        for (PartitionReplayer replayer : replayers.values()) {
+            replayer.join();
+        }
+        if (mpReplayer != null) {
+            mpReplayer.join();
+        }
+
+        // Every sentinel has been sent once all hosts get here
+        barrier("reinitiated");
+        if (isMPINode) {
+            m_initiator.sendEOLMessage(MpInitiator.MP_INIT_PID);
+        }
+        for (PartitionReplayer replayer : replayers.values()) {
+            replayer.m_outstanding.acquire(REPLAY_WINDOW);
+        }
+        if (mpReplayer != null) {
+            mpReplayer.m_outstanding.acquire(REPLAY_WINDOW);
+        }
+        barrier("completed");
+
+        final long replayed = m_replayedTxns.get();
+        final double seconds = Math.max(1, System.nanoTime() - startNanos) / 1000000000.0;
+        LOG.info(String.format("Replayed %d transactions from %d command log segments in %.1f seconds " +
+                "(%.0f txn/s), skipped %d already in the snapshot, %d failed",
+                replayed, m_segmentFiles.size(), seconds, replayed / seconds, m_skippedTxns.get(),
+                m_failedTxns.get()));
+        if (m_callback != null) {
+            m_callback.onReplayCompletion();
+        }
+    }
+
+    /**
+     * Wait until every live host got to the same point of the replay.
+     */
+    private void barrier(String name) throws Exception {
+        if (m_messenger == null) {
+            return;
+        }
+        final ZooKeeper zk = m_messenger.getZK();
+        final String dir = VoltZK.commandlog_replay_barrier + "/" + name;
+        ZKUtil.addIfMissing(zk, VoltZK.commandlog_replay_barrier, CreateMode.PERSISTENT, null);
+        ZKUtil.addIfMissing(zk, dir, CreateMode.PERSISTENT, null);
+        zk.create(dir + "/" + m_hostId, null, Ids.OPEN_ACL_UNSAFE, CreateMode.EPHEMERAL);
+        while (true) {
+            final FutureWatcher watcher = new FutureWatcher();
+            if (zk.getChildren(dir, watcher).size() >= m_liveHosts.size()) {
+                return;
+            }
+            watcher.get();
+        }
+    }
+
+    /**
+     * A multi partition transaction to reinitiate and the partitions it
+     * involved, null if it involved all of them.
+     */
+    private static class MultiPartitionTxn {
+        final Iv2InitiateTaskMessage m_msg;
+        final int[] m_nPartitions;
+
+        MultiPartitionTxn(Iv2InitiateTaskMessage msg, int[] nPartitions) {
+            m_msg = msg;
+            m_nPartitions = nPartitions;
+        }
+    }
+
+    /**
+     * @return the multi partition transactions in the log that are not in the
+     * snapshot, by transaction id
+     */
+    private TreeMap<Long, MultiPartitionTxn> collectMultiPartitionTxns(int partitionCount) throws IOException {
+        final VoltDbMessageFactory factory = new VoltDbMessageFactory();
+        final TreeMap<Long, MultiPartitionTxn> txns = new TreeMap<>();
+        for (File file : m_segmentFiles) {
+            final LogSegment segment = LogSegment.open(file);
+            try {
+                for (LogSegment.Entry entry : segment.readEntries()) {
+                    if (entry.m_type != LogSegment.INITIATE_ENTRY || involvedPartitions(entry.m_payload) == 0) {
+                        continue;
+                    }
+                    final Iv2InitiateTaskMessage msg = decodeInitiate(factory, entry.m_payload);
+                    if (msg.getTxnId() <= m_snapshotMpTxnId || txns.containsKey(msg.getTxnId())) {
+                        continue;
+                    }
+                    final int[] nPartitions = nPartitions(entry.m_payload, partitionCount);
+                    if (nPartitions != null && !MiscUtils.isPro()) {
+                        // Without n-partition support the MPI would send the
+                        // fragments to partitions that have no sentinel for them
+                        throw new IOException("The command log has n-partition transaction " +
+                                TxnEgo.txnIdToString(msg.getTxnId()) + ", which this build can't replay");
+                    }
+                    // Decoding copies what it needs out of the segment
+                    txns.put(msg.getTxnId(), new MultiPartitionTxn(msg, nPartitions));
+                }
+            } finally {
+                segment.close();
+            }
+        }
+        return txns;
+    }
+
+    private abstract class Replayer extends Thread implements SimpleClientResponseAdapter.Callback {
+        final Semaphore m_outstanding = new Semaphore(REPLAY_WINDOW);
+        final SimpleClientResponseAdapter m_adapter;
+
+        Replayer(String name, long connectionId) {
+            super(name);
+            setDaemon(true);
+            m_adapter = new SimpleClientResponseAdapter(connectionId, name);
+            m_initiator.bindAdapter(m_adapter);
+        }
+
+        @Override
+        public void handleResponse(ClientResponse response) {
+            if (response.getStatus() != ClientResponse.SUCCESS) {
+                m_failedTxns.incrementAndGet();
+            }
+            m_replayedTxns.incrementAndGet();
+            m_outstanding.release();
+        }
+
+        void reinitiate(Iv2InitiateTaskMessage msg, boolean isSinglePartition, int partition, int size)
+                throws InterruptedException {
+            final StoredProcedureInvocation invocation = msg.getStoredProcedureInvocation();
+            invocation.setClientHandle(m_adapter.registerCallback(this));
+            m_outstanding.acquire();
+            if (!m_initiator.createTransaction(m_adapter.connectionId(), msg.getTxnId(), msg.getUniqueId(),
+                    invocation, msg.isReadOnly(), isSinglePartition, false, partition, size, System.nanoTime())) {
+                m_failedTxns.incrementAndGet();
+                m_outstanding.release();
+            }
+        }
+
+        void reinitiate(Iv2InitiateTaskMessage msg, int[] nPartitions, int size) throws InterruptedException {
+            final StoredProcedureInvocation invocation = msg.getStoredProcedureInvocation();
+            invocation.setClientHandle(m_adapter.registerCallback(this));
+            m_outstanding.acquire();
+            if (!m_initiator.createNPartitionTransaction(m_adapter.connectionId(), msg.getTxnId(),
+                    msg.getUniqueId(), invocation, nPartitions, size, System.nanoTime())) {
+                m_failedTxns.incrementAndGet();
+                m_outstanding.release();
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                replay();
+            } catch (Exception e) {
+                VoltDB.crashGlobalVoltDB("Command log replay failed in " + getName(), true, e);
+            }
+        }
+
+        abstract void replay() throws Exception;
+    }
+
+    /**
+     * Reinitiates the entries of one partition in log order.
+     */
+    private class PartitionReplayer extends Replayer {
+        final int m_partition;
+        final BlockingQueue<LogSegment.Entry> m_queue = new ArrayBlockingQueue<>(QUEUE_DEPTH);
+
+        PartitionReplayer(int partition) {
+            super("Command log replay - partition " + partition, ClientInterface.CL_REPLAY_BASE_CID + partition);
+            m_partition = partition;
+        }
+
+        @Override
+        void replay() throws Exception {
+            final VoltDbMessageFactory factory = new VoltDbMessageFactory();
+            LogSegment.Entry entry;
+            while ((entry = m_queue.take()) != END_OF_LOG) {
+                final ByteBuffer payload = entry.m_payload;
+                final long spHandle = payload.getLong(0);
+                final int involved = involvedPartitions(payload);
+                final Iv2InitiateTaskMessage msg = decodeInitiate(factory, payload);
+                if (involved == 0) {
+                    if (isCoveredBySnapshot(m_partition, spHandle)) {
+                        m_skippedTxns.incrementAndGet();
+                        continue;
+                    }
+                    reinitiate(msg, true, m_partition, payload.remaining());
+                } else if (msg.getTxnId() > m_snapshotMpTxnId) {
+                    // Mark where the multi partition transaction goes in this partition
+                    m_initiator.sendSentinel(msg.getUniqueId(), m_partition);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reinitiates each multi partition transaction once, by transaction id.
+     */
+    private class MultiPartitionReplayer extends Replayer {
+        final TreeMap<Long, MultiPartitionTxn> m_txns;
+
+        MultiPartitionReplayer(TreeMap<Long, MultiPartitionTxn> txns) {
+            super("Command log replay - MP", ClientInterface.CL_REPLAY_BASE_CID + MpInitiator.MP_INIT_PID);
+            m_txns = txns;
+        }
+
+        @Override
+        void replay() throws Exception {
+            for (MultiPartitionTxn txn : m_txns.values()) {
+                if (txn.m_nPartitions == null) {
+                    reinitiate(txn.m_msg, false, MpInitiator.MP_INIT_PID, txn.m_msg.getSerializedSize());
+                } else {
+                    reinitiate(txn.m_msg, txn.m_nPartitions, txn.m_msg.getSerializedSize());
+                }
+            }
+        }
+    }
+
+    @Override
+    public boolean hasReplayedSegments() {
+        return !m_segmentFiles.isEmpty();
+    }
+
+    @Override
+    public boolean hasReplayedTxns() {
+        return m_replayedTxns.get() > 0;
+    }
+
+    /**
+     * The log starts where the newest truncation snapshot recorded in a segment ends.
+     */
+    @Override
+    public Long getMaxLastSeenTxn() {
+        if (m_headers.isEmpty()) {
+            return null;
+        }
+        long max = Long.MIN_VALUE;
+        for (LogSegment.Header header : m_headers) {
+            max = Math.max(max, header.m_truncationTxnId);
+        }
+        return max;
+    }
+
+    @Override
+    public Map<Integer, Long> getMaxLastSeenTxnByPartition() {
+        if (m_headers.isEmpty()) {
+            return null;
+        }
+        final Map<Integer, Long> max = new HashMap<>();
+        for (LogSegment.Header header : m_headers) {
+            for (Map.Entry<Integer, Long> e : header.m_truncationTxnIds.entrySet()) {
+                final Long txnId = max.get(e.getKey());
+                if (txnId == null || txnId < e.getValue()) {
+                    max.put(e.getKey(), e.getValue());
+                }
+            }
+        }
+        return max;
+    }
+
+    @Override
+    public InstanceId getInstanceId() {
+        return m_headers.isEmpty() ? null : m_headers.get(m_headers.size() - 1).m_instanceId;
+    }
+
+    @Override
+    public void returnAllSegments() {
+        for (File file : m_segmentFiles) {
+            if (!file.delete()) {
+                LOG.warn("Failed to delete replayed command log segment " + file);
+            }
+        }
+        m_segmentFiles.clear();
+        m_headers.clear();
+    }
+
+    @Override
+    public boolean checkAndBalancePartitions() {
+        return true;
+    }
+}
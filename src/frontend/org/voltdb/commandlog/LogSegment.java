@@ -0,0 +1,399 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2018 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.commandlog;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.hadoop_voltpatches.util.PureJavaCrc32C;
+import org.voltcore.utils.InstanceId;
+import org.voltdb.iv2.TxnEgo;
+
+/**
+ * One preallocated file of the command log.
+ *
+ * A segment starts with a header page that records the cluster instance and
+ * the transaction ids of the truncation snapshot the log continues from. Each
+ * group commit is one write that starts on a page boundary with a batch header
+ * (a magic number, the length of the batch and the segment id) and is zero
+ * padded to the next page, so the writer never rewrites part of a page that is
+ * already on disk. The batch holds entries, each one a length, a CRC32C of the
+ * payload, a type byte and the payload.
+ *
+ * Files are zeroed when they are created and reused after a truncation
+ * snapshot made their entries obsolete, so an fsync never has to update the
+ * file size. Batches left over from the previous use of a file carry another
+ * segment id, and a torn write at the end of the log fails the CRC check, so
+ * reading stops at either.
+ */
+class LogSegment {
+    static final int MAGIC = 0x564C4F47;
+    static final int VERSION = 1;
+    static final int PAGE_SIZE = 4096;
+    static final int HEADER_SIZE = PAGE_SIZE;
+    static final int BATCH_MAGIC = 0x42415443;
+    // magic, length, segment id
+    static final int BATCH_HEADER_SIZE = 4 + 4 + 8;
+    // length, crc, type
+    static final int ENTRY_HEADER_SIZE = 4 + 4 + 1;
+
+    static final byte INITIATE_ENTRY = 1;
+    static final byte FAULT_ENTRY = 2;
+
+    private static final Pattern FILE_NAME = Pattern.compile("cmdlog_(\\d+)\\.seg");
+    private static final int ZERO_CHUNK = 1024 * 1024;
+
+    /**
+     * Where the log starts, written at the head of every segment.
+     */
+    static class Header {
+        final long m_segmentId;
+        final InstanceId m_instanceId;
+        final long m_truncationTxnId;
+        final int m_partitionCount;
+        final Map<Integer, Long> m_truncationTxnIds;
+
+        Header(long segmentId, InstanceId instanceId, long truncationTxnId, int partitionCount,
+                Map<Integer, Long> truncationTxnIds) {
+            m_segmentId = segmentId;
+            m_instanceId = instanceId;
+            m_truncationTxnId = truncationTxnId;
+            m_partitionCount = partitionCount;
+            m_truncationTxnIds = truncationTxnIds;
+        }
+
+        void flattenToBuffer(ByteBuffer buf) {
+            buf.putInt(MAGIC);
+            buf.putInt(VERSION);
+            buf.putLong(m_segmentId);
+            buf.putInt(m_instanceId.getCoord());
+            buf.putLong(m_instanceId.getTimestamp());
+            buf.putLong(m_truncationTxnId);
+            buf.putInt(m_partitionCount);
+            buf.putInt(m_truncationTxnIds.size());
+            for (Map.Entry<Integer, Long> e : m_truncationTxnIds.entrySet()) {
+                buf.putInt(e.getKey());
+                buf.putLong(e.getValue());
+            }
+        }
+
+        static Header fromBuffer(ByteBuffer buf) throws IOException {
+            if (buf.getInt() != MAGIC) {
+                throw new IOException("Not a command log segment");
+            }
+            final int version = buf.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported command log segment version " + version);
+            }
+            final long segmentId = buf.getLong();
+            final InstanceId instanceId = new InstanceId(buf.getInt(), buf.getLong());
+            final long truncationTxnId = buf.getLong();
+            final int partitionCount = buf.getInt();
+            final int count = buf.getInt();
+            final Map<Integer, Long> truncationTxnIds = new HashMap<>();
+            for (int i = 0; i < count; i++) {
+                truncationTxnIds.put(buf.getInt(), buf.getLong());
+            }
+            return new Header(segmentId, instanceId, truncationTxnId, partitionCount, truncationTxnIds);
+        }
+    }
+
+    /**
+     * An entry read back from a segment, the payload is a view of the file.
+     */
+    static class Entry {
+        final byte m_type;
+        final ByteBuffer m_payload;
+
+        Entry(byte type, ByteBuffer payload) {
+            m_type = type;
+            m_payload = payload;
+        }
+    }
+
+    final File m_file;
+    final long m_size;
+    private volatile Header m_header;
+    private RandomAccessFile m_raf;
+    private FileChannel m_channel;
+    private long m_position;
+    private final ByteBuffer m_batchHeader = ByteBuffer.allocateDirect(BATCH_HEADER_SIZE);
+    private final ByteBuffer m_padding = ByteBuffer.allocateDirect(PAGE_SIZE);
+    // The highest SpHandle of every partition with entries in this segment
+    final Map<Integer, Long> m_maxSpHandles = new HashMap<>();
+
+    private LogSegment(File file, long size) {
+        m_file = file;
+        m_size = size;
+    }
+
+    static String fileName(long segmentId) {
+        return String.format("cmdlog_%010d.seg", segmentId);
+    }
+
+    /**
+     * @return the segment id of a segment file name or -1 if it is not one
+     */
+    static long segmentId(String fileName) {
+        final Matcher m = FILE_NAME.matcher(fileName);
+        return m.matches() ? Long.parseLong(m.group(1)) : -1;
+    }
+
+    /**
+     * @return the segment files in the directory, oldest first
+     */
+    static List<File> list(File dir) {
+        final List<File> files = new ArrayList<>();
+        final File[] all = dir.listFiles();
+        if (all != null) {
+            for (File f : all) {
+                if (f.isFile() && segmentId(f.getName()) >= 0) {
+                    files.add(f);
+                }
+            }
+        }
+        Collections.sort(files, (a, b) -> Long.compare(segmentId(a.getName()), segmentId(b.getName())));
+        return files;
+    }
+
+    /**
+     * Create a new zero filled segment file and open it for writing.
+     */
+    static LogSegment create(File dir, Header header, long size) throws IOException {
+        final File file = new File(dir, fileName(header.m_segmentId));
+        final LogSegment segment = new LogSegment(file, size);
+        segment.m_raf = new RandomAccessFile(file, "rw");
+        segment.m_channel = segment.m_raf.getChannel();
+        final ByteBuffer zeros = ByteBuffer.allocateDirect(ZERO_CHUNK);
+        long written = 0;
+        while (written < size) {
+            zeros.clear();
+            zeros.limit((int) Math.min(ZERO_CHUNK, size - written));
+            while (zeros.hasRemaining()) {
+                written += segment.m_channel.write(zeros, written);
+            }
+        }
+        segment.writeHeader(header);
+        segment.m_position = HEADER_SIZE;
+        segment.m_channel.force(true);
+        return segment;
+    }
+
+    /**
+     * Reuse the file of an obsolete segment under a new segment id.
+     */
+    LogSegment recycle(File dir, Header header) throws IOException {
+        close();
+        final File file = new File(dir, fileName(header.m_segmentId));
+        if (!m_file.renameTo(file)) {
+            throw new IOException("Failed to rename command log segment " + m_file + " to " + file);
+        }
+        final LogSegment segment = new LogSegment(file, m_size);
+        segment.m_raf = new RandomAccessFile(file, "rw");
+        segment.m_channel = segment.m_raf.getChannel();
+        segment.writeHeader(header);
+        segment.m_position = HEADER_SIZE;
+        segment.m_channel.force(false);
+        return segment;
+    }
+
+    /**
+     * Open an existing segment for reading.
+     */
+    static LogSegment open(File file) throws IOException {
+        final LogSegment segment = new LogSegment(file, file.length());
+        segment.m_raf = new RandomAccessFile(file, "r");
+        segment.m_channel = segment.m_raf.getChannel();
+        final ByteBuffer buf = ByteBuffer.allocate(HEADER_SIZE);
+        while (buf.hasRemaining() && segment.m_channel.read(buf, buf.position()) > 0) {}
+        buf.flip();
+        segment.m_header = Header.fromBuffer(buf);
+        return segment;
+    }
+
+    private void writeHeader(Header header) throws IOException {
+        final ByteBuffer buf = ByteBuffer.allocateDirect(HEADER_SIZE);
+        header.flattenToBuffer(buf);
+        buf.clear();
+        while (buf.hasRemaining()) {
+            m_channel.write(buf, buf.position());
+        }
+        m_header = header;
+    }
+
+    /**
+     * Rewrite the header of a segment that is being written to, the entries
+     * already in it stay. Safe to call while another thread writes entries.
+     */
+    void updateHeader(Header header) throws IOException {
+        writeHeader(header);
+        m_channel.force(false);
+    }
+
+    Header getHeader() {
+        return m_header;
+    }
+
+    long getId() {
+        return m_header.m_segmentId;
+    }
+
+    /**
+     * @return the number of bytes that can still be written
+     */
+    long remaining() {
+        return m_size - m_position;
+    }
+
+    /**
+     * @return the space a batch of entries takes in a segment
+     */
+    static long batchSize(int entryBytes) {
+        return (BATCH_HEADER_SIZE + entryBytes + PAGE_SIZE - 1) / PAGE_SIZE * PAGE_SIZE;
+    }
+
+    /**
+     * Write whole entries as one batch. The caller checks that they fit and
+     * forces the segment.
+     */
+    void write(ByteBuffer entries) throws IOException {
+        final long start = m_position;
+        final int length = entries.remaining();
+        m_batchHeader.clear();
+        m_batchHeader.putInt(BATCH_MAGIC).putInt(length).putLong(m_header.m_segmentId);
+        m_batchHeader.flip();
+        final long end = start + batchSize(length);
+        m_padding.clear();
+        m_padding.limit((int) (end - start - BATCH_HEADER_SIZE - length));
+        final ByteBuffer[] bufs = new ByteBuffer[] { m_batchHeader, entries, m_padding };
+        m_channel.position(start);
+        while (m_padding.hasRemaining() || entries.hasRemaining() || m_batchHeader.hasRemaining()) {
+            m_channel.write(bufs);
+        }
+        m_position = end;
+    }
+
+    /**
+     * Record the SpHandle of an entry written to this segment.
+     */
+    void noteSpHandle(long spHandle) {
+        final int partition = TxnEgo.getPartitionId(spHandle);
+        final Long max = m_maxSpHandles.get(partition);
+        if (max == null || max < spHandle) {
+            m_maxSpHandles.put(partition, spHandle);
+        }
+    }
+
+    /**
+     * @return true if the snapshot with these per partition txn ids has every entry of this segment
+     */
+    boolean isCoveredBy(Map<Integer, Long> snapshotTxnIds) {
+        for (Map.Entry<Integer, Long> e : m_maxSpHandles.entrySet()) {
+            final Long txnId = snapshotTxnIds.get(e.getKey());
+            if (txnId == null || txnId < e.getValue()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    void force() throws IOException {
+        m_channel.force(false);
+    }
+
+    void close() throws IOException {
+        if (m_raf != null) {
+            m_raf.close();
+            m_raf = null;
+            m_channel = null;
+        }
+    }
+
+    static int checksum(ByteBuffer payload) {
+        final PureJavaCrc32C crc = new PureJavaCrc32C();
+        crc.update(payload.array(), payload.arrayOffset() + payload.position(), payload.remaining());
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Fill in the header of the entry at <code>entryStart</code> of a heap
+     * buffer, the payload ends at the position of the buffer.
+     */
+    static void frame(ByteBuffer buf, int entryStart, byte type) {
+        final int payloadStart = entryStart + ENTRY_HEADER_SIZE;
+        final ByteBuffer payload = buf.duplicate();
+        payload.limit(buf.position());
+        payload.position(payloadStart);
+        buf.putInt(entryStart, buf.position() - payloadStart);
+        buf.putInt(entryStart + 4, checksum(payload));
+        buf.put(entryStart + 8, type);
+    }
+
+    /**
+     * Read the entries of the segment, stopping at the first batch that is
+     * missing or has an entry that fails its checksum. Also fills in the
+     * SpHandles of the segment.
+     */
+    List<Entry> readEntries() throws IOException {
+        final ByteBuffer buf = ByteBuffer.allocate((int) m_size);
+        while (buf.hasRemaining() && m_channel.read(buf, buf.position()) > 0) {}
+        buf.flip();
+        final List<Entry> entries = new ArrayList<>();
+        long pos = HEADER_SIZE;
+        while (pos + BATCH_HEADER_SIZE <= buf.limit()) {
+            final int batch = (int) pos;
+            final int length = buf.getInt(batch + 4);
+            if (buf.getInt(batch) != BATCH_MAGIC || buf.getLong(batch + 8) != m_header.m_segmentId ||
+                    length < 0 || batch + BATCH_HEADER_SIZE + length > buf.limit()) {
+                break;
+            }
+            final int end = batch + BATCH_HEADER_SIZE + length;
+            int entryPos = batch + BATCH_HEADER_SIZE;
+            while (entryPos < end) {
+                final int entryLength = buf.getInt(entryPos);
+                if (entryLength < 0 || entryPos + ENTRY_HEADER_SIZE + entryLength > end) {
+                    return entries;
+                }
+                final ByteBuffer payload = buf.duplicate();
+                payload.limit(entryPos + ENTRY_HEADER_SIZE + entryLength);
+                payload.position(entryPos + ENTRY_HEADER_SIZE);
+                if (checksum(payload) != buf.getInt(entryPos + 4)) {
+                    return entries;
+                }
+                final Entry entry = new Entry(buf.get(entryPos + 8), payload.slice());
+                if (entry.m_type == INITIATE_ENTRY) {
+                    noteSpHandle(entry.m_payload.getLong(0));
+                }
+                entries.add(entry);
+                entryPos += ENTRY_HEADER_SIZE + entryLength;
+            }
+            pos += batchSize(length);
+        }
+        return entries;
+    }
+}
@@ -51,6 +51,16 @@ public interface TransactionCreator
             int messageSize,
             long nowNanos);
 
+    // Create an n-partition transaction using the provided txnId.
+    public boolean createNPartitionTransaction(
+            long connectionId,
+            long txnId,
+            long uniqueId,
+            StoredProcedureInvocation invocation,
+            int[] partitions,
+            int messageSize,
+            long nowNanos);
+
     // dispatched invocation through invocation dispatcher
     public ClientResponseImpl dispatch(
             StoredProcedureInvocation invocation,
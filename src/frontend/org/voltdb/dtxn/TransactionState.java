@@ -54,6 +54,8 @@ public abstract class TransactionState extends OrderableTransaction  {
     private ArrayList<UndoAction> m_undoLog;
     // This timestamp is only used for restarted transactions
     protected long m_restartTimestamp = TransactionInfoBaseMessage.INITIAL_TIMESTAMP;
+    // System.nanoTime() when synchronous command logging made the transaction durable, 0 otherwise
+    private long m_durableNanos = 0;
 
     /**
      * Set up the final member variables from the parameters. This will
@@ -125,6 +127,14 @@ public abstract class TransactionState extends OrderableTransaction  {
         m_hash = hash == null ? 0 : hash; // don't allow null
     }
 
+    public void setDurableNanos(long durableNanos) {
+        m_durableNanos = durableNanos;
+    }
+
+    public long getDurableNanos() {
+        return m_durableNanos;
+    }
+
     public void storeResults(ClientResponseImpl response) {
         m_response = response;
     }
@@ -52,6 +52,8 @@ public abstract class AbstractImporter
 
     private final VoltLogger m_logger;
     private ImporterServerAdapter m_importServerAdapter;
+    // Groups default insert calls into bulk loads, null if batching is turned off
+    private ImportBatcher m_batcher;
     private volatile boolean m_stopping;
     private final Function<Integer, Boolean> m_backPressurePredicate = (x) -> shouldRun();
 
@@ -72,6 +74,7 @@ public abstract class AbstractImporter
      */
     public final void setImportServerAdapter(ImporterServerAdapter adapter) {
         m_importServerAdapter = adapter;
+        m_batcher = ImportBatcher.create(this, adapter, m_backPressurePredicate);
     }
 
     /**
@@ -108,6 +111,15 @@ public abstract class AbstractImporter
     public boolean callProcedure(Invocation invocation, ProcedureCallback callback)
     {
         try {
+            if (m_batcher != null) {
+                final int partition = m_importServerAdapter.getBatchPartition(invocation.getProcedure(), invocation.getParams());
+                if (partition >= 0) {
+                    // Count it as queued before the batch can possibly complete
+                    reportStat(true, invocation.getProcedure());
+                    m_batcher.add(invocation.getProcedure(), partition, invocation.getParams(), callback);
+                    return true;
+                }
+            }
             boolean result = m_importServerAdapter.callProcedure(this,
                                                                  m_backPressurePredicate,
                                                                  callback, invocation.getProcedure(), invocation.getParams());
@@ -126,6 +138,9 @@ public abstract class AbstractImporter
     public void stopImporter()
     {
         m_stopping = true;
+        if (m_batcher != null) {
+            m_batcher.close();
+        }
         stop();
     }
 
@@ -0,0 +1,189 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2018 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.importer;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.voltcore.logging.Level;
+import org.voltcore.utils.CoreUtils;
+import org.voltdb.ClientResponseImpl;
+import org.voltdb.VoltTable;
+import org.voltdb.client.ClientResponse;
+import org.voltdb.client.ProcedureCallback;
+
+/**
+ * Collects the records an importer inserts through default insert procedures,
+ * per procedure and target partition, and hands each group to the server as one
+ * bulk load. A group is sent when it is full or when its oldest record has waited
+ * for the linger time. The server reports every record back individually, so the
+ * callbacks and the commit tracking of the importer work as before.
+ */
+class ImportBatcher {
+
+    static final int BATCH_SIZE = Integer.getInteger("IMPORTER_BATCH_SIZE", 100);
+    static final long LINGER_MS = Long.getLong("IMPORTER_BATCH_LINGER_MS", 5);
+
+    static class Batch {
+        final String m_proc;
+        final int m_partition;
+        final long m_createdMs;
+        final List<Object[]> m_records = new ArrayList<>();
+        final List<ProcedureCallback> m_callbacks = new ArrayList<>();
+
+        Batch(String proc, int partition, long createdMs) {
+            m_proc = proc;
+            m_partition = partition;
+            m_createdMs = createdMs;
+        }
+    }
+
+    private final AbstractImporter m_importer;
+    private final ImporterServerAdapter m_adapter;
+    private final Function<Integer, Boolean> m_backPressurePredicate;
+    private final int m_batchSize;
+    private final long m_lingerMs;
+    // Open batches by procedure, then by partition
+    private final Map<String, Map<Integer, Batch>> m_batches = new HashMap<>();
+    // Each importer flushes its lingering batches on its own thread, so back pressure
+    // on one importer's records doesn't hold up the others
+    private ScheduledExecutorService m_flusher;
+
+    ImportBatcher(AbstractImporter importer, ImporterServerAdapter adapter,
+            Function<Integer, Boolean> backPressurePredicate, int batchSize, long lingerMs) {
+        m_importer = importer;
+        m_adapter = adapter;
+        m_backPressurePredicate = backPressurePredicate;
+        m_batchSize = batchSize;
+        m_lingerMs = lingerMs;
+    }
+
+    /**
+     * @return a batcher configured from the system properties, or null if batching is turned off
+     */
+    static ImportBatcher create(AbstractImporter importer, ImporterServerAdapter adapter,
+            Function<Integer, Boolean> backPressurePredicate) {
+        if (BATCH_SIZE <= 1) {
+            return null;
+        }
+        ImportBatcher batcher = new ImportBatcher(importer, adapter, backPressurePredicate, BATCH_SIZE, LINGER_MS);
+        batcher.startFlusher();
+        return batcher;
+    }
+
+    private void startFlusher() {
+        m_flusher = CoreUtils.getScheduledThreadPoolExecutor("Importer batch flush " + m_importer.getName(), 1,
+                CoreUtils.SMALL_STACK_SIZE);
+        m_flusher.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                flush(System.currentTimeMillis() - m_lingerMs);
+            }
+        }, m_lingerMs, m_lingerMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Add one record for a procedure the server said can be batched to <code>partition</code>.
+     */
+    void add(String proc, int partition, Object[] params, ProcedureCallback callback) {
+        Batch full = null;
+        synchronized (this) {
+            Map<Integer, Batch> byPartition = m_batches.get(proc);
+            if (byPartition == null) {
+                byPartition = new HashMap<>();
+                m_batches.put(proc, byPartition);
+            }
+            Batch batch = byPartition.get(partition);
+            if (batch == null) {
+                batch = new Batch(proc, partition, System.currentTimeMillis());
+                byPartition.put(partition, batch);
+            }
+            batch.m_records.add(params);
+            batch.m_callbacks.add(callback);
+            if (batch.m_records.size() >= m_batchSize) {
+                byPartition.remove(partition);
+                full = batch;
+            }
+        }
+        // Sending may wait on back pressure, never do that holding the lock
+        if (full != null) {
+            send(full);
+        }
+    }
+
+    /**
+     * Send every batch created before <code>createdBeforeMs</code>.
+     */
+    void flush(long createdBeforeMs) {
+        List<Batch> ready = new ArrayList<>();
+        synchronized (this) {
+            for (Map<Integer, Batch> byPartition : m_batches.values()) {
+                Iterator<Batch> it = byPartition.values().iterator();
+                while (it.hasNext()) {
+                    Batch batch = it.next();
+                    if (batch.m_createdMs <= createdBeforeMs) {
+                        ready.add(batch);
+                        it.remove();
+                    }
+                }
+            }
+        }
+        for (Batch batch : ready) {
+            send(batch);
+        }
+    }
+
+    /**
+     * Stop the periodic flush and send whatever is left.
+     */
+    void close() {
+        if (m_flusher != null) {
+            m_flusher.shutdown();
+        }
+        flush(Long.MAX_VALUE);
+    }
+
+    private void send(Batch batch) {
+        try {
+            m_adapter.callProcedureBatch(m_importer, m_backPressurePredicate,
+                    batch.m_proc, batch.m_partition, batch.m_records, batch.m_callbacks);
+        } catch (Exception ex) {
+            m_importer.rateLimitedLog(Level.ERROR, ex, "%s: Error trying to import", m_importer.getName());
+            // The records were accepted, their callbacks have to learn that they failed
+            final ClientResponseImpl failure = new ClientResponseImpl(ClientResponse.UNEXPECTED_FAILURE,
+                    new VoltTable[0], "Error trying to import: " + ex.getMessage());
+            for (ProcedureCallback cb : batch.m_callbacks) {
+                m_adapter.reportFailure(m_importer.getName(), batch.m_proc, true);
+                if (cb == null) {
+                    continue;
+                }
+                try {
+                    cb.clientCallback(failure);
+                } catch (Exception cbEx) {
+                    m_importer.rateLimitedLog(Level.ERROR, cbEx, "%s: Error in import callback", m_importer.getName());
+                }
+            }
+        }
+    }
+}
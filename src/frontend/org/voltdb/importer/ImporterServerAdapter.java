@@ -19,6 +19,7 @@ package org.voltdb.importer;
 
 import org.voltdb.client.ProcedureCallback;
 
+import java.util.List;
 import java.util.function.Function;
 
 
@@ -49,6 +50,34 @@ public interface ImporterServerAdapter {
      */
     public boolean callProcedure(AbstractImporter importer, Function<Integer, Boolean> backPressurePredicate, ProcedureCallback callback, String proc, Object... fieldList);
 
+    /**
+     * Used by the importer framework to decide whether a procedure call can be grouped
+     * with others into one bulk load.
+     *
+     * @param proc the name of the procedure that is to be executed
+     * @param fieldList the parameters to be passed in to the procedure
+     * @return the partition the call would run on if <code>proc</code> is the default insert
+     * procedure of a partitioned table, -1 if the call must be executed on its own.
+     */
+    public int getBatchPartition(String proc, Object... fieldList);
+
+    /**
+     * Used by the importer framework to execute a group of calls to the same default insert
+     * procedure, all going to the same partition, as one bulk load. Each record completes on
+     * its own: its callback receives the result of that record only, and records that can't
+     * be loaded in bulk are retried individually. The records must already have been
+     * reported as queued.
+     *
+     * @param importer the calling importer instance
+     * @param backPressurePredicate see {@link #callProcedure}
+     * @param proc the name of the default insert procedure
+     * @param partition the partition returned by {@link #getBatchPartition} for every record
+     * @param records the procedure parameters of each record
+     * @param callbacks the callback of each record, entries may be null
+     */
+    public void callProcedureBatch(AbstractImporter importer, Function<Integer, Boolean> backPressurePredicate,
+            String proc, int partition, List<Object[]> records, List<ProcedureCallback> callbacks);
+
     /**
      * This should be used by importers to report failure while trying to execute a procedure.
      *
@@ -29,6 +29,7 @@ import org.voltdb.CommandLog;
 import org.voltdb.LoadedProcedureSet;
 import org.voltdb.MemoryStats;
 import org.voltdb.QueueDepthTracker;
+import org.voltdb.QueuePriorityStats;
 import org.voltdb.StartAction;
 import org.voltdb.StarvationTracker;
 import org.voltdb.StatsAgent;
@@ -114,6 +115,10 @@ public abstract class BaseInitiator implements Initiator
         agent.registerStatsSource(StatsSelector.QUEUE,
                                   getInitiatorHSId(),
                                   qdt);
+        QueuePriorityStats qps = m_scheduler.setupPriorityStats(getInitiatorHSId());
+        agent.registerStatsSource(StatsSelector.QUEUEPRIORITY,
+                                  getInitiatorHSId(),
+                                  qps);
 
         String partitionString = " ";
         if (m_partitionId != -1) {
@@ -178,7 +178,7 @@ public class ElasticJoinProducer extends JoinProducerBase implements TaskLog {
             if (m_streamSnapshotMb != null) {
                 VoltDB.instance().getHostMessenger().removeMailbox(m_streamSnapshotMb.getHSId());
                 m_streamSnapshotMb = null;
-                JOINLOG.debug(m_whoami + " data transfer is finished");
+                JOINLOG.info(m_whoami + " data transfer is finished: " + m_dataSink.summary());
             }
 
             if (m_snapshotCompletionMonitor.isDone()) {
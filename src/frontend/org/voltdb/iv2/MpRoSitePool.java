@@ -37,12 +37,72 @@ import org.voltdb.StarvationTracker;
  * Provide a pool of MP Read-only sites to do MP RO work.
  * This should be owned by the MpTransactionTaskQueue and expects all operations
  * to be done while holding its lock.
+ *
+ * The pool runs up to mpiReadPoolSize reads at once. While reads keep backing
+ * up behind busy sites it grows one site at a time up to mpiReadPoolMaxSize,
+ * and falls back to mpiReadPoolSize as the backlog drains. Each read still
+ * merges the results of its fragments on its own site, the parallelism is
+ * across concurrent MP reads.
  */
 class MpRoSitePool {
     final static VoltLogger tmLog = new VoltLogger("TM");
 
     static int DEFAULT_MAX_POOL_SIZE = 20;
+    // How far above mpiReadPoolSize the pool may grow while reads back up, as a multiple of it
+    static int DEFAULT_BURST_FACTOR = 2;
     static int INITIAL_POOL_SIZE = 1;
+    // Idle sites above the recent demand are retired after being unused this long
+    static long IDLE_SITE_TIMEOUT_MS = Long.getLong("mpiReadPoolIdleTimeoutMs", 60 * 1000);
+
+    /**
+     * Tracks how many MP reads want a site, running or waiting in the backlog,
+     * as a decaying maximum. The pool keeps that many sites around so that
+     * bursts of MP reads don't pay for building an EE each time, and lets the
+     * rest go once they have been idle for a while.
+     *
+     * It also sets how many sites may be busy at once. That starts at the
+     * configured pool size. Each sample that finds reads waiting with every
+     * allowed site busy raises it by one, up to the maximum, and it follows
+     * the decaying demand back down to the pool size once the backlog drains.
+     */
+    static class DemandTracker {
+        // Each sample keeps 7/8 of the previous estimate when demand drops
+        private static final double DECAY = 0.875;
+        private final int m_poolSize;
+        private final int m_maxSize;
+        private double m_demand = 0;
+        private int m_sizeLimit;
+
+        DemandTracker(int poolSize, int maxSize) {
+            m_poolSize = poolSize;
+            m_maxSize = Math.max(poolSize, maxSize);
+            m_sizeLimit = poolSize;
+        }
+
+        void sample(int busySites, int queuedReads) {
+            final int current = busySites + queuedReads;
+            m_demand = Math.max(current, m_demand * DECAY);
+            if (queuedReads > 0 && busySites >= m_sizeLimit) {
+                m_sizeLimit = Math.min(m_maxSize, m_sizeLimit + 1);
+            } else {
+                m_sizeLimit = Math.max(m_poolSize, Math.min(m_sizeLimit, (int) Math.ceil(m_demand)));
+            }
+        }
+
+        /**
+         * @return the number of sites worth keeping around, busy or idle
+         */
+        int targetSize() {
+            return Math.max(INITIAL_POOL_SIZE, Math.min(m_sizeLimit, (int) Math.ceil(m_demand)));
+        }
+
+        /**
+         * @return the number of sites that may be busy at once
+         */
+        int sizeLimit() {
+            return m_sizeLimit;
+        }
+    }
 
     class MpRoSiteContext {
         final private SiteTaskerQueue m_queue;
@@ -50,6 +110,7 @@ class MpRoSitePool {
         final private CatalogContext m_catalogContext;
         final private LoadedProcedureSet m_loadedProcedures;
         final private Thread m_siteThread;
+        private long m_idleSinceMs;
 
         MpRoSiteContext(long siteId, BackendTarget backend,
                 CatalogContext context, int partitionId,
@@ -69,6 +130,14 @@ class MpRoSitePool {
             m_siteThread.start();
         }
 
+        void markIdle(long nowMs) {
+            m_idleSinceMs = nowMs;
+        }
+
+        long getIdleSinceMs() {
+            return m_idleSinceMs;
+        }
+
         boolean offer(SiteTasker task) {
             return m_queue.offer(task);
         }
@@ -111,6 +180,7 @@ class MpRoSitePool {
     private CatalogContext m_catalogContext;
     private ThreadFactory m_poolThreadFactory;
     private final int m_poolSize;
+    private final DemandTracker m_demand;
     private volatile boolean m_shuttingDown = false;
 
     MpRoSitePool(
@@ -134,7 +204,10 @@ class MpRoSitePool {
             poolSize = DEFAULT_MAX_POOL_SIZE;
         }
         m_poolSize = poolSize;
-        tmLog.info("Setting maximum size of MPI read pool to: " + m_poolSize);
+        final int maxPoolSize = Integer.getInteger("mpiReadPoolMaxSize", DEFAULT_BURST_FACTOR * m_poolSize);
+        m_demand = new DemandTracker(m_poolSize, maxPoolSize);
+        tmLog.info("Setting size of MPI read pool to: " + m_poolSize +
+                ", growing up to " + Math.max(m_poolSize, maxPoolSize) + " while reads back up");
 
         // Construct the initial pool
         for (int i = 0; i < INITIAL_POOL_SIZE; i++) {
@@ -199,6 +272,35 @@ class MpRoSitePool {
         }
     }
 
+    /**
+     * Record the current number of MP reads waiting for a site, which may let
+     * the pool grow past its configured size, and trim idle sites beyond the
+     * recent demand once they have timed out.
+     */
+    void updateQueueDepth(int queuedReads)
+    {
+        if (m_shuttingDown) {
+            return;
+        }
+        m_demand.sample(m_busySites.size(), queuedReads);
+        final int target = m_demand.targetSize();
+
+        // The least recently used idle site is at the bottom of the stack
+        final long now = System.currentTimeMillis();
+        while (m_busySites.size() + m_idleSites.size() > target && !m_idleSites.isEmpty()) {
+            MpRoSiteContext site = m_idleSites.peekLast();
+            if (now - site.getIdleSinceMs() < IDLE_SITE_TIMEOUT_MS) {
+                break;
+            }
+            m_idleSites.pollLast();
+            m_allSites.remove(site);
+            site.shutdown();
+            if (tmLog.isDebugEnabled()) {
+                tmLog.debug("Retired idle MPI read site, pool size now " + (m_busySites.size() + m_idleSites.size()));
+            }
+        }
+    }
+
     /**
      * Is there a RO site available to do MP RO work?
      */
@@ -208,7 +310,7 @@ class MpRoSitePool {
         if (m_shuttingDown) {
             return false;
         }
-        return (!m_idleSites.isEmpty() || m_busySites.size() < m_poolSize);
+        return m_busySites.size() < m_demand.sizeLimit();
     }
 
     /**
@@ -262,6 +364,7 @@ class MpRoSitePool {
         // pool with the updated catalog.
         if (site.getCatalogCRC() == m_catalogContext.getCatalogCRC()
                 && site.getCatalogVersion() == m_catalogContext.catalogVersion) {
+            site.markIdle(System.currentTimeMillis());
             m_idleSites.push(site);
         }
         else {
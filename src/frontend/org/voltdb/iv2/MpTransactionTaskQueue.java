@@ -50,6 +50,8 @@ public class MpTransactionTaskQueue extends TransactionTaskQueue
     private Deque<TransactionTask> m_backlog = new ArrayDeque<TransactionTask>();
 
     private MpRoSitePool m_sitePool = null;
+    // No point looking further into the backlog than the largest pool anyone configures
+    private static final int MAX_QUEUED_READS_SAMPLED = 64;
 
     MpTransactionTaskQueue(SiteTaskerQueue queue)
     {
@@ -226,9 +228,29 @@ public class MpTransactionTaskQueue extends TransactionTaskQueue
                 }
             }
         }
+        m_sitePool.updateQueueDepth(queuedReadCount());
         return retval;
     }
 
+    /**
+     * Count the reads at the head of the backlog that are only waiting for a free
+     * read site. Reads behind a write, or behind running writes, don't count.
+     */
+    private int queuedReadCount()
+    {
+        if (!m_currentWrites.isEmpty()) {
+            return 0;
+        }
+        int count = 0;
+        for (TransactionTask task : m_backlog) {
+            if (!task.getTransactionState().isReadOnly() || count == MAX_QUEUED_READS_SAMPLED) {
+                break;
+            }
+            count++;
+        }
+        return count;
+    }
+
     /**
      * Indicate that the transaction associated with txnId is complete.  Perform
      * management of reads/writes in progress then call taskQueueOffer() to
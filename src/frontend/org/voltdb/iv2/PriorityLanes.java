@@ -0,0 +1,143 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2018 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.iv2;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.voltdb.QueuePriorityStats;
+import org.voltdb.StoredProcedureInvocation;
+import org.voltdb.client.ProcedureInvocationExtensions;
+import org.voltdb.messaging.Iv2InitiateTaskMessage;
+
+/**
+ * Single partition initiations held back at the partition leader while its site
+ * has a backlog, one FIFO lane per request priority. They have no SpHandle yet,
+ * so handing them to the scheduler out of arrival order is the same as them
+ * arriving in that order, and replicas see the order the leader sequenced them in.
+ *
+ * The next initiation is the head of the most urgent non-empty lane, unless the
+ * head of some lane has waited longer than the maximum wait, in which case the
+ * oldest such head goes first. Initiations of the same priority keep their order.
+ *
+ * Not thread-safe, the scheduler uses it under the initiator lock.
+ */
+class PriorityLanes {
+
+    private static class Entry {
+        final Iv2InitiateTaskMessage m_message;
+        final long m_arrivalNanos;
+
+        Entry(Iv2InitiateTaskMessage message, long arrivalNanos) {
+            m_message = message;
+            m_arrivalNanos = arrivalNanos;
+        }
+    }
+
+    private final List<ArrayDeque<Entry>> m_lanes;
+    private final long m_maxWaitNanos;
+    private int m_size = 0;
+    private QueuePriorityStats m_stats;
+
+    PriorityLanes(long maxWaitNanos) {
+        m_lanes = new ArrayList<ArrayDeque<Entry>>(ProcedureInvocationExtensions.PRIORITY_LANES);
+        for (int i = 0; i < ProcedureInvocationExtensions.PRIORITY_LANES; i++) {
+            m_lanes.add(new ArrayDeque<Entry>());
+        }
+        m_maxWaitNanos = maxWaitNanos;
+    }
+
+    void setStats(QueuePriorityStats stats) {
+        m_stats = stats;
+    }
+
+    static int priorityOf(Iv2InitiateTaskMessage message) {
+        final StoredProcedureInvocation invocation = message.getStoredProcedureInvocation();
+        if (invocation == null) {
+            return ProcedureInvocationExtensions.DEFAULT_PRIORITY;
+        }
+        return Math.max(ProcedureInvocationExtensions.HIGHEST_PRIORITY,
+                Math.min(ProcedureInvocationExtensions.LOWEST_PRIORITY, invocation.getPriority()));
+    }
+
+    void offer(Iv2InitiateTaskMessage message, long nowNanos) {
+        final int priority = priorityOf(message);
+        m_lanes.get(priority).add(new Entry(message, nowNanos));
+        m_size++;
+        if (m_stats != null) {
+            m_stats.setLaneDepth(priority, m_lanes.get(priority).size());
+        }
+    }
+
+    /**
+     * @return the initiation to sequence next, or null if all lanes are empty
+     */
+    Iv2InitiateTaskMessage poll(long nowNanos) {
+        if (m_size == 0) {
+            return null;
+        }
+        int next = -1;
+        boolean aged = false;
+        long oldestArrival = Long.MAX_VALUE;
+        // starvation protection, the longest waiting head that is past the limit wins
+        for (int i = 0; i < m_lanes.size(); i++) {
+            final Entry head = m_lanes.get(i).peek();
+            if (head != null && nowNanos - head.m_arrivalNanos >= m_maxWaitNanos &&
+                    head.m_arrivalNanos < oldestArrival) {
+                oldestArrival = head.m_arrivalNanos;
+                next = i;
+                aged = true;
+            }
+        }
+        if (next == -1) {
+            for (int i = 0; i < m_lanes.size(); i++) {
+                if (!m_lanes.get(i).isEmpty()) {
+                    next = i;
+                    break;
+                }
+            }
+        }
+        final Entry entry = m_lanes.get(next).poll();
+        m_size--;
+        if (m_stats != null) {
+            m_stats.setLaneDepth(next, m_lanes.get(next).size());
+            // the most urgent lane going first is not aging even if it waited long
+            m_stats.admitted(next, nowNanos - entry.m_arrivalNanos, aged && !isMostUrgent(next));
+        }
+        return entry.m_message;
+    }
+
+    // true if no lane more urgent than this one had anything waiting
+    private boolean isMostUrgent(int lane) {
+        for (int i = 0; i < lane; i++) {
+            if (!m_lanes.get(i).isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    boolean isEmpty() {
+        return m_size == 0;
+    }
+
+    int size() {
+        return m_size;
+    }
+}
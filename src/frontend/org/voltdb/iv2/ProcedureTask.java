@@ -29,6 +29,7 @@ import org.voltdb.ClientResponseImpl;
 import org.voltdb.ExpectedProcedureException;
 import org.voltdb.ProcedureRunner;
 import org.voltdb.SiteProcedureConnection;
+import org.voltdb.StoredProcedureInvocation;
 import org.voltdb.TheHashinator;
 import org.voltdb.VoltDB;
 import org.voltdb.VoltTable;
@@ -62,6 +63,7 @@ abstract public class ProcedureTask extends TransactionTask
             SiteProcedureConnection siteConnection)
     {
         final InitiateResponseMessage response = new InitiateResponseMessage(task);
+        response.m_durableNanos = m_txnState.getDurableNanos();
 
         try {
             Object[] callerParams = null;
@@ -121,6 +123,7 @@ abstract public class ProcedureTask extends TransactionTask
                     hash = hashes[0];
                 }
                 m_txnState.setHash(hash);
+                setSessionSpHandle(task, cr);
                 //Don't pay the cost of returning the result tables for a replicated write
                 //With reads don't apply the optimization just in case
                 //                    if (!task.shouldReturnResultTables() && !task.isReadOnly()) {
@@ -158,4 +161,24 @@ abstract public class ProcedureTask extends TransactionTask
         }
         return response;
     }
+
+    /**
+     * Tell a session consistent client how far the partition had progressed when
+     * the procedure ran. A replica only runs such a read after it has seen the
+     * SpHandle the client asked for, even if the read itself is assigned an
+     * older SpHandle, so report whichever is larger.
+     */
+    private static void setSessionSpHandle(Iv2InitiateTaskMessage task, ClientResponseImpl cr)
+    {
+        final StoredProcedureInvocation invocation = task.getStoredProcedureInvocation();
+        if (!task.isSinglePartition() || invocation == null || !invocation.hasReadAfterSpHandle()) {
+            return;
+        }
+        long spHandle = task.getSpHandle();
+        final long readAfter = invocation.getReadAfterSpHandle();
+        if (TxnEgo.getPartitionId(readAfter) == TxnEgo.getPartitionId(spHandle)) {
+            spHandle = Math.max(spHandle, readAfter);
+        }
+        cr.setSpHandle(spHandle);
+    }
 }
@@ -306,7 +306,7 @@ public class RejoinProducer extends JoinProducerBase {
             if (m_rejoinSiteProcessor.isEOF() == false) {
                 returnToTaskQueue(sourcesReady);
             } else {
-                REJOINLOG.debug(m_whoami + "Rejoin snapshot transfer is finished");
+                REJOINLOG.info(m_whoami + "Rejoin snapshot transfer is finished: " + m_rejoinSiteProcessor.summary());
                 m_rejoinSiteProcessor.close();
 
                 if (m_streamSnapshotMb != null) {
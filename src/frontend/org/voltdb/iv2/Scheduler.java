@@ -27,6 +27,7 @@ import org.voltcore.messaging.TransactionInfoBaseMessage;
 import org.voltcore.messaging.VoltMessage;
 import org.voltdb.LoadedProcedureSet;
 import org.voltdb.QueueDepthTracker;
+import org.voltdb.QueuePriorityStats;
 import org.voltdb.SiteProcedureConnection;
 import org.voltdb.StarvationTracker;
 import org.voltdb.VoltDB;
@@ -160,6 +161,10 @@ abstract public class Scheduler implements InitiatorMessageHandler
         m_tasks.setStarvationTracker(tracker);
     }
 
+    public QueuePriorityStats setupPriorityStats(long siteId) {
+        return m_tasks.setupPriorityStats(siteId);
+    }
+
     public QueueDepthTracker setupQueueDepthTracker(long siteId) {
         return m_tasks.setupQueueDepthTracker(siteId);
     }
@@ -56,6 +56,7 @@ import org.voltdb.PostGISBackend;
 import org.voltdb.PostgreSQLBackend;
 import org.voltdb.ProcedureRunner;
 import org.voltdb.SiteProcedureConnection;
+import org.voltdb.SiteProfileStats;
 import org.voltdb.SiteSnapshotConnection;
 import org.voltdb.SnapshotDataTarget;
 import org.voltdb.SnapshotFormat;
@@ -64,6 +65,7 @@ import org.voltdb.SnapshotTableTask;
 import org.voltdb.StartAction;
 import org.voltdb.StatsAgent;
 import org.voltdb.StatsSelector;
+import org.voltdb.StoredProcedureInvocation;
 import org.voltdb.SystemProcedureCatalog;
 import org.voltdb.SystemProcedureExecutionContext;
 import org.voltdb.TableStats;
@@ -94,6 +96,7 @@ import org.voltdb.jni.ExecutionEngine.TaskType;
 import org.voltdb.jni.ExecutionEngineIPC;
 import org.voltdb.jni.ExecutionEngineJNI;
 import org.voltdb.jni.MockExecutionEngine;
+import org.voltdb.join.MigrationThrottle;
 import org.voltdb.messaging.CompleteTransactionMessage;
 import org.voltdb.messaging.FastDeserializer;
 import org.voltdb.messaging.FragmentTaskMessage;
@@ -165,6 +168,9 @@ public class Site implements Runnable, SiteProcedureConnection, SiteSnapshotConn
     final TableStats m_tableStats;
     final IndexStats m_indexStats;
     final MemoryStats m_memStats;
+    // null if site profiling is off
+    final SiteProfileStats m_profileStats;
+    final MigrationThrottle m_migrationThrottle;
 
     // Each execution site manages snapshot using a SnapshotSiteProcessor
     private SnapshotSiteProcessor m_snapshotter;
@@ -653,11 +659,27 @@ public class Site implements Runnable, SiteProcedureConnection, SiteSnapshotConn
                                       m_siteId,
                                       m_indexStats);
             m_memStats = memStats;
+            if (SiteProfileStats.ENABLED) {
+                m_profileStats = new SiteProfileStats(m_siteId);
+                agent.registerStatsSource(StatsSelector.SITE_PROFILE,
+                                          m_siteId,
+                                          m_profileStats);
+            } else {
+                m_profileStats = null;
+            }
+            m_migrationThrottle = new MigrationThrottle(m_siteId, m_partitionId, MigrationThrottle.LATENCY_SLO_MS,
+                    SnapshotSiteProcessor.m_snapshotBufferLength, 5 * snapshotPriority,
+                    MigrationThrottle.MIN_BYTES_PER_SECOND);
+            agent.registerStatsSource(StatsSelector.MIGRATION,
+                                      m_siteId,
+                                      m_migrationThrottle);
         } else {
             // MPI doesn't need to track these stats
             m_tableStats = null;
             m_indexStats = null;
             m_memStats = null;
+            m_profileStats = null;
+            m_migrationThrottle = null;
         }
     }
 
@@ -711,7 +733,8 @@ public class Site implements Runnable, SiteProcedureConnection, SiteSnapshotConn
             public boolean idle(long now) {
                 return (now - 5) > m_lastTxnTime;
             }
-        });
+        },
+        m_migrationThrottle);
     }
 
     /** Create a native VoltDB execution engine */
@@ -823,7 +846,13 @@ public class Site implements Runnable, SiteProcedureConnection, SiteSnapshotConn
                         m_currentTxnId = ((TransactionTask)task).getTxnId();
                         m_lastTxnTime = EstTime.currentTimeMillis();
                     }
-                    task.run(getSiteProcedureConnection());
+                    if (m_profileStats != null) {
+                        m_profileStats.beginTask(m_ee.getExecutionNanos());
+                        task.run(getSiteProcedureConnection());
+                        m_profileStats.endTask(profileName(task), m_ee.getExecutionNanos());
+                    } else {
+                        task.run(getSiteProcedureConnection());
+                    }
                 } else if (m_rejoinState == kStateReplayingRejoin) {
                     // Rejoin operation poll and try to do some catchup work. Tasks
                     // are responsible for logging any rejoin work they might have.
@@ -889,6 +918,30 @@ public class Site implements Runnable, SiteProcedureConnection, SiteSnapshotConn
         }
     }
 
+    /**
+     * @return the procedure a task ran, or the kind of task for work outside of procedures
+     */
+    private static String profileName(SiteTasker task) {
+        String name = null;
+        if (task instanceof FragmentTask) {
+            name = ((FragmentTask) task).m_fragmentMsg.getProcedureName();
+        } else if (task instanceof SysprocFragmentTask) {
+            name = ((SysprocFragmentTask) task).m_fragmentMsg.getProcedureName();
+        } else if (task instanceof TransactionTask) {
+            StoredProcedureInvocation invocation = ((TransactionTask) task).getTransactionState().getInvocation();
+            if (invocation != null) {
+                name = invocation.getProcName();
+            }
+        }
+        if (name == null) {
+            name = task.getClass().getSimpleName();
+            if (name.isEmpty()) {
+                name = task.getClass().getName();
+            }
+        }
+        return name;
+    }
+
     ParticipantTransactionState global_replay_mpTxn = null;
     boolean replayFromTaskLog(MinimumRatioMaintainer mrm) throws IOException
     {
@@ -20,6 +20,7 @@ package org.voltdb.iv2;
 import java.io.IOException;
 
 import org.voltdb.SiteProcedureConnection;
+import org.voltdb.client.ProcedureInvocationExtensions;
 import org.voltdb.rejoin.TaskLog;
 
 public abstract class SiteTasker {
@@ -34,6 +35,11 @@ public abstract class SiteTasker {
         return queueOfferTime;
     }
 
+    /** Request priority of the work, only client invocations have one of their own */
+    public int getPriority() {
+        return ProcedureInvocationExtensions.DEFAULT_PRIORITY;
+    }
+
     public static abstract class SiteTaskerRunnable extends SiteTasker {
         protected String taskInfo = "";
         abstract void run();
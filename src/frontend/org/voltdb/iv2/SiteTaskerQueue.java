@@ -21,6 +21,7 @@ import java.util.concurrent.LinkedTransferQueue;
 
 import org.voltcore.utils.CoreUtils;
 import org.voltdb.QueueDepthTracker;
+import org.voltdb.QueuePriorityStats;
 import org.voltdb.StarvationTracker;
 
 /** SiteTaskerScheduler orders SiteTaskers for execution. */
@@ -29,6 +30,7 @@ public class SiteTaskerQueue
     private final LinkedTransferQueue<SiteTasker> m_tasks = new LinkedTransferQueue<SiteTasker>();
     private StarvationTracker m_starvationTracker;
     private QueueDepthTracker m_queueDepthTracker;
+    private QueuePriorityStats m_priorityStats;
     private int m_partitionId;
 
     public SiteTaskerQueue(int partitionId) {
@@ -59,12 +61,14 @@ public class SiteTaskerQueue
             m_starvationTracker.beginStarvation();
         } else {
             m_queueDepthTracker.pollUpdate(task.getQueueOfferTime());
+            recordPriorityWait(task);
             return task;
         }
         try {
             task = CoreUtils.queueSpinTake(m_tasks);
             // task is never null
             m_queueDepthTracker.pollUpdate(task.getQueueOfferTime());
+            recordPriorityWait(task);
             return task;
         } finally {
             m_starvationTracker.endStarvation();
@@ -77,6 +81,7 @@ public class SiteTaskerQueue
         SiteTasker task = m_tasks.poll();
         if (task != null) {
             m_queueDepthTracker.pollUpdate(task.getQueueOfferTime());
+            recordPriorityWait(task);
         }
         return task;
     }
@@ -100,6 +105,36 @@ public class SiteTaskerQueue
         return m_queueDepthTracker;
     }
 
+    private void recordPriorityWait(SiteTasker task) {
+        if (m_priorityStats != null) {
+            m_priorityStats.polled(task.getPriority(), System.nanoTime() - task.getQueueOfferTime());
+        }
+    }
+
+    public QueuePriorityStats setupPriorityStats(long siteId) {
+        m_priorityStats = new QueuePriorityStats(siteId);
+        return m_priorityStats;
+    }
+
+    public QueuePriorityStats getPriorityStats() {
+        return m_priorityStats;
+    }
+
+    /**
+     * Number of queued tasks, kept by the queue depth tracker. Unlike
+     * {@link #size()} this doesn't walk the queue.
+     */
+    public int getDepth() {
+        return m_queueDepthTracker == null ? 0 : m_queueDepthTracker.getDepth();
+    }
+
+    /**
+     * Longest recent wait of a task in the queue, see {@link QueueDepthTracker#getRecentMaxWaitNanos()}.
+     */
+    public long getRecentMaxWaitNanos() {
+        return m_queueDepthTracker == null ? 0 : m_queueDepthTracker.getRecentMaxWaitNanos();
+    }
+
     public int size() {
         return m_tasks.size();
     }
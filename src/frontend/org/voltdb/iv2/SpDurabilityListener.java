@@ -150,8 +150,11 @@ public class SpDurabilityListener implements DurabilityListener {
         }
 
         private void queuePendingTasks() {
+            // Everything in this list became durable with the same fsync
+            final long durableNanos = System.nanoTime();
             // Notify all sync transactions and the SP UniqueId listeners
             for (TransactionTask o : m_pendingTransactions) {
+                o.getTransactionState().setDurableNanos(durableNanos);
                 final VoltTrace.TraceEventBatch traceLog = VoltTrace.log(VoltTrace.Category.SPI);
                 if (traceLog != null) {
                     traceLog.add(() -> VoltTrace.endAsync("durability",
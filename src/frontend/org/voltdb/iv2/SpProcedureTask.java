@@ -26,9 +26,11 @@ import org.voltcore.utils.LatencyWatchdog;
 import org.voltdb.ClientResponseImpl;
 import org.voltdb.PartitionDRGateway;
 import org.voltdb.SiteProcedureConnection;
+import org.voltdb.StoredProcedureInvocation;
 import org.voltdb.VoltTable;
 import org.voltdb.client.BatchTimeoutOverrideType;
 import org.voltdb.client.ClientResponse;
+import org.voltdb.client.ProcedureInvocationExtensions;
 import org.voltdb.messaging.InitiateResponseMessage;
 import org.voltdb.messaging.Iv2InitiateTaskMessage;
 import org.voltdb.rejoin.TaskLog;
@@ -51,10 +53,19 @@ public class SpProcedureTask extends ProcedureTask
         HOST_TRACE_ENABLED = hostLog.isTraceEnabled();
     }
 
+    private final int m_priority;
+
     public SpProcedureTask(Mailbox initiator, String procName, TransactionTaskQueue queue,
                   Iv2InitiateTaskMessage msg)
     {
        super(initiator, procName, new SpTransactionState(msg), queue);
+       final StoredProcedureInvocation invocation = msg.getStoredProcedureInvocation();
+       m_priority = invocation == null ? ProcedureInvocationExtensions.DEFAULT_PRIORITY : invocation.getPriority();
+    }
+
+    @Override
+    public int getPriority() {
+        return m_priority;
     }
 
     @Override
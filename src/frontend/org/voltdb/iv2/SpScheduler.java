@@ -27,13 +27,12 @@ import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Queue;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
-import java.util.stream.Collectors;
+import java.util.concurrent.TimeUnit;
 
 import org.voltcore.logging.VoltLogger;
 import org.voltcore.messaging.HostMessenger;
@@ -41,12 +40,16 @@ import org.voltcore.messaging.Mailbox;
 import org.voltcore.messaging.TransactionInfoBaseMessage;
 import org.voltcore.messaging.VoltMessage;
 import org.voltcore.utils.CoreUtils;
+import org.voltcore.utils.LongHashMap;
+import org.voltcore.utils.SortedLongPairMap;
 import org.voltdb.ClientResponseImpl;
 import org.voltdb.CommandLog;
 import org.voltdb.CommandLog.DurabilityListener;
+import org.voltdb.QueuePriorityStats;
 import org.voltdb.RealVoltDB;
 import org.voltdb.SnapshotCompletionInterest;
 import org.voltdb.SnapshotCompletionMonitor;
+import org.voltdb.StoredProcedureInvocation;
 import org.voltdb.SystemProcedureCatalog;
 import org.voltdb.VoltDB;
 import org.voltdb.VoltTable;
@@ -84,6 +87,25 @@ public class SpScheduler extends Scheduler implements SnapshotCompletionInterest
     static final VoltLogger tmLog = new VoltLogger("TM");
     static final VoltLogger hostLog = new VoltLogger("HOST");
 
+    // Once this many tasks are queued at the site of a partition leader, new single partition
+    // calls wait in per-priority lanes and are sequenced most urgent first. 0 turns lanes off.
+    static final int PRIORITY_ADMISSION_DEPTH = Integer.getInteger("PRIORITY_ADMISSION_DEPTH", 64);
+    // A call that waited this long in its lane is sequenced next whatever its priority
+    static final long PRIORITY_MAX_WAIT_NANOS =
+            TimeUnit.MILLISECONDS.toNanos(Long.getLong("PRIORITY_MAX_WAIT_MS", 250));
+    // A session consistent read that waited this long for its replica to catch up is failed back to the client
+    static final long SESSION_READ_MAX_PARK_MS = Long.getLong("SESSION_READ_MAX_PARK_MS", 5000);
+
+    static class ParkedSessionRead {
+        final Iv2InitiateTaskMessage m_message;
+        final long m_parkedNanos;
+
+        ParkedSessionRead(Iv2InitiateTaskMessage message, long parkedNanos) {
+            m_message = message;
+            m_parkedNanos = parkedNanos;
+        }
+    }
+
     static class DuplicateCounterKey implements Comparable<DuplicateCounterKey> {
         private final long m_txnId;
         private final long m_spHandle;
@@ -150,16 +172,27 @@ public class SpScheduler extends Scheduler implements SnapshotCompletionInterest
     private List<Long> m_replicaHSIds = new ArrayList<>();
     long m_sendToHSIds[] = new long[0];
     private final TransactionTaskQueue m_pendingTasks;
-    private final Map<Long, TransactionState> m_outstandingTxns =
-        new HashMap<Long, TransactionState>();
-    private final TreeMap<DuplicateCounterKey, DuplicateCounter> m_duplicateCounters =
-        new TreeMap<DuplicateCounterKey, DuplicateCounter>();
+    private final LongHashMap<TransactionState> m_outstandingTxns =
+        new LongHashMap<TransactionState>();
+    // keyed by (txnId, spHandle), in the order of DuplicateCounterKey
+    private final SortedLongPairMap<DuplicateCounter> m_duplicateCounters =
+        new SortedLongPairMap<DuplicateCounter>();
     // MP fragment tasks or completion tasks pending durability
     private final Map<Long, Queue<TransactionTask>> m_mpsPendingDurability =
         new HashMap<Long, Queue<TransactionTask>>();
     private CommandLog m_cl;
     private final SnapshotCompletionMonitor m_snapMonitor;
     private BufferedReadLog m_bufferedReadLog = null;
+    // Session consistent reads that reached this replica before the SpHandle
+    // their client has already observed, keyed by that SpHandle.
+    private final TreeMap<Long, List<ParkedSessionRead>> m_parkedSessionReads =
+        new TreeMap<Long, List<ParkedSessionRead>>();
+    // A check for parked reads that timed out is scheduled while any are parked
+    private boolean m_parkedReadCheckScheduled = false;
+    // Single partition calls the leader holds back while its site has a backlog
+    private final PriorityLanes m_priorityLanes = new PriorityLanes(PRIORITY_MAX_WAIT_NANOS);
+    // A task is queued at the site to admit held back calls once the backlog ahead of it is done
+    private boolean m_priorityWakeupQueued = false;
 
     // Need to track when command log replay is complete (even if not performed) so that
     // we know when we can start writing viable replay sets to the fault log.
@@ -204,11 +237,26 @@ public class SpScheduler extends Scheduler implements SnapshotCompletionInterest
         m_pendingTasks.initializeScoreboard(siteId, mailBox);
     }
 
+    @Override
+    public QueuePriorityStats setupPriorityStats(long siteId) {
+        QueuePriorityStats stats = super.setupPriorityStats(siteId);
+        m_priorityLanes.setStats(stats);
+        return stats;
+    }
+
     @Override
     public void setLeaderState(boolean isLeader)
     {
+        // Only the leader sequences held back calls, don't strand them on demotion
+        if (!isLeader) {
+            sequencePrioritizedInitiations();
+        }
         super.setLeaderState(isLeader);
         m_snapMonitor.addInterest(this);
+        // The leader has seen everything its parked reads wait for
+        if (isLeader && !m_parkedSessionReads.isEmpty()) {
+            releaseParkedSessionReads();
+        }
     }
 
     @Override
@@ -269,21 +317,20 @@ public class SpScheduler extends Scheduler implements SnapshotCompletionInterest
         if (m_isLeader && snapshotSaveTxnId != -1) {
             // HACKY HACKY HACKY, we know at this time there will be only one fragment with this txnId, so it's safe to use
             // Long.MAX_VALUE to match the duplicate counter key with the given txn id (there is only one!)
-            Entry<DuplicateCounterKey, DuplicateCounter> snapshotFragment =
-                    m_duplicateCounters.floorEntry(new DuplicateCounterKey(snapshotSaveTxnId, Long.MAX_VALUE));
-            assert(snapshotFragment != null);
-            snapshotFragment.getValue().addReplicas(replicasAdded);
+            int snapshotFragment = m_duplicateCounters.floorIndex(snapshotSaveTxnId, Long.MAX_VALUE);
+            assert(snapshotFragment >= 0);
+            m_duplicateCounters.valueAt(snapshotFragment).addReplicas(replicasAdded);
             // Forward fragment message to new replica
-            m_mailbox.send(replicasAdded, snapshotFragment.getValue().getOpenMessage());
+            m_mailbox.send(replicasAdded, m_duplicateCounters.valueAt(snapshotFragment).getOpenMessage());
         }
         // Cleanup duplicate counters and collect DONE counters
         // in this list for further processing.
         List<DuplicateCounterKey> doneCounters = new LinkedList<DuplicateCounterKey>();
-        for (Entry<DuplicateCounterKey, DuplicateCounter> entry : m_duplicateCounters.entrySet()) {
-            DuplicateCounter counter = entry.getValue();
+        for (int i = 0; i < m_duplicateCounters.size(); i++) {
+            DuplicateCounter counter = m_duplicateCounters.valueAt(i);
             int result = counter.updateReplicas(m_replicaHSIds);
             if (result == DuplicateCounter.DONE) {
-                doneCounters.add(entry.getKey());
+                doneCounters.add(new DuplicateCounterKey(m_duplicateCounters.firstAt(i), m_duplicateCounters.secondAt(i)));
             }
         }
 
@@ -297,7 +344,7 @@ public class SpScheduler extends Scheduler implements SnapshotCompletionInterest
         // Maintain the CI invariant that responses arrive in txnid order.
         Collections.sort(doneCounters);
         for (DuplicateCounterKey key : doneCounters) {
-            DuplicateCounter counter = m_duplicateCounters.remove(key);
+            DuplicateCounter counter = m_duplicateCounters.remove(key.m_txnId, key.m_spHandle);
 
             final TransactionState txn = m_outstandingTxns.get(key.m_txnId);
             if (txn == null || txn.isDone()) {
@@ -470,6 +517,196 @@ public class SpScheduler extends Scheduler implements SnapshotCompletionInterest
         else {
             throw new RuntimeException("UNKNOWN MESSAGE TYPE, BOOM!");
         }
+
+        // Any message may have moved this replica forward or made it the leader
+        if (!m_parkedSessionReads.isEmpty()) {
+            releaseParkedSessionReads();
+        }
+        // Responses mean the site worked through some of its backlog
+        if (!m_priorityLanes.isEmpty()) {
+            admitPrioritizedInitiations();
+        }
+    }
+
+    /**
+     * New single partition calls at the leader go into a priority lane instead of
+     * being sequenced right away while the site has a backlog, or while earlier
+     * calls are still waiting in the lanes so that calls of the same priority keep
+     * their order. Replays and every-site system procedures are never held back.
+     */
+    private boolean holdForPriority(Iv2InitiateTaskMessage message)
+    {
+        if (PRIORITY_ADMISSION_DEPTH <= 0 || !m_isLeader || message.isForReplay() || message.isForReplica()) {
+            return false;
+        }
+        final SystemProcedureCatalog.Config sysproc =
+                SystemProcedureCatalog.listing.get(message.getStoredProcedureName());
+        if (sysproc != null && sysproc.getEverysite()) {
+            return false;
+        }
+        if (m_priorityLanes.isEmpty() && m_tasks.getDepth() < PRIORITY_ADMISSION_DEPTH) {
+            return false;
+        }
+        m_priorityLanes.offer(message, System.nanoTime());
+        queuePriorityWakeup();
+        return true;
+    }
+
+    /**
+     * Sequence held back calls, most urgent first, until the site backlog is back
+     * at the admission depth.
+     */
+    private void admitPrioritizedInitiations()
+    {
+        final long now = System.nanoTime();
+        while (!m_priorityLanes.isEmpty() && m_tasks.getDepth() < PRIORITY_ADMISSION_DEPTH) {
+            sequenceIv2InitiateTaskMessage(m_priorityLanes.poll(now));
+        }
+        if (!m_priorityLanes.isEmpty()) {
+            queuePriorityWakeup();
+        }
+    }
+
+    /**
+     * Sequence every held back call regardless of the site backlog, for when this
+     * site is about to stop being the leader.
+     */
+    private void sequencePrioritizedInitiations()
+    {
+        final long now = System.nanoTime();
+        while (!m_priorityLanes.isEmpty()) {
+            sequenceIv2InitiateTaskMessage(m_priorityLanes.poll(now));
+        }
+    }
+
+    // Without it held back calls would wait for the next message if the backlog
+    // ahead of them produced no responses
+    private void queuePriorityWakeup()
+    {
+        if (m_priorityWakeupQueued) {
+            return;
+        }
+        m_priorityWakeupQueued = true;
+        final SiteTaskerRunnable wakeup = new SiteTasker.SiteTaskerRunnable() {
+            @Override
+            void run() {
+                synchronized (m_lock) {
+                    m_priorityWakeupQueued = false;
+                    if (!m_priorityLanes.isEmpty()) {
+                        admitPrioritizedInitiations();
+                    }
+                }
+            }
+        };
+        wakeup.taskInfo = "PriorityLanesWakeup";
+        m_tasks.offer(wakeup);
+    }
+
+    /**
+     * A session consistent read carries the SpHandle of the last transaction its
+     * client saw on this partition. A replica that hasn't received that transaction
+     * from the leader yet holds the read back instead of answering with older data.
+     * The leader has seen everything, so it never parks.
+     */
+    private boolean parkSessionReadIfBehind(Iv2InitiateTaskMessage message)
+    {
+        if (m_isLeader || !message.isReadOnly() || message.isForReplay()) {
+            return false;
+        }
+        final StoredProcedureInvocation invocation = message.getStoredProcedureInvocation();
+        if (invocation == null || !invocation.hasReadAfterSpHandle()) {
+            return false;
+        }
+        final long readAfter = invocation.getReadAfterSpHandle();
+        // A handle from another partition (the hashinator changed under the client) can't be compared
+        if (TxnEgo.getPartitionId(readAfter) != m_partitionId || readAfter <= getCurrentTxnId()) {
+            return false;
+        }
+        List<ParkedSessionRead> parked = m_parkedSessionReads.get(readAfter);
+        if (parked == null) {
+            parked = new ArrayList<ParkedSessionRead>();
+            m_parkedSessionReads.put(readAfter, parked);
+        }
+        parked.add(new ParkedSessionRead(message, System.nanoTime()));
+        scheduleParkedSessionReadCheck();
+        if (tmLog.isDebugEnabled()) {
+            tmLog.debug("Parked session read " + message.getStoredProcedureName() + " until " +
+                    TxnEgo.txnIdToString(readAfter) + ", replica is at " + TxnEgo.txnIdToString(getCurrentTxnId()));
+        }
+        return true;
+    }
+
+    // Parked reads are otherwise only looked at when a message arrives, and a client
+    // may ask for an SpHandle this replica never receives
+    private void scheduleParkedSessionReadCheck()
+    {
+        if (m_parkedReadCheckScheduled) {
+            return;
+        }
+        m_parkedReadCheckScheduled = true;
+        VoltDB.instance().scheduleWork(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (m_lock) {
+                    m_parkedReadCheckScheduled = false;
+                    checkParkedSessionReads(System.nanoTime());
+                }
+            }
+        }, SESSION_READ_MAX_PARK_MS, -1, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Run the parked session reads this replica has caught up with, and fail the ones
+     * that have waited longer than {@link #SESSION_READ_MAX_PARK_MS}.
+     */
+    void checkParkedSessionReads(long nowNanos)
+    {
+        releaseParkedSessionReads();
+        final long maxParkNanos = TimeUnit.MILLISECONDS.toNanos(SESSION_READ_MAX_PARK_MS);
+        final Iterator<List<ParkedSessionRead>> it = m_parkedSessionReads.values().iterator();
+        while (it.hasNext()) {
+            final List<ParkedSessionRead> reads = it.next();
+            final Iterator<ParkedSessionRead> readIt = reads.iterator();
+            while (readIt.hasNext()) {
+                final ParkedSessionRead read = readIt.next();
+                if (nowNanos - read.m_parkedNanos >= maxParkNanos) {
+                    readIt.remove();
+                    final InitiateResponseMessage response = new InitiateResponseMessage(read.m_message);
+                    response.setResults(new ClientResponseImpl(ClientResponse.GRACEFUL_FAILURE,
+                            new VoltTable[0],
+                            "Replica of partition " + m_partitionId + " did not catch up with the session within " +
+                            SESSION_READ_MAX_PARK_MS + " ms, the read can be retried"));
+                    m_mailbox.send(response.getInitiatorHSId(), response);
+                }
+            }
+            if (reads.isEmpty()) {
+                it.remove();
+            }
+        }
+        if (!m_parkedSessionReads.isEmpty()) {
+            scheduleParkedSessionReadCheck();
+        }
+    }
+
+    /**
+     * Run the parked session reads this replica has caught up with, or all of them
+     * once it has been promoted to leader.
+     */
+    private void releaseParkedSessionReads()
+    {
+        final long caughtUp = m_isLeader ? Long.MAX_VALUE : getCurrentTxnId();
+        final Map<Long, List<ParkedSessionRead>> ready = m_parkedSessionReads.headMap(caughtUp, true);
+        if (ready.isEmpty()) {
+            return;
+        }
+        final List<ParkedSessionRead> released = new ArrayList<ParkedSessionRead>();
+        for (List<ParkedSessionRead> reads : ready.values()) {
+            released.addAll(reads);
+        }
+        ready.clear();
+        for (ParkedSessionRead read : released) {
+            handleIv2InitiateTaskMessage(read.m_message);
+        }
     }
 
     // SpScheduler expects to see InitiateTaskMessages corresponding to single-partition
@@ -481,6 +718,19 @@ public class SpScheduler extends Scheduler implements SnapshotCompletionInterest
                     "should never receive multi-partition initiations.");
         }
 
+        if (parkSessionReadIfBehind(message)) {
+            return;
+        }
+
+        if (holdForPriority(message)) {
+            return;
+        }
+
+        sequenceIv2InitiateTaskMessage(message);
+    }
+
+    private void sequenceIv2InitiateTaskMessage(Iv2InitiateTaskMessage message)
+    {
         final String procedureName = message.getStoredProcedureName();
         long newSpHandle;
         long uniqueId = Long.MIN_VALUE;
@@ -601,7 +851,7 @@ public class SpScheduler extends Scheduler implements SnapshotCompletionInterest
                         m_replicaHSIds,
                         replmsg);
 
-                safeAddToDuplicateCounterMap(new DuplicateCounterKey(msg.getTxnId(), newSpHandle), counter);
+                safeAddToDuplicateCounterMap(msg.getTxnId(), newSpHandle, counter);
             }
         }
         else {
@@ -705,7 +955,7 @@ public class SpScheduler extends Scheduler implements SnapshotCompletionInterest
                 message.getTxnId(),
                 expectedHSIds,
                 message);
-        safeAddToDuplicateCounterMap(new DuplicateCounterKey(message.getTxnId(), message.getSpHandle()), counter);
+        safeAddToDuplicateCounterMap(message.getTxnId(), message.getSpHandle(), counter);
 
         m_uniqueIdGenerator.updateMostRecentlyGeneratedUniqueId(message.getUniqueId());
         // is local repair necessary?
@@ -738,7 +988,7 @@ public class SpScheduler extends Scheduler implements SnapshotCompletionInterest
                 message.getTxnId(),
                 expectedHSIds,
                 message);
-        safeAddToDuplicateCounterMap(new DuplicateCounterKey(message.getTxnId(), message.getSpHandle()), counter);
+        safeAddToDuplicateCounterMap(message.getTxnId(), message.getSpHandle(), counter);
 
         // is local repair necessary?
         if (needsRepair.contains(m_mailbox.getHSId())) {
@@ -781,8 +1031,7 @@ public class SpScheduler extends Scheduler implements SnapshotCompletionInterest
          * possible to read an unconfirmed transaction's writes that will be lost.
          */
         final long spHandle = message.getSpHandle();
-        final DuplicateCounterKey dcKey = new DuplicateCounterKey(message.getTxnId(), spHandle);
-        DuplicateCounter counter = m_duplicateCounters.get(dcKey);
+        DuplicateCounter counter = m_duplicateCounters.get(message.getTxnId(), spHandle);
         final VoltTrace.TraceEventBatch traceLog = VoltTrace.log(VoltTrace.Category.SPI);
 
         // All reads will have no duplicate counter.
@@ -812,7 +1061,7 @@ public class SpScheduler extends Scheduler implements SnapshotCompletionInterest
 
             int result = counter.offer(message);
             if (result == DuplicateCounter.DONE) {
-                m_duplicateCounters.remove(dcKey);
+                m_duplicateCounters.remove(message.getTxnId(), spHandle);
                 setRepairLogTruncationHandle(spHandle, message.isForOldLeader());
                 m_mailbox.send(counter.m_destinationId, counter.getLastResponse());
             }
@@ -1008,7 +1257,7 @@ public class SpScheduler extends Scheduler implements SnapshotCompletionInterest
                             m_replicaHSIds,
                             replmsg);
                 }
-                safeAddToDuplicateCounterMap(new DuplicateCounterKey(message.getTxnId(), newSpHandle), counter);
+                safeAddToDuplicateCounterMap(message.getTxnId(), newSpHandle, counter);
             }
         } else {
             // message processed on replica
@@ -1185,7 +1434,7 @@ public class SpScheduler extends Scheduler implements SnapshotCompletionInterest
 
         // Send the message to the duplicate counter, if any
         DuplicateCounter counter =
-            m_duplicateCounters.get(new DuplicateCounterKey(message.getTxnId(), message.getSpHandle()));
+            m_duplicateCounters.get(message.getTxnId(), message.getSpHandle());
         final TransactionState txn = m_outstandingTxns.get(message.getTxnId());
         if (counter != null) {
             String traceName = "recvfragment";
@@ -1204,7 +1453,7 @@ public class SpScheduler extends Scheduler implements SnapshotCompletionInterest
                     setRepairLogTruncationHandle(txn.m_spHandle, message.isForOldLeader());
                 }
 
-                m_duplicateCounters.remove(new DuplicateCounterKey(message.getTxnId(), message.getSpHandle()));
+                m_duplicateCounters.remove(message.getTxnId(), message.getSpHandle());
                 FragmentResponseMessage resp = (FragmentResponseMessage)counter.getLastResponse();
                 // MPI is tracking deps per partition HSID.  We need to make
                 // sure we write ours into the message getting sent to the MPI
@@ -1291,7 +1540,7 @@ public class SpScheduler extends Scheduler implements SnapshotCompletionInterest
                                                msg.getTxnId(),
                                                m_replicaHSIds,
                                                msg);
-                safeAddToDuplicateCounterMap(new DuplicateCounterKey(msg.getTxnId(), msg.getSpHandle()), counter);
+                safeAddToDuplicateCounterMap(msg.getTxnId(), msg.getSpHandle(), counter);
             }
 
             Iv2Trace.logCompleteTransactionMessage(msg, m_mailbox.getHSId());
@@ -1316,8 +1565,7 @@ public class SpScheduler extends Scheduler implements SnapshotCompletionInterest
 
     private void handleCompleteTransactionResponseMessage(CompleteTransactionResponseMessage msg)
     {
-        final DuplicateCounterKey duplicateCounterKey = new DuplicateCounterKey(msg.getTxnId(), msg.getSpHandle());
-        DuplicateCounter counter = m_duplicateCounters.get(duplicateCounterKey);
+        DuplicateCounter counter = m_duplicateCounters.get(msg.getTxnId(), msg.getSpHandle());
         boolean txnDone = true;
 
         if (msg.isRestart()) {
@@ -1327,12 +1575,12 @@ public class SpScheduler extends Scheduler implements SnapshotCompletionInterest
         if (msg.isAborted() && counter != null) {
             // The last completion was an abort due to a repair/abort or restart/abort so we need to remove duplicate counters
             // for stale versions of the restarted Txn that never made it past the scoreboard
-            final DuplicateCounterKey lowestPossible = new DuplicateCounterKey(msg.getTxnId(), 0);
-            DuplicateCounterKey staleMatch = m_duplicateCounters.ceilingKey(lowestPossible);
-            while (staleMatch != null && staleMatch.compareTo(duplicateCounterKey) == -1) {
-                m_duplicateCounters.remove(staleMatch);
-                staleMatch = m_duplicateCounters.ceilingKey(lowestPossible);
-            };
+            final int staleMatch = m_duplicateCounters.ceilingIndex(msg.getTxnId(), 0);
+            while (staleMatch >= 0 && staleMatch < m_duplicateCounters.size() &&
+                    m_duplicateCounters.firstAt(staleMatch) == msg.getTxnId() &&
+                    m_duplicateCounters.secondAt(staleMatch) < msg.getSpHandle()) {
+                m_duplicateCounters.removeAt(staleMatch);
+            }
         }
 
         if (counter != null) {
@@ -1342,7 +1590,7 @@ public class SpScheduler extends Scheduler implements SnapshotCompletionInterest
         if (txnDone) {
             assert !msg.isRestart();
             final TransactionState txn = m_outstandingTxns.remove(msg.getTxnId());
-            m_duplicateCounters.remove(duplicateCounterKey);
+            m_duplicateCounters.remove(msg.getTxnId(), msg.getSpHandle());
 
             if (txn != null) {
                 // Set the truncation handle here instead of when processing
@@ -1417,13 +1665,17 @@ public class SpScheduler extends Scheduler implements SnapshotCompletionInterest
             }
         }
         builder.append("\n  most recent SP handle: ").append(TxnEgo.txnIdToString(getCurrentTxnId()));
-        builder.append("\n  outstanding txns: ").append(TxnEgo.txnIdCollectionToString(m_outstandingTxns.keySet()));
+        builder.append("\n  outstanding txns: ").append(TxnEgo.txnIdCollectionToString(m_outstandingTxns.keys()));
+        if (!m_priorityLanes.isEmpty()) {
+            builder.append("\n  calls held back for priority: ").append(m_priorityLanes.size());
+        }
         builder.append("\n  ");
         m_pendingTasks.toString(builder);
         if (m_duplicateCounters.size() > 0) {
             builder.append("\n  DUPLICATE COUNTERS:\n ");
-            for (Entry<DuplicateCounterKey, DuplicateCounter> e : m_duplicateCounters.entrySet()) {
-                builder.append("  ").append(e.getKey().toString()).append(": ").append(e.getValue().toString());
+            for (int i = 0; i < m_duplicateCounters.size(); i++) {
+                DuplicateCounterKey key = new DuplicateCounterKey(m_duplicateCounters.firstAt(i), m_duplicateCounters.secondAt(i));
+                builder.append("  ").append(key.toString()).append(": ").append(m_duplicateCounters.valueAt(i).toString());
             }
         }
         builder.append("END of STATE DUMP FOR SITE: ").append(who);
@@ -1451,7 +1703,7 @@ public class SpScheduler extends Scheduler implements SnapshotCompletionInterest
                         msg.getTxnId(),
                         m_replicaHSIds,
                         msg);
-                safeAddToDuplicateCounterMap(new DuplicateCounterKey(msg.getTxnId(), newSpHandle), counter);
+                safeAddToDuplicateCounterMap(msg.getTxnId(), newSpHandle, counter);
             }
         } else {
             setMaxSeenTxnId(msg.getSpHandle());
@@ -1474,8 +1726,7 @@ public class SpScheduler extends Scheduler implements SnapshotCompletionInterest
 
     private void handleDummyTransactionResponseMessage(DummyTransactionResponseMessage message) {
         final long spHandle = message.getSpHandle();
-        final DuplicateCounterKey dcKey = new DuplicateCounterKey(message.getTxnId(), spHandle);
-        DuplicateCounter counter = m_duplicateCounters.get(dcKey);
+        DuplicateCounter counter = m_duplicateCounters.get(message.getTxnId(), spHandle);
         if (counter == null) {
             // this will be on SPI without k-safety or replica only with k-safety
             setRepairLogTruncationHandle(spHandle, message.isForOldLeader());
@@ -1488,7 +1739,7 @@ public class SpScheduler extends Scheduler implements SnapshotCompletionInterest
         int result = counter.offer(message);
         if (result == DuplicateCounter.DONE) {
             // DummyTransactionResponseMessage ends on SPI
-            m_duplicateCounters.remove(dcKey);
+            m_duplicateCounters.remove(message.getTxnId(), spHandle);
             setRepairLogTruncationHandle(spHandle, message.isForOldLeader());
         }
     }
@@ -1590,10 +1841,10 @@ public class SpScheduler extends Scheduler implements SnapshotCompletionInterest
      * Just using "put" on the dup counter map is unsafe.
      * It won't detect the case where keys collide from two different transactions.
      */
-    void safeAddToDuplicateCounterMap(DuplicateCounterKey dpKey, DuplicateCounter counter) {
-        DuplicateCounter existingDC = m_duplicateCounters.get(dpKey);
+    void safeAddToDuplicateCounterMap(long txnId, long spHandle, DuplicateCounter counter) {
+        DuplicateCounter existingDC = m_duplicateCounters.get(txnId, spHandle);
         if (existingDC == null) {
-            m_duplicateCounters.put(dpKey, counter);
+            m_duplicateCounters.put(txnId, spHandle, counter);
         } else {
             existingDC.logWithCollidingDuplicateCounters(counter);
             VoltDB.crashGlobalVoltDB("DUPLICATE COUNTER MISMATCH: two duplicate counter keys collided.", true, null);
@@ -1606,7 +1857,7 @@ public class SpScheduler extends Scheduler implements SnapshotCompletionInterest
     {
         m_replaySequencer.dump(m_mailbox.getHSId());
         hostLog.warn("[dump] current truncation handle: " + TxnEgo.txnIdToString(m_repairLogTruncationHandle) + " "
-                + m_bufferedReadLog.toString());
+                + m_bufferedReadLog.toString() + " parked session reads: " + m_parkedSessionReads.size());
     }
 
     private void updateMaxScheduledTransactionSpHandle(long newSpHandle) {
@@ -1701,6 +1952,8 @@ public class SpScheduler extends Scheduler implements SnapshotCompletionInterest
     }
 
     public void checkPointMigratePartitionLeader() {
+        // Calls held back for priority were routed here, sequence them while still the leader
+        sequencePrioritizedInitiations();
         m_migratePartitionLeaderCheckPoint = getMaxScheduledTxnSpHandle();
         tmLog.info("MigratePartitionLeader checkpoint on " + CoreUtils.hsIdToString(m_mailbox.getHSId()) +
                     " sphandle: " + m_migratePartitionLeaderCheckPoint);
@@ -1710,14 +1963,19 @@ public class SpScheduler extends Scheduler implements SnapshotCompletionInterest
         if (m_migratePartitionLeaderCheckPoint < 0) {
             return false;
         }
-        List<DuplicateCounterKey> keys = m_duplicateCounters.keySet().stream()
-                .filter(k->k.m_spHandle < m_migratePartitionLeaderCheckPoint && k.isSpTransaction()).collect(Collectors.toList());
+        List<DuplicateCounterKey> keys = new ArrayList<>();
+        for (int i = 0; i < m_duplicateCounters.size(); i++) {
+            DuplicateCounterKey k = new DuplicateCounterKey(m_duplicateCounters.firstAt(i), m_duplicateCounters.secondAt(i));
+            if (k.m_spHandle < m_migratePartitionLeaderCheckPoint && k.isSpTransaction()) {
+                keys.add(k);
+            }
+        }
         if (!keys.isEmpty()) {
             if (tmLog.isDebugEnabled()) {
                 StringBuilder builder = new StringBuilder();
                 for (DuplicateCounterKey dc : keys) {
                     builder.append(TxnEgo.txnIdToString(dc.m_txnId) + "(" + dc.m_spHandle + "),");
-                    DuplicateCounter counter = m_duplicateCounters.get(dc);
+                    DuplicateCounter counter = m_duplicateCounters.get(dc.m_txnId, dc.m_spHandle);
                     builder.append(counter.m_openMessage + "\n");
                 }
                 tmLog.debug("Duplicate counters on " + CoreUtils.hsIdToString(m_mailbox.getHSId()) + " have keys smaller than the sphandle:" + m_migratePartitionLeaderCheckPoint + "\n" + builder.toString());
@@ -1757,23 +2015,24 @@ public class SpScheduler extends Scheduler implements SnapshotCompletionInterest
         boolean forwarding = false;
         // HACKY HACKY HACKY, we know at this time there will be only one fragment with this txnId, so it's safe to use
         // Long.MAX_VALUE to match the duplicate counter key with the given txn id (there is only one!)
-        DuplicateCounterKey snapshotFragment = m_duplicateCounters.floorKey(new DuplicateCounterKey(txnId, Long.MAX_VALUE));
-        assert (snapshotFragment != null);
-        long snapshotSpHandle = snapshotFragment.m_spHandle;
-        for (Map.Entry<DuplicateCounterKey, DuplicateCounter> entry : m_duplicateCounters.entrySet()) {
+        int snapshotFragment = m_duplicateCounters.floorIndex(txnId, Long.MAX_VALUE);
+        assert (snapshotFragment >= 0);
+        long snapshotTxnId = m_duplicateCounters.firstAt(snapshotFragment);
+        long snapshotSpHandle = m_duplicateCounters.secondAt(snapshotFragment);
+        for (int i = 0; i < m_duplicateCounters.size(); i++) {
             // First find the mp fragment currently running
-            if (!forwarding && entry.getKey().m_spHandle > snapshotSpHandle) {
+            if (!forwarding && m_duplicateCounters.secondAt(i) > snapshotSpHandle) {
                 forwarding = true;
                 if (tmLog.isDebugEnabled()) {
                     tmLog.debug("Start forwarding pending tasks to rejoin node.");
                 }
             }
             // Then forward any message after the MP txn, I expect them are all Iv2InitiateMessages
-            if (forwarding && entry.getKey().m_txnId != snapshotFragment.m_txnId) {
+            if (forwarding && m_duplicateCounters.firstAt(i) != snapshotTxnId) {
                 if (tmLog.isDebugEnabled()) {
-                    tmLog.debug(entry.getValue().getOpenMessage().getMessageInfo());
+                    tmLog.debug(m_duplicateCounters.valueAt(i).getOpenMessage().getMessageInfo());
                 }
-                m_mailbox.send(replicasAdded, entry.getValue().getOpenMessage());
+                m_mailbox.send(replicasAdded, m_duplicateCounters.valueAt(i).getOpenMessage());
             }
         }
         if (forwarding) {
@@ -1794,14 +2053,13 @@ public class SpScheduler extends Scheduler implements SnapshotCompletionInterest
         if (m_isLeader && m_sendToHSIds.length > 0) {
             m_mailbox.send(m_sendToHSIds, new MPBacklogFlushMessage());
         }
-        Iterator<Entry<Long, TransactionState>> iter = m_outstandingTxns.entrySet().iterator();
-        while (iter.hasNext()) {
-            Entry<Long, TransactionState> entry = iter.next();
-            TransactionState txnState = entry.getValue();
-            if (TxnEgo.getPartitionId(entry.getKey()) == MpInitiator.MP_INIT_PID ) {
+        LongHashMap<TransactionState>.Cursor iter = m_outstandingTxns.cursor();
+        while (iter.advance()) {
+            TransactionState txnState = iter.value();
+            if (TxnEgo.getPartitionId(iter.key()) == MpInitiator.MP_INIT_PID ) {
                 if (txnState.isReadOnly()) {
                     txnState.setDone();
-                    m_duplicateCounters.entrySet().removeIf((e) -> e.getKey().m_txnId == entry.getKey());
+                    m_duplicateCounters.removeFirst(iter.key());
                     iter.remove();
                 }
             }
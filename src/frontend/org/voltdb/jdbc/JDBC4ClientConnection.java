@@ -38,6 +38,7 @@ import org.voltdb.client.ClientStatsContext;
 import org.voltdb.client.NoConnectionsException;
 import org.voltdb.client.ProcCallException;
 import org.voltdb.client.ProcedureCallback;
+import org.voltdb.client.ResultCursor;
 
 /**
  * Provides a high-level wrapper around the core {@link Client} class to provide performance
@@ -359,6 +360,32 @@ public class JDBC4ClientConnection implements Closeable {
         }
     }
 
+    /**
+     * Run a SELECT statement and open a server side cursor over its result.
+     *
+     * @param fetchRows
+     *            the maximum number of rows in a chunk.
+     * @param sql
+     *            the SELECT statement.
+     * @param parameters
+     *            the parameters of the statement.
+     * @return the cursor.
+     * @throws IOException
+     * @throws NoConnectionsException
+     * @throws ProcCallException
+     */
+    public ResultCursor openCursor(int fetchRows, String sql, Object... parameters)
+            throws NoConnectionsException, IOException, ProcCallException {
+        ClientImpl currentClient = this.getClient();
+        try {
+            return ResultCursor.open(currentClient, fetchRows, sql, parameters);
+        }
+        catch (NoConnectionsException e) {
+            this.dropClient(currentClient);
+            throw e;
+        }
+    }
+
     /**
      * Internal asynchronous callback used to track the execution performance of asynchronous calls.
      */
@@ -426,6 +453,44 @@ public class JDBC4ClientConnection implements Closeable {
         }
     }
 
+    /**
+     * Executes a procedure asynchronously with a client side timeout, then calls the provided
+     * user callback with the server response upon completion.
+     *
+     * @return false if the client connection was unable to post the request to the server
+     */
+    public boolean executeAsync(ProcedureCallback callback, long timeout, TimeUnit unit,
+            String procedure, Object... parameters)
+            throws NoConnectionsException, IOException
+    {
+        ClientImpl currentClient = this.getClient();
+        if (unit == null) {
+            unit = TimeUnit.SECONDS;
+        }
+        try {
+            return currentClient.callProcedureWithClientTimeout(new TrackingCallback(this, procedure, callback),
+                    BatchTimeoutOverrideType.NO_TIMEOUT, procedure, timeout, unit, parameters);
+        }
+        catch (NoConnectionsException e) {
+            this.dropClient(currentClient);
+            throw e;
+        }
+    }
+
+    /**
+     * @return the partition a single partition procedure call will be routed to,
+     * or -1 if the client doesn't know
+     */
+    public int getPartitionForProcedure(String procedure, Object... parameters)
+    {
+        try {
+            return this.getClient().getPartitionForProcedure(procedure, parameters);
+        }
+        catch (IOException e) {
+            return -1;
+        }
+    }
+
     /**
      * Executes a procedure asynchronously, returning a Future that can be used by the caller to
      * wait upon completion before processing the server response.
@@ -45,6 +45,8 @@ public class JDBC4Connection implements java.sql.Connection, IVoltDBConnection
     public static final String COMMIT_THROW_EXCEPTION = "jdbc.committhrowexception";
     public static final String ROLLBACK_THROW_EXCEPTION = "jdbc.rollbackthrowexception";
     public static final String QUERYTIMEOUT_UNIT = "jdbc.querytimeout.unit";
+    public static final String BATCH_PIPELINING = "jdbc.batchpipelining";
+    public static final String CURSOR_FETCH = "jdbc.cursorfetch";
 
     protected final JDBC4ClientConnection NativeConnection;
     protected final String User;
@@ -63,6 +65,18 @@ public class JDBC4Connection implements java.sql.Connection, IVoltDBConnection
         }
     }
 
+    // executeBatch() sends all entries before waiting for any response
+    boolean isBatchPipelined()
+    {
+        return props.getProperty(BATCH_PIPELINING, "false").equalsIgnoreCase("true");
+    }
+
+    // forward only queries with a fetch size read their rows through a server side cursor
+    boolean isCursorFetchEnabled()
+    {
+        return props.getProperty(CURSOR_FETCH, "false").equalsIgnoreCase("true");
+    }
+
     private void checkClosed() throws SQLException
     {
         if (this.isClosed())
@@ -208,7 +222,9 @@ public class JDBC4Connection implements java.sql.Connection, IVoltDBConnection
         checkClosed();
         // Reject options that don't coincide with normal VoltDB behavior.
         checkCreateStatementSupported(resultSetType, resultSetConcurrency);
-        return createStatement();
+        JDBC4Statement statement = (JDBC4Statement) createStatement();
+        statement.setResultSetType(resultSetType);
+        return statement;
     }
 
     // Creates a Statement object that will generate ResultSet objects with the given type, concurrency, and holdability.
@@ -218,7 +234,9 @@ public class JDBC4Connection implements java.sql.Connection, IVoltDBConnection
         checkClosed();
         // Reject options that don't coincide with normal VoltDB behavior.
         checkCreateStatementSupported(resultSetType, resultSetConcurrency, resultSetHoldability);
-        return createStatement();
+        JDBC4Statement statement = (JDBC4Statement) createStatement();
+        statement.setResultSetType(resultSetType);
+        return statement;
     }
 
     // Factory method for creating Struct objects.
@@ -388,7 +406,9 @@ public class JDBC4Connection implements java.sql.Connection, IVoltDBConnection
     {
         if ((resultSetType == ResultSet.TYPE_SCROLL_INSENSITIVE || resultSetType == ResultSet.TYPE_FORWARD_ONLY) &&
                 resultSetConcurrency == ResultSet.CONCUR_READ_ONLY) {
-            return prepareStatement(sql);
+            JDBC4PreparedStatement statement = (JDBC4PreparedStatement) prepareStatement(sql);
+            statement.setResultSetType(resultSetType);
+            return statement;
         }
         checkClosed();
         throw SQLError.noSupport();
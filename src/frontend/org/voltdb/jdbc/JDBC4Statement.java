@@ -28,13 +28,19 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
 import org.voltdb.VoltTable;
 import org.voltdb.VoltType;
 import org.voltdb.client.ClientResponse;
 import org.voltdb.client.ProcCallException;
+import org.voltdb.client.ProcedureCallback;
+import org.voltdb.client.ResultCursor;
 import org.voltdb.parser.JDBCParser;
 import org.voltdb.parser.SQLLexer;
 import org.voltdb.parser.JDBCParser.ParsedCall;
@@ -126,24 +132,7 @@ public class JDBC4Statement implements java.sql.Statement
             {
                 ClientResponse response = e.getClientResponse();
                 if (response != null) {
-                    // Map response status to specific JDBC exception, mostly GENERAL_ERROR except
-                    // for connection problems.
-                    switch (response.getStatus()) {
-                    case ClientResponse.CONNECTION_LOST:
-                        throw SQLError.get(e, SQLError.CONNECTION_CLOSED, "CONNECTION_LOST", e.getMessage());
-                    case ClientResponse.CONNECTION_TIMEOUT:
-                        throw SQLError.get(e, SQLError.CONNECTION_FAILURE, "CONNECTION_TIMEOUT", e.getMessage());
-                    case ClientResponse.SERVER_UNAVAILABLE:
-                        throw SQLError.get(e, SQLError.CONNECTION_FAILURE, "CONNECTION_UNAVAILABLE", e.getMessage());
-                    case ClientResponse.USER_ABORT:
-                        throw SQLError.get(e, SQLError.GENERAL_ERROR, "USER_ABORT", e.getMessage());
-                    case ClientResponse.UNEXPECTED_FAILURE:
-                        throw SQLError.get(e, SQLError.GENERAL_ERROR, "UNEXPECTED_FAILURE", e.getMessage());
-                    case ClientResponse.GRACEFUL_FAILURE:
-                        throw SQLError.get(e, SQLError.GENERAL_ERROR, "GRACEFUL_FAILURE", e.getMessage());
-                    default:
-                        throw SQLError.get(e, SQLError.GENERAL_ERROR, String.format("status=%d", (int)response.getStatus()), e.getMessage());
-                    }
+                    throw responseToSQLException(e, response, e.getMessage());
                 } else {
                     throw SQLError.get(e, SQLError.GENERAL_ERROR, e.getMessage());
                 }
@@ -154,6 +143,91 @@ public class JDBC4Statement implements java.sql.Statement
             }
         }
 
+        /**
+         * Run this SELECT statement and open a server side cursor over its result.
+         * @return the cursor, or null if this is not a SELECT statement
+         */
+        protected ResultCursor openCursor(JDBC4ClientConnection connection, int fetchRows) throws SQLException {
+            try
+            {
+                if (this.type == TYPE_SELECT) {
+                    return connection.openCursor(fetchRows, this.sql[0]);
+                } else if (this.type == TYPE_EXEC && this.queryType == TYPE_SELECT && "@AdHoc".equals(this.sql[0])) {
+                    Object[] params = new Object[this.parameters.length - 1];
+                    System.arraycopy(this.parameters, 1, params, 0, params.length);
+                    return connection.openCursor(fetchRows, (String) this.parameters[0], params);
+                }
+                return null;
+            }
+            catch(ProcCallException e)
+            {
+                ClientResponse response = e.getClientResponse();
+                if (response != null) {
+                    throw responseToSQLException(e, response, e.getMessage());
+                } else {
+                    throw SQLError.get(e, SQLError.GENERAL_ERROR, e.getMessage());
+                }
+            }
+            catch(IOException e)
+            {
+                throw SQLError.get(e, SQLError.CONNECTION_FAILURE, e.getMessage());
+            }
+        }
+
+        /**
+         * Queue this statement without waiting for the response.
+         * @return false if the client could not queue the call
+         */
+        protected boolean executeAsync(JDBC4ClientConnection connection, ProcedureCallback callback,
+                long timeout, TimeUnit queryTimeOutUnit) throws SQLException {
+            try
+            {
+                if (this.type == TYPE_EXEC) {
+                    return connection.executeAsync(callback, timeout, queryTimeOutUnit, this.sql[0], this.parameters);
+                } else {
+                    return connection.executeAsync(callback, timeout, queryTimeOutUnit, "@AdHoc", this.sql[0]);
+                }
+            }
+            catch(IOException e)
+            {
+                throw SQLError.get(e, SQLError.CONNECTION_FAILURE, e.getMessage());
+            }
+        }
+
+        /**
+         * The client only knows the partitioning of stored procedures. SQL statements,
+         * prepared INSERTs and UPSERTs included, run through @AdHoc and are planned on
+         * the server, so the client can't tell their partition.
+         * @return the partition this statement will run on, or -1 if the client can't tell
+         */
+        protected int getPartition(JDBC4ClientConnection connection) {
+            if (this.type != TYPE_EXEC || this.parameters == null || this.sql[0].startsWith("@")) {
+                return -1;
+            }
+            return connection.getPartitionForProcedure(this.sql[0], this.parameters);
+        }
+
+        // Map response status to specific JDBC exception, mostly GENERAL_ERROR except
+        // for connection problems.
+        static SQLException responseToSQLException(Exception cause, ClientResponse response, String message) {
+            switch (response.getStatus()) {
+            case ClientResponse.CONNECTION_LOST:
+                return SQLError.get(cause, SQLError.CONNECTION_CLOSED, "CONNECTION_LOST", message);
+            case ClientResponse.CONNECTION_TIMEOUT:
+                return SQLError.get(cause, SQLError.CONNECTION_FAILURE, "CONNECTION_TIMEOUT", message);
+            case ClientResponse.SERVER_UNAVAILABLE:
+                return SQLError.get(cause, SQLError.CONNECTION_FAILURE, "CONNECTION_UNAVAILABLE", message);
+            case ClientResponse.USER_ABORT:
+                return SQLError.get(cause, SQLError.GENERAL_ERROR, "USER_ABORT", message);
+            case ClientResponse.UNEXPECTED_FAILURE:
+                return SQLError.get(cause, SQLError.GENERAL_ERROR, "UNEXPECTED_FAILURE", message);
+            case ClientResponse.GRACEFUL_FAILURE:
+                return SQLError.get(cause, SQLError.GENERAL_ERROR, "GRACEFUL_FAILURE", message);
+            default:
+                return SQLError.get(cause, SQLError.GENERAL_ERROR, String.format("status=%d", (int)response.getStatus()), message);
+            }
+        }
+
         public static boolean isUpdateResult(VoltTable table)
         {
             return ((table.getColumnName(0).length() == 0 || table.getColumnName(0).equals("modified_tuples"))&& table.getRowCount() == 1 && table.getColumnCount() == 1 && table.getColumnType(0) == VoltType.BIGINT);
@@ -231,6 +305,7 @@ public class JDBC4Statement implements java.sql.Statement
     protected boolean isClosed = false;
     private int fetchDirection = ResultSet.FETCH_FORWARD;
     private int fetchSize = 0;
+    private int resultSetType = ResultSet.TYPE_SCROLL_INSENSITIVE;
     private final int maxFieldSize = VoltType.MAX_VALUE_LENGTH;
     private int maxRows = VoltTable.MAX_SERIALIZED_TABLE_LENGTH/2; // Not exactly true, but best type of estimate we can give...
     protected JDBC4Connection sourceConnection;
@@ -420,6 +495,9 @@ public class JDBC4Statement implements java.sql.Statement
         if (batch == null || batch.size() == 0) {
             return new int[0];
         }
+        if (sourceConnection.isBatchPipelined()) {
+            return executePipelinedBatch();
+        }
 
         int[] updateCounts = new int[batch.size()];
         // keep a running total of update counts
@@ -453,8 +531,115 @@ public class JDBC4Statement implements java.sql.Statement
         return updateCounts;
     }
 
+    /**
+     * Send every batch entry without waiting for the previous one to complete, then
+     * collect the update counts in batch order. Entries the client can route to a
+     * single partition are sent grouped by partition, in batch order within each
+     * partition; there is no ordering between entries on different partitions or
+     * between entries the client can't route. All entries are attempted, so on
+     * failure the BatchUpdateException carries a count or EXECUTE_FAILED for each.
+     *
+     * Only stored procedure calls are grouped. Batches of SQL statements are sent
+     * as one group in batch order, they gain the pipelining but not the grouping.
+     */
+    private int[] executePipelinedBatch() throws SQLException
+    {
+        final int count = batch.size();
+        final ClientResponse[] responses = new ClientResponse[count];
+        final SQLException[] errors = new SQLException[count];
+        final CountDownLatch outstanding = new CountDownLatch(count);
+        final JDBC4ClientConnection connection = sourceConnection.NativeConnection;
+
+        try {
+            // Group by partition, keeping the order each partition is first seen in
+            Map<Integer, List<Integer>> byPartition = new LinkedHashMap<Integer, List<Integer>>();
+            for (int i = 0; i < count; i++) {
+                int partition = batch.get(i).getPartition(connection);
+                List<Integer> entries = byPartition.get(partition);
+                if (entries == null) {
+                    entries = new ArrayList<Integer>();
+                    byPartition.put(partition, entries);
+                }
+                entries.add(i);
+            }
+
+            for (List<Integer> entries : byPartition.values()) {
+                for (final Integer i : entries) {
+                    boolean queued = false;
+                    try {
+                        queued = batch.get(i).executeAsync(connection, new ProcedureCallback() {
+                            @Override
+                            public void clientCallback(ClientResponse response) {
+                                responses[i] = response;
+                                outstanding.countDown();
+                            }
+                        }, m_timeout, sourceConnection.queryTimeOutUnit);
+                    } catch (SQLException x) {
+                        errors[i] = x;
+                    }
+                    if (!queued) {
+                        if (errors[i] == null) {
+                            errors[i] = SQLError.get(SQLError.CONNECTION_FAILURE, "Unable to queue batch entry");
+                        }
+                        outstanding.countDown();
+                    }
+                }
+            }
+
+            try {
+                outstanding.await();
+            } catch (InterruptedException e) {
+                throw SQLError.get(e, SQLError.GENERAL_ERROR, e.getMessage());
+            }
+        } finally {
+            clearBatch();
+        }
+
+        int[] updateCounts = new int[count];
+        int runningUpdateCount = 0;
+        SQLException firstError = null;
+        for (int i = 0; i < count; i++) {
+            if (errors[i] == null && responses[i] != null) {
+                if (responses[i].getStatus() == ClientResponse.SUCCESS) {
+                    try {
+                        updateCounts[i] = (int) responses[i].getResults()[0].fetchRow(0).getLong(0);
+                        runningUpdateCount += updateCounts[i];
+                        continue;
+                    } catch (RuntimeException e) {
+                        errors[i] = SQLError.get(e, SQLError.GENERAL_ERROR, e.getMessage());
+                    }
+                } else {
+                    errors[i] = VoltSQL.responseToSQLException(null, responses[i], responses[i].getStatusString());
+                }
+            }
+            updateCounts[i] = EXECUTE_FAILED;
+            if (firstError == null) {
+                firstError = errors[i];
+            } else {
+                firstError.setNextException(errors[i]);
+            }
+        }
+        if (firstError != null) {
+            throw new BatchUpdateException(updateCounts, firstError);
+        }
+        this.lastUpdateCount = runningUpdateCount;
+        return updateCounts;
+    }
+
     protected ResultSet executeQuery(VoltSQL query) throws SQLException
     {
+        // Forward only queries with a fetch size stream their rows from a server
+        // side cursor rather than return them in one response, if the connection
+        // asks for it. The result set of a cursor can't scroll.
+        if (this.fetchSize > 0 && this.resultSetType == ResultSet.TYPE_FORWARD_ONLY &&
+                this.sourceConnection.isCursorFetchEnabled()) {
+            ResultCursor cursor = query.openCursor(this.sourceConnection.NativeConnection, this.fetchSize);
+            if (cursor != null) {
+                setCurrentResult(null, -1);
+                this.result = new JDBC4StreamingResultSet(this, cursor, this.fetchSize, this.maxRows);
+                return this.result;
+            }
+        }
         setCurrentResult(query.execute(this.sourceConnection.NativeConnection, this.m_timeout, this.sourceConnection.queryTimeOutUnit), -1);
         return this.result;
     }
@@ -646,7 +831,13 @@ public class JDBC4Statement implements java.sql.Statement
     public int getResultSetType() throws SQLException
     {
         checkClosed();
-        return ResultSet.TYPE_SCROLL_INSENSITIVE;
+        return this.resultSetType;
+    }
+
+    // Set by the connection to the result set type the statement was created with.
+    void setResultSetType(int type)
+    {
+        this.resultSetType = type;
     }
 
     // Retrieves the current result as an update count; if the result is a ResultSet object or there are no more results, -1 is returned.
@@ -0,0 +1,188 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2018 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.jdbc;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.voltdb.VoltTable;
+import org.voltdb.client.ProcCallException;
+import org.voltdb.client.ResultCursor;
+
+/**
+ * A forward only result set that reads its rows from a server side
+ * {@link ResultCursor}, one chunk of fetch size rows at a time. Only the
+ * current chunk and the one being fetched are held on the client.
+ */
+public class JDBC4StreamingResultSet extends JDBC4ResultSet {
+    private final ResultCursor m_cursor;
+    private final int m_fetchSize;
+    // no limit if 0
+    private final int m_maxRows;
+    private int m_row = 0;
+    private boolean m_afterLast = false;
+
+    JDBC4StreamingResultSet(Statement sourceStatement, ResultCursor cursor, int fetchSize, int maxRows)
+            throws SQLException {
+        super(sourceStatement, nextChunk(cursor));
+        m_cursor = cursor;
+        m_fetchSize = fetchSize;
+        m_maxRows = maxRows;
+    }
+
+    private static VoltTable nextChunk(ResultCursor cursor) throws SQLException {
+        try {
+            return cursor.next();
+        } catch (ProcCallException e) {
+            throw JDBC4Statement.VoltSQL.responseToSQLException(e, e.getClientResponse(), e.getMessage());
+        } catch (IOException e) {
+            throw SQLError.get(e, SQLError.CONNECTION_FAILURE, e.getMessage());
+        }
+    }
+
+    private SQLException forwardOnly() {
+        return SQLError.get(SQLError.ILLEGAL_STATEMENT, "TYPE_FORWARD_ONLY result set");
+    }
+
+    @Override
+    public boolean next() throws SQLException {
+        checkClosed();
+        if (m_afterLast) {
+            return false;
+        }
+        if (m_maxRows > 0 && m_row == m_maxRows) {
+            m_afterLast = true;
+            return false;
+        }
+        try {
+            while (!table.advanceRow()) {
+                final VoltTable chunk = nextChunk(m_cursor);
+                if (chunk == null) {
+                    m_afterLast = true;
+                    return false;
+                }
+                table = chunk;
+            }
+        } catch (SQLException e) {
+            throw e;
+        } catch (Exception x) {
+            throw SQLError.get(x);
+        }
+        m_row++;
+        return true;
+    }
+
+    @Override
+    public int getRow() throws SQLException {
+        checkClosed();
+        return m_afterLast ? 0 : m_row;
+    }
+
+    @Override
+    public boolean isBeforeFirst() throws SQLException {
+        checkClosed();
+        return m_row == 0 && !m_afterLast;
+    }
+
+    @Override
+    public boolean isAfterLast() throws SQLException {
+        checkClosed();
+        return m_afterLast;
+    }
+
+    @Override
+    public boolean isFirst() throws SQLException {
+        checkClosed();
+        return m_row == 1 && !m_afterLast;
+    }
+
+    @Override
+    public boolean isLast() throws SQLException {
+        checkClosed();
+        if (m_row == 0 || m_afterLast) {
+            return false;
+        }
+        if (m_maxRows > 0 && m_row == m_maxRows) {
+            return true;
+        }
+        // the cursor has no chunk in flight once the server has no rows left
+        return table.getActiveRowIndex() == table.getRowCount() - 1 && m_cursor.getServerRowsRemaining() == 0;
+    }
+
+    @Override
+    public boolean absolute(int row) throws SQLException {
+        throw forwardOnly();
+    }
+
+    @Override
+    public boolean relative(int rows) throws SQLException {
+        throw forwardOnly();
+    }
+
+    @Override
+    public boolean previous() throws SQLException {
+        throw forwardOnly();
+    }
+
+    @Override
+    public boolean first() throws SQLException {
+        throw forwardOnly();
+    }
+
+    @Override
+    public boolean last() throws SQLException {
+        throw forwardOnly();
+    }
+
+    @Override
+    public void beforeFirst() throws SQLException {
+        throw forwardOnly();
+    }
+
+    @Override
+    public void afterLast() throws SQLException {
+        throw forwardOnly();
+    }
+
+    @Override
+    public int getType() throws SQLException {
+        return TYPE_FORWARD_ONLY;
+    }
+
+    @Override
+    public int getFetchSize() throws SQLException {
+        return m_fetchSize;
+    }
+
+    // Closing before the last row deletes the rows the server still holds.
+    @Override
+    public void close() throws SQLException {
+        if (isClosed()) {
+            return;
+        }
+        super.close();
+        try {
+            m_cursor.close();
+        } catch (ProcCallException e) {
+            throw JDBC4Statement.VoltSQL.responseToSQLException(e, e.getClientResponse(), e.getMessage());
+        } catch (IOException e) {
+            throw SQLError.get(e, SQLError.CONNECTION_FAILURE, e.getMessage());
+        }
+    }
+}
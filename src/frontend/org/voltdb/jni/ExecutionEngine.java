@@ -36,6 +36,7 @@ import org.voltdb.CatalogContext;
 import org.voltdb.PlannerStatsCollector;
 import org.voltdb.PlannerStatsCollector.CacheUse;
 import org.voltdb.PrivateVoltTableFactory;
+import org.voltdb.SiteProfileStats;
 import org.voltdb.StatsAgent;
 import org.voltdb.StatsSelector;
 import org.voltdb.TableStreamType;
@@ -160,6 +161,8 @@ public abstract class ExecutionEngine implements FastDeserializer.Deserializatio
     private long m_startTime;
     private long m_lastMsgTime;
     private long m_logDuration = INITIAL_LOG_DURATION;
+    // Total time spent executing plan fragments, read by the site profile
+    private long m_executionNanos = 0;
     private String[] m_sqlTexts = null;
 
     /** information about EE calls back to JAVA. For test.*/
@@ -660,6 +663,7 @@ public abstract class ExecutionEngine implements FastDeserializer.Deserializatio
             long undoQuantumToken,
             boolean traceOn) throws EEException
     {
+        final long startNanos = SiteProfileStats.ENABLED ? System.nanoTime() : 0;
         try {
             // For now, re-transform undoQuantumToken to readOnly. Redundancy work in site.executePlanFragments()
             m_fragmentContext = (undoQuantumToken == Long.MAX_VALUE) ? FragmentContext.RO_BATCH : FragmentContext.RW_BATCH;
@@ -702,9 +706,21 @@ public abstract class ExecutionEngine implements FastDeserializer.Deserializatio
             m_sqlTexts = null;
 
             m_fragmentContext = FragmentContext.UNKNOWN;
+
+            if (SiteProfileStats.ENABLED) {
+                m_executionNanos += System.nanoTime() - startNanos;
+            }
         }
     }
 
+    /**
+     * @return the time the site thread has spent executing plan fragments,
+     * always 0 unless the site profile is turned on
+     */
+    public long getExecutionNanos() {
+        return m_executionNanos;
+    }
+
     public abstract FastDeserializer coreExecutePlanFragments(
             int batchIndex,
             int numFragmentIds,
@@ -0,0 +1,271 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2018 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.join;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+import org.voltdb.SiteStatsSource;
+import org.voltdb.VoltSystemProcedure;
+import org.voltdb.VoltTable.ColumnInfo;
+import org.voltdb.VoltType;
+import org.voltdb.catalog.Column;
+import org.voltdb.catalog.Table;
+import org.voltdb.utils.CatalogSizing;
+
+/**
+ * Paces the table data a site streams to new partitions during elastic join,
+ * so moving data doesn't push the latency of the transactions the site runs
+ * at the same time past a target. Rejoin is not throttled, it restores
+ * k-safety and should finish as soon as it can.
+ *
+ * The site calls {@link #observe(long, long)} before it serializes a chunk,
+ * with the longest time a task recently waited in its queue. While the waits
+ * are above the target the chunks get smaller, which shortens the time a
+ * transaction can be stuck behind one, and once they are as small as they
+ * go the site waits longer between chunks. While the waits are well under
+ * the target the throttle opens up again in the reverse order. Chunks never
+ * get bigger and the waits between them never shorter than without the
+ * throttle, the snapshot priority still sets the shortest wait.
+ *
+ * The throttle never holds the transfer below a minimum rate, so that it
+ * finishes even on a cluster that is always busy. While less than that went
+ * out in the last interval it doesn't back off and opens up instead.
+ *
+ * The progress of the transfer and the current throttle are reported as
+ * statistics. The site thread writes, the stats thread only reads.
+ */
+public class MigrationThrottle extends SiteStatsSource {
+    /** Target for the queue waits of a site while data moves, 0 turns the throttle off */
+    public static final long LATENCY_SLO_MS = Long.getLong("MIGRATION_LATENCY_SLO_MS", 10);
+    static final int MIN_CHUNK_BYTES = Integer.getInteger("MIGRATION_MIN_CHUNK_BYTES", 64 * 1024);
+    static final int MAX_DELAY_MS = Integer.getInteger("MIGRATION_MAX_DELAY_MS", 1000);
+    /** Slowest the throttle lets a transfer go, 0 for no floor */
+    public static final long MIN_BYTES_PER_SECOND = Long.getLong("MIGRATION_MIN_BYTES_PER_SECOND", 2 * 1024 * 1024);
+    // The queue wait is the longest in the last half second, adjust at most that often
+    static final long ADJUST_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+    // Room for hidden columns and the headers the EE puts in a chunk
+    static final int ROW_SLACK_BYTES = 1024;
+
+    private final int m_partitionId;
+    private final long m_sloNanos;
+    private final int m_maxChunkBytes;
+    private final int m_minDelayMs;
+    private final long m_minBytesPerSecond;
+
+    private volatile boolean m_active = false;
+    private volatile int m_chunkBytes;
+    private volatile int m_delayMs;
+    private volatile long m_queueWaitNanos = 0;
+    private long m_lastAdjustNanos = 0;
+    private long m_bytesAtLastAdjust = 0;
+
+    private volatile long m_bytesMigrated = 0;
+    private volatile long m_rowsMigrated = 0;
+    private volatile long m_rowsRemaining = 0;
+    private volatile int m_tablesRemaining = 0;
+
+    /**
+     * @param maxChunkBytes  size of the snapshot buffers, the largest chunk
+     * @param minDelayMs     wait between chunks the snapshot priority asks for
+     * @param minBytesPerSecond  slowest rate the throttle holds the transfer to, 0 for no floor
+     */
+    public MigrationThrottle(long siteId, int partitionId, long sloMs, int maxChunkBytes, int minDelayMs,
+            long minBytesPerSecond) {
+        super(siteId, false);
+        m_partitionId = partitionId;
+        m_sloNanos = TimeUnit.MILLISECONDS.toNanos(sloMs);
+        m_maxChunkBytes = maxChunkBytes;
+        m_minDelayMs = minDelayMs;
+        m_minBytesPerSecond = minBytesPerSecond;
+        m_chunkBytes = maxChunkBytes;
+        m_delayMs = minDelayMs;
+    }
+
+    public boolean isEnabled() {
+        return m_sloNanos > 0;
+    }
+
+    /**
+     * A transfer of <code>tableCount</code> tables starts, called on the site thread.
+     */
+    public void start(int tableCount) {
+        m_chunkBytes = m_maxChunkBytes;
+        m_delayMs = m_minDelayMs;
+        m_lastAdjustNanos = 0;
+        m_bytesAtLastAdjust = 0;
+        m_bytesMigrated = 0;
+        m_rowsMigrated = 0;
+        m_rowsRemaining = 0;
+        m_tablesRemaining = tableCount;
+        m_active = isEnabled();
+    }
+
+    public void finish() {
+        m_active = false;
+        m_tablesRemaining = 0;
+        m_rowsRemaining = 0;
+    }
+
+    public boolean isActive() {
+        return m_active;
+    }
+
+    /**
+     * Adjust the throttle to the longest recent queue wait of the site.
+     */
+    public void observe(long nowNanos, long queueWaitNanos) {
+        m_queueWaitNanos = queueWaitNanos;
+        if (!m_active || nowNanos - m_lastAdjustNanos < ADJUST_INTERVAL_NANOS) {
+            return;
+        }
+        // nothing to measure the rate over before the first adjustment
+        final boolean belowFloor = m_lastAdjustNanos != 0 && m_minBytesPerSecond > 0 &&
+                (m_bytesMigrated - m_bytesAtLastAdjust) * 1000000000.0 / (nowNanos - m_lastAdjustNanos) <
+                m_minBytesPerSecond;
+        m_lastAdjustNanos = nowNanos;
+        m_bytesAtLastAdjust = m_bytesMigrated;
+
+        if (queueWaitNanos > m_sloNanos && !belowFloor) {
+            // back off, smaller chunks first, then fewer of them
+            if (m_chunkBytes > MIN_CHUNK_BYTES) {
+                m_chunkBytes = Math.max(MIN_CHUNK_BYTES, m_chunkBytes / 2);
+            } else {
+                m_delayMs = Math.min(MAX_DELAY_MS, Math.max(1, m_delayMs * 2));
+            }
+        } else if (queueWaitNanos < m_sloNanos / 2 || belowFloor) {
+            // open up again in the reverse order, a step at a time
+            if (m_delayMs > m_minDelayMs) {
+                m_delayMs = Math.max(m_minDelayMs, m_delayMs / 2);
+            } else {
+                m_chunkBytes = Math.min(m_maxChunkBytes, m_chunkBytes + m_maxChunkBytes / 8);
+            }
+        }
+    }
+
+    /**
+     * @param maxRowBytes  largest row of the table, a chunk always fits one
+     * @return the most bytes of table data to serialize in the next chunk
+     */
+    public int getChunkBytes(int maxRowBytes) {
+        if (!m_active) {
+            return m_maxChunkBytes;
+        }
+        return Math.min(m_maxChunkBytes, Math.max(m_chunkBytes, maxRowBytes + ROW_SLACK_BYTES));
+    }
+
+    /**
+     * @return milliseconds to wait before serializing the next chunk
+     */
+    public int getDelayMs() {
+        return m_delayMs;
+    }
+
+    /**
+     * Called on the site thread after a chunk was serialized.
+     * @param rowsRemaining rows of the table still to send
+     */
+    public void migrated(long bytes, long rows, long rowsRemaining) {
+        m_bytesMigrated += bytes;
+        m_rowsMigrated += rows;
+        m_rowsRemaining = Math.max(0, rowsRemaining);
+    }
+
+    /**
+     * Called on the site thread when all of a table has been serialized.
+     */
+    public void tableDone() {
+        m_tablesRemaining = Math.max(0, m_tablesRemaining - 1);
+        m_rowsRemaining = 0;
+    }
+
+    /**
+     * The largest a row of the table can be when serialized, the same way
+     * the EE sizes it, not counting hidden columns.
+     */
+    public static int maxSerializedRowBytes(Table table) {
+        int bytes = 4;
+        for (Column column : table.getColumns()) {
+            VoltType type = VoltType.get((byte) column.getType());
+            if (type == VoltType.STRING && !column.getInbytes()) {
+                bytes += 4 + column.getSize() * CatalogSizing.MAX_BYTES_PER_UTF8_CHARACTER;
+            } else if (type.isVariableLength()) {
+                bytes += 4 + column.getSize();
+            } else {
+                bytes += type.getLengthInBytesForFixedTypes();
+            }
+        }
+        return bytes;
+    }
+
+    @Override
+    protected void populateColumnSchema(ArrayList<ColumnInfo> columns) {
+        super.populateColumnSchema(columns);
+        columns.add(new ColumnInfo(VoltSystemProcedure.CNAME_PARTITION_ID, VoltSystemProcedure.CTYPE_ID));
+        columns.add(new ColumnInfo("ACTIVE", VoltType.TINYINT));
+        columns.add(new ColumnInfo("BYTES_MIGRATED", VoltType.BIGINT));
+        columns.add(new ColumnInfo("ROWS_MIGRATED", VoltType.BIGINT));
+        columns.add(new ColumnInfo("ROWS_REMAINING", VoltType.BIGINT));
+        columns.add(new ColumnInfo("TABLES_REMAINING", VoltType.INTEGER));
+        columns.add(new ColumnInfo("CHUNK_BYTES", VoltType.INTEGER));
+        columns.add(new ColumnInfo("CHUNK_DELAY", VoltType.INTEGER));
+        columns.add(new ColumnInfo("QUEUE_WAIT", VoltType.BIGINT));
+        columns.add(new ColumnInfo("LATENCY_SLO", VoltType.BIGINT));
+    }
+
+    @Override
+    protected void updateStatsRow(Object rowKey, Object rowValues[]) {
+        final boolean active = m_active;
+        rowValues[columnNameToIndex.get(VoltSystemProcedure.CNAME_PARTITION_ID)] = m_partitionId;
+        rowValues[columnNameToIndex.get("ACTIVE")] = (byte) (active ? 1 : 0);
+        rowValues[columnNameToIndex.get("BYTES_MIGRATED")] = m_bytesMigrated;
+        rowValues[columnNameToIndex.get("ROWS_MIGRATED")] = m_rowsMigrated;
+        rowValues[columnNameToIndex.get("ROWS_REMAINING")] = m_rowsRemaining;
+        rowValues[columnNameToIndex.get("TABLES_REMAINING")] = m_tablesRemaining;
+        rowValues[columnNameToIndex.get("CHUNK_BYTES")] = active ? m_chunkBytes : m_maxChunkBytes;
+        rowValues[columnNameToIndex.get("CHUNK_DELAY")] = active ? m_delayMs : m_minDelayMs;
+        // times are in microseconds, like the QUEUE statistics
+        rowValues[columnNameToIndex.get("QUEUE_WAIT")] = m_queueWaitNanos / 1000;
+        rowValues[columnNameToIndex.get("LATENCY_SLO")] = m_sloNanos / 1000;
+        super.updateStatsRow(rowKey, rowValues);
+    }
+
+    @Override
+    protected Iterator<Object> getStatsRowKeyIterator(final boolean interval) {
+        return new Iterator<Object>() {
+            boolean returnRow = true;
+
+            @Override
+            public boolean hasNext() {
+                return returnRow;
+            }
+
+            @Override
+            public Object next() {
+                returnRow = false;
+                return m_partitionId;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+}
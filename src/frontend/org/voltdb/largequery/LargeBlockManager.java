@@ -57,6 +57,7 @@ public class LargeBlockManager {
     private final Map<BlockId, Path> m_blockPathMap = new HashMap<>();
     private final Object m_accessLock = new Object();
     private final ListeningExecutorService m_es = CoreUtils.getCachedSingleThreadExecutor("LargeBlockManager", 1000);
+    private final ResultCursorManager m_resultCursors = new ResultCursorManager(this);
 
     static {
         OPEN_OPTIONS.add(StandardOpenOption.CREATE_NEW);
@@ -100,6 +101,13 @@ public class LargeBlockManager {
         return INSTANCE;
     }
 
+    /**
+     * Get the cursors over query results, which keep their rows in the swap directory
+     */
+    public ResultCursorManager getResultCursors() {
+        return m_resultCursors;
+    }
+
     /**
      * Private constructor---use initializeInstance and getInstance instead.
      */
@@ -127,6 +135,7 @@ public class LargeBlockManager {
      * @throws IOException
      */
     private void shutdownInstance() throws IOException {
+        m_resultCursors.clear();
         releaseAllBlocks();
         try {
             clearSwapDir();
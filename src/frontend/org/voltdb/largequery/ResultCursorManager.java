@@ -0,0 +1,367 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2018 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.largequery;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.SecureRandom;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import org.voltcore.logging.VoltLogger;
+import org.voltdb.PrivateVoltTableFactory;
+import org.voltdb.VoltTable;
+
+/**
+ * Server side cursors over the results of read-only queries, so a client can
+ * read a result that is too large for one response a chunk at a time.
+ *
+ * When a cursor is opened its result is cut into blocks of about
+ * RESULT_CURSOR_BLOCK_BYTES and the blocks are stored in the large query swap
+ * directory by the {@link LargeBlockManager}, so open cursors don't hold their
+ * results on the heap. Each fetch loads at most the blocks it needs, and a
+ * block is deleted from disk as soon as it is loaded, since cursors only move
+ * forward. A cursor is closed when its last row is fetched, when the client
+ * closes it, when the connection that opened it closes, or when it has not
+ * been used for RESULT_CURSOR_TIMEOUT_MS.
+ *
+ * A cursor belongs to the user and the client connection that opened it, it
+ * can only be fetched from and closed over that connection. To anyone else it
+ * does not exist. A host holds at most RESULT_CURSOR_MAX cursors, and one
+ * connection at most RESULT_CURSOR_MAX_PER_CONNECTION of them. The id of a cursor has the id of the host that holds it in
+ * its top 16 bits, so clients can send fetches to that host, and random low
+ * bits, so ids can't be guessed.
+ */
+public class ResultCursorManager {
+    private static final VoltLogger LOG = new VoltLogger("HOST");
+
+    static final int BLOCK_BYTES = Integer.getInteger("RESULT_CURSOR_BLOCK_BYTES", 1024 * 1024);
+    static final int MAX_CURSORS = Integer.getInteger("RESULT_CURSOR_MAX", 64);
+    static final int MAX_CURSORS_PER_CONNECTION = Integer.getInteger("RESULT_CURSOR_MAX_PER_CONNECTION", 8);
+    static final long TIMEOUT_MS = Long.getLong("RESULT_CURSOR_TIMEOUT_MS", 5 * 60 * 1000);
+    // the blocks of cursors don't belong to any site
+    static final long CURSOR_SITE_ID = -1;
+
+    private static final int HOST_ID_SHIFT = 48;
+    private static final long LOCAL_ID_MASK = (1L << HOST_ID_SHIFT) - 1;
+
+    private static class Block {
+        final BlockId m_id;
+        final int m_bytes;
+
+        Block(BlockId id, int bytes) {
+            m_id = id;
+            m_bytes = bytes;
+        }
+    }
+
+    private static class Cursor {
+        final String m_user;
+        final long m_connectionId;
+        final ArrayDeque<Block> m_blocks = new ArrayDeque<>();
+        // the rows of the last block loaded, positioned at the last row fetched
+        VoltTable m_current;
+        long m_remainingRows;
+        long m_lastUsedMs;
+
+        Cursor(String user, long connectionId) {
+            m_user = user;
+            m_connectionId = connectionId;
+        }
+
+        boolean isOwnedBy(String user, long connectionId) {
+            return m_connectionId == connectionId && Objects.equals(m_user, user);
+        }
+    }
+
+    private final LargeBlockManager m_blockManager;
+    // guarded by this
+    private final Map<Long, Cursor> m_cursors = new HashMap<>();
+    private final SecureRandom m_random = new SecureRandom();
+    private long m_nextBlockId = 0;
+
+    ResultCursorManager(LargeBlockManager blockManager) {
+        m_blockManager = blockManager;
+    }
+
+    /**
+     * @return the id of the host that holds the cursor with the given id
+     */
+    public static int getHostId(long cursorId) {
+        return (int) (cursorId >>> HOST_ID_SHIFT);
+    }
+
+    /**
+     * Store the rows of <code>result</code> that haven't been read yet in a new cursor.
+     * @param hostId         the id of this host
+     * @param user           the user opening the cursor
+     * @param connectionId   the client connection opening the cursor
+     * @return the id of the new cursor
+     * @throws IOException if the rows can't be written to the swap directory,
+     * or there are too many open cursors on this host or connection
+     */
+    public long open(int hostId, String user, long connectionId, VoltTable result, long nowMs) throws IOException {
+        final Cursor cursor = new Cursor(user, connectionId);
+        final long cursorId;
+        final List<Cursor> expired;
+        synchronized (this) {
+            expired = expire(nowMs);
+            if (m_cursors.size() >= MAX_CURSORS) {
+                release(expired);
+                throw new IOException("Too many open result cursors (" + m_cursors.size() + ")");
+            }
+            if (countCursors(connectionId) >= MAX_CURSORS_PER_CONNECTION) {
+                release(expired);
+                throw new IOException("Too many open result cursors on this connection (" +
+                                      MAX_CURSORS_PER_CONNECTION + ")");
+            }
+            long localId;
+            do {
+                localId = m_random.nextLong() & LOCAL_ID_MASK;
+            } while (localId == 0 || m_cursors.containsKey(((long) hostId << HOST_ID_SHIFT) | localId));
+            cursorId = ((long) hostId << HOST_ID_SHIFT) | localId;
+            // hold the id until the rows are stored
+            m_cursors.put(cursorId, null);
+        }
+        release(expired);
+
+        try {
+            VoltTable chunk = null;
+            while (result.advanceRow()) {
+                if (chunk == null) {
+                    chunk = new VoltTable(result.getTableSchema());
+                }
+                chunk.add(result);
+                cursor.m_remainingRows++;
+                if (chunk.getSerializedSize() >= BLOCK_BYTES) {
+                    store(cursor, chunk);
+                    chunk = null;
+                }
+            }
+            if (chunk != null) {
+                store(cursor, chunk);
+            }
+        } catch (IOException e) {
+            synchronized (this) {
+                m_cursors.remove(cursorId);
+            }
+            release(cursor);
+            throw e;
+        }
+
+        synchronized (this) {
+            cursor.m_lastUsedMs = nowMs;
+            m_cursors.put(cursorId, cursor);
+        }
+        return cursorId;
+    }
+
+    private void store(Cursor cursor, VoltTable chunk) throws IOException {
+        final BlockId id;
+        synchronized (this) {
+            id = new BlockId(CURSOR_SITE_ID, m_nextBlockId++);
+        }
+        final ByteBuffer buf = chunk.getBuffer();
+        m_blockManager.storeBlock(id, buf);
+        cursor.m_blocks.add(new Block(id, buf.limit()));
+    }
+
+    /**
+     * Read up to <code>maxRows</code> rows from a cursor. The cursor is closed
+     * after its last row is read.
+     * @return the rows, or null if the user and connection have no open cursor
+     * with the given id
+     * @throws IOException if the rows can't be read from the swap directory,
+     * the cursor is closed
+     */
+    public VoltTable fetch(long cursorId, String user, long connectionId, int maxRows, long nowMs)
+            throws IOException {
+        final Cursor cursor;
+        final List<Cursor> expired;
+        synchronized (this) {
+            expired = expire(nowMs);
+            // only one fetch of a cursor at a time
+            cursor = isOwner(cursorId, user, connectionId) ? m_cursors.remove(cursorId) : null;
+        }
+        release(expired);
+        if (cursor == null) {
+            return null;
+        }
+
+        VoltTable rows = null;
+        try {
+            int fetchedBytes = 0;
+            while (cursor.m_remainingRows > 0 && (rows == null || rows.getRowCount() < maxRows) &&
+                    fetchedBytes < BLOCK_BYTES) {
+                if (cursor.m_current == null || !cursor.m_current.advanceRow()) {
+                    cursor.m_current = load(cursor.m_blocks.poll());
+                    cursor.m_current.advanceRow();
+                }
+                if (rows == null) {
+                    rows = new VoltTable(cursor.m_current.getTableSchema());
+                }
+                rows.add(cursor.m_current);
+                fetchedBytes = rows.getSerializedSize();
+                cursor.m_remainingRows--;
+            }
+        } catch (IOException e) {
+            release(cursor);
+            throw e;
+        }
+
+        if (cursor.m_remainingRows > 0) {
+            synchronized (this) {
+                cursor.m_lastUsedMs = nowMs;
+                m_cursors.put(cursorId, cursor);
+            }
+        }
+        return rows;
+    }
+
+    private VoltTable load(Block block) throws IOException {
+        final ByteBuffer buf = ByteBuffer.allocate(block.m_bytes);
+        m_blockManager.loadBlock(block.m_id, buf);
+        m_blockManager.releaseBlock(block.m_id);
+        return PrivateVoltTableFactory.createVoltTableFromBuffer(buf, true);
+    }
+
+    // guarded by this
+    private boolean isOwner(long cursorId, String user, long connectionId) {
+        final Cursor cursor = m_cursors.get(cursorId);
+        return cursor != null && cursor.isOwnedBy(user, connectionId);
+    }
+
+    /**
+     * @return the number of rows left in a cursor, 0 if there is no open cursor with the given id
+     */
+    public synchronized long getRemainingRows(long cursorId) {
+        final Cursor cursor = m_cursors.get(cursorId);
+        return cursor == null ? 0 : cursor.m_remainingRows;
+    }
+
+    /**
+     * Close a cursor and delete the rows that haven't been read.
+     * @return false if the user and connection have no open cursor with the given id
+     */
+    public boolean close(long cursorId, String user, long connectionId) {
+        final Cursor cursor;
+        synchronized (this) {
+            if (!isOwner(cursorId, user, connectionId)) {
+                return false;
+            }
+            cursor = m_cursors.remove(cursorId);
+        }
+        release(cursor);
+        return true;
+    }
+
+    /**
+     * Close all the cursors opened over a client connection, once the
+     * connection is closed.
+     */
+    public void closeConnection(long connectionId) {
+        final List<Cursor> closed = new ArrayList<>();
+        synchronized (this) {
+            final Iterator<Cursor> it = m_cursors.values().iterator();
+            while (it.hasNext()) {
+                final Cursor cursor = it.next();
+                if (cursor != null && cursor.m_connectionId == connectionId) {
+                    it.remove();
+                    closed.add(cursor);
+                }
+            }
+        }
+        release(closed);
+    }
+
+    // guarded by this, cursors still being opened have no owner yet and are not counted
+    private int countCursors(long connectionId) {
+        int count = 0;
+        for (Cursor cursor : m_cursors.values()) {
+            if (cursor != null && cursor.m_connectionId == connectionId) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public synchronized int getOpenCursorCount() {
+        int count = 0;
+        for (Cursor cursor : m_cursors.values()) {
+            if (cursor != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Forget all cursors, the swap directory is cleared separately on shutdown.
+     */
+    synchronized void clear() {
+        m_cursors.clear();
+    }
+
+    /**
+     * Remove the cursors that timed out. Their blocks are deleted by the
+     * caller with {@link #release(List)}, after it lets go of the lock.
+     */
+    // guarded by this
+    private List<Cursor> expire(long nowMs) {
+        List<Cursor> expired = null;
+        final Iterator<Map.Entry<Long, Cursor>> it = m_cursors.entrySet().iterator();
+        while (it.hasNext()) {
+            final Map.Entry<Long, Cursor> e = it.next();
+            // cursors that are being opened have no value yet
+            if (e.getValue() != null && nowMs - e.getValue().m_lastUsedMs > TIMEOUT_MS) {
+                it.remove();
+                LOG.info("Closing result cursor " + e.getKey() + " after " + TIMEOUT_MS + " ms without a fetch");
+                if (expired == null) {
+                    expired = new ArrayList<>();
+                }
+                expired.add(e.getValue());
+            }
+        }
+        return expired;
+    }
+
+    private void release(List<Cursor> cursors) {
+        if (cursors != null) {
+            for (Cursor cursor : cursors) {
+                release(cursor);
+            }
+        }
+    }
+
+    private void release(Cursor cursor) {
+        cursor.m_current = null;
+        Block block;
+        while ((block = cursor.m_blocks.poll()) != null) {
+            try {
+                m_blockManager.releaseBlock(block.m_id);
+            } catch (IOException e) {
+                LOG.warn("Failed to delete result cursor block " + block.m_id, e);
+            }
+        }
+    }
+}
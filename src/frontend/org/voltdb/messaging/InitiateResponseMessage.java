@@ -63,6 +63,10 @@ public class InitiateResponseMessage extends VoltMessage {
     // No need to serialize it
     public boolean m_isFromNonRestartableSysproc = false;
 
+    // System.nanoTime() when sync command logging made the transaction durable, 0 if unknown.
+    // Only meaningful in the process that logged it, so no need to serialize it either
+    public long m_durableNanos = 0;
+
     /** Empty constructor for de-serialization */
     public InitiateResponseMessage()
     {
@@ -52,6 +52,12 @@ implements Runnable {
     private final Queue<BBContainer> m_compressedDataBufferPool;
     private volatile boolean m_closed = false;
 
+    // statistics, written by the receiver thread only
+    private volatile long m_compressedBytes = 0;
+    private volatile long m_decompressedBytes = 0;
+    private volatile long m_decompressNanos = 0;
+    private volatile int m_peakQueued = 0;
+
     private class TrackedDataBBContainer extends BBContainer {
         private final BBContainer m_delegate;
         TrackedDataBBContainer(BBContainer container) {
@@ -112,6 +118,25 @@ implements Runnable {
         return m_queue.size();
     }
 
+    public long getCompressedBytes() {
+        return m_compressedBytes;
+    }
+
+    public long getDecompressedBytes() {
+        return m_decompressedBytes;
+    }
+
+    public long getDecompressNanos() {
+        return m_decompressNanos;
+    }
+
+    /**
+     * @return the most blocks that were decompressed and waiting for the site at once
+     */
+    public int getPeakQueued() {
+        return m_peakQueued;
+    }
+
     @Override
     public void run() {
         try {
@@ -152,12 +177,17 @@ implements Runnable {
                     compressionBuffer.limit(data.length);
                     compressionBuffer.put(data);
                     compressionBuffer.flip();
+                    final long startNanos = System.nanoTime();
                     int uncompressedSize =
                             CompressionService.decompressBuffer(
                                     compressionBuffer,
                                     messageBuffer);
+                    m_decompressNanos += System.nanoTime() - startNanos;
+                    m_compressedBytes += data.length;
+                    m_decompressedBytes += uncompressedSize;
                     messageBuffer.limit(uncompressedSize);
                     m_queue.offer(new StreamSnapshotSink.DecodedContainer(dataMsg.m_sourceHSId, dataMsg.getTargetId(), container));
+                    m_peakQueued = Math.max(m_peakQueued, m_queue.size());
                     success = true;
                 } finally {
                     if (!success && container != null) {
@@ -42,6 +42,7 @@ import org.voltcore.utils.DBBPool.BBContainer;
 import org.voltcore.utils.Pair;
 import org.voltdb.SnapshotDataTarget;
 import org.voltdb.SnapshotFormat;
+import org.voltdb.SnapshotSiteProcessor;
 import org.voltdb.VoltDB;
 import org.voltdb.utils.CompressionService;
 
@@ -79,6 +80,8 @@ implements SnapshotDataTarget, StreamSnapshotAckReceiver.AckCallback {
     private final long m_destHSId;
     private final Set<Long> m_otherDestHostHSIds;
     private boolean m_replicatedTableTarget;
+    // Moves data to a new partition, as opposed to rebuilding a rejoining replica
+    private final boolean m_elasticJoin;
     // input and output threads
     private final SnapshotSender m_sender;
     private final StreamSnapshotAckReceiver m_ackReceiver;
@@ -103,17 +106,21 @@ implements SnapshotDataTarget, StreamSnapshotAckReceiver.AckCallback {
 
     public StreamSnapshotDataTarget(long HSId, boolean lowestDestSite, Set<Long> allDestHostHSIds,
                                     byte[] hashinatorConfig, Map<Integer, Pair<Boolean, byte[]>> schemas,
-                                    SnapshotSender sender, StreamSnapshotAckReceiver ackReceiver)
+                                    SnapshotSender sender, StreamSnapshotAckReceiver ackReceiver,
+                                    boolean elasticJoin)
     {
-        this(HSId, lowestDestSite, allDestHostHSIds, hashinatorConfig, schemas, DEFAULT_WRITE_TIMEOUT_MS, sender, ackReceiver);
+        this(HSId, lowestDestSite, allDestHostHSIds, hashinatorConfig, schemas, DEFAULT_WRITE_TIMEOUT_MS, sender, ackReceiver,
+             elasticJoin);
     }
 
     public StreamSnapshotDataTarget(long HSId, boolean lowestDestSite, Set<Long> allDestHostHSIds,
                                     byte[] hashinatorConfig, Map<Integer, Pair<Boolean, byte[]>> schemas,
-                                    long writeTimeout, SnapshotSender sender, StreamSnapshotAckReceiver ackReceiver)
+                                    long writeTimeout, SnapshotSender sender, StreamSnapshotAckReceiver ackReceiver,
+                                    boolean elasticJoin)
     {
         super();
         m_targetId = m_totalSnapshotTargetCount.getAndIncrement();
+        m_elasticJoin = elasticJoin;
         m_schemas.putAll(schemas);
         m_destHSId = HSId;
         m_replicatedTableTarget = lowestDestSite;
@@ -141,9 +148,14 @@ implements SnapshotDataTarget, StreamSnapshotAckReceiver.AckCallback {
         return m_replicatedTableTarget;
     }
 
+    public boolean isElasticJoin() {
+        return m_elasticJoin;
+    }
+
     /**
      * Packages up a pending write into a piece of work that can be tracked
-     * and can be scheduled.
+     * and can be scheduled. Any sender thread can compress it, the blocks of
+     * a data target are then sent in the order they were written.
      */
     public static class SendWork {
         BBContainer m_message;
@@ -153,9 +165,18 @@ implements SnapshotDataTarget, StreamSnapshotAckReceiver.AckCallback {
         final Set<Long> m_otherDestHSIds;
         AtomicInteger m_ackCounter;
         final long m_ts;
+        // uncompressed bytes the block holds against the window of its data target until acked
+        final int m_creditBytes;
+        // position in the stream of the data target, set when queued
+        long m_sequence;
+        long m_queuedNanos;
 
         final boolean m_isEmpty;
 
+        // compressed message, and for replicated tables what goes to the other sites of the host
+        private byte[] m_compressed;
+        private byte[] m_compressedForOthers;
+
         // A listenable future used to notify a listener when this buffer is discarded
         final SettableFuture<Boolean> m_future;
 
@@ -169,6 +190,7 @@ implements SnapshotDataTarget, StreamSnapshotAckReceiver.AckCallback {
             m_destHSId = -1;
             m_otherDestHSIds = null;
             m_ts = -1;
+            m_creditBytes = 0;
             m_future = null;
         }
 
@@ -182,6 +204,8 @@ implements SnapshotDataTarget, StreamSnapshotAckReceiver.AckCallback {
             m_otherDestHSIds = otherDestIds;
             m_message = message;
             m_ts = System.currentTimeMillis();
+            // only table data is flow controlled, the rest is small and must not wait behind it
+            m_creditBytes = type == StreamSnapshotMessageType.DATA ? message.b().remaining() : 0;
             m_future = future;
         }
 
@@ -195,87 +219,91 @@ implements SnapshotDataTarget, StreamSnapshotAckReceiver.AckCallback {
                 m_message.discard();
                 m_message = null;
             }
+            m_compressed = null;
+            m_compressedForOthers = null;
         }
 
-        /**
-         * Compress the data in the BBContainer provided, then package it up in
-         * a RejoinDataMessage instance, and finally hand it off to the messaging
-         * subsystem.
-         */
-        protected int send(Mailbox mb, MessageFactory msgFactory, BBContainer message) throws IOException {
-            final ByteBuffer messageBuffer = message.b();
-            if (messageBuffer.isDirect()) {
-                byte[] data = CompressionService.compressBuffer(messageBuffer);
-                mb.send(m_destHSId, msgFactory.makeDataMessage(m_targetId, data));
-                return data.length;
-            } else {
-                byte compressedBytes[] =
-                    CompressionService.compressBytes(
-                            messageBuffer.array(), messageBuffer.position(),
-                            messageBuffer.remaining());
-
-                mb.send(m_destHSId, msgFactory.makeDataMessage(m_targetId, compressedBytes));
-                return compressedBytes.length;
-            }
-        }
-
-        private void sendReplicatedDataToNonLowestSites(Mailbox mb, MessageFactory msgFactory, ByteBuffer message, int len) throws IOException {
-            byte[] compressedBytes;
+        private static byte[] compress(ByteBuffer message, int len) throws IOException {
             if (message.isDirect()) {
-                compressedBytes = CompressionService.compressBuffer(message);
-            }
-            else {
-                compressedBytes =
-                    CompressionService.compressBytes(message.array(), 0, len);
+                return CompressionService.compressBuffer(message);
+            } else {
+                return CompressionService.compressBytes(message.array(), message.position(), len);
             }
-            mb.send(Longs.toArray(m_otherDestHSIds), msgFactory.makeDataMessage(m_targetId, compressedBytes));
         }
 
-        public synchronized int doWork(Mailbox mb, MessageFactory msgFactory) throws Exception {
+        /**
+         * Compress the data in the BBContainer, and for replicated tables what
+         * the other sites of the destination host get. Can run on any sender
+         * thread.
+         */
+        public synchronized void compress() throws IOException {
             // this work has already been discarded
             if (m_message == null) {
-                m_ackCounter = new AtomicInteger(1);
-                return 0;
+                return;
+            }
+
+            m_compressed = compress(m_message.b(), m_message.b().remaining());
+            if (m_otherDestHSIds != null) {
+                if (m_type == StreamSnapshotMessageType.DATA) {
+                    // Copy the header from the real buffer and add a dummy table that the other non-lowest site can parse
+                    ByteBuffer dummyBuffer = ByteBuffer.allocate(DATA_HEADER_BYTES);
+                    m_message.b().get(dummyBuffer.array(), 0, ROW_COUNT_OFFSET);
+                    m_message.b().position(0);
+                    dummyBuffer.position(ROW_COUNT_OFFSET);
+                    dummyBuffer.putInt(0);  // Row Count
+                    dummyBuffer.position(0);
+                    m_compressedForOthers = CompressionService.compressBytes(dummyBuffer.array(), 0, DATA_HEADER_BYTES);
+                }
+                else if (m_type == StreamSnapshotMessageType.END) {
+                    // Special case for sending END messages to Non-Leader sites from the site that sent the replicated
+                    // Tables. We do this because replicated tables can race with partitioned tables so the sending 2
+                    // ENDs (one from the Replicated Table data target and one from the Partitioned tables data target)
+                    // means that the sink can be deallocated.
+                    ByteBuffer message = m_message.b();
+                    m_compressedForOthers = message.isDirect() ? CompressionService.compressBuffer(message) :
+                        CompressionService.compressBytes(message.array(), 0, message.limit());
+                }
+                else {
+                    // Special case for sending schema for replicated table to all sites of host
+                    ByteBuffer message = m_message.b();
+                    m_compressedForOthers = message.isDirect() ? CompressionService.compressBuffer(message) :
+                        CompressionService.compressBytes(message.array(), 0, message.remaining());
+                }
             }
+        }
 
+        /**
+         * Hand the compressed messages off to the messaging subsystem. Called
+         * in block order for each data target.
+         * @return the number of compressed bytes sent
+         */
+        public synchronized int transmit(Mailbox mb, MessageFactory msgFactory) {
             try {
-                int sentBytes;
+                // this work has already been discarded, or failed to compress
+                if (m_message == null || m_compressed == null) {
+                    m_ackCounter = new AtomicInteger(1);
+                    return 0;
+                }
+
+                int sentBytes = m_compressed.length;
                 if (m_otherDestHSIds != null) {
                     m_ackCounter = new AtomicInteger(m_otherDestHSIds.size()+1);
-                    sentBytes = send(mb, msgFactory, m_message);
-                    if (m_type == StreamSnapshotMessageType.DATA) {
-                        // Copy the header from the real buffer and add a dummy table that the other non-lowest site can parse
-                        ByteBuffer dummyBuffer = ByteBuffer.allocate(DATA_HEADER_BYTES);
-                        m_message.b().get(dummyBuffer.array(), 0, ROW_COUNT_OFFSET);
-                        m_message.b().position(0);
-                        dummyBuffer.position(ROW_COUNT_OFFSET);
-                        dummyBuffer.putInt(0);  // Row Count
-                        dummyBuffer.position(0);
-                        sendReplicatedDataToNonLowestSites(mb, msgFactory, dummyBuffer, DATA_HEADER_BYTES);
-                    }
-                    else if (m_type == StreamSnapshotMessageType.END) {
-                        // Special case for sending END messages to Non-Leader sites from the site that sent the replicated
-                        // Tables. We do this because replicated tables can race with partitioned tables so the sending 2
-                        // ENDs (one from the Replicated Table data target and one from the Partitioned tables data target)
-                        // means that the sink can be deallocated.
-                        sendReplicatedDataToNonLowestSites(mb, msgFactory, m_message.b(), m_message.b().limit());
-                    }
-                    else {
-                        // Special case for sending schema for replicated table to all sites of host
-                        sendReplicatedDataToNonLowestSites(mb, msgFactory, m_message.b(), m_message.b().remaining());
-                    }
+                    mb.send(m_destHSId, msgFactory.makeDataMessage(m_targetId, m_compressed));
+                    mb.send(Longs.toArray(m_otherDestHSIds), msgFactory.makeDataMessage(m_targetId, m_compressedForOthers));
                 }
                 else {
                     m_ackCounter = new AtomicInteger(1);
-                    sentBytes = send(mb, msgFactory, m_message);
+                    mb.send(m_destHSId, msgFactory.makeDataMessage(m_targetId, m_compressed));
                 }
                 rejoinLog.trace("Sent " + m_type.name() + " from " + m_targetId +
                         " expected ackCounter " + m_ackCounter +
                         " otherDestHSIds " + m_otherDestHSIds);
                 return sentBytes;
             } finally {
-                // Buffers are only discarded after they are acked. Discarding them here would cause the sender to
-                // generate too much work for the receiver.
+                // The compressed copies aren't needed any more. The buffers are only discarded after they
+                // are acked, discarding them here would cause the sender to generate too much work for the receiver.
+                m_compressed = null;
+                m_compressedForOthers = null;
                 m_future.set(true);
             }
         }
@@ -309,10 +337,21 @@ implements SnapshotDataTarget, StreamSnapshotAckReceiver.AckCallback {
 
         final long m_bytesWrittenSinceConstruction;
         final long m_writeTimeout;
+        // time the stream had waited at the previous run
+        final long m_queueWaitNanos;
+        final long m_compressNanos;
+        final long m_creditStallNanos;
 
         Watchdog(long bytesWritten, long writeTimout) {
+            this(bytesWritten, writeTimout, 0, 0, 0);
+        }
+
+        Watchdog(long bytesWritten, long writeTimout, long queueWaitNanos, long compressNanos, long creditStallNanos) {
             m_bytesWrittenSinceConstruction = bytesWritten;
             m_writeTimeout = writeTimout;
+            m_queueWaitNanos = queueWaitNanos;
+            m_compressNanos = compressNanos;
+            m_creditStallNanos = creditStallNanos;
         }
 
         @Override
@@ -322,10 +361,24 @@ implements SnapshotDataTarget, StreamSnapshotAckReceiver.AckCallback {
             }
 
             long bytesWritten = 0;
+            long queueWaitNanos = m_queueWaitNanos;
+            long compressNanos = m_compressNanos;
+            long creditStallNanos = m_creditStallNanos;
             try {
-                bytesWritten = m_sender.m_bytesSent.get(m_targetId).get();
-                rejoinLog.info(String.format("While sending rejoin data to site %s, %d bytes have been sent in the past %s seconds.",
-                        CoreUtils.hsIdToString(m_destHSId), bytesWritten - m_bytesWrittenSinceConstruction, WATCHDOG_PERIOS_S));
+                final TargetStream stream = m_sender.m_streams.get(m_targetId);
+                bytesWritten = stream.m_rawBytes.get();
+                queueWaitNanos = stream.m_queueWaitNanos.get();
+                compressNanos = stream.m_compressNanos.get();
+                creditStallNanos = stream.getCreditStallNanos();
+                rejoinLog.info(String.format("While sending rejoin data to site %s, %d bytes have been sent in the past %s seconds " +
+                        "(%.2f MB/s, %d bytes waiting for acks). " +
+                        "Waited %d ms for sender threads, %d ms compressing, %d ms for receiver acks.",
+                        CoreUtils.hsIdToString(m_destHSId), bytesWritten - m_bytesWrittenSinceConstruction, WATCHDOG_PERIOS_S,
+                        (bytesWritten - m_bytesWrittenSinceConstruction) / 1048576.0 / WATCHDOG_PERIOS_S,
+                        stream.getInFlightBytes(),
+                        TimeUnit.NANOSECONDS.toMillis(queueWaitNanos - m_queueWaitNanos),
+                        TimeUnit.NANOSECONDS.toMillis(compressNanos - m_compressNanos),
+                        TimeUnit.NANOSECONDS.toMillis(creditStallNanos - m_creditStallNanos)));
 
                 checkTimeout(m_writeTimeout);
                 if (m_writeFailed.get() != null) {
@@ -335,7 +388,8 @@ implements SnapshotDataTarget, StreamSnapshotAckReceiver.AckCallback {
                 rejoinLog.error("Stream snapshot watchdog thread threw an exception", t);
             } finally {
                 // schedule to run again
-                VoltDB.instance().scheduleWork(new Watchdog(bytesWritten, m_writeTimeout), WATCHDOG_PERIOS_S, -1, TimeUnit.SECONDS);
+                VoltDB.instance().scheduleWork(new Watchdog(bytesWritten, m_writeTimeout,
+                        queueWaitNanos, compressNanos, creditStallNanos), WATCHDOG_PERIOS_S, -1, TimeUnit.SECONDS);
             }
         }
     }
@@ -377,6 +431,7 @@ implements SnapshotDataTarget, StreamSnapshotAckReceiver.AckCallback {
         }
         m_outstandingWork.clear();
         m_outstandingWorkCount.set(0);
+        m_sender.reset(m_targetId);
     }
 
     /**
@@ -400,6 +455,7 @@ implements SnapshotDataTarget, StreamSnapshotAckReceiver.AckCallback {
             m_outstandingWorkCount.decrementAndGet();
             m_outstandingWork.remove(blockIndex);
             work.discard();
+            m_sender.acked(m_targetId, work.m_creditBytes);
         }
         else {
             rejoinLog.trace("Received ack for targetId " + m_targetId +
@@ -408,16 +464,153 @@ implements SnapshotDataTarget, StreamSnapshotAckReceiver.AckCallback {
     }
 
     /**
-     * Thread that runs send work (sending snapshot blocks). One per node
+     * The blocks of one data target on their way out. Blocks are numbered as
+     * they are queued, compressed by whichever sender thread picks them up,
+     * and sent in the order they were numbered. Table data is only sent while
+     * the bytes sent but not yet acked by the receiver fit in the window, so
+     * a slow receiver slows down the sender instead of piling up blocks in
+     * the network and in the receive queue. The first block is always sent,
+     * so a block larger than the window can't stall the stream.
+     */
+    static class TargetStream {
+        final long m_targetId;
+        private final long m_windowBytes;
+
+        // guarded by this
+        private long m_nextSequence = 0;
+        private long m_nextToSend = 0;
+        private final TreeMap<Long, SendWork> m_ready = new TreeMap<Long, SendWork>();
+        private long m_inFlightBytes = 0;
+        private boolean m_flowControlled = true;
+        private long m_stallStartNanos = 0;
+
+        // statistics
+        final AtomicLong m_rawBytes = new AtomicLong();
+        final AtomicLong m_compressNanos = new AtomicLong();
+        final AtomicLong m_queueWaitNanos = new AtomicLong();
+        final AtomicLong m_creditStallNanos = new AtomicLong();
+        final long m_startNanos = System.nanoTime();
+
+        TargetStream(long targetId, long windowBytes) {
+            m_targetId = targetId;
+            m_windowBytes = windowBytes;
+        }
+
+        synchronized void assign(SendWork work) {
+            work.m_sequence = m_nextSequence++;
+            work.m_queuedNanos = System.nanoTime();
+        }
+
+        /**
+         * Add a compressed block and send the blocks that are next in order
+         * and fit in the window.
+         * @return the number of compressed bytes sent
+         */
+        synchronized long ready(SendWork work, Mailbox mb, MessageFactory msgFactory) {
+            m_ready.put(work.m_sequence, work);
+            return drain(mb, msgFactory);
+        }
+
+        /**
+         * The receiver acked a block, its bytes leave the window.
+         * @return the number of compressed bytes sent
+         */
+        synchronized long acked(int creditBytes, Mailbox mb, MessageFactory msgFactory) {
+            m_inFlightBytes = Math.max(0, m_inFlightBytes - creditBytes);
+            return drain(mb, msgFactory);
+        }
+
+        /**
+         * Outstanding blocks were dropped after a failure, they will never be
+         * acked. Whatever is left is sent without waiting for credit.
+         */
+        synchronized long reset(Mailbox mb, MessageFactory msgFactory) {
+            m_flowControlled = false;
+            m_inFlightBytes = 0;
+            return drain(mb, msgFactory);
+        }
+
+        synchronized long getInFlightBytes() {
+            return m_inFlightBytes;
+        }
+
+        long getCreditStallNanos() {
+            long stalled = m_creditStallNanos.get();
+            synchronized (this) {
+                if (m_stallStartNanos != 0) {
+                    stalled += System.nanoTime() - m_stallStartNanos;
+                }
+            }
+            return stalled;
+        }
+
+        private long drain(Mailbox mb, MessageFactory msgFactory) {
+            long sentBytes = 0;
+            SendWork work;
+            while ((work = m_ready.get(m_nextToSend)) != null) {
+                if (m_flowControlled && work.m_creditBytes > 0 && m_inFlightBytes > 0 &&
+                        m_inFlightBytes + work.m_creditBytes > m_windowBytes) {
+                    if (m_stallStartNanos == 0) {
+                        m_stallStartNanos = System.nanoTime();
+                    }
+                    break;
+                }
+                if (m_stallStartNanos != 0) {
+                    m_creditStallNanos.addAndGet(System.nanoTime() - m_stallStartNanos);
+                    m_stallStartNanos = 0;
+                }
+                m_ready.remove(m_nextToSend++);
+                final int transmitted = work.transmit(mb, msgFactory);
+                // blocks that were discarded or failed to compress are not sent and never acked
+                if (transmitted > 0) {
+                    m_inFlightBytes += work.m_creditBytes;
+                    m_rawBytes.addAndGet(work.m_creditBytes);
+                    sentBytes += transmitted;
+                }
+            }
+            return sentBytes;
+        }
+
+        /**
+         * @return a one line summary of the throughput of the stream and where it waited
+         */
+        String summary(long compressedBytes) {
+            final double seconds = Math.max(1, System.nanoTime() - m_startNanos) / 1000000000.0;
+            return String.format("%.1f MB sent (%.1f MB compressed) in %.1f s, %.2f MB/s. " +
+                    "Waited %d ms for sender threads, %d ms compressing, %d ms for receiver acks",
+                    m_rawBytes.get() / 1048576.0, compressedBytes / 1048576.0, seconds,
+                    m_rawBytes.get() / 1048576.0 / seconds,
+                    TimeUnit.NANOSECONDS.toMillis(m_queueWaitNanos.get()),
+                    TimeUnit.NANOSECONDS.toMillis(m_compressNanos.get()),
+                    TimeUnit.NANOSECONDS.toMillis(getCreditStallNanos()));
+        }
+    }
+
+    /**
+     * Runs send work (sending snapshot blocks). One per node, run by
+     * {@link #SENDER_THREADS} threads that compress blocks in parallel.
      */
     public static class SnapshotSender implements Runnable {
+        public static final int SENDER_THREADS = Integer.getInteger("REJOIN_SENDER_THREADS",
+                Math.max(1, Math.min(8, CoreUtils.availableProcessors() / 2)));
+        // bytes of table data sent to a site but not yet acked, defaults to 8 snapshot buffers.
+        // A buffer is only returned to the site once its block is acked, so the snapshot
+        // buffers of the site already bound this, the window only makes the bound tighter.
+        static final long WINDOW_BYTES = Long.getLong("REJOIN_STREAM_WINDOW_BYTES",
+                8L * SnapshotSiteProcessor.m_snapshotBufferLength);
+
+        // Tells the other sender threads to exit after the last data target closed
+        private static final SendWork SHUTDOWN = new SendWork();
+
         private final Mailbox m_mb;
         private final MessageFactory m_msgFactory;
         private final LinkedBlockingQueue<SendWork> m_workQueue;
         private final AtomicInteger m_expectedEOFs;
+        private final long m_windowBytes;
 
         final Map<Long, AtomicLong> m_bytesSent;
         final Map<Long, AtomicLong> m_worksSent;
+        final Map<Long, TargetStream> m_streams;
         volatile Exception m_lastException = null;
 
         public SnapshotSender(Mailbox mb)
@@ -426,14 +619,21 @@ implements SnapshotDataTarget, StreamSnapshotAckReceiver.AckCallback {
         }
 
         public SnapshotSender(Mailbox mb, MessageFactory msgFactory)
+        {
+            this(mb, msgFactory, WINDOW_BYTES);
+        }
+
+        SnapshotSender(Mailbox mb, MessageFactory msgFactory, long windowBytes)
         {
             Preconditions.checkArgument(mb != null);
             m_mb = mb;
             m_msgFactory = msgFactory;
+            m_windowBytes = windowBytes;
             m_workQueue = new LinkedBlockingQueue<SendWork>();
             m_expectedEOFs = new AtomicInteger();
             m_bytesSent = Collections.synchronizedMap(new HashMap<Long, AtomicLong>());
             m_worksSent = Collections.synchronizedMap(new HashMap<Long, AtomicLong>());
+            m_streams = Collections.synchronizedMap(new HashMap<Long, TargetStream>());
         }
 
         public void registerDataTarget(long targetId)
@@ -441,13 +641,42 @@ implements SnapshotDataTarget, StreamSnapshotAckReceiver.AckCallback {
             m_expectedEOFs.incrementAndGet();
             m_bytesSent.put(targetId, new AtomicLong());
             m_worksSent.put(targetId, new AtomicLong());
+            m_streams.put(targetId, new TargetStream(targetId, m_windowBytes));
         }
 
         public void offer(SendWork work)
         {
+            if (!work.m_isEmpty) {
+                m_streams.get(work.m_targetId).assign(work);
+            }
             m_workQueue.offer(work);
         }
 
+        /**
+         * Called when the receiver acked all copies of a block of the data target.
+         */
+        void acked(long targetId, int creditBytes)
+        {
+            if (creditBytes > 0) {
+                sent(targetId, m_streams.get(targetId).acked(creditBytes, m_mb, m_msgFactory));
+            }
+        }
+
+        /**
+         * Called after the outstanding blocks of the data target were discarded.
+         */
+        void reset(long targetId)
+        {
+            sent(targetId, m_streams.get(targetId).reset(m_mb, m_msgFactory));
+        }
+
+        private void sent(long targetId, long bytes)
+        {
+            if (bytes > 0) {
+                m_bytesSent.get(targetId).addAndGet(bytes);
+            }
+        }
+
         @Override
         public void run() {
             rejoinLog.trace("Starting stream sender thread");
@@ -462,20 +691,34 @@ implements SnapshotDataTarget, StreamSnapshotAckReceiver.AckCallback {
                     if (work == null) {
                         rejoinLog.warn("No stream snapshot send work was produced in the past 10 minutes");
                         break;
+                    } else if (work == SHUTDOWN) {
+                        // pass it on to the next sender thread
+                        m_workQueue.offer(SHUTDOWN);
+                        break;
                     } else if (work.m_isEmpty) {
                         // Empty work indicates the end of the queue.
                         // The sender is shared by multiple data targets, each of them will
                         // send an end-of-queue work, must wait until all end-of-queue works
-                        // are received before terminating the thread.
+                        // are received before terminating the threads.
                         if (m_expectedEOFs.decrementAndGet() == 0) {
+                            m_workQueue.offer(SHUTDOWN);
                             break;
                         } else {
                             continue;
                         }
                     }
 
-                    m_bytesSent.get(work.m_targetId).addAndGet(work.doWork(m_mb, m_msgFactory));
-                    m_worksSent.get(work.m_targetId).incrementAndGet();
+                    final TargetStream stream = m_streams.get(work.m_targetId);
+                    final long startNanos = System.nanoTime();
+                    stream.m_queueWaitNanos.addAndGet(startNanos - work.m_queuedNanos);
+                    try {
+                        work.compress();
+                    } finally {
+                        stream.m_compressNanos.addAndGet(System.nanoTime() - startNanos);
+                        // sent even if compression failed so the blocks behind it aren't held up
+                        sent(work.m_targetId, stream.ready(work, m_mb, m_msgFactory));
+                        m_worksSent.get(work.m_targetId).incrementAndGet();
+                    }
                 }
                 catch (Exception e) {
                     m_lastException = e;
@@ -620,9 +863,12 @@ implements SnapshotDataTarget, StreamSnapshotAckReceiver.AckCallback {
             // we'll send the correct EOS to the receiving end
             sendEOS();
 
-            // Terminate the sender thread after the last block
+            // Terminate the sender threads after the last block
             m_sender.offer(new SendWork());
 
+            rejoinLog.info("Finished sending rejoin data to site " + CoreUtils.hsIdToString(m_destHSId) + ": " +
+                    m_sender.m_streams.get(m_targetId).summary(getBytesWritten()));
+
             // locked so m_closed is true when the ack thread dies
             synchronized(this) {
                 m_closed.set(true);
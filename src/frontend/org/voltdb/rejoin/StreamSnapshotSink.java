@@ -21,6 +21,7 @@ import java.nio.ByteBuffer;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Queue;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.voltcore.logging.VoltLogger;
@@ -60,6 +61,16 @@ public class StreamSnapshotSink {
     private final Map<Integer, byte[]> m_schemas = new HashMap<Integer, byte[]>();
     private long m_bytesReceived = 0;
 
+    // statistics for the summary, the receiver is kept after close
+    private StreamSnapshotDataReceiver m_receiver = null;
+    private long m_firstBlockNanos = 0;
+    private long m_lastBlockNanos = 0;
+    // time the site found no block to load, and blocks waited for the site
+    private long m_starvedSinceNanos = 0;
+    private long m_starvedNanos = 0;
+    private long m_blocksQueuedNanos = 0;
+    private long m_blocks = 0;
+
     /**
      * A piece of work that can be restored on the site receiving the data.
      */
@@ -99,6 +110,7 @@ public class StreamSnapshotSink {
         final int m_blockIndex;
         final StreamSnapshotMessageType m_msgType;
         final int m_tableId;
+        final long m_decodedNanos = System.nanoTime();
 
         public DecodedContainer(long srcHSId, long dataTargetId, BBContainer container) {
             m_srcHSId = srcHSId;
@@ -154,6 +166,7 @@ public class StreamSnapshotSink {
         m_expectedEOFs.set(sourceCount);
 
         m_in = new StreamSnapshotDataReceiver(m_mb, dataPool, compressedDataPool);
+        m_receiver = m_in;
         m_inThread = new Thread(m_in, "Snapshot data receiver");
         m_inThread.setDaemon(true);
         m_ack = new StreamSnapshotAckSender(m_mb);
@@ -235,6 +248,9 @@ public class StreamSnapshotSink {
         }
 
         DecodedContainer msg = m_in.poll();
+        if (msg == null && m_firstBlockNanos != 0 && !m_EOF && m_starvedSinceNanos == 0) {
+            m_starvedSinceNanos = System.nanoTime();
+        }
         return processMessage(msg, resultBufferAllocator);
     }
 
@@ -252,6 +268,18 @@ public class StreamSnapshotSink {
             return null;
         }
 
+        final long now = System.nanoTime();
+        if (m_firstBlockNanos == 0) {
+            m_firstBlockNanos = now;
+        }
+        m_lastBlockNanos = now;
+        if (m_starvedSinceNanos != 0) {
+            m_starvedNanos += now - m_starvedSinceNanos;
+            m_starvedSinceNanos = 0;
+        }
+        m_blocksQueuedNanos += now - msg.m_decodedNanos;
+        m_blocks++;
+
         RestoreWork restoreWork = null;
         try {
             if (msg.m_msgType == StreamSnapshotMessageType.FAILURE) {
@@ -325,4 +353,26 @@ public class StreamSnapshotSink {
     public long bytesTransferred() {
         return m_bytesReceived;
     }
+
+    /**
+     * @return a one line summary of how fast the data arrived and where the
+     * transfer waited. Blocks that wait long for the site mean loading is the
+     * bottleneck, a site that waits long for blocks means the network or the
+     * sender is.
+     */
+    public String summary() {
+        if (m_receiver == null) {
+            return "no data received";
+        }
+        final double seconds = Math.max(1, m_lastBlockNanos - m_firstBlockNanos) / 1000000000.0;
+        return String.format("%.1f MB received (%.1f MB compressed) in %.1f s, %.2f MB/s. " +
+                "Decompressing took %d ms, blocks waited %d ms on average for the site, at most %d blocks queued. " +
+                "The site waited %d ms for blocks",
+                m_receiver.getDecompressedBytes() / 1048576.0, m_receiver.getCompressedBytes() / 1048576.0, seconds,
+                m_receiver.getDecompressedBytes() / 1048576.0 / seconds,
+                TimeUnit.NANOSECONDS.toMillis(m_receiver.getDecompressNanos()),
+                m_blocks == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(m_blocksQueuedNanos / m_blocks),
+                m_receiver.getPeakQueued(),
+                TimeUnit.NANOSECONDS.toMillis(m_starvedNanos));
+    }
 }
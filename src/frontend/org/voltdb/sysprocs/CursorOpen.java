@@ -0,0 +1,201 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2018 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.sysprocs;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.voltcore.logging.VoltLogger;
+import org.voltdb.ClientResponseImpl;
+import org.voltdb.ParameterSet;
+import org.voltdb.VoltDB;
+import org.voltdb.VoltNTSystemProcedure;
+import org.voltdb.VoltTable;
+import org.voltdb.VoltTable.ColumnInfo;
+import org.voltdb.VoltType;
+import org.voltdb.client.ClientResponse;
+import org.voltdb.largequery.LargeBlockManager;
+import org.voltdb.largequery.ResultCursorManager;
+import org.voltdb.parser.SQLLexer;
+import org.voltdb.utils.SplitStmtResults;
+
+/**
+ * Run a read-only query and return its result through a cursor, a chunk at a
+ * time. The query runs as a large query, so its intermediate tables can go to
+ * the large query swap directory, and the rows that don't fit in the first
+ * chunk are kept there too until the client fetches them.
+ *
+ * The query itself still returns its whole result to this host in one
+ * response, so a result over the 50MB limit on a query result fails here as
+ * it does for @AdHoc, and the result is on the heap until it has been cut
+ * into blocks. What the cursor saves is the client: it never receives more
+ * than a chunk at a time, and the unread rows wait on disk, not on the heap.
+ *
+ * Parameters are the maximum number of rows to return per chunk, the SELECT
+ * statement and its parameters. Each of the cursor sysprocs returns two
+ * tables, the rows of the chunk and one row with CURSOR_ID and ROWS_REMAINING.
+ * The cursor is closed on the server once ROWS_REMAINING is 0.
+ *
+ * A cursor is kept on the host that ran @CursorOpen and belongs to the user
+ * and the client connection that opened it, @CursorFetch and @CursorClose
+ * have to be sent over that connection. It is closed when the connection is.
+ */
+public class CursorOpen extends VoltNTSystemProcedure {
+    private static final VoltLogger hostLog = new VoltLogger("HOST");
+
+    public CompletableFuture<ClientResponse> run(ParameterSet params) {
+        final Object[] paramArray = params.toArray();
+        if (paramArray.length < 2 || !(paramArray[0] instanceof Number) || !(paramArray[1] instanceof String)) {
+            return makeQuickResponse(ClientResponse.GRACEFUL_FAILURE,
+                    "@CursorOpen requires the number of rows per fetch and the query parameters.");
+        }
+        final int fetchRows = ((Number) paramArray[0]).intValue();
+        if (fetchRows <= 0) {
+            return makeQuickResponse(ClientResponse.GRACEFUL_FAILURE,
+                    "@CursorOpen requires a positive number of rows per fetch.");
+        }
+        final String sql = (String) paramArray[1];
+        final SplitStmtResults split = SQLLexer.splitStatements(sql);
+        final List<String> statements = new ArrayList<>(split.getCompletelyParsedStmts());
+        if (split.getIncompleteStmt() != null && !split.getIncompleteStmt().trim().isEmpty()) {
+            statements.add(split.getIncompleteStmt());
+        }
+        if (statements.size() != 1 || !SQLLexer.isSelect(statements.get(0))) {
+            return makeQuickResponse(ClientResponse.GRACEFUL_FAILURE,
+                    "@CursorOpen only supports a single SELECT statement.");
+        }
+        final LargeBlockManager blockManager = LargeBlockManager.getInstance();
+        if (blockManager == null) {
+            return makeQuickResponse(ClientResponse.GRACEFUL_FAILURE,
+                    "Result cursors are not available, the large query swap directory is not set up.");
+        }
+
+        final String user = getUsername();
+        final long connectionId = getClientConnectionId();
+        final Object[] adHocParams = new Object[paramArray.length - 1];
+        System.arraycopy(paramArray, 1, adHocParams, 0, adHocParams.length);
+        return callProcedure("@AdHocLarge", adHocParams).thenApply(response -> {
+            if (response.getStatus() != ClientResponse.SUCCESS) {
+                return response;
+            }
+            final VoltTable result = response.getResults()[0];
+            // small results don't need a cursor
+            if (result.getRowCount() <= fetchRows) {
+                return chunkResponse(result, 0, 0);
+            }
+            final ResultCursorManager cursors = blockManager.getResultCursors();
+            final long nowMs = System.currentTimeMillis();
+            try {
+                final long cursorId = cursors.open(VoltDB.instance().getHostMessenger().getHostId(),
+                                                   user, connectionId, result, nowMs);
+                final VoltTable rows = cursors.fetch(cursorId, user, connectionId, fetchRows, nowMs);
+                return chunkResponse(rows, cursorId, cursors.getRemainingRows(cursorId));
+            } catch (IOException e) {
+                hostLog.warn("Failed to open a result cursor", e);
+                return new ClientResponseImpl(ClientResponse.GRACEFUL_FAILURE, new VoltTable[0],
+                        "Failed to open a result cursor: " + e.getMessage());
+            }
+        });
+    }
+
+    static ClientResponse chunkResponse(VoltTable rows, long cursorId, long remainingRows) {
+        final VoltTable status = new VoltTable(new ColumnInfo("CURSOR_ID", VoltType.BIGINT),
+                                               new ColumnInfo("ROWS_REMAINING", VoltType.BIGINT));
+        status.addRow(cursorId, remainingRows);
+        return new ClientResponseImpl(ClientResponse.SUCCESS, new VoltTable[] { rows, status }, null);
+    }
+
+    private static CompletableFuture<ClientResponse> makeQuickResponse(byte statusCode, String msg) {
+        final CompletableFuture<ClientResponse> fut = new CompletableFuture<>();
+        fut.complete(new ClientResponseImpl(statusCode, new VoltTable[0], msg));
+        return fut;
+    }
+
+    /**
+     * @return a failure if the cursor is held by another host, null otherwise
+     */
+    private static CompletableFuture<ClientResponse> checkCursorHost(String procName, long cursorId) {
+        final int hostId = ResultCursorManager.getHostId(cursorId);
+        if (hostId == VoltDB.instance().getHostMessenger().getHostId()) {
+            return null;
+        }
+        return makeQuickResponse(ClientResponse.GRACEFUL_FAILURE,
+                "Result cursor " + cursorId + " is held by host " + hostId + ", " + procName +
+                " has to be sent over the connection that opened it");
+    }
+
+    /**
+     * Return the next chunk of an open cursor. Parameters are the cursor id
+     * and the maximum number of rows to return.
+     */
+    public static class CursorFetch extends VoltNTSystemProcedure {
+
+        public CompletableFuture<ClientResponse> run(long cursorId, int maxRows) {
+            if (maxRows <= 0) {
+                return makeQuickResponse(ClientResponse.GRACEFUL_FAILURE,
+                        "@CursorFetch requires a positive number of rows.");
+            }
+            final CompletableFuture<ClientResponse> wrongHost = checkCursorHost("@CursorFetch", cursorId);
+            if (wrongHost != null) {
+                return wrongHost;
+            }
+            final LargeBlockManager blockManager = LargeBlockManager.getInstance();
+            final ResultCursorManager cursors = blockManager == null ? null : blockManager.getResultCursors();
+            final VoltTable rows;
+            try {
+                rows = cursors == null ? null :
+                    cursors.fetch(cursorId, getUsername(), getClientConnectionId(), maxRows, System.currentTimeMillis());
+            } catch (IOException e) {
+                hostLog.warn("Failed to read from result cursor " + cursorId, e);
+                return makeQuickResponse(ClientResponse.GRACEFUL_FAILURE,
+                        "Failed to read from result cursor " + cursorId + ": " + e.getMessage());
+            }
+            if (rows == null) {
+                return makeQuickResponse(ClientResponse.GRACEFUL_FAILURE,
+                        "Result cursor " + cursorId + " does not exist, it may have timed out");
+            }
+            final CompletableFuture<ClientResponse> fut = new CompletableFuture<>();
+            fut.complete(chunkResponse(rows, cursorId, cursors.getRemainingRows(cursorId)));
+            return fut;
+        }
+    }
+
+    /**
+     * Close a cursor before all of its rows are fetched. The parameter is the
+     * cursor id, closing a cursor that doesn't exist is not an error.
+     */
+    public static class CursorClose extends VoltNTSystemProcedure {
+
+        public CompletableFuture<ClientResponse> run(long cursorId) {
+            final CompletableFuture<ClientResponse> wrongHost = checkCursorHost("@CursorClose", cursorId);
+            if (wrongHost != null) {
+                return wrongHost;
+            }
+            final LargeBlockManager blockManager = LargeBlockManager.getInstance();
+            final boolean closed = blockManager != null &&
+                    blockManager.getResultCursors().close(cursorId, getUsername(), getClientConnectionId());
+            final VoltTable result = new VoltTable(new ColumnInfo("CLOSED", VoltType.TINYINT));
+            result.addRow(closed ? 1 : 0);
+            final CompletableFuture<ClientResponse> fut = new CompletableFuture<>();
+            fut.complete(new ClientResponseImpl(ClientResponse.SUCCESS, new VoltTable[] { result }, null));
+            return fut;
+        }
+    }
+}
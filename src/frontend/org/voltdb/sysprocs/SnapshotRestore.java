@@ -1431,7 +1431,7 @@ public class SnapshotRestore extends VoltSystemProcedure {
             startAction == StartAction.CREATE && mode != org.voltdb.OperationMode.INITIALIZING;
 
         final boolean isCLEnabled =
-            VoltDB.instance().getCommandLog().getClass().getSimpleName().equals("CommandLogImpl");
+            VoltDB.instance().getCommandLog().isEnabled();
 
         final boolean isStartedWithCreateAction = startAction == StartAction.CREATE;
 
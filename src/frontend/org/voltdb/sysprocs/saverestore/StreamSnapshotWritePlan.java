@@ -204,7 +204,9 @@ public class StreamSnapshotWritePlan extends SnapshotWritePlan
             Mailbox mb = VoltDB.instance().getHostMessenger().createMailbox();
             StreamSnapshotDataTarget.SnapshotSender sender = new StreamSnapshotDataTarget.SnapshotSender(mb);
             StreamSnapshotAckReceiver ackReceiver = new StreamSnapshotAckReceiver(mb);
-            new Thread(sender, "Stream Snapshot Sender").start();
+            for (int i = 0; i < StreamSnapshotDataTarget.SnapshotSender.SENDER_THREADS; i++) {
+                new Thread(sender, "Stream Snapshot Sender - " + i).start();
+            }
             new Thread(ackReceiver, "Stream Snapshot Ack Receiver").start();
             // The mailbox will be removed after all snapshot data targets are finished
             SnapshotSiteProcessor.m_tasksOnSnapshotCompletion.offer(createCompletionTask(mb));
@@ -224,7 +226,8 @@ public class StreamSnapshotWritePlan extends SnapshotWritePlan
                                                new StreamSnapshotDataTarget(destHSId,
                                                                             (destHSId == stream.lowestSiteSinkHSId),
                                                                             destsByHostId.get(CoreUtils.getHostIdFromHSId(destHSId)),
-                                                                            hashinatorConfig, schemas, sender, ackReceiver));
+                                                                            hashinatorConfig, schemas, sender, ackReceiver,
+                                                                            stream.newPartition != null));
 //                    if (destHSId == stream.lowestSiteSinkHSId) {
 //                        sdts.add(0, nextTarget);
 //                    }
@@ -0,0 +1,192 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2018 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.avro.Schema;
+import org.apache.avro.file.CodecFactory;
+import org.apache.avro.file.DataFileWriter;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.EncoderFactory;
+import org.voltdb.VoltTable;
+import org.voltdb.VoltType;
+import org.voltdb.exportclient.decode.AvroDecoder;
+
+/**
+ * Converts a table save file to an Avro object container file, the binary
+ * row format most data lake tools load directly. Column types map to Avro
+ * types the same way as for the Avro export formatter, and blocks are
+ * compressed with snappy.
+ *
+ * Rows are encoded on the converter threads; the writer only appends the
+ * encoded rows and compresses the blocks.
+ */
+public class AvroTableSaveFile extends TableSaveFileConverter<AvroTableSaveFile.EncodedRows> {
+
+    /**
+     * The Avro encoding of the rows of one chunk, row i ends at m_ends[i].
+     */
+    static class EncodedRows {
+        final byte[] m_bytes;
+        final int[] m_ends;
+        final int m_rowCount;
+
+        EncodedRows(byte[] bytes, int[] ends, int rowCount) {
+            m_bytes = bytes;
+            m_ends = ends;
+            m_rowCount = rowCount;
+        }
+    }
+
+    private final String m_tableName;
+    private final List<VoltType> m_types = new ArrayList<VoltType>();
+    private final List<String> m_names = new ArrayList<String>();
+
+    public AvroTableSaveFile(File saveFile, Integer partitions[]) throws IOException {
+        super(saveFile, partitions);
+        m_tableName = m_saveFile.getTableName();
+        final VoltTable schema = getSchemaTable();
+        for (int ii = 0; ii < schema.getColumnCount(); ii++) {
+            m_types.add(schema.getColumnType(ii));
+            m_names.add(schema.getColumnName(ii));
+        }
+    }
+
+    private AvroDecoder newDecoder() {
+        AvroDecoder.Builder builder = new AvroDecoder.Builder();
+        builder.skipInternalFields(false);
+        return builder.timeZone(VoltTableUtil.tz).build();
+    }
+
+    public Schema getSchema() {
+        return newDecoder().getSchema(0, m_tableName, m_types, m_names);
+    }
+
+    /**
+     * Append every row of the save file to <code>writer</code>, in file order.
+     */
+    public void writeTo(DataFileWriter<GenericRecord> writer) throws IOException {
+        EncodedRows rows;
+        while ((rows = next()) != null) {
+            int start = 0;
+            for (int ii = 0; ii < rows.m_rowCount; ii++) {
+                writer.appendEncoded(ByteBuffer.wrap(rows.m_bytes, start, rows.m_ends[ii] - start));
+                start = rows.m_ends[ii];
+            }
+        }
+    }
+
+    @Override
+    protected ChunkConverter<EncodedRows> newChunkConverter() {
+        final AvroDecoder decoder = newDecoder();
+        final GenericDatumWriter<GenericRecord> datumWriter =
+                new GenericDatumWriter<GenericRecord>(decoder.getSchema(0, m_tableName, m_types, m_names));
+        return new ChunkConverter<EncodedRows>() {
+            final ByteArrayOutputStream m_out = new ByteArrayOutputStream(1024 * 64);
+            final Object m_fields[] = new Object[m_types.size()];
+            BinaryEncoder m_encoder;
+
+            @Override
+            public EncodedRows convert(VoltTable vt) throws IOException {
+                m_out.reset();
+                m_encoder = EncoderFactory.get().binaryEncoder(m_out, m_encoder);
+                final int ends[] = new int[vt.getRowCount()];
+                int row = 0;
+                while (vt.advanceRow()) {
+                    for (int ii = 0; ii < m_fields.length; ii++) {
+                        final Object value = vt.get(ii, m_types.get(ii));
+                        m_fields[ii] = vt.wasNull() ? null : value;
+                    }
+                    datumWriter.write(decoder.decode(0, m_tableName, m_types, m_names, null, m_fields), m_encoder);
+                    m_encoder.flush();
+                    ends[row++] = m_out.size();
+                }
+                return new EncodedRows(m_out.toByteArray(), ends, row);
+            }
+        };
+    }
+
+    @Override
+    protected int sizeOf(EncodedRows converted) {
+        return converted.m_bytes.length;
+    }
+
+    public static void main(String args[]) throws Exception {
+        if (args.length != 2 && args.length != 4) {
+            System.err.println("Usage: [--partitions 1,3,4] outfile.avro infile.vpt");
+            System.exit(-1);
+        }
+
+        Integer partitions[] = null;
+        int ii = 0;
+        if (args[0].equals("--partitions")) {
+            String partitionStrings[] = args[1].split(",");
+            partitions = new Integer[partitionStrings.length];
+            int jj = 0;
+            for (String partitionString : partitionStrings) {
+                partitions[jj++] = Integer.valueOf(partitionString);
+            }
+            ii = 2;
+        }
+
+        final File outfile = new File(args[ii]);
+        final File infile = new File(args[ii + 1]);
+        if (!infile.canRead()) {
+            System.err.println("Can't read input file " + args[ii + 1]);
+            System.exit(-1);
+        }
+        convertTableSaveFile(partitions, outfile, infile);
+    }
+
+    /**
+     * Convert <code>infile</code> and append its rows to <code>outfile</code>.
+     * An empty or missing outfile is started with the schema of the table,
+     * otherwise the rows go after the ones already in the file.
+     */
+    public static void convertTableSaveFile(Integer[] partitions, final File outfile, final File infile)
+            throws IOException, InterruptedException {
+        final AvroTableSaveFile converter = new AvroTableSaveFile(infile, partitions);
+        try {
+            final DataFileWriter<GenericRecord> writer =
+                    new DataFileWriter<GenericRecord>(new GenericDatumWriter<GenericRecord>());
+            try {
+                if (outfile.exists() && outfile.length() > 0) {
+                    writer.appendTo(outfile);
+                } else {
+                    writer.setCodec(CodecFactory.snappyCodec());
+                    writer.create(converter.getSchema(), outfile);
+                }
+                converter.writeTo(writer);
+                writer.flush();
+                writer.fSync();
+            } finally {
+                writer.close();
+            }
+        } finally {
+            converter.close();
+        }
+    }
+}
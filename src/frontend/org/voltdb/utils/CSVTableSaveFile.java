@@ -18,130 +18,57 @@
 package org.voltdb.utils;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.SyncFailedException;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicReference;
 
-import org.voltdb.PrivateVoltTableFactory;
 import org.voltdb.VoltTable;
-import org.voltdb.sysprocs.saverestore.TableSaveFile;
-import org.voltcore.utils.DBBPool.BBContainer;
-import org.voltcore.utils.CoreUtils;
 import org.voltcore.utils.Pair;
 
-public class CSVTableSaveFile {
-    private final AtomicInteger m_availableBytes = new AtomicInteger(0);
-    private final int m_maxAvailableBytes = 16777216;
-    private final LinkedBlockingQueue<byte[]> m_available = new LinkedBlockingQueue<byte[]>();
-    private final Thread m_converterThreads[] = new Thread[CoreUtils.availableProcessors()];
-    private final AtomicReference<IOException> m_exception = new AtomicReference<IOException>(
-            null);
-    private final AtomicInteger m_activeConverters = new AtomicInteger(CoreUtils.availableProcessors());
-    private final TableSaveFile m_saveFile;
+public class CSVTableSaveFile extends TableSaveFileConverter<byte[]> {
     private final char m_delimiter;
 
     public CSVTableSaveFile(File saveFile, char delimiter, Integer partitions[])
             throws IOException {
+        super(saveFile, partitions);
         m_delimiter = delimiter;
-        final FileInputStream fis = new FileInputStream(saveFile);
-        m_saveFile = new TableSaveFile(fis, 10, partitions);
-        for (int ii = 0; ii < m_converterThreads.length; ii++) {
-            m_converterThreads[ii] = new Thread(new ConverterThread());
-            m_converterThreads[ii].start();
-        }
     }
 
     /**
-     * Returns a more CSV data in UTF-8 format. Returns null when there is no
-     * more data. May block.
+     * Returns a more CSV data in UTF-8 format, in the order the rows are
+     * stored in the save file. May block.
      *
-     * @return null if there is no more data or a byte array contain some number
-     *         of complete CSV lines
+     * @return an empty array if there is no more data or a byte array
+     *         contain some number of complete CSV lines
      *
      * @throws IOException
      */
     public byte[] read() throws IOException {
-        if (m_exception.get() != null) {
-            throw m_exception.get();
-        }
-
-        byte bytes[] = null;
-        if (m_activeConverters.get() == 0) {
-            bytes = m_available.poll();
-        } else {
-            try {
-                bytes = m_available.take();
-            } catch (InterruptedException e) {
-                throw new IOException(e);
-            }
-        }
-        if (bytes != null) {
-            m_availableBytes.addAndGet(-1 * bytes.length);
-        }
-        return bytes;
-    }
-
-    public void close() throws IOException, InterruptedException {
-        m_saveFile.close();
-        for (final Thread t : m_converterThreads) {
-            t.interrupt();
-            t.join();
-        }
+        byte bytes[];
+        do {
+            bytes = next();
+        } while (bytes != null && bytes.length == 0);
+        return bytes == null ? new byte[0] : bytes;
     }
 
-    private class ConverterThread implements Runnable {
-        private void convertChunks() throws IOException, InterruptedException {
+    @Override
+    protected ChunkConverter<byte[]> newChunkConverter() {
+        return new ChunkConverter<byte[]>() {
             int lastNumCharacters = 1024 * 64;
-            while (!Thread.interrupted() && m_saveFile.hasMoreChunks()) {
-                if (m_availableBytes.get() > m_maxAvailableBytes) {
-                    Thread.sleep(5);
-                    continue;
-                }
-
-                BBContainer c = m_saveFile.getNextChunk();
-                if (c == null) {
-                    return;
-                }
 
-                try {
-                    final VoltTable vt = PrivateVoltTableFactory
-                            .createVoltTableFromBuffer(c.b(), true);
-                    Pair<Integer, byte[]> p = VoltTableUtil.toCSV( vt, m_delimiter, null, lastNumCharacters);
-                    lastNumCharacters = p.getFirst();
-                    byte csvBytes[] = p.getSecond();
-                    // should not insert empty byte[] if not last ConverterThread
-                    if (csvBytes.length > 0) {
-                        m_availableBytes.addAndGet(csvBytes.length);
-                        m_available.offer(csvBytes);
-                    }
-                } finally {
-                    c.discard();
-                }
+            @Override
+            public byte[] convert(VoltTable vt) throws IOException {
+                Pair<Integer, byte[]> p = VoltTableUtil.toCSV( vt, m_delimiter, null, lastNumCharacters);
+                lastNumCharacters = p.getFirst();
+                return p.getSecond();
             }
-        }
+        };
+    }
 
-        @Override
-        public void run() {
-            try {
-                try {
-                    convertChunks();
-                } catch (IOException e) {
-                    m_exception.compareAndSet(null, e);
-                } catch (InterruptedException e) {
-                    return;
-                }
-            } finally {
-                int activeConverters = m_activeConverters.decrementAndGet();
-                if (activeConverters == 0) {
-                    m_available.offer(new byte[0]);
-                }
-            }
-        }
+    @Override
+    protected int sizeOf(byte[] converted) {
+        return converted.length;
     }
 
     public static void main(String args[]) throws Exception {
@@ -0,0 +1,101 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2018 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.utils;
+
+import java.io.IOException;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.voltdb.AuthenticationResult;
+import org.voltdb.StatsHistory;
+import org.voltdb.VoltDB;
+import org.voltdb.common.Permission;
+
+/**
+ * Serves the statistics history of this host at /metrics, in the OpenMetrics
+ * text format if the client accepts it and in the Prometheus text format
+ * otherwise. Nothing runs in the database to answer.
+ *
+ * By default the latest point of every series is returned. With
+ * history=raw every sample in the history is returned, with history=rollup
+ * every average. match=prefix only returns the metrics whose names start
+ * with the prefix.
+ *
+ * The metrics cover every procedure and table of the database, so like the
+ * deployment, they are only served to users with the ADMIN permission.
+ */
+public class MetricsServlet extends VoltBaseServlet {
+
+    private static final long serialVersionUID = -2281853541567219372L;
+
+    @Override
+    public void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws IOException, ServletException {
+        super.doGet(request, response);
+        String target = request.getPathInfo();
+        if (target == null) target = "/";
+        try {
+            AuthenticationResult authResult = authenticate(request);
+            if (!authResult.isAuthenticated()) {
+                response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
+                response.getWriter().print(authResult.m_message);
+                return;
+            }
+            //Authenticated but has no permissions.
+            if (!authResult.m_authUser.hasPermission(Permission.ADMIN)) {
+                response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
+                response.getWriter().print("Permission denied");
+                return;
+            }
+            if (!target.equals("/")) {
+                response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+                response.getWriter().print("Resource not found");
+                return;
+            }
+            StatsHistory history = VoltDB.instance().getStatsHistory();
+            if (history == null) {
+                response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+                response.getWriter().print("The statistics history is disabled");
+                return;
+            }
+
+            StatsHistory.Range range = StatsHistory.Range.LATEST;
+            String rangeParam = request.getParameter("history");
+            if (rangeParam != null) {
+                try {
+                    range = StatsHistory.Range.valueOf(rangeParam.toUpperCase());
+                } catch (IllegalArgumentException e) {
+                    response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+                    response.getWriter().print("history must be one of latest, raw or rollup");
+                    return;
+                }
+            }
+            String accept = request.getHeader("Accept");
+            boolean openMetrics = accept != null && accept.contains("application/openmetrics-text");
+            response.setContentType(openMetrics ?
+                    StatsHistory.OPENMETRICS_CONTENT_TYPE : StatsHistory.PROMETHEUS_CONTENT_TYPE);
+            response.setStatus(HttpServletResponse.SC_OK);
+            history.write(response.getWriter(), openMetrics, range, request.getParameter("match"));
+        } catch (Exception ex) {
+            rateLimitedLogWarn("Not servicing url: %s Details: ", target, ex.getMessage());
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+        }
+    }
+}
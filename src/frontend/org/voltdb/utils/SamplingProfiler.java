@@ -0,0 +1,341 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2018 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Pattern;
+
+import org.voltcore.logging.VoltLogger;
+
+/**
+ * A sampling profiler that can stay on in production. It periodically takes
+ * the stacks of the site, network and planner threads and counts them as
+ * collapsed stacks, one line per distinct stack with the frames from the
+ * outermost to the innermost separated by semicolons, which is what
+ * flamegraph.pl and most flame graph viewers read.
+ *
+ * Counts are kept in a ring of time windows (60 windows of 10 seconds by
+ * default), so the profile always covers the recent past and its memory is
+ * bounded. Each window holds at most a fixed number of distinct stacks, the
+ * rest are counted under a single overflow entry.
+ *
+ * Only threads that are running or blocked on a monitor are counted, threads
+ * waiting for work are not. That includes threads the JVM reports as running
+ * while they wait in native code, in a selector or a socket accept or read,
+ * which are recognized by the frame they wait in, see {@link #IDLE_FRAMES}. Taking the stacks pauses the JVM at a safepoint,
+ * so the profiler measures how long each sample takes and stretches the
+ * interval as needed to keep that time under 1% of the wall clock.
+ *
+ * Like {@link VoltTrace}, there is one profiler per process, controlled with
+ * the static methods and from @Trace.
+ */
+public class SamplingProfiler implements Runnable {
+    private static final VoltLogger s_logger = new VoltLogger("TRACER");
+
+    public static final int DEFAULT_INTERVAL_MS = Integer.getInteger("PROFILER_INTERVAL_MS", 100);
+    static final long WINDOW_MS = Long.getLong("PROFILER_WINDOW_MS", 10000);
+    static final int WINDOWS = Integer.getInteger("PROFILER_WINDOWS", 60);
+    static final int MAX_STACKS_PER_WINDOW = Integer.getInteger("PROFILER_MAX_STACKS", 4096);
+    static final int MAX_DEPTH = 128;
+    // The beginnings of the names of the site, network and planner (NT procedure) threads
+    static final String SITE_THREADS = "SP \\d+ Site|MP Site|RO MP Site";
+    static final String NETWORK_THREADS = "Volt .*Network|Pico Network";
+    static final String PLANNER_THREADS = "NTPServiceThread";
+    static final String DEFAULT_THREADS =
+            System.getProperty("PROFILER_THREADS",
+                    "(" + SITE_THREADS + "|" + NETWORK_THREADS + "|" + PLANNER_THREADS + ").*");
+    static final String OVERFLOW_STACK = "[too many distinct stacks]";
+    // The fraction of the time the profiler may spend taking samples
+    static final int MAX_OVERHEAD_PERCENT = 1;
+    private static final long THREAD_REFRESH_MS = 1000;
+    // Native methods that wait for events while the thread stays RUNNABLE
+    static final Set<String> IDLE_FRAMES = new HashSet<>(Arrays.asList(
+            "sun.nio.ch.EPollArrayWrapper.epollWait",
+            "sun.nio.ch.EPoll.wait",
+            "sun.nio.ch.KQueueArrayWrapper.kevent0",
+            "sun.nio.ch.KQueue.poll",
+            "sun.nio.ch.PollArrayWrapper.poll0",
+            "sun.nio.ch.Net.poll",
+            "sun.nio.ch.ServerSocketChannelImpl.accept0",
+            "sun.nio.ch.Net.accept",
+            "java.net.PlainSocketImpl.socketAccept",
+            "java.net.SocketInputStream.socketRead0",
+            "sun.misc.Unsafe.park",
+            "jdk.internal.misc.Unsafe.park"));
+
+    private static final ThreadMXBean THREAD_BEAN = ManagementFactory.getThreadMXBean();
+
+    private static volatile SamplingProfiler s_profiler;
+
+    private static class Window {
+        long m_startMs;
+        final Map<String, long[]> m_stacks = new HashMap<>();
+    }
+
+    private final int m_intervalMs;
+    private final Pattern m_threads;
+    private final Thread m_thread;
+    private volatile boolean m_shutdown = false;
+
+    // guarded by this
+    private final Window[] m_windows = new Window[WINDOWS];
+    private int m_current = 0;
+    private long m_samples = 0;
+    private long m_sampleNanos = 0;
+
+    // sampler thread only
+    private long[] m_threadIds = new long[0];
+    private final Map<Long, String> m_threadRoots = new HashMap<>();
+    private long m_lastRefreshMs = 0;
+
+    SamplingProfiler(int intervalMs, String threads) {
+        m_intervalMs = Math.max(1, intervalMs);
+        m_threads = Pattern.compile(threads);
+        for (int i = 0; i < m_windows.length; i++) {
+            m_windows[i] = new Window();
+        }
+        m_windows[0].m_startMs = System.currentTimeMillis();
+        m_thread = new Thread(this, "Sampling Profiler");
+        m_thread.setDaemon(true);
+    }
+
+    /**
+     * Start profiling with the given interval between samples. Does nothing if
+     * the profiler is running already.
+     */
+    public static synchronized void start(int intervalMs) {
+        if (s_profiler != null) {
+            return;
+        }
+        SamplingProfiler profiler = new SamplingProfiler(intervalMs, DEFAULT_THREADS);
+        profiler.m_thread.start();
+        s_profiler = profiler;
+        s_logger.info("Started the sampling profiler, sampling every " + intervalMs + " ms");
+    }
+
+    /**
+     * Stop profiling and drop the samples.
+     */
+    public static synchronized void stop() {
+        SamplingProfiler profiler = s_profiler;
+        if (profiler == null) {
+            return;
+        }
+        s_profiler = null;
+        profiler.m_shutdown = true;
+        profiler.m_thread.interrupt();
+        s_logger.info("Stopped the sampling profiler");
+    }
+
+    /**
+     * @return a one line description of the profiler state
+     */
+    public static String status() {
+        SamplingProfiler profiler = s_profiler;
+        if (profiler == null) {
+            return "profiler off";
+        }
+        synchronized (profiler) {
+            final long avgMicros = profiler.m_samples == 0 ? 0 : profiler.m_sampleNanos / profiler.m_samples / 1000;
+            return String.format("profiler sampling every %d ms, %d samples, %d us per sample",
+                    profiler.m_intervalMs, profiler.m_samples, avgMicros);
+        }
+    }
+
+    /**
+     * Write the collapsed stacks of all windows to a new file in the given directory.
+     * @return the file path, or null if the profiler is not running
+     */
+    public static String dump(String logDir) throws IOException {
+        SamplingProfiler profiler = s_profiler;
+        if (profiler == null) {
+            return null;
+        }
+        final File dir = new File(logDir);
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Failed to create profile directory " + dir.getAbsolutePath());
+        }
+        final File file = new File(dir, "profile_" + System.currentTimeMillis() + ".collapsed");
+        if (file.exists()) {
+            throw new IOException("Profile file " + file.getAbsolutePath() + " already exists");
+        }
+        final Map<String, Long> stacks = profiler.getCollapsedStacks();
+        try (PrintWriter out = new PrintWriter(file, StandardCharsets.UTF_8.name())) {
+            for (Map.Entry<String, Long> e : stacks.entrySet()) {
+                out.print(e.getKey());
+                out.print(' ');
+                out.println(e.getValue());
+            }
+        }
+        return file.getAbsolutePath();
+    }
+
+    /**
+     * @return the sample count of every stack seen in the windows of the ring
+     */
+    synchronized Map<String, Long> getCollapsedStacks() {
+        Map<String, Long> merged = new HashMap<>();
+        for (Window window : m_windows) {
+            for (Map.Entry<String, long[]> e : window.m_stacks.entrySet()) {
+                Long count = merged.get(e.getKey());
+                merged.put(e.getKey(), (count == null ? 0 : count) + e.getValue()[0]);
+            }
+        }
+        return merged;
+    }
+
+    @Override
+    public void run() {
+        long nextSleepMs = m_intervalMs;
+        while (!m_shutdown) {
+            try {
+                // jitter so the samples don't line up with periodic work
+                Thread.sleep(nextSleepMs / 2 + ThreadLocalRandom.current().nextLong(nextSleepMs + 1));
+            } catch (InterruptedException e) {
+                continue;
+            }
+            final long startNanos = System.nanoTime();
+            try {
+                sample(System.currentTimeMillis());
+            } catch (Throwable t) {
+                s_logger.warn("Sampling profiler failed to take a sample, stopping", t);
+                m_shutdown = true;
+            }
+            final long sampleNanos = System.nanoTime() - startNanos;
+            synchronized (this) {
+                m_sampleNanos += sampleNanos;
+            }
+            nextSleepMs = Math.max(m_intervalMs, sampleNanos * (100 / MAX_OVERHEAD_PERCENT) / 1000000);
+        }
+    }
+
+    void sample(long nowMs) {
+        if (nowMs - m_lastRefreshMs >= THREAD_REFRESH_MS) {
+            refreshThreads();
+            m_lastRefreshMs = nowMs;
+        }
+        if (m_threadIds.length == 0) {
+            return;
+        }
+        final ThreadInfo[] infos = THREAD_BEAN.getThreadInfo(m_threadIds, MAX_DEPTH);
+        final List<String> stacks = new ArrayList<>(infos.length);
+        for (ThreadInfo info : infos) {
+            if (info == null) {
+                // the thread is gone
+                continue;
+            }
+            final Thread.State state = info.getThreadState();
+            if (state != Thread.State.RUNNABLE && state != Thread.State.BLOCKED) {
+                continue;
+            }
+            final StackTraceElement[] frames = info.getStackTrace();
+            // a thread that is starting or exiting has no frames
+            if (frames.length == 0 || isIdle(frames)) {
+                continue;
+            }
+            stacks.add(collapse(m_threadRoots.get(info.getThreadId()), frames));
+        }
+        record(nowMs, stacks);
+    }
+
+    synchronized void record(long nowMs, List<String> stacks) {
+        Window window = m_windows[m_current];
+        if (nowMs - window.m_startMs >= WINDOW_MS) {
+            m_current = (m_current + 1) % m_windows.length;
+            window = m_windows[m_current];
+            window.m_stacks.clear();
+            window.m_startMs = nowMs;
+        }
+        for (String stack : stacks) {
+            long[] count = window.m_stacks.get(stack);
+            if (count == null) {
+                if (window.m_stacks.size() >= MAX_STACKS_PER_WINDOW) {
+                    stack = OVERFLOW_STACK;
+                    count = window.m_stacks.get(stack);
+                }
+                if (count == null) {
+                    count = new long[1];
+                    window.m_stacks.put(stack, count);
+                }
+            }
+            count[0]++;
+        }
+        m_samples++;
+    }
+
+    private void refreshThreads() {
+        final long self = Thread.currentThread().getId();
+        final ThreadInfo[] infos = THREAD_BEAN.getThreadInfo(THREAD_BEAN.getAllThreadIds(), 0);
+        final List<Long> ids = new ArrayList<>();
+        m_threadRoots.clear();
+        for (ThreadInfo info : infos) {
+            if (info == null || info.getThreadId() == self || !m_threads.matcher(info.getThreadName()).matches()) {
+                continue;
+            }
+            ids.add(info.getThreadId());
+            m_threadRoots.put(info.getThreadId(), threadRoot(info.getThreadName()));
+        }
+        m_threadIds = new long[ids.size()];
+        for (int i = 0; i < m_threadIds.length; i++) {
+            m_threadIds[i] = ids.get(i);
+        }
+    }
+
+    /**
+     * Threads doing the same kind of work share a root frame, ids and numbers
+     * are taken out of the thread name.
+     */
+    static String threadRoot(String threadName) {
+        return threadName.replaceAll("\\d+", "#").replace(';', ',').replace(' ', '_');
+    }
+
+    /**
+     * @return true if the innermost frame is a native method that waits for events
+     */
+    static boolean isIdle(StackTraceElement[] frames) {
+        if (frames.length == 0 || !frames[0].isNativeMethod()) {
+            return false;
+        }
+        return IDLE_FRAMES.contains(frames[0].getClassName() + '.' + frames[0].getMethodName());
+    }
+
+    static String collapse(String root, StackTraceElement[] frames) {
+        final StringBuilder sb = new StringBuilder(root);
+        if (frames.length >= MAX_DEPTH) {
+            sb.append(";[truncated]");
+        }
+        for (int i = frames.length - 1; i >= 0; i--) {
+            sb.append(';').append(frames[i].getClassName()).append('.').append(frames[i].getMethodName());
+        }
+        return sb.toString();
+    }
+}
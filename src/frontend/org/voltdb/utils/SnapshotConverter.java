@@ -48,6 +48,7 @@ public class SnapshotConverter {
         File outdir = null;
         String type = null;
         char delimiter = '\0';
+        boolean avro = false;
 
         for (int ii = 0; ii < args.length; ii++) {
             String arg = args[ii];
@@ -130,8 +131,10 @@ public class SnapshotConverter {
                     delimiter = ',';
                 } else if (type.equalsIgnoreCase("tsv")) {
                     delimiter = '\t';
+                } else if (type.equalsIgnoreCase("avro")) {
+                    avro = true;
                 } else {
-                    System.err.println("Error: --type must be one of CSV or TSV");
+                    System.err.println("Error: --type must be one of CSV, TSV or AVRO");
                     printHelpAndQuit(-1);
                 }
                 ii++;
@@ -290,7 +293,11 @@ public class SnapshotConverter {
                     }
                 }
                 try {
-                    CSVTableSaveFile.convertTableSaveFile(delimiter, partitions, outfile, infile);
+                    if (avro) {
+                        AvroTableSaveFile.convertTableSaveFile(partitions, outfile, infile);
+                    } else {
+                        CSVTableSaveFile.convertTableSaveFile(delimiter, partitions, outfile, infile);
+                    }
                 } catch (Exception e) {
                     System.err.println(e.getMessage());
                     System.err.println("Error: Failed to convert " + infile.getPath() + " to " + outfile.getPath());
@@ -306,7 +313,7 @@ public class SnapshotConverter {
     private static void printHelpAndQuit( int code) {
         System.out.println("Usage: snapshotconverter --help");
         System.out.println("snapshotconverter --dir dir1 --dir dir2 --dir dir3 " +
-                "--table table1 --table table2 --table table3 --type CSV|TSV --outdir dir snapshot_name --timezone GMT+0");
+                "--table table1 --table table2 --table table3 --type CSV|TSV|AVRO --outdir dir snapshot_name --timezone GMT+0");
         System.exit(code);
     }
 }
@@ -0,0 +1,167 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2018 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds the most frequent keys of a stream in fixed memory with the
+ * Space-Saving algorithm (Metwally, Agrawal and El Abbadi). It keeps a counter
+ * for at most <code>capacity</code> keys. A key that has no counter when the
+ * sketch is full takes over the counter with the lowest count, and inherits
+ * that count as its error.
+ *
+ * The count of a key is never underestimated and overestimated by at most its
+ * error, which is at most total / capacity. Every key seen more often than
+ * that has a counter.
+ *
+ * Offers are synchronized, callers are expected to offer a sample of the
+ * stream so threads rarely meet here.
+ */
+public class SpaceSavingSketch {
+
+    public static class Counter {
+        public final String m_key;
+        public long m_count;
+        public long m_error;
+
+        Counter(String key, long count, long error) {
+            m_key = key;
+            m_count = count;
+            m_error = error;
+        }
+    }
+
+    private static final Comparator<Counter> BY_COUNT = new Comparator<Counter>() {
+        @Override
+        public int compare(Counter o1, Counter o2) {
+            return Long.compare(o2.m_count, o1.m_count);
+        }
+    };
+
+    private final int m_capacity;
+    private final HashMap<String, Counter> m_counters;
+    private long m_total = 0;
+
+    public SpaceSavingSketch(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        m_capacity = capacity;
+        m_counters = new HashMap<>(capacity * 2);
+    }
+
+    public void offer(String key) {
+        offer(key, 1);
+    }
+
+    public synchronized void offer(String key, long count) {
+        m_total += count;
+        Counter counter = m_counters.get(key);
+        if (counter != null) {
+            counter.m_count += count;
+            return;
+        }
+        if (m_counters.size() < m_capacity) {
+            m_counters.put(key, new Counter(key, count, 0));
+            return;
+        }
+        Counter min = null;
+        for (Counter c : m_counters.values()) {
+            if (min == null || c.m_count < min.m_count) {
+                min = c;
+            }
+        }
+        m_counters.remove(min.m_key);
+        m_counters.put(key, new Counter(key, min.m_count + count, min.m_count));
+    }
+
+    /**
+     * @return the number of items offered
+     */
+    public synchronized long getTotal() {
+        return m_total;
+    }
+
+    /**
+     * @return the count of a key that has no counter is at most this
+     */
+    private long getMissingCount() {
+        if (m_counters.size() < m_capacity) {
+            return 0;
+        }
+        long min = Long.MAX_VALUE;
+        for (Counter c : m_counters.values()) {
+            min = Math.min(min, c.m_count);
+        }
+        return min;
+    }
+
+    /**
+     * @return copies of the counters with the highest counts, highest first
+     */
+    public List<Counter> top(int k) {
+        return top(Collections.singletonList(this), k);
+    }
+
+    /**
+     * Merge sketches of different parts of a stream and return the counters
+     * with the highest counts, highest first. A key without a counter in one
+     * of the sketches is counted with the most that sketch can have missed,
+     * which is added to its error too.
+     */
+    public static List<Counter> top(List<SpaceSavingSketch> sketches, int k) {
+        final Map<String, Counter> merged = new HashMap<>();
+        final long[] missing = new long[sketches.size()];
+        for (int ii = 0; ii < sketches.size(); ii++) {
+            final SpaceSavingSketch sketch = sketches.get(ii);
+            synchronized (sketch) {
+                missing[ii] = sketch.getMissingCount();
+                for (Counter c : sketch.m_counters.values()) {
+                    Counter m = merged.get(c.m_key);
+                    if (m == null) {
+                        m = new Counter(c.m_key, 0, 0);
+                        // what the sketches before this one can have missed
+                        for (int jj = 0; jj < ii; jj++) {
+                            m.m_count += missing[jj];
+                            m.m_error += missing[jj];
+                        }
+                        merged.put(c.m_key, m);
+                    }
+                    m.m_count += c.m_count;
+                    m.m_error += c.m_error;
+                }
+                // keys merged earlier that this sketch has no counter for
+                for (Counter m : merged.values()) {
+                    if (!sketch.m_counters.containsKey(m.m_key)) {
+                        m.m_count += missing[ii];
+                        m.m_error += missing[ii];
+                    }
+                }
+            }
+        }
+        final List<Counter> result = new ArrayList<>(merged.values());
+        Collections.sort(result, BY_COUNT);
+        return result.size() > k ? new ArrayList<>(result.subList(0, k)) : result;
+    }
+}
@@ -17,10 +17,6 @@
 
 package org.voltdb.utils;
 
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.InputStreamReader;
 import java.lang.management.ManagementFactory;
 import java.lang.management.MemoryMXBean;
 import java.lang.management.MemoryUsage;
@@ -299,16 +295,17 @@ public class SystemStatsCollector {
         pid = Integer.valueOf(pidString);
         initialized = true;
 
-        // get the RSS and other stats from scraping "ps" from the command line
-        PSScraper.PSData psdata = PSScraper.getPSData(pid);
-        assert(psdata.rss > 0);
-
         // figure out how much memory this thing has
         memorysize = pp.ramInMegabytes;
         assert(memorysize > 0);
 
         // now try to figure out the best way to get the rss size
-        long rss = -1;
+        // try procfs, it takes neither the native library nor forking "ps"
+        long rss = getRSSFromProcFS();
+        if (rss > 0) {
+            mode = GetRSSMode.PROCFS;
+            return;
+        }
 
         // try the mac method
         try {
@@ -319,19 +316,20 @@ public class SystemStatsCollector {
         // Otherwise, the hsql backend would get an annoying report to stdout
         // as the useless stats thread got needlessly killed.
         catch (Throwable e) { }
-        if (rss > 0) mode = GetRSSMode.MACOSX_NATIVE;
+        if (rss > 0) {
+            mode = GetRSSMode.MACOSX_NATIVE;
+            return;
+        }
 
-        // try procfs
-        rss = getRSSFromProcFS();
-        if (rss > 0) mode = GetRSSMode.PROCFS;
+        // get the RSS and other stats from scraping "ps" from the command line
+        PSScraper.PSData psdata = PSScraper.getPSData(pid);
+        assert(psdata.rss > 0);
 
         // notify users if stats collection might be slow
-        if (mode == GetRSSMode.PS) {
-            VoltLogger logger = new VoltLogger("HOST");
-            logger.warn("System statistics will be collected in a sub-optimal "
-                    + "manner because either procfs couldn't be read from or "
-                    + "the native library couldn't be loaded.");
-        }
+        VoltLogger logger = new VoltLogger("HOST");
+        logger.warn("System statistics will be collected in a sub-optimal "
+                + "manner because either procfs couldn't be read from or "
+                + "the native library couldn't be loaded.");
     }
 
     /**
@@ -339,21 +337,7 @@ public class SystemStatsCollector {
      * around, this will return -1;
      */
     private static long getRSSFromProcFS() {
-        try {
-            File statFile = new File(String.format("/proc/%d/stat", pid));
-            FileInputStream fis = new FileInputStream(statFile);
-            try {
-                BufferedReader r = new BufferedReader(new InputStreamReader(fis));
-                String stats = r.readLine();
-                String[] parts = stats.split(" ");
-                return Long.parseLong(parts[23]) * 4 * 1024;
-            } finally {
-                fis.close();
-            }
-        }
-        catch (Exception e) {
-            return -1;
-        }
+        return ThreadStatsCollector.getRSS();
     }
 
     public static synchronized long getRSSMB() {
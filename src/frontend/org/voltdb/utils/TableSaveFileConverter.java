@@ -0,0 +1,221 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2018 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.utils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.voltcore.utils.CoreUtils;
+import org.voltcore.utils.DBBPool.BBContainer;
+import org.voltdb.PrivateVoltTableFactory;
+import org.voltdb.VoltTable;
+import org.voltdb.sysprocs.saverestore.TableSaveFile;
+
+/**
+ * Converts the chunks of a table save file on one thread per core and hands
+ * the results back in the order the chunks are stored in the file, so the
+ * output keeps the row order and the partition layout of the snapshot.
+ *
+ * Chunks are numbered as they are taken from the save file. A converted chunk
+ * waits until every chunk before it has been read, and converters stop taking
+ * new chunks while more than 16MB of converted data is waiting.
+ *
+ * @param <T> the converted form of a chunk
+ */
+abstract class TableSaveFileConverter<T> {
+
+    /**
+     * Converts chunks on a single thread, may keep state between chunks.
+     */
+    interface ChunkConverter<T> {
+        T convert(VoltTable chunk) throws IOException;
+    }
+
+    private static final int MAX_CONVERTED_BYTES = 16777216;
+
+    protected final TableSaveFile m_saveFile;
+    private final Thread m_converterThreads[] = new Thread[CoreUtils.availableProcessors()];
+    // Orders taking a chunk and numbering it
+    private final Object m_chunkLock = new Object();
+    private long m_nextChunk = 0;
+
+    // Everything below is guarded by this
+    private final Map<Long, T> m_converted = new HashMap<Long, T>();
+    private long m_nextRead = 0;
+    private int m_convertedBytes = 0;
+    private int m_activeConverters = 0;
+    private boolean m_started = false;
+    private IOException m_exception = null;
+
+    protected TableSaveFileConverter(File saveFile, Integer partitions[]) throws IOException {
+        final FileInputStream fis = new FileInputStream(saveFile);
+        m_saveFile = new TableSaveFile(fis, 10, partitions);
+    }
+
+    /**
+     * @return a converter for the exclusive use of one converter thread
+     */
+    protected abstract ChunkConverter<T> newChunkConverter();
+
+    /**
+     * @return the number of bytes a converted chunk holds on to
+     */
+    protected abstract int sizeOf(T converted);
+
+    /**
+     * @return an empty table with the schema of the table in the save file
+     */
+    protected VoltTable getSchemaTable() {
+        final ByteBuffer header = m_saveFile.getTableHeader().duplicate();
+        header.position(0);
+        final ByteBuffer buf = ByteBuffer.allocate(header.remaining() + 4);
+        buf.put(header);
+        buf.putInt(0);
+        buf.flip();
+        return PrivateVoltTableFactory.createVoltTableFromBuffer(buf, true);
+    }
+
+    /**
+     * Returns the next converted chunk in file order, starting the converter
+     * threads on the first call. May block.
+     *
+     * @return the next converted chunk or null if there are no more chunks
+     * @throws IOException if reading or converting a chunk failed
+     */
+    protected synchronized T next() throws IOException {
+        if (!m_started) {
+            m_started = true;
+            m_activeConverters = m_converterThreads.length;
+            for (int ii = 0; ii < m_converterThreads.length; ii++) {
+                m_converterThreads[ii] = new Thread(new ConverterThread(newChunkConverter()),
+                        "Save file converter - " + ii);
+                m_converterThreads[ii].start();
+            }
+        }
+        while (true) {
+            if (m_exception != null) {
+                throw m_exception;
+            }
+            final T converted = m_converted.remove(m_nextRead);
+            if (converted != null) {
+                m_nextRead++;
+                m_convertedBytes -= sizeOf(converted);
+                notifyAll();
+                return converted;
+            }
+            if (m_activeConverters == 0) {
+                return null;
+            }
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+        }
+    }
+
+    public void close() throws IOException, InterruptedException {
+        m_saveFile.close();
+        for (final Thread t : m_converterThreads) {
+            if (t != null) {
+                t.interrupt();
+                t.join();
+            }
+        }
+    }
+
+    private class ConverterThread implements Runnable {
+        private final ChunkConverter<T> m_converter;
+
+        ConverterThread(ChunkConverter<T> converter) {
+            m_converter = converter;
+        }
+
+        private void convertChunks() throws IOException, InterruptedException {
+            while (!Thread.interrupted()) {
+                synchronized (TableSaveFileConverter.this) {
+                    // The chunk the reader is waiting for is always in flight or done,
+                    // so waiting here can't stall it
+                    while (m_convertedBytes > MAX_CONVERTED_BYTES && m_exception == null) {
+                        TableSaveFileConverter.this.wait();
+                    }
+                    if (m_exception != null) {
+                        return;
+                    }
+                }
+
+                final BBContainer c;
+                final long sequence;
+                synchronized (m_chunkLock) {
+                    if (!m_saveFile.hasMoreChunks()) {
+                        return;
+                    }
+                    c = m_saveFile.getNextChunk();
+                    if (c == null) {
+                        return;
+                    }
+                    sequence = m_nextChunk++;
+                }
+
+                final T converted;
+                try {
+                    final VoltTable vt = PrivateVoltTableFactory.createVoltTableFromBuffer(c.b(), true);
+                    converted = m_converter.convert(vt);
+                } finally {
+                    c.discard();
+                }
+                synchronized (TableSaveFileConverter.this) {
+                    m_converted.put(sequence, converted);
+                    m_convertedBytes += sizeOf(converted);
+                    TableSaveFileConverter.this.notifyAll();
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                convertChunks();
+            } catch (IOException e) {
+                setException(e);
+            } catch (RuntimeException e) {
+                setException(new IOException(e));
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                synchronized (TableSaveFileConverter.this) {
+                    m_activeConverters--;
+                    TableSaveFileConverter.this.notifyAll();
+                }
+            }
+        }
+
+        private void setException(IOException e) {
+            synchronized (TableSaveFileConverter.this) {
+                if (m_exception == null) {
+                    m_exception = e;
+                }
+                TableSaveFileConverter.this.notifyAll();
+            }
+        }
+    }
+}
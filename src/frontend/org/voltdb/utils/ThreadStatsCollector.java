@@ -0,0 +1,419 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2018 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import org.voltcore.logging.Level;
+import org.voltcore.logging.VoltLogger;
+import org.voltcore.utils.RateLimitedLogger;
+
+/**
+ * Samples the CPU time, context switches and I/O of every thread of this
+ * process from procfs, so saturated threads can be found without attaching
+ * a profiler. Each sample reads <code>/proc/self/task/&lt;tid&gt;/stat</code>,
+ * <code>status</code> and <code>io</code> for every thread, and the same
+ * files under <code>/proc/self</code> for the process as a whole. Nothing
+ * is forked.
+ *
+ * HotSpot gives the kernel the name of every Java thread it starts, but the
+ * kernel keeps only the first 15 characters. So when threads the collector
+ * doesn't know have appeared, at most once per {@link #NAME_REFRESH_MS}, the
+ * kernel names are matched to the full Java thread names from
+ * {@link ThreadMXBean#getThreadInfo(long[])}, which takes no stacks and
+ * doesn't stop the JVM. Threads whose names only differ after the first 15
+ * characters, and threads the JVM didn't start, keep their kernel names.
+ *
+ * Only Linux has the files, {@link #isSupported()} tells if they are there.
+ */
+public class ThreadStatsCollector {
+    private static final VoltLogger s_logger = new VoltLogger("HOST");
+    private static final RateLimitedLogger s_rateLimitedLogger =
+            new RateLimitedLogger(60 * 1000, s_logger, Level.WARN);
+
+    public static final long INTERVAL_MS = Long.getLong("THREAD_STATS_INTERVAL_MS", 5000);
+    // USER_HZ, the unit of the CPU times in stat, is 100 on every Linux platform
+    static final int CLOCK_TICKS_PER_SECOND = Integer.getInteger("THREAD_STATS_CLK_TCK", 100);
+    static final long NAME_REFRESH_MS = Long.getLong("THREAD_STATS_NAME_REFRESH_MS", 10000);
+    // TASK_COMM_LEN less the terminating nul
+    static final int KERNEL_NAME_LENGTH = 15;
+    static final String PROC_SELF = "/proc/self";
+
+    /**
+     * What a thread works on, from its name.
+     */
+    public enum Kind {
+        SITE("(" + SamplingProfiler.SITE_THREADS + ").*"),
+        NETWORK("(" + SamplingProfiler.NETWORK_THREADS + ").*"),
+        EXPORT(".*[Ee]xport.*"),
+        SNAPSHOT(".*[Ss]napshot.*"),
+        PLANNER("(" + SamplingProfiler.PLANNER_THREADS + ").*"),
+        OTHER(".*"),
+        PROCESS(null);
+
+        private final Pattern m_names;
+
+        Kind(String names) {
+            m_names = names == null ? null : Pattern.compile(names);
+        }
+
+        public static Kind of(String threadName) {
+            for (Kind kind : values()) {
+                if (kind.m_names != null && kind.m_names.matcher(threadName).matches()) {
+                    return kind;
+                }
+            }
+            return OTHER;
+        }
+    }
+
+    /**
+     * The counters of one thread, or of the process, at one sample.
+     * CPU times are in milliseconds, I/O in bytes. READ and WRITE count
+     * everything that went through read and write system calls, sockets
+     * included, DISK_READ and DISK_WRITE what went to storage.
+     */
+    public static class Sample {
+        public final int m_tid;
+        public final String m_name;
+        public final Kind m_kind;
+        public final long m_userMs;
+        public final long m_systemMs;
+        public final long m_voluntarySwitches;
+        public final long m_involuntarySwitches;
+        public final long m_readBytes;
+        public final long m_writeBytes;
+        public final long m_diskReadBytes;
+        public final long m_diskWriteBytes;
+        // of one CPU, since the previous sample
+        public final double m_percentCpu;
+
+        Sample(int tid, String name, Kind kind, Counters counters, double percentCpu) {
+            m_tid = tid;
+            m_name = name;
+            m_kind = kind;
+            m_userMs = counters.m_userTicks * 1000 / CLOCK_TICKS_PER_SECOND;
+            m_systemMs = counters.m_systemTicks * 1000 / CLOCK_TICKS_PER_SECOND;
+            m_voluntarySwitches = counters.m_voluntarySwitches;
+            m_involuntarySwitches = counters.m_involuntarySwitches;
+            m_readBytes = counters.m_readBytes;
+            m_writeBytes = counters.m_writeBytes;
+            m_diskReadBytes = counters.m_diskReadBytes;
+            m_diskWriteBytes = counters.m_diskWriteBytes;
+            m_percentCpu = percentCpu;
+        }
+    }
+
+    /**
+     * The raw counters read from the files of one task.
+     */
+    static class Counters {
+        String m_comm;
+        long m_userTicks;
+        long m_systemTicks;
+        long m_voluntarySwitches;
+        long m_involuntarySwitches;
+        long m_readBytes;
+        long m_writeBytes;
+        long m_diskReadBytes;
+        long m_diskWriteBytes;
+
+        long cpuTicks() {
+            return m_userTicks + m_systemTicks;
+        }
+    }
+
+    private static final ThreadMXBean THREAD_BEAN = ManagementFactory.getThreadMXBean();
+
+    private final String m_procDir;
+    private final int m_pid;
+
+    // sampling thread only
+    private final Map<Integer, String> m_names = new HashMap<>();
+    // the kernel name each thread had when its Java name was looked up
+    private final Map<Integer, String> m_namedComms = new HashMap<>();
+    private final Map<Integer, Long> m_lastCpuTicks = new HashMap<>();
+    private long m_lastProcessCpuTicks = -1;
+    private long m_lastSampleNanos = 0;
+    private long m_lastNameRefreshMs = Long.MIN_VALUE / 2;
+
+    private volatile List<Sample> m_samples = Collections.emptyList();
+
+    public ThreadStatsCollector() {
+        this(PROC_SELF);
+    }
+
+    ThreadStatsCollector(String procDir) {
+        m_procDir = procDir;
+        int pid = 0;
+        try {
+            // /proc/self links to the directory of the pid
+            final String name = new File(procDir).getCanonicalFile().getName();
+            if (name.matches("\\d+")) {
+                pid = Integer.parseInt(name);
+            }
+        } catch (IOException e) {
+        }
+        m_pid = pid;
+    }
+
+    /**
+     * @return true if procfs has the per thread files on this system
+     */
+    public static boolean isSupported() {
+        return new File(PROC_SELF, "task").isDirectory() && new File(PROC_SELF, "stat").canRead();
+    }
+
+    /**
+     * @return the threads and the process as of the latest sample, the process first
+     */
+    public List<Sample> getSamples() {
+        return m_samples;
+    }
+
+    /**
+     * Read the counters of every thread and publish them. Not thread safe,
+     * call it from one thread at a fixed interval.
+     */
+    public void sample() {
+        final long nowNanos = System.nanoTime();
+        final long elapsedNanos = m_lastSampleNanos == 0 ? 0 : nowNanos - m_lastSampleNanos;
+        m_lastSampleNanos = nowNanos;
+
+        final String[] tasks = new File(m_procDir, "task").list();
+        if (tasks == null) {
+            s_rateLimitedLogger.log("Failed to list the threads in " + m_procDir + "/task", System.currentTimeMillis());
+            return;
+        }
+
+        final Map<Integer, Counters> threads = new HashMap<>(tasks.length * 2);
+        boolean unknown = false;
+        for (String task : tasks) {
+            final int tid;
+            try {
+                tid = Integer.parseInt(task);
+            } catch (NumberFormatException e) {
+                continue;
+            }
+            final Counters counters = read(m_procDir + "/task/" + task);
+            if (counters == null) {
+                // the thread exited
+                continue;
+            }
+            threads.put(tid, counters);
+            // a new thread, or one renamed since we looked, on JVMs that tell the kernel the name
+            unknown |= !counters.m_comm.equals(m_namedComms.get(tid));
+        }
+
+        final long nowMs = System.currentTimeMillis();
+        if (unknown && nowMs - m_lastNameRefreshMs >= NAME_REFRESH_MS) {
+            m_lastNameRefreshMs = nowMs;
+            refreshNames(threads);
+        }
+
+        // forget the threads that are gone
+        m_lastCpuTicks.keySet().retainAll(threads.keySet());
+        m_names.keySet().retainAll(threads.keySet());
+        m_namedComms.keySet().retainAll(threads.keySet());
+
+        final List<Sample> samples = new ArrayList<>(threads.size() + 1);
+        final Counters process = read(m_procDir);
+        if (process != null) {
+            samples.add(new Sample(m_pid, "process", Kind.PROCESS, process,
+                    percentCpu(m_lastProcessCpuTicks, process.cpuTicks(), elapsedNanos)));
+            m_lastProcessCpuTicks = process.cpuTicks();
+        }
+        for (Map.Entry<Integer, Counters> e : threads.entrySet()) {
+            final int tid = e.getKey();
+            final Counters counters = e.getValue();
+            String name = m_names.get(tid);
+            if (name == null) {
+                name = counters.m_comm;
+            }
+            final Long lastCpuTicks = m_lastCpuTicks.put(tid, counters.cpuTicks());
+            samples.add(new Sample(tid, name, Kind.of(name), counters,
+                    percentCpu(lastCpuTicks == null ? -1 : lastCpuTicks, counters.cpuTicks(), elapsedNanos)));
+        }
+        m_samples = Collections.unmodifiableList(samples);
+    }
+
+    static double percentCpu(long lastCpuTicks, long cpuTicks, long elapsedNanos) {
+        if (lastCpuTicks < 0 || elapsedNanos <= 0) {
+            return 0;
+        }
+        return (cpuTicks - lastCpuTicks) * 100.0 * 1000000000L / CLOCK_TICKS_PER_SECOND / elapsedNanos;
+    }
+
+    /**
+     * Match the Java thread names to the thread ids. Threads that can't be
+     * matched (not Java threads, or several with the same beginning) keep
+     * their kernel name.
+     */
+    private void refreshNames(Map<Integer, Counters> threads) {
+        final Map<Integer, String> comms = new HashMap<>(threads.size() * 2);
+        for (Map.Entry<Integer, Counters> e : threads.entrySet()) {
+            comms.put(e.getKey(), e.getValue().m_comm);
+        }
+        final List<String> javaNames = new ArrayList<>();
+        for (ThreadInfo info : THREAD_BEAN.getThreadInfo(THREAD_BEAN.getAllThreadIds())) {
+            // null for the threads that exited since the ids were taken
+            if (info != null) {
+                javaNames.add(info.getThreadName());
+            }
+        }
+        m_names.putAll(matchKernelNames(comms, javaNames));
+        m_namedComms.putAll(comms);
+    }
+
+    /**
+     * @return the Java name of every thread whose kernel name is the whole of,
+     * or the beginning of exactly one, Java thread name, by its thread id
+     */
+    static Map<Integer, String> matchKernelNames(Map<Integer, String> comms, List<String> javaNames) {
+        final Map<Integer, String> names = new HashMap<>();
+        for (Map.Entry<Integer, String> e : comms.entrySet()) {
+            final String comm = e.getValue();
+            String match = null;
+            int matches = 0;
+            for (String javaName : javaNames) {
+                if (javaName.equals(comm)) {
+                    match = javaName;
+                    matches = 1;
+                    break;
+                }
+                if (comm.length() == KERNEL_NAME_LENGTH && javaName.startsWith(comm)) {
+                    match = javaName;
+                    matches++;
+                }
+            }
+            if (matches == 1) {
+                names.put(e.getKey(), match);
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Read stat, status and io from the directory of a task. io is only
+     * readable with the ptrace permission on some systems, its counters are
+     * zero when it isn't.
+     * @return the counters, or null if the task is gone
+     */
+    static Counters read(String dir) {
+        final Counters counters = new Counters();
+        try {
+            if (!parseStat(readFile(dir + "/stat"), counters)) {
+                return null;
+            }
+            parseStatus(readFile(dir + "/status"), counters);
+        } catch (IOException e) {
+            return null;
+        }
+        try {
+            parseIo(readFile(dir + "/io"), counters);
+        } catch (IOException e) {
+        }
+        return counters;
+    }
+
+    private static String readFile(String path) throws IOException {
+        return new String(Files.readAllBytes(Paths.get(path)), StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Parse the name and the user and system CPU times out of a stat file.
+     * The name is between the first '(' and the last ')', it can hold spaces
+     * and parentheses.
+     */
+    static boolean parseStat(String stat, Counters counters) {
+        final int open = stat.indexOf('(');
+        final int close = stat.lastIndexOf(')');
+        if (open < 0 || close < open) {
+            return false;
+        }
+        counters.m_comm = stat.substring(open + 1, close);
+        // fields from the third (state) on, utime and stime are the 14th and 15th
+        final String[] fields = stat.substring(close + 1).trim().split("\\s+");
+        if (fields.length < 13) {
+            return false;
+        }
+        counters.m_userTicks = Long.parseLong(fields[11]);
+        counters.m_systemTicks = Long.parseLong(fields[12]);
+        return true;
+    }
+
+    static void parseStatus(String status, Counters counters) {
+        counters.m_voluntarySwitches = field(status, "voluntary_ctxt_switches");
+        counters.m_involuntarySwitches = field(status, "nonvoluntary_ctxt_switches");
+    }
+
+    static void parseIo(String io, Counters counters) {
+        counters.m_readBytes = field(io, "rchar");
+        counters.m_writeBytes = field(io, "wchar");
+        counters.m_diskReadBytes = field(io, "read_bytes");
+        counters.m_diskWriteBytes = field(io, "write_bytes");
+    }
+
+    /**
+     * @return the number after <code>key:</code> at the start of a line, or 0 if there is none
+     */
+    static long field(String text, String key) {
+        int start = 0;
+        while ((start = text.indexOf(key, start)) >= 0) {
+            final int end = start + key.length();
+            if ((start == 0 || text.charAt(start - 1) == '\n') && end < text.length() && text.charAt(end) == ':') {
+                int ii = end + 1;
+                while (ii < text.length() && Character.isWhitespace(text.charAt(ii))) {
+                    ii++;
+                }
+                long value = 0;
+                while (ii < text.length() && Character.isDigit(text.charAt(ii))) {
+                    value = value * 10 + (text.charAt(ii++) - '0');
+                }
+                return value;
+            }
+            start = end;
+        }
+        return 0;
+    }
+
+    /**
+     * @return the resident set size of the process in bytes, or -1 if procfs can't be read
+     */
+    public static long getRSS() {
+        try {
+            final long kb = field(readFile(PROC_SELF + "/status"), "VmRSS");
+            return kb > 0 ? kb * 1024 : -1;
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+}
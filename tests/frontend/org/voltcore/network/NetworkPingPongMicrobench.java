@@ -0,0 +1,218 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2018 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltcore.network;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+
+import org.voltcore.utils.ssl.SSLConfiguration;
+import org.voltdb.client.TLSHandshaker;
+
+/**
+ * Ping-pong round trip latency and pipelined throughput between a {@link VoltNetwork}
+ * client connection and a {@link PicoNetwork} echo server over loopback.
+ *
+ * Run it once with the default blocking selection and once with a busy poll time, e.g.
+ * <code>-DNETWORK_BUSY_POLL_US=100</code>, to compare the two. In tls mode both ends
+ * encrypt, which compared with a plain run gives the cost of TLS. Set
+ * <code>-DTLS_INLINE_FRAME_SIZE=0</code> to send every TLS frame to the cipher pool.
+ * Arguments: [plain|tls] [round trips] [pipelined messages] [message size]
+ */
+public class NetworkPingPongMicrobench {
+
+    private static class EchoHandler extends VoltProtocolHandler {
+        @Override
+        public int getMaxRead() {
+            return Integer.MAX_VALUE;
+        }
+
+        @Override
+        public void handleMessage(ByteBuffer message, Connection c) {
+            ByteBuffer reply = ByteBuffer.allocate(4 + message.remaining());
+            reply.putInt(message.remaining());
+            reply.put(message);
+            reply.flip();
+            ((PicoNetwork) c).enqueue(reply);
+        }
+
+        @Override
+        public Runnable offBackPressure() {
+            return null;
+        }
+
+        @Override
+        public Runnable onBackPressure() {
+            return null;
+        }
+
+        @Override
+        public QueueMonitor writestreamMonitor() {
+            return null;
+        }
+    }
+
+    private static class ReplyCounter extends EchoHandler {
+        final AtomicLong m_replies = new AtomicLong();
+
+        @Override
+        public void handleMessage(ByteBuffer message, Connection c) {
+            m_replies.incrementAndGet();
+        }
+    }
+
+    private static ByteBuffer message(int size) {
+        ByteBuffer buf = ByteBuffer.allocate(4 + size);
+        buf.putInt(size);
+        buf.position(0);
+        return buf;
+    }
+
+    private static void awaitReplies(AtomicLong replies, long count) {
+        while (replies.get() < count) {
+            Thread.yield();
+        }
+    }
+
+    private static boolean handshake(SocketChannel channel, SSLEngine engine) throws Exception {
+        return new TLSHandshaker(channel, engine).handshake();
+    }
+
+    public static void main(String[] args) throws Exception {
+        final boolean tls = args.length > 0 && args[0].equalsIgnoreCase("tls");
+        final int roundTrips = args.length > 1 ? Integer.parseInt(args[1]) : 100000;
+        final int pipelined = args.length > 2 ? Integer.parseInt(args[2]) : 1000000;
+        final int size = args.length > 3 ? Integer.parseInt(args[3]) : 64;
+
+        ServerSocketChannel ssc = ServerSocketChannel.open();
+        ssc.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        SocketChannel clientChannel = SocketChannel.open(ssc.getLocalAddress());
+        clientChannel.socket().setTcpNoDelay(true);
+        SocketChannel serverChannel = ssc.accept();
+
+        SSLEngine serverEngine = null;
+        SSLEngine clientEngine = null;
+        if (tls) {
+            final String keystore = "tests/frontend/org/voltdb/keystore";
+            SSLContext sslContext = SSLConfiguration.createSslContext(
+                    new SSLConfiguration.SslConfig(keystore, "password", keystore, "password"));
+            serverEngine = sslContext.createSSLEngine();
+            serverEngine.setUseClientMode(false);
+            clientEngine = sslContext.createSSLEngine("client", 0);
+            clientEngine.setUseClientMode(true);
+            // both ends have to handshake at the same time
+            ExecutorService es = Executors.newSingleThreadExecutor();
+            final SSLEngine engine = serverEngine;
+            final SocketChannel channel = serverChannel;
+            Future<Boolean> serverShake = es.submit(new Callable<Boolean>() {
+                @Override
+                public Boolean call() throws Exception {
+                    return handshake(channel, engine);
+                }
+            });
+            if (!handshake(clientChannel, clientEngine) || !serverShake.get()) {
+                throw new Exception("TLS handshake failed");
+            }
+            es.shutdown();
+            CipherExecutor.SERVER.startup();
+            CipherExecutor.CLIENT.startup();
+        }
+
+        PicoNetwork server = tls ?
+                new TLSPicoNetwork(serverChannel, false, serverEngine, CipherExecutor.SERVER) :
+                new PicoNetwork(serverChannel, false);
+        server.start(new EchoHandler(), new HashSet<Long>());
+
+        VoltNetworkPool pool = new VoltNetworkPool(1, 0, null, "Microbench");
+        pool.start();
+        ReplyCounter counter = new ReplyCounter();
+        Connection client = pool.registerChannel(clientChannel, counter,
+                tls ? CipherExecutor.CLIENT : null, clientEngine);
+
+        System.out.printf("%s, busy poll %d us, %d byte messages%n",
+                tls ? "TLS (inline frames up to " + CipherExecutor.INLINE_FRAME_SIZE + " bytes)" : "Plain",
+                TimeUnit.NANOSECONDS.toMicros(NetworkSelector.BUSY_POLL_NANOS), size);
+
+        // warm up
+        long sent = 0;
+        for (int i = 0; i < roundTrips / 10; i++) {
+            client.writeStream().enqueue(message(size));
+            awaitReplies(counter.m_replies, ++sent);
+        }
+
+        long[] rtts = new long[roundTrips];
+        for (int i = 0; i < roundTrips; i++) {
+            final long start = System.nanoTime();
+            client.writeStream().enqueue(message(size));
+            awaitReplies(counter.m_replies, ++sent);
+            rtts[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(rtts);
+        long total = 0;
+        for (long rtt : rtts) {
+            total += rtt;
+        }
+        System.out.printf("Round trip: avg %.1f us, p50 %.1f us, p99 %.1f us, p99.9 %.1f us%n",
+                total / 1000.0 / roundTrips,
+                rtts[roundTrips / 2] / 1000.0,
+                rtts[(int) (roundTrips * 0.99)] / 1000.0,
+                rtts[(int) (roundTrips * 0.999)] / 1000.0);
+
+        final int window = 256;
+        final long start = System.nanoTime();
+        final long first = sent;
+        for (int i = 0; i < pipelined; i++) {
+            client.writeStream().enqueue(message(size));
+            sent++;
+            awaitReplies(counter.m_replies, sent - window);
+        }
+        awaitReplies(counter.m_replies, sent);
+        final long elapsed = System.nanoTime() - start;
+        System.out.printf("Pipelined: %.0f messages/sec with %d in flight%n",
+                (sent - first) * 1e9 / elapsed, window);
+
+        pool.shutdown();
+        server.shutdownAsync();
+        clientChannel.close();
+        serverChannel.close();
+        ssc.close();
+        if (tls) {
+            CipherExecutor.SERVER.shutdown();
+            CipherExecutor.CLIENT.shutdown();
+        }
+    }
+}
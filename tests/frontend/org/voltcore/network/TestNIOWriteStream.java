@@ -50,6 +50,7 @@
 
 package org.voltcore.network;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
@@ -61,6 +62,7 @@ import java.util.concurrent.atomic.AtomicLong;
 
 import org.voltcore.utils.EstTime;
 import org.voltcore.utils.EstTimeUpdater;
+import org.voltcore.utils.GatheringDeferredSerialization;
 import org.voltdb.AdmissionControlGroup;
 
 import junit.framework.TestCase;
@@ -118,7 +120,7 @@ public class TestNIOWriteStream extends TestCase {
         }
         private int writeCount = 0;
         private final int closeAfter;
-        private boolean didOversizeWrite = false;
+        boolean didOversizeWrite = false;
         private boolean wrotePartial = false;
         public boolean m_open = true;
 
@@ -203,8 +205,115 @@ public class TestNIOWriteStream extends TestCase {
         @Override
         public long write(ByteBuffer[] srcs, int offset, int length)
                 throws IOException {
-            // TODO Auto-generated method stub
-            return 0;
+            // Like write(ByteBuffer[]), only the first buffer is ever written
+            if (!m_open) throw new IOException();
+            if (closeAfter > 0 && ++writeCount >= closeAfter) {
+                m_open = false;
+            }
+            for (int i = offset; i < offset + length; i++) {
+                if (!srcs[i].isDirect() && srcs[i].remaining() > 1024 * 256) {
+                    didOversizeWrite = true;
+                }
+            }
+
+            final ByteBuffer src = srcs[offset];
+            if (m_behavior == SINK) {
+                int remaining = src.remaining();
+                src.position(src.limit());
+                return remaining;
+            }
+            else if (m_behavior == FULL) {
+                return 0;
+            }
+            else if (m_behavior == PARTIAL) {
+                if (wrotePartial) {
+                    return 0;
+                } else {
+                    wrotePartial = true;
+                }
+                int written = src.remaining() / 2;
+                src.position(src.position() + written);
+                return written;
+            }
+            assert(false);
+            return -1;
+        }
+    }
+
+    /**
+     * Channel that takes up to a number of bytes per write, across all
+     * the buffers it is given, and keeps them
+     */
+    private static class RecordingChannel extends MockChannel {
+        final ByteArrayOutputStream m_written = new ByteArrayOutputStream();
+        final int m_maxBytesPerWrite;
+        int m_gatheringWrites = 0;
+
+        RecordingChannel(int maxBytesPerWrite) {
+            super(SINK, 0);
+            m_maxBytesPerWrite = maxBytesPerWrite;
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            return (int) write(new ByteBuffer[] { src }, 0, 1);
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+            if (length > 1) {
+                m_gatheringWrites++;
+            }
+            for (int i = offset; i < offset + length; i++) {
+                if (!srcs[i].isDirect() && srcs[i].remaining() > 1024 * 256) {
+                    didOversizeWrite = true;
+                }
+            }
+            int written = 0;
+            for (int i = offset; i < offset + length && written < m_maxBytesPerWrite; i++) {
+                while (srcs[i].hasRemaining() && written < m_maxBytesPerWrite) {
+                    m_written.write(srcs[i].get());
+                    written++;
+                }
+            }
+            return written;
+        }
+    }
+
+    /**
+     * A message with an 8 byte head followed by a large body it already has in a buffer
+     */
+    private static class GatheringMessage implements GatheringDeferredSerialization {
+        final ByteBuffer m_body;
+        boolean m_serialized = false;
+
+        GatheringMessage(ByteBuffer body) {
+            m_body = body;
+        }
+
+        @Override
+        public void serialize(ByteBuffer buf) {
+            m_serialized = true;
+            serializeHead(buf);
+            buf.put(m_body.duplicate());
+        }
+
+        @Override
+        public void serializeHead(ByteBuffer buf) {
+            buf.putLong(m_body.remaining());
+        }
+
+        @Override
+        public ByteBuffer[] getGatheredBuffers() {
+            return new ByteBuffer[] { m_body.duplicate() };
+        }
+
+        @Override
+        public void cancel() {}
+
+        @Override
+        public int getSerializedSize() {
+            return 8 + m_body.remaining();
         }
     }
 
@@ -389,6 +498,61 @@ public class TestNIOWriteStream extends TestCase {
         wstream.shutdown();
     }
 
+    public void testGatheringWrite() throws IOException {
+        RecordingChannel channel = new RecordingChannel(100000);
+        MockPort port = new MockPort();
+        VoltNIOWriteStream wstream = new VoltNIOWriteStream(port);
+
+        final int bodySize = NIOWriteStreamBase.GATHERING_WRITE_MIN_BYTES * 3 + 17;
+        final ByteBuffer body = ByteBuffer.allocate(bodySize);
+        for (int i = 0; i < bodySize; i++) {
+            body.put((byte) i);
+        }
+        body.flip();
+        GatheringMessage large = new GatheringMessage(body);
+        // small messages before and after are copied as usual
+        wstream.enqueue(ByteBuffer.wrap(new byte[] { 1, 2, 3 }));
+        wstream.enqueue(large);
+        wstream.enqueue(ByteBuffer.wrap(new byte[] { 4, 5 }));
+        wstream.serializeQueuedWrites(pool);
+        assertFalse(large.m_serialized);
+
+        int written = wstream.drainTo(channel);
+        assertTrue(wstream.isEmpty());
+        assertEquals(3 + 8 + bodySize + 2, written);
+        assertTrue(channel.m_gatheringWrites > 0);
+        assertFalse(channel.didOversizeWrite);
+
+        final ByteBuffer out = ByteBuffer.wrap(channel.m_written.toByteArray());
+        assertEquals(written, out.remaining());
+        assertEquals(1, out.get());
+        assertEquals(2, out.get());
+        assertEquals(3, out.get());
+        assertEquals(bodySize, out.getLong());
+        for (int i = 0; i < bodySize; i++) {
+            assertEquals((byte) i, out.get());
+        }
+        assertEquals(4, out.get());
+        assertEquals(5, out.get());
+        // the body was written from its own buffer
+        assertEquals(0, body.position());
+        wstream.shutdown();
+    }
+
+    public void testSmallGatheringMessageIsCopied() throws IOException {
+        RecordingChannel channel = new RecordingChannel(Integer.MAX_VALUE);
+        MockPort port = new MockPort();
+        VoltNIOWriteStream wstream = new VoltNIOWriteStream(port);
+
+        GatheringMessage small = new GatheringMessage(ByteBuffer.wrap(new byte[] { 9, 8, 7 }));
+        wstream.enqueue(small);
+        wstream.serializeQueuedWrites(pool);
+        assertTrue(small.m_serialized);
+        assertEquals(11, wstream.drainTo(channel));
+        assertTrue(wstream.isEmpty());
+        wstream.shutdown();
+    }
+
     public void testLastWriteDelta() throws Exception {
         EstTimeUpdater.pause = true;
         Thread.sleep(10);
@@ -64,4 +64,48 @@ public class TestDBBPool extends TestCase {
             assertEquals(javaSum, cSum);
         }
     }
+
+    @Test
+    public void testPooledReuse() throws Exception {
+        BBContainer cont = DBBPool.allocateDirectAndPool(3000);
+        assertEquals(4096, cont.b().capacity());
+        assertEquals(3000, cont.b().limit());
+        final long address = cont.address();
+        cont.discard();
+
+        final BBContainer discarded = cont;
+
+        // The same thread gets the buffer back from its magazine, in a container
+        // of its own so that a late discard of the old one can't free it
+        cont = DBBPool.allocateDirectAndPool(4000);
+        assertEquals(address, cont.address());
+        assertNotSame(discarded, cont);
+        assertEquals(4000, cont.b().limit());
+        final BBContainer fromThisThread = cont;
+
+        // Discarded on another thread, it ends up in the shared bucket once that thread is gone
+        Thread t = new Thread() {
+            @Override
+            public void run() {
+                fromThisThread.discard();
+            }
+        };
+        t.start();
+        t.join();
+
+        DBBPool.BucketStats bucket = null;
+        for (DBBPool.BucketStats stats : DBBPool.getBucketStats()) {
+            if (stats.capacity == 4096) {
+                bucket = stats;
+            }
+        }
+        assertNotNull(bucket);
+        assertTrue(bucket.hits >= 1);
+        assertTrue(bucket.misses >= 1);
+        assertTrue(bucket.retainedBytes >= 4096);
+
+        cont = DBBPool.allocateDirectAndPool(4096);
+        assertEquals(address, cont.address());
+        cont.discard();
+    }
 }
@@ -0,0 +1,112 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2018 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltcore.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class TestLongHashMap {
+
+    @Test
+    public void testBasicOperations() {
+        LongHashMap<String> map = new LongHashMap<>();
+        assertTrue(map.isEmpty());
+        assertNull(map.put(1, "a"));
+        assertNull(map.put(-5, "b"));
+        assertNull(map.put(Long.MIN_VALUE, "c"));
+        assertEquals("a", map.put(1, "d"));
+        assertEquals(3, map.size());
+        assertEquals("d", map.get(1));
+        assertEquals("c", map.get(Long.MIN_VALUE));
+        assertTrue(map.containsKey(-5));
+        assertFalse(map.containsKey(2));
+        assertEquals("b", map.remove(-5));
+        assertNull(map.remove(-5));
+        assertEquals(2, map.size());
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertNull(map.get(1));
+    }
+
+    @Test
+    public void testRandomOperationsMatchHashMap() {
+        Random rand = new Random(42);
+        LongHashMap<Long> map = new LongHashMap<>();
+        Map<Long, Long> expected = new HashMap<>();
+        for (int i = 0; i < 200000; i++) {
+            // a small key range so collisions, removals and re-inserts are common
+            long key = rand.nextInt(2048) << 14;
+            if (rand.nextInt(3) == 0) {
+                assertEquals(expected.remove(key), map.remove(key));
+            } else {
+                assertEquals(expected.put(key, (long) i), map.put(key, (long) i));
+            }
+            assertEquals(expected.size(), map.size());
+        }
+        for (Map.Entry<Long, Long> e : expected.entrySet()) {
+            assertEquals(e.getValue(), map.get(e.getKey()));
+        }
+        assertEquals(expected.keySet(), new HashSet<>(map.keys()));
+    }
+
+    @Test
+    public void testRemoveWhileIterating() {
+        Random rand = new Random(7);
+        for (int round = 0; round < 100; round++) {
+            LongHashMap<Long> map = new LongHashMap<>();
+            Set<Long> keys = new HashSet<>();
+            int count = rand.nextInt(500);
+            for (int i = 0; i < count; i++) {
+                long key = rand.nextInt(10000);
+                keys.add(key);
+                map.put(key, key);
+            }
+
+            // remove the odd keys through the cursor, every key must be seen exactly once
+            Set<Long> seen = new HashSet<>();
+            LongHashMap<Long>.Cursor cursor = map.cursor();
+            while (cursor.advance()) {
+                assertTrue(seen.add(cursor.key()));
+                assertEquals(cursor.key(), cursor.value().longValue());
+                if (cursor.key() % 2 == 1) {
+                    cursor.remove();
+                }
+            }
+            assertEquals(keys, seen);
+            for (long key : keys) {
+                assertEquals(key % 2 == 0, map.containsKey(key));
+            }
+        }
+    }
+}
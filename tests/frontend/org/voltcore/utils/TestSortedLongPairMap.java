@@ -0,0 +1,157 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2018 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltcore.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+public class TestSortedLongPairMap {
+
+    private static long key(long first, long second) {
+        return first * 1000 + second;
+    }
+
+    @Test
+    public void testOrderAndLookups() {
+        SortedLongPairMap<String> map = new SortedLongPairMap<>(2);
+        map.put(5, 1, "5.1");
+        map.put(3, 9, "3.9");
+        map.put(5, 0, "5.0");
+        map.put(7, 2, "7.2");
+        assertEquals("3.9", map.put(3, 9, "3.9'"));
+        assertEquals(4, map.size());
+
+        assertEquals(3, map.firstAt(0));
+        assertEquals(5, map.firstAt(1));
+        assertEquals(0, map.secondAt(1));
+        assertEquals("5.1", map.valueAt(2));
+        assertEquals("3.9'", map.get(3, 9));
+        assertNull(map.get(3, 8));
+
+        assertEquals(2, map.floorIndex(5, Long.MAX_VALUE));
+        assertEquals(-1, map.floorIndex(3, 8));
+        assertEquals(1, map.ceilingIndex(5, 0));
+        assertEquals(3, map.ceilingIndex(6, 0));
+        assertEquals(-1, map.ceilingIndex(7, 3));
+
+        assertEquals(2, map.removeFirst(5));
+        assertEquals(0, map.removeFirst(5));
+        assertEquals(2, map.size());
+        assertEquals("7.2", map.valueAt(1));
+        assertEquals("3.9'", map.removeAt(0));
+        assertEquals("7.2", map.remove(7, 2));
+        assertEquals(0, map.size());
+    }
+
+    @Test
+    public void testRandomOperationsMatchTreeMap() {
+        Random rand = new Random(11);
+        SortedLongPairMap<Long> map = new SortedLongPairMap<>();
+        TreeMap<Long, Long> expected = new TreeMap<>();
+        for (int i = 0; i < 50000; i++) {
+            long first = rand.nextInt(100);
+            long second = rand.nextInt(100);
+            switch (rand.nextInt(4)) {
+            case 0:
+                assertEquals(expected.remove(key(first, second)), map.remove(first, second));
+                break;
+            case 1:
+                Long floor = expected.floorKey(key(first, second));
+                int floorIndex = map.floorIndex(first, second);
+                assertEquals(floor == null ? -1 : floor,
+                        floorIndex < 0 ? -1 : key(map.firstAt(floorIndex), map.secondAt(floorIndex)));
+                break;
+            default:
+                assertEquals(expected.put(key(first, second), (long) i), map.put(first, second, (long) i));
+            }
+            assertEquals(expected.size(), map.size());
+        }
+        int i = 0;
+        for (Map.Entry<Long, Long> e : expected.entrySet()) {
+            assertEquals(e.getKey().longValue(), key(map.firstAt(i), map.secondAt(i)));
+            assertEquals(e.getValue(), map.valueAt(i));
+            i++;
+        }
+    }
+
+    @Test
+    public void testSlidingWindowMatchesTreeMap() {
+        // in order inserts, acks from the front, the odd key out of order
+        Random rand = new Random(7);
+        SortedLongPairMap<Long> map = new SortedLongPairMap<>(4);
+        TreeMap<Long, Long> expected = new TreeMap<>();
+        long next = 0;
+        for (int i = 0; i < 100000; i++) {
+            switch (rand.nextInt(8)) {
+            case 0:
+                if (!map.isEmpty()) {
+                    Map.Entry<Long, Long> first = expected.pollFirstEntry();
+                    assertEquals(first.getKey().longValue(), key(map.firstAt(0), map.secondAt(0)));
+                    assertEquals(first.getValue(), map.removeAt(0));
+                }
+                break;
+            case 1:
+                if (!map.isEmpty()) {
+                    long first = map.firstAt(0);
+                    int removed = expected.subMap(key(first, 0), key(first + 1, 0)).size();
+                    expected.subMap(key(first, 0), key(first + 1, 0)).clear();
+                    assertEquals(removed, map.removeFirst(first));
+                }
+                break;
+            case 2:
+                if (!map.isEmpty()) {
+                    int index = rand.nextInt(map.size());
+                    assertEquals(expected.remove(key(map.firstAt(index), map.secondAt(index))), map.removeAt(index));
+                }
+                break;
+            case 3:
+                if (next > 10) {
+                    long first = next - 1 - rand.nextInt(10);
+                    long second = rand.nextInt(3);
+                    assertEquals(expected.put(key(first, second), (long) i), map.put(first, second, (long) i));
+                }
+                break;
+            default:
+                if (expected.size() < 200) {
+                    assertEquals(expected.put(key(next, 0), (long) i), map.put(next, 0, (long) i));
+                    next++;
+                }
+            }
+            assertEquals(expected.size(), map.size());
+        }
+        int i = 0;
+        for (Map.Entry<Long, Long> e : expected.entrySet()) {
+            assertEquals(e.getKey().longValue(), key(map.firstAt(i), map.secondAt(i)));
+            assertEquals(e.getValue(), map.valueAt(i));
+            assertEquals(e.getValue(), map.get(e.getKey() / 1000, e.getKey() % 1000));
+            i++;
+        }
+    }
+}
@@ -868,6 +868,11 @@ public class MockVoltDB implements VoltDBInterface
         return null;
     }
 
+    @Override
+    public StatsHistory getStatsHistory() {
+        return null;
+    }
+
     @Override
     public long getLowestSiteId() {
         return 0;
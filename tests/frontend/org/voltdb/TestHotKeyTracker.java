@@ -0,0 +1,110 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2018 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.voltcore.utils.EstTime;
+
+public class TestHotKeyTracker {
+
+    @Test
+    public void testPartitionInvocations() {
+        HotKeyTracker tracker = new HotKeyTracker(60000, 1);
+        tracker.setPartitions(Arrays.asList(0, 1, 2, 3));
+        for (int i = 0; i < 30; i++) {
+            tracker.record("Insert", (long) i, 1);
+        }
+        tracker.record("Insert", 99L, 3);
+        // a partition added later
+        tracker.record("Insert", 100L, 40);
+
+        Map<Integer, Long> invocations = tracker.getPartitionInvocations();
+        assertEquals(5, invocations.size());
+        assertEquals(0L, (long) invocations.get(0));
+        assertEquals(30L, (long) invocations.get(1));
+        assertEquals(0L, (long) invocations.get(2));
+        assertEquals(1L, (long) invocations.get(3));
+        assertEquals(1L, (long) invocations.get(40));
+    }
+
+    @Test
+    public void testTopKeys() {
+        HotKeyTracker tracker = new HotKeyTracker(60000, 1);
+        for (int i = 0; i < 100; i++) {
+            tracker.record("Update", 7, 0);
+            tracker.record("Update", (long) (i % 10), 0);
+        }
+        tracker.record("Lookup", "abc", 1);
+        tracker.record("Lookup", new byte[] { 1, 2 }, 1);
+        tracker.record("Lookup", new byte[] { 1, 2 }, 1);
+        // no key, counted for the partition only
+        tracker.record("Lookup", null, 1);
+
+        List<HotKeyTracker.ProcedureKeys> keys = tracker.getTopKeys();
+        assertEquals(2, keys.size());
+        assertEquals("Lookup", keys.get(0).m_procedure);
+        assertEquals("0102", keys.get(0).m_keys.get(0).m_key);
+        assertEquals(2, keys.get(0).m_keys.get(0).m_count);
+        assertEquals("abc", keys.get(0).m_keys.get(1).m_key);
+
+        assertEquals("Update", keys.get(1).m_procedure);
+        assertEquals(200, keys.get(1).m_sampledInvocations);
+        // the integer and the long 7 are the same key
+        assertEquals("7", keys.get(1).m_keys.get(0).m_key);
+        assertEquals(110, keys.get(1).m_keys.get(0).m_count);
+        assertEquals(HotKeyTracker.TOP_K, keys.get(1).m_keys.size());
+    }
+
+    @Test
+    public void testWindows() {
+        final long window = 60000;
+        final long start = EstTime.currentTimeMillis();
+        HotKeyTracker tracker = new HotKeyTracker(window, 1);
+        tracker.record("Update", "old", start);
+        tracker.record("Update", "new", start + window);
+        // the previous window is still reported
+        List<HotKeyTracker.ProcedureKeys> keys = tracker.getTopKeys();
+        assertEquals(2, keys.get(0).m_keys.size());
+
+        tracker.record("Update", "newer", start + 2 * window);
+        keys = tracker.getTopKeys();
+        assertEquals(2, keys.get(0).m_keys.size());
+        for (org.voltdb.utils.SpaceSavingSketch.Counter key : keys.get(0).m_keys) {
+            assertTrue(!key.m_key.equals("old"));
+        }
+
+        // a long gap drops the previous window
+        tracker.record("Update", "latest", start + 10 * window);
+        keys = tracker.getTopKeys();
+        assertEquals(1, keys.get(0).m_keys.size());
+        assertEquals("latest", keys.get(0).m_keys.get(0).m_key);
+    }
+}
@@ -0,0 +1,109 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2018 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb;
+
+import java.util.Set;
+
+import org.voltdb.catalog.Catalog;
+import org.voltdb.catalog.CatalogDiffEngine;
+import org.voltdb.catalog.Procedure;
+import org.voltdb.utils.InMemoryJarfile;
+
+import junit.framework.TestCase;
+
+public class TestLoadedProcedureSet extends TestCase {
+
+    private static final String DB = "/clusters#cluster/databases#database";
+
+    private static Catalog catalog(String... procs) {
+        Catalog catalog = new Catalog();
+        catalog.execute("add / clusters cluster\n" +
+                        "add /clusters#cluster databases database\n");
+        for (String proc : procs) {
+            // name:hasjava:readonly
+            String[] parts = proc.split(":");
+            catalog.execute("add " + DB + " procedures " + parts[0] + "\n" +
+                            "set " + DB + "/procedures#" + parts[0] + " hasjava " + parts[1] + "\n" +
+                            "set " + DB + "/procedures#" + parts[0] + " readonly " + parts[2] + "\n");
+        }
+        return catalog;
+    }
+
+    private static Iterable<Procedure> procedures(Catalog catalog) {
+        return catalog.getClusters().get("cluster").getDatabases().get("database").getProcedures();
+    }
+
+    private static InMemoryJarfile jar(String... classes) {
+        InMemoryJarfile jar = new InMemoryJarfile();
+        jar.put("catalog.txt", new byte[] { 1 });
+        for (String clazz : classes) {
+            String[] parts = clazz.split(":");
+            jar.put(parts[0] + ".class", parts[1].getBytes());
+        }
+        return jar;
+    }
+
+    private static Set<String> changed(Catalog prev, Catalog next, InMemoryJarfile prevJar, InMemoryJarfile nextJar) {
+        String diff = new CatalogDiffEngine(prev, next).commands();
+        return LoadedProcedureSet.getChangedProcedures(diff, prevJar, nextJar, procedures(next));
+    }
+
+    public void testNoProcedureChange() {
+        Catalog prev = catalog("A:true:false", "B:false:true");
+        Catalog next = catalog("A:true:false", "B:false:true");
+        Set<String> changed = changed(prev, next, jar("A:a1"), jar("A:a1"));
+        assertNotNull(changed);
+        assertTrue(changed.isEmpty());
+    }
+
+    public void testChangedAddedAndDroppedProcedures() {
+        Catalog prev = catalog("A:true:false", "B:false:true", "C:false:false");
+        Catalog next = catalog("A:true:false", "B:false:false", "D:false:false");
+        Set<String> changed = changed(prev, next, jar("A:a1"), jar("A:a1"));
+        assertNotNull(changed);
+        assertFalse(changed.contains("A"));
+        assertTrue(changed.contains("B"));
+        assertTrue(changed.contains("C"));
+        assertTrue(changed.contains("D"));
+        assertEquals(3, changed.size());
+    }
+
+    public void testChangedClassesChangeJavaProcedures() {
+        Catalog prev = catalog("A:true:false", "B:false:true", "E:true:true");
+        Catalog next = catalog("A:true:false", "B:false:true", "E:true:true");
+        Set<String> changed = changed(prev, next, jar("A:a1", "E:e1"), jar("A:a1", "E:e1", "Helper:h1"));
+        assertTrue(changed.contains("A"));
+        assertTrue(changed.contains("E"));
+        assertFalse(changed.contains("B"));
+
+        changed = changed(prev, next, jar("A:a1", "E:e1"), jar("A:a1", "E:e2"));
+        assertTrue(changed.contains("A"));
+        assertTrue(changed.contains("E"));
+        assertFalse(changed.contains("B"));
+    }
+
+    public void testUnknownDiffReloadsEverything() {
+        assertNull(LoadedProcedureSet.getChangedProcedures(null, jar(), jar(), procedures(catalog())));
+    }
+}
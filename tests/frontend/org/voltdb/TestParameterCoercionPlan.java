@@ -0,0 +1,85 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2018 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package org.voltdb;
+
+import java.math.BigDecimal;
+
+import org.voltdb.types.GeographyPointValue;
+import org.voltdb.types.TimestampType;
+
+import junit.framework.TestCase;
+
+public class TestParameterCoercionPlan extends TestCase
+{
+    // Every value the procedure plan lets through unchecked must be one
+    // that tryToMakeCompatible would have returned untouched.
+    public void testProcedureExactMatchesAreIdentityConversions() throws Exception {
+        Class<?>[] paramTypes = new Class<?>[] {
+                long.class, int.class, short.class, byte.class, double.class,
+                byte[].class, TimestampType.class, GeographyPointValue.class };
+        Object[] args = new Object[] {
+                VoltType.NULL_BIGINT, 7, (short) 3, VoltType.NULL_TINYINT, 1.5,
+                new byte[] { 1, 2 }, new TimestampType(12345), new GeographyPointValue(1.0, 2.0) };
+        ParameterCoercionPlan plan = ParameterCoercionPlan.forProcedure(paramTypes);
+        assertEquals(paramTypes.length, plan.getParameterCount());
+        for (int i = 0; i < paramTypes.length; i++) {
+            assertTrue(plan.isExactMatch(i, args[i].getClass()));
+            assertSame(args[i], ParameterConverter.tryToMakeCompatible(paramTypes[i], args[i]));
+        }
+    }
+
+    public void testProcedureConversionsStayOnSlowPath() {
+        ParameterCoercionPlan plan = ParameterCoercionPlan.forProcedure(
+                new Class<?>[] { long.class, Long.class, String.class, BigDecimal.class, int.class });
+        // widening, null sigils of boxed types, CSV nulls and decimal scaling all need the converter
+        assertFalse(plan.isExactMatch(0, Integer.class));
+        assertFalse(plan.isExactMatch(1, Long.class));
+        assertFalse(plan.isExactMatch(2, String.class));
+        assertFalse(plan.isExactMatch(3, BigDecimal.class));
+        assertFalse(plan.isExactMatch(4, Long.class));
+    }
+
+    public void testStatementPlan() {
+        byte[] types = new byte[] {
+                VoltType.BIGINT.getValue(), VoltType.STRING.getValue(),
+                VoltType.TIMESTAMP.getValue(), VoltType.INLIST_OF_BIGINT.getValue() };
+        ParameterCoercionPlan plan = ParameterCoercionPlan.forStatement(types);
+        assertEquals(4, plan.getParameterCount());
+
+        assertTrue(plan.isExactMatch(0, Long.class));
+        assertFalse(plan.isExactMatch(0, Integer.class));
+        assertTrue(plan.isExactMatch(1, String.class));
+        assertTrue(plan.isExactMatch(2, TimestampType.class));
+        assertTrue(plan.isExactMatch(3, long[].class));
+        assertFalse(plan.isExactMatch(3, int[].class));
+
+        assertEquals(VoltType.BIGINT, plan.getStatementParamType(0));
+        assertEquals(Long.MIN_VALUE, plan.getNullValue(0));
+        assertSame(VoltType.NULL_STRING_OR_VARBINARY, plan.getNullValue(1));
+        assertEquals(new TimestampType(Long.MIN_VALUE), plan.getNullValue(2));
+        // in-lists have no NULL representation
+        assertNull(plan.getNullValue(3));
+    }
+}
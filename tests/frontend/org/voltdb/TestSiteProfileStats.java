@@ -0,0 +1,97 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2018 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class TestSiteProfileStats {
+
+    private static Map<String, Object[]> rowsByProcedure(SiteProfileStats stats, boolean interval) {
+        Map<String, Object[]> rows = new HashMap<>();
+        int procIndex = stats.columnNameToIndex.get("PROCEDURE");
+        for (Object[] row : stats.getStatsRows(interval, System.currentTimeMillis())) {
+            rows.put((String) row[procIndex], row);
+        }
+        return rows;
+    }
+
+    private static long value(SiteProfileStats stats, Object[] row, String column) {
+        return (Long) row[stats.columnNameToIndex.get(column)];
+    }
+
+    @Test
+    public void testPerProcedureTotals() {
+        SiteProfileStats stats = new SiteProfileStats(0);
+        byte[][] garbage = new byte[2][];
+        stats.beginTask(0);
+        garbage[0] = new byte[1024 * 1024];
+        stats.endTask("A", 3000);
+        stats.beginTask(3000);
+        garbage[1] = new byte[1024 * 1024];
+        stats.endTask("A", 5000);
+        stats.beginTask(5000);
+        stats.endTask("B", 5000);
+        assertNotNull(garbage[1]);
+
+        Map<String, Object[]> rows = rowsByProcedure(stats, false);
+        assertEquals(2, rows.size());
+        Object[] a = rows.get("A");
+        assertEquals(2L, value(stats, a, "INVOCATIONS"));
+        assertEquals(5L, value(stats, a, "EE_TIME"));
+        assertTrue(value(stats, a, "ALLOCATED_BYTES") >= 2 * 1024 * 1024);
+        assertTrue(value(stats, a, "WALL_TIME") >= 0);
+        Object[] b = rows.get("B");
+        assertEquals(1L, value(stats, b, "INVOCATIONS"));
+        assertEquals(0L, value(stats, b, "EE_TIME"));
+    }
+
+    @Test
+    public void testInterval() {
+        SiteProfileStats stats = new SiteProfileStats(0);
+        stats.beginTask(0);
+        stats.endTask("A", 2000);
+        assertEquals(1L, value(stats, rowsByProcedure(stats, true).get("A"), "INVOCATIONS"));
+
+        Object[] a = rowsByProcedure(stats, true).get("A");
+        assertEquals(0L, value(stats, a, "INVOCATIONS"));
+        assertEquals(0L, value(stats, a, "EE_TIME"));
+
+        stats.beginTask(2000);
+        stats.endTask("A", 6000);
+        a = rowsByProcedure(stats, true).get("A");
+        assertEquals(1L, value(stats, a, "INVOCATIONS"));
+        assertEquals(4L, value(stats, a, "EE_TIME"));
+        // totals are not affected by interval collections
+        a = rowsByProcedure(stats, false).get("A");
+        assertEquals(2L, value(stats, a, "INVOCATIONS"));
+        assertEquals(6L, value(stats, a, "EE_TIME"));
+    }
+}
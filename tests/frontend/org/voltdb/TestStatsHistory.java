@@ -0,0 +1,175 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2018 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+
+import org.junit.Test;
+import org.voltdb.StatsHistory.Point;
+import org.voltdb.StatsHistory.Range;
+import org.voltdb.VoltTable.ColumnInfo;
+
+public class TestStatsHistory {
+
+    private static StatsHistory newHistory() {
+        // 3 samples of 100 ms, 2 averages of 1 s
+        return new StatsHistory(null, EnumSet.noneOf(StatsSelector.class), 100, 3, 1000, 2);
+    }
+
+    private static String write(StatsHistory history, boolean openMetrics, Range range, String prefix)
+            throws Exception {
+        StringWriter out = new StringWriter();
+        history.write(out, openMetrics, range, prefix);
+        return out.toString();
+    }
+
+    private static List<Point> points(double value) {
+        List<Point> points = new ArrayList<>();
+        points.add(new Point("voltdb_a_x", "{host_id=\"0\"}", value));
+        return points;
+    }
+
+    @Test
+    public void testToPoints() {
+        VoltTable stats = new VoltTable(
+                new ColumnInfo("TIMESTAMP", VoltType.BIGINT),
+                new ColumnInfo("HOST_ID", VoltType.INTEGER),
+                new ColumnInfo("PROCEDURE", VoltType.STRING),
+                new ColumnInfo("INVOCATIONS", VoltType.BIGINT),
+                new ColumnInfo("AVG_TIME", VoltType.FLOAT),
+                new ColumnInfo("DATA", VoltType.VARBINARY));
+        stats.addRow(12345L, 3, "Say\"Hi\"", 10L, 1.5, new byte[] { 1 });
+        stats.addRow(12345L, 3, "Other", 20L, null, null);
+
+        List<Point> points = new ArrayList<>();
+        StatsHistory.toPoints(StatsSelector.PROCEDURE, stats, points);
+        assertEquals(3, points.size());
+        assertEquals("voltdb_procedure_invocations", points.get(0).m_name);
+        assertEquals("{host_id=\"3\",procedure=\"Say\\\"Hi\\\"\"}", points.get(0).m_labels);
+        assertEquals(10, points.get(0).m_value, 0);
+        assertEquals("voltdb_procedure_avg_time", points.get(1).m_name);
+        assertEquals(1.5, points.get(1).m_value, 0);
+        assertEquals("{host_id=\"3\",procedure=\"Other\"}", points.get(2).m_labels);
+        assertEquals(20, points.get(2).m_value, 0);
+    }
+
+    @Test
+    public void testLatestAndRaw() throws Exception {
+        StatsHistory history = newHistory();
+        assertEquals("# EOF\n", write(history, true, Range.LATEST, null));
+
+        for (int ii = 1; ii <= 4; ii++) {
+            history.record(ii * 100, points(ii));
+        }
+        List<Point> other = points(7);
+        other.add(new Point("voltdb_b_y", "", 2.25));
+        history.record(500, other);
+
+        assertEquals("# TYPE voltdb_a_x unknown\n" +
+                "voltdb_a_x{host_id=\"0\"} 7 0.500\n" +
+                "# TYPE voltdb_b_y unknown\n" +
+                "voltdb_b_y 2.25 0.500\n" +
+                "# EOF\n",
+                write(history, true, Range.LATEST, null));
+        assertEquals("# TYPE voltdb_b_y untyped\n" +
+                "voltdb_b_y 2.25 500\n",
+                write(history, false, Range.LATEST, "voltdb_b"));
+
+        // the ring holds the last 3 samples
+        assertEquals("# TYPE voltdb_a_x unknown\n" +
+                "voltdb_a_x{host_id=\"0\"} 3 0.300\n" +
+                "voltdb_a_x{host_id=\"0\"} 4 0.400\n" +
+                "voltdb_a_x{host_id=\"0\"} 7 0.500\n" +
+                "# EOF\n",
+                write(history, true, Range.RAW, "voltdb_a"));
+
+        // a series missing from the latest sample has no latest point
+        history.record(600, new ArrayList<Point>());
+        assertEquals("# TYPE voltdb_a_x unknown\n# TYPE voltdb_b_y unknown\n# EOF\n",
+                write(history, true, Range.LATEST, null));
+    }
+
+    @Test
+    public void testOneTypePerMetric() throws Exception {
+        StatsHistory history = newHistory();
+        List<Point> points = points(1);
+        points.add(new Point("voltdb_a_x", "", 2));
+        points.add(new Point("voltdb_a_x_y", "", 3));
+        points.add(new Point("voltdb_a_x", "{host_id=\"1\"}", 4));
+        history.record(100, points);
+        assertEquals("# TYPE voltdb_a_x unknown\n" +
+                "voltdb_a_x 2 0.100\n" +
+                "voltdb_a_x{host_id=\"0\"} 1 0.100\n" +
+                "voltdb_a_x{host_id=\"1\"} 4 0.100\n" +
+                "# TYPE voltdb_a_x_y unknown\n" +
+                "voltdb_a_x_y 3 0.100\n" +
+                "# EOF\n",
+                write(history, true, Range.LATEST, null));
+    }
+
+    @Test
+    public void testRollups() throws Exception {
+        StatsHistory history = newHistory();
+        history.record(1000, points(1));
+        history.record(1500, points(3));
+        history.record(2000, points(10));
+        history.record(3100, points(20));
+        history.record(4000, points(30));
+        // 1 s of 1 and 3, then 1 s of 10, then 1 s of 20, the oldest falls out
+        assertEquals("# TYPE voltdb_a_x unknown\n" +
+                "voltdb_a_x{host_id=\"0\"} 10 2.000\n" +
+                "voltdb_a_x{host_id=\"0\"} 20 3.000\n" +
+                "# EOF\n",
+                write(history, true, Range.ROLLUP, null));
+    }
+
+    @Test
+    public void testRollupAverage() throws Exception {
+        StatsHistory history = newHistory();
+        history.record(1000, points(1));
+        history.record(1500, points(4));
+        history.record(2000, points(0));
+        assertTrue(write(history, true, Range.ROLLUP, null).contains("voltdb_a_x{host_id=\"0\"} 2.5 1.000\n"));
+    }
+
+    @Test
+    public void testDropsOldSeries() throws Exception {
+        StatsHistory history = newHistory();
+        history.record(100, points(1));
+        assertEquals(1, history.getSeriesCount());
+        // kept as long as the rollups cover it
+        history.record(2000, new ArrayList<Point>());
+        assertEquals(1, history.getSeriesCount());
+        history.record(2200, new ArrayList<Point>());
+        assertEquals(0, history.getSeriesCount());
+        assertFalse(write(history, true, Range.ROLLUP, null).contains("voltdb_a_x"));
+    }
+}
@@ -34,6 +34,7 @@ import junit.framework.TestCase;
 import org.json_voltpatches.JSONException;
 import org.voltdb.TableHelper.RandomTable;
 import org.voltdb.VoltTable.ColumnInfo;
+import org.voltdb.common.Constants;
 import org.voltdb.types.GeographyPointValue;
 import org.voltdb.types.GeographyValue;
 import org.voltdb.types.TimestampType;
@@ -1437,6 +1438,140 @@ public class TestVoltTable extends TestCase {
         }
     }
 
+    public void testRowWriter() {
+        final ColumnInfo[] columns = new ColumnInfo[] {
+                new ColumnInfo("tiny", VoltType.TINYINT),
+                new ColumnInfo("small", VoltType.SMALLINT),
+                new ColumnInfo("int", VoltType.INTEGER),
+                new ColumnInfo("big", VoltType.BIGINT),
+                new ColumnInfo("float", VoltType.FLOAT),
+                new ColumnInfo("string", VoltType.STRING),
+                new ColumnInfo("bytes", VoltType.VARBINARY),
+                new ColumnInfo("time", VoltType.TIMESTAMP),
+                new ColumnInfo("dec", VoltType.DECIMAL),
+                new ColumnInfo("point", VoltType.GEOGRAPHY_POINT) };
+        // start small so the writer has to grow the buffer, also in the middle of rows
+        VoltTable expected = new VoltTable(columns, columns.length);
+        VoltTable written = new VoltTable(columns, columns.length);
+        final String[] strings = new String[] { "abc", "", "héllo wörld", "日本語",
+                "emoji 😀", "unpaired \ud800 surrogate" };
+        VoltTable.RowWriter writer = written.rowWriter();
+        for (int i = 0; i < 1000; i++) {
+            final String s = strings[i % strings.length];
+            final BigDecimal dec = new BigDecimal(i).movePointLeft(3);
+            final byte[] bytes = new byte[i % 300];
+            Arrays.fill(bytes, (byte) i);
+            if (i % 7 == 0) {
+                expected.addRow(null, null, null, null, null, null, null, null, null, null);
+                writer.putNull().putNull().putNull().putNull().putNull()
+                      .putString(null).putVarbinary((byte[]) null).putNull().putDecimal(null).putNull().endRow();
+            }
+            else {
+                expected.addRow(i % 100, i, i * 1000, i * 1000000L, i / 3.0, s, bytes,
+                        new TimestampType(i * 1000L), dec, GEOG_PT_VALUE);
+                writer.putLong(i % 100).putLong(i).putLong(i * 1000).putLong(i * 1000000L).putDouble(i / 3.0)
+                      .putString(new StringBuilder(s)).putVarbinary(bytes).putLong(i * 1000L).putDecimal(dec)
+                      .put(GEOG_PT_VALUE).endRow();
+            }
+        }
+        assertEquals(expected, written);
+        assertEquals(1000, written.getRowCount());
+
+        // survives serialization
+        VoltTable copy = PrivateVoltTableFactory.createVoltTableFromBuffer(written.getBuffer(), true);
+        assertEquals(expected, copy);
+
+        // rows can still be added the other way
+        expected.addRow(1, 2, 3, 4, 5.0, "x", new byte[] { 1 }, 6L, BigDecimal.ONE, GEOG_PT_VALUE);
+        written.addRow(1, 2, 3, 4, 5.0, "x", new byte[] { 1 }, 6L, BigDecimal.ONE, GEOG_PT_VALUE);
+        assertEquals(expected, written);
+    }
+
+    public void testRowWriterExceptionSafe() {
+        VoltTable table = new VoltTable(new ColumnInfo("tiny", VoltType.TINYINT),
+                new ColumnInfo("string", VoltType.STRING));
+        VoltTable.RowWriter writer = table.rowWriter();
+        writer.putLong(1).putString("one").endRow();
+
+        try {
+            writer.putLong(1000);
+            fail();
+        }
+        catch (VoltTypeException e) {}
+        try {
+            writer.putLong(2).putLong(2);
+            fail();
+        }
+        catch (VoltTypeException e) {}
+        try {
+            writer.putLong(2).endRow();
+            fail();
+        }
+        catch (IllegalArgumentException e) {}
+        try {
+            writer.putLong(2).putString("two").putLong(3);
+            fail();
+        }
+        catch (IllegalArgumentException e) {}
+        writer.putLong(3);
+        writer.abortRow();
+
+        assertEquals(1, table.getRowCount());
+        writer.putLong(2).putString("two").endRow();
+        assertEquals(2, table.getRowCount());
+        VoltTableRow row = table.fetchRow(1);
+        assertEquals(2, row.getLong(0));
+        assertEquals("two", row.getString(1));
+
+        VoltTable readOnly = PrivateVoltTableFactory.createVoltTableFromBuffer(table.getBuffer(), true);
+        try {
+            readOnly.rowWriter().putLong(1);
+            fail();
+        }
+        catch (IllegalStateException e) {}
+    }
+
+    public void testValueViews() {
+        VoltTable table = new VoltTable(new ColumnInfo("string", VoltType.STRING),
+                new ColumnInfo("bytes", VoltType.VARBINARY));
+        final String[] strings = new String[] { "abc", "", "héllo wörld", "日本語",
+                "emoji 😀", null };
+        for (int i = 0; i < strings.length; i++) {
+            table.addRow(strings[i], strings[i] == null ? null : new byte[] { (byte) i, 2, 3 });
+        }
+
+        VoltTableRow.StringView view = new VoltTableRow.StringView();
+        int i = 0;
+        while (table.advanceRow()) {
+            final CharSequence cs = table.getStringView(0, view);
+            final ByteBuffer utf8 = table.getStringAsByteBuffer(0);
+            final ByteBuffer bytes = table.getVarbinaryAsByteBuffer(1);
+            if (strings[i] == null) {
+                assertNull(cs);
+                assertNull(utf8);
+                assertNull(bytes);
+                assertTrue(table.wasNull());
+            }
+            else {
+                assertFalse(table.wasNull());
+                assertSame(view, cs);
+                assertEquals(strings[i].length(), cs.length());
+                assertEquals(strings[i], cs.toString());
+                assertTrue(view.contentEquals(strings[i]));
+                assertFalse(view.contentEquals(strings[i] + "x"));
+                for (int j = 0; j < cs.length(); j++) {
+                    assertEquals(strings[i].charAt(j), cs.charAt(j));
+                }
+                assertEquals(ByteBuffer.wrap(strings[i].getBytes(Constants.UTF8ENCODING)), utf8);
+                assertTrue(utf8.isReadOnly());
+                assertEquals(ByteBuffer.wrap(new byte[] { (byte) i, 2, 3 }), bytes);
+                assertEquals(0, bytes.position());
+            }
+            i++;
+        }
+        assertEquals(strings.length, i);
+    }
+
     public void testTableJava8Streams() {
         Random rand = new Random(0);
 
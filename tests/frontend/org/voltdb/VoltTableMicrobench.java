@@ -0,0 +1,128 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2018 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb;
+
+import java.math.BigDecimal;
+
+import org.voltdb.VoltTable.ColumnInfo;
+
+/**
+ * Compares building and scanning tables with addRow()/getString() against
+ * the RowWriter and the string views. Run with the heap sized so the tables
+ * don't trigger full GCs, e.g. -Xmx2g.
+ */
+public class VoltTableMicrobench {
+
+    static final int ROWS = 100000;
+    static final int ITERATIONS = 50;
+
+    static final String[] NAMES = new String[] { "alpha", "bravo", "charlie", "delta", "echo" };
+    static final BigDecimal PRICE = new BigDecimal("12.345");
+
+    static VoltTable newTable() {
+        return new VoltTable(new ColumnInfo("ID", VoltType.BIGINT),
+                new ColumnInfo("QTY", VoltType.INTEGER),
+                new ColumnInfo("NAME", VoltType.STRING),
+                new ColumnInfo("PRICE", VoltType.DECIMAL));
+    }
+
+    static VoltTable buildAddRow() {
+        VoltTable t = newTable();
+        for (int i = 0; i < ROWS; i++) {
+            t.addRow(i, i % 1000, NAMES[i % NAMES.length], PRICE);
+        }
+        return t;
+    }
+
+    static VoltTable buildRowWriter() {
+        VoltTable t = newTable();
+        VoltTable.RowWriter w = t.rowWriter();
+        for (int i = 0; i < ROWS; i++) {
+            w.putLong(i).putLong(i % 1000).putString(NAMES[i % NAMES.length]).putDecimal(PRICE).endRow();
+        }
+        return t;
+    }
+
+    static long scanGetString(VoltTable t) {
+        long sum = 0;
+        t.resetRowPosition();
+        while (t.advanceRow()) {
+            sum += t.getLong(0) + t.getString(2).length();
+        }
+        return sum;
+    }
+
+    static long scanStringView(VoltTable t) {
+        long sum = 0;
+        VoltTableRow.StringView view = new VoltTableRow.StringView();
+        t.resetRowPosition();
+        while (t.advanceRow()) {
+            sum += t.getLong(0) + t.getStringView(2, view).length();
+        }
+        return sum;
+    }
+
+    static void report(String name, long nanos) {
+        System.out.printf("%-24s %8.1f ns/row%n", name, (double) nanos / ITERATIONS / ROWS);
+    }
+
+    public static void main(String[] args) {
+        long sink = 0;
+        // warm up, then measure
+        for (int round = 0; round < 2; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                sink += buildAddRow().getRowCount();
+            }
+            final long addRow = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                sink += buildRowWriter().getRowCount();
+            }
+            final long rowWriter = System.nanoTime() - start;
+
+            final VoltTable t = buildRowWriter();
+            start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                sink += scanGetString(t);
+            }
+            final long getString = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                sink += scanStringView(t);
+            }
+            final long stringView = System.nanoTime() - start;
+
+            if (round == 1) {
+                report("build addRow", addRow);
+                report("build RowWriter", rowWriter);
+                report("scan getString", getString);
+                report("scan getStringView", stringView);
+            }
+        }
+        System.out.println("(" + sink + ")");
+    }
+}
@@ -0,0 +1,84 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2018 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.voltdb.ClientResponseImpl;
+
+public class TestSessionTracker {
+
+    // SpHandles carry the partition id in their low 14 bits
+    private static long spHandle(long sequence, int partition) {
+        return (sequence << 14) | partition;
+    }
+
+    @Test
+    public void testReadsAdvanceTheSessionPoint() {
+        SessionTracker session = new SessionTracker();
+        assertEquals(0, session.getSpHandle(3));
+
+        assertTrue(session.readCompleted(3, spHandle(10, 3), 0));
+        assertEquals(spHandle(10, 3), session.getSpHandle(3));
+        // Never goes back
+        assertTrue(session.readCompleted(3, spHandle(5, 3), 0));
+        assertEquals(spHandle(10, 3), session.getSpHandle(3));
+        // Other partitions are separate
+        assertEquals(0, session.getSpHandle(4));
+
+        // Handles of another partition or no handle at all are ignored
+        assertFalse(session.readCompleted(3, spHandle(20, 4), 0));
+        assertFalse(session.readCompleted(3, ClientResponseImpl.NO_SPHANDLE, 0));
+        assertEquals(spHandle(10, 3), session.getSpHandle(3));
+    }
+
+    @Test
+    public void testReadAfterWriteGoesToTheLeader() {
+        SessionTracker session = new SessionTracker();
+        assertEquals(0, session.getUncoveredWrites(1));
+
+        session.writeCompleted(1);
+        final long writes = session.getUncoveredWrites(1);
+        assertTrue(writes != 0);
+        assertEquals(0, session.getUncoveredWrites(2));
+
+        // Another write completes while the read at the leader is in flight
+        session.writeCompleted(1);
+        session.readCompleted(1, spHandle(7, 1), writes);
+        assertTrue(session.getUncoveredWrites(1) != 0);
+
+        // A read sent after both writes covers them
+        final long allWrites = session.getUncoveredWrites(1);
+        session.readCompleted(1, spHandle(8, 1), allWrites);
+        assertEquals(0, session.getUncoveredWrites(1));
+        assertEquals(spHandle(8, 1), session.getSpHandle(1));
+
+        // A late response to the earlier read doesn't uncover anything
+        session.readCompleted(1, spHandle(7, 1), writes);
+        assertEquals(0, session.getUncoveredWrites(1));
+    }
+}
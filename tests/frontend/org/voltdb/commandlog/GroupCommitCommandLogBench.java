@@ -0,0 +1,126 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2018 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.commandlog;
+
+import static org.mockito.Mockito.mock;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.voltdb.CommandLogStats;
+import org.voltdb.StoredProcedureInvocation;
+import org.voltdb.iv2.TransactionTask;
+import org.voltdb.iv2.TxnEgo;
+import org.voltdb.messaging.Iv2InitiateTaskMessage;
+import org.voltdb.messaging.VoltDbMessageFactory;
+import org.voltdb.utils.VoltFile;
+
+/**
+ * Logs transactions from a number of site threads through the group commit
+ * command log in synchronous mode, then decodes the log the way replay does.
+ * Prints the logging rate, fsyncs per transaction and the decode rate.
+ *
+ * Usage: GroupCommitCommandLogBench [sites] [txns per site] [fsync interval ms]
+ */
+public class GroupCommitCommandLogBench {
+
+    public static void main(String[] args) throws Exception {
+        final int sites = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        final int txns = args.length > 1 ? Integer.parseInt(args[1]) : 50000;
+        final int fsyncInterval = args.length > 2 ? Integer.parseInt(args[2]) : 2;
+
+        final File dir = File.createTempFile("groupcommit-bench", "");
+        dir.delete();
+        dir.mkdir();
+        try {
+            final GroupCommitCommandLog log =
+                    new GroupCommitCommandLog(true, fsyncInterval, Integer.MAX_VALUE, dir.getPath(), null);
+            log.init(1024, Long.MIN_VALUE, sites, null, new HashMap<Integer, Long>());
+            final TestGroupCommitCommandLog.CountingListener[] listeners =
+                    new TestGroupCommitCommandLog.CountingListener[sites];
+            final TransactionTask task = mock(TransactionTask.class);
+            final List<Thread> threads = new ArrayList<>();
+            final long start = System.nanoTime();
+            for (int s = 0; s < sites; s++) {
+                final int partition = s;
+                listeners[s] = new TestGroupCommitCommandLog.CountingListener();
+                log.registerDurabilityListener(listeners[s]);
+                Thread t = new Thread() {
+                    @Override
+                    public void run() {
+                        TxnEgo ego = TxnEgo.makeZero(partition);
+                        for (int i = 0; i < txns; i++) {
+                            ego = ego.makeNext();
+                            StoredProcedureInvocation invocation = new StoredProcedureInvocation();
+                            invocation.setProcName("Vote");
+                            invocation.setParams(5551234567L + i, i % 12, 20000);
+                            Iv2InitiateTaskMessage msg = new Iv2InitiateTaskMessage(1, 2, Long.MIN_VALUE,
+                                    ego.getTxnId(), ego.getTxnId(), false, true, invocation, i, 5, false);
+                            log.log(msg, ego.getTxnId(), null, listeners[partition], task);
+                        }
+                    }
+                };
+                threads.add(t);
+                t.start();
+            }
+            for (int s = 0; s < sites; s++) {
+                threads.get(s).join();
+                listeners[s].awaitDurable(txns);
+            }
+            final double logSeconds = (System.nanoTime() - start) / 1e9;
+
+            Map<String, Integer> columns = new HashMap<>();
+            for (CommandLogStats.StatName name : CommandLogStats.StatName.values()) {
+                columns.put(name.name(), columns.size());
+            }
+            Object[] row = new Object[columns.size()];
+            log.populateCommandLogStats(columns, row);
+            log.shutdown();
+            System.out.printf("logged %d txns in %.2f s, %.0f txn/s, %d fsyncs, %.5f fsyncs per txn%n",
+                    sites * txns, logSeconds, sites * txns / logSeconds,
+                    row[columns.get(CommandLogStats.StatName.FSYNCS.name())],
+                    row[columns.get(CommandLogStats.StatName.FSYNCS_PER_TXN.name())]);
+
+            final VoltDbMessageFactory factory = new VoltDbMessageFactory();
+            final long decodeStart = System.nanoTime();
+            long decoded = 0;
+            for (File file : LogSegment.list(dir)) {
+                LogSegment segment = LogSegment.open(file);
+                for (LogSegment.Entry entry : segment.readEntries()) {
+                    GroupCommitLogReinitiator.decodeInitiate(factory, entry.m_payload);
+                    decoded++;
+                }
+                segment.close();
+            }
+            final double decodeSeconds = (System.nanoTime() - decodeStart) / 1e9;
+            System.out.printf("read and decoded %d entries in %.2f s, %.0f entries/s%n",
+                    decoded, decodeSeconds, decoded / decodeSeconds);
+        } finally {
+            VoltFile.recursivelyDelete(dir);
+        }
+    }
+}
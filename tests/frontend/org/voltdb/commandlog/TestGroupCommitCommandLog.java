@@ -0,0 +1,330 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2018 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.commandlog;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.voltcore.utils.InstanceId;
+import org.voltdb.CommandLog.CompletionChecks;
+import org.voltdb.CommandLog.DurabilityListener;
+import org.voltdb.CommandLogStats;
+import org.voltdb.StoredProcedureInvocation;
+import org.voltdb.iv2.SpScheduler.DurableUniqueIdListener;
+import org.voltdb.iv2.TransactionTask;
+import org.voltdb.iv2.TxnEgo;
+import org.voltdb.messaging.Iv2InitiateTaskMessage;
+import org.voltdb.messaging.VoltDbMessageFactory;
+import org.voltdb.utils.VoltFile;
+
+import com.google_voltpatches.common.util.concurrent.ListenableFuture;
+import com.google_voltpatches.common.util.concurrent.SettableFuture;
+
+public class TestGroupCommitCommandLog {
+    private File m_dir;
+    private GroupCommitCommandLog m_log;
+
+    /**
+     * Counts the transactions the command log reports durable.
+     */
+    static class CountingListener implements DurabilityListener {
+        final AtomicInteger m_durable = new AtomicInteger();
+        final AtomicInteger m_checks = new AtomicInteger();
+        List<TransactionTask> m_pending = new ArrayList<>();
+
+        @Override
+        public void configureUniqueIdListener(DurableUniqueIdListener listener, boolean install) {}
+
+        @Override
+        public void createFirstCompletionCheck(boolean isSyncLogging, boolean commandLoggingEnabled) {}
+
+        @Override
+        public boolean completionCheckInitialized() {
+            return true;
+        }
+
+        @Override
+        public void addTransaction(TransactionTask pendingTask) {
+            m_pending.add(pendingTask);
+        }
+
+        @Override
+        public void initializeLastDurableUniqueId(long uniqueId) {}
+
+        @Override
+        public int getNumberOfTasks() {
+            return m_pending.size();
+        }
+
+        @Override
+        public CompletionChecks startNewTaskList(int nextMaxRowCnt) {
+            final int count = m_pending.size();
+            m_pending = new ArrayList<>(nextMaxRowCnt);
+            CompletionChecks checks = mock(CompletionChecks.class);
+            when(checks.getTaskListSize()).thenReturn(count);
+            return checks;
+        }
+
+        @Override
+        public void processDurabilityChecks(CompletionChecks completionChecks) {
+            m_checks.incrementAndGet();
+            m_durable.addAndGet(completionChecks.getTaskListSize());
+        }
+
+        void awaitDurable(int count) throws InterruptedException {
+            final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+            while (m_durable.get() < count && System.nanoTime() < deadline) {
+                Thread.sleep(5);
+            }
+            assertEquals(count, m_durable.get());
+        }
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        m_dir = File.createTempFile("test-groupcommit", "");
+        m_dir.delete();
+        assertTrue(m_dir.mkdir());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (m_log != null) {
+            m_log.shutdown();
+        }
+        VoltFile.recursivelyDelete(m_dir);
+    }
+
+    private void start(boolean synchronous, int fsyncInterval, int maxTxns) {
+        m_log = new GroupCommitCommandLog(synchronous, fsyncInterval, maxTxns, m_dir.getPath(), null);
+        Map<Integer, Long> txnIds = new HashMap<>();
+        txnIds.put(0, Long.MIN_VALUE);
+        m_log.init(128, Long.MIN_VALUE, 4, null, txnIds);
+    }
+
+    private static Iv2InitiateTaskMessage initiate(long spHandle) {
+        StoredProcedureInvocation invocation = new StoredProcedureInvocation();
+        invocation.setProcName("proc");
+        invocation.setParams(spHandle, "value");
+        Iv2InitiateTaskMessage msg = new Iv2InitiateTaskMessage(1, 2, Long.MIN_VALUE, spHandle, spHandle,
+                false, true, invocation, 4, 5, false);
+        msg.setSpHandle(spHandle);
+        return msg;
+    }
+
+    private Map<String, Object> stats() {
+        Map<String, Integer> columnNameToIndex = new HashMap<>();
+        int i = 0;
+        for (CommandLogStats.StatName name : CommandLogStats.StatName.values()) {
+            columnNameToIndex.put(name.name(), i++);
+        }
+        Object[] row = new Object[columnNameToIndex.size()];
+        m_log.populateCommandLogStats(columnNameToIndex, row);
+        Map<String, Object> stats = new HashMap<>();
+        for (Map.Entry<String, Integer> e : columnNameToIndex.entrySet()) {
+            stats.put(e.getKey(), row[e.getValue()]);
+        }
+        return stats;
+    }
+
+    private int countLoggedEntries() throws IOException {
+        int count = 0;
+        for (File file : LogSegment.list(m_dir)) {
+            LogSegment segment = LogSegment.open(file);
+            count += segment.readEntries().size();
+            segment.close();
+        }
+        return count;
+    }
+
+    @Test
+    public void testSynchronousGroupCommit() throws Exception {
+        start(true, 5, Integer.MAX_VALUE);
+        final int threads = 4;
+        final int perThread = 500;
+        final CountingListener[] listeners = new CountingListener[threads];
+        Thread[] sites = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            final int partition = t;
+            listeners[t] = new CountingListener();
+            m_log.registerDurabilityListener(listeners[t]);
+            sites[t] = new Thread() {
+                @Override
+                public void run() {
+                    TxnEgo ego = TxnEgo.makeZero(partition);
+                    for (int i = 0; i < perThread; i++) {
+                        ego = ego.makeNext();
+                        assertNull(m_log.log(initiate(ego.getTxnId()), ego.getTxnId(), null,
+                                listeners[partition], mock(TransactionTask.class)));
+                    }
+                }
+            };
+            sites[t].start();
+        }
+        for (int t = 0; t < threads; t++) {
+            sites[t].join();
+            listeners[t].awaitDurable(perThread);
+        }
+        assertEquals(false, m_log.canOfferTask());
+
+        Map<String, Object> stats = stats();
+        final long fsyncs = (Long) stats.get(CommandLogStats.StatName.FSYNCS.name());
+        assertTrue(fsyncs > 0);
+        // Transactions logged at about the same time share an fsync
+        assertTrue("fsyncs " + fsyncs, fsyncs < threads * perThread);
+        assertEquals((double) fsyncs / (threads * perThread),
+                (Double) stats.get(CommandLogStats.StatName.FSYNCS_PER_TXN.name()), 0.0001);
+        assertEquals(0L, stats.get(CommandLogStats.StatName.OUTSTANDING_TXNS.name()));
+
+        m_log.shutdown();
+        m_log = null;
+        assertEquals(threads * perThread, countLoggedEntries());
+    }
+
+    @Test
+    public void testMaxTxnsEndsTheWindow() throws Exception {
+        // A window long enough that only reaching max txns can end it
+        start(true, 5000, 10);
+        CountingListener listener = new CountingListener();
+        m_log.registerDurabilityListener(listener);
+        TxnEgo ego = TxnEgo.makeZero(0);
+        for (int i = 0; i < 10; i++) {
+            ego = ego.makeNext();
+            m_log.log(initiate(ego.getTxnId()), ego.getTxnId(), null, listener, mock(TransactionTask.class));
+        }
+        listener.awaitDurable(10);
+    }
+
+    @Test
+    public void testAsynchronous() throws Exception {
+        start(false, 5, Integer.MAX_VALUE);
+        CountingListener listener = new CountingListener();
+        m_log.registerDurabilityListener(listener);
+        assertTrue(m_log.canOfferTask());
+        TxnEgo ego = TxnEgo.makeZero(0);
+        for (int i = 0; i < 100; i++) {
+            ego = ego.makeNext();
+            ListenableFuture<Object> backpressure =
+                    m_log.log(initiate(ego.getTxnId()), ego.getTxnId(), null, listener, mock(TransactionTask.class));
+            // Far below the outstanding bytes limit
+            assertTrue(backpressure.isDone());
+        }
+        listener.awaitDurable(100);
+    }
+
+    @Test
+    public void testFaultEntry() throws Exception {
+        start(true, 5, Integer.MAX_VALUE);
+        HashSet<Long> survivors = new HashSet<>();
+        survivors.add(7L);
+        survivors.add(8L);
+        SettableFuture<Boolean> written = m_log.logIv2Fault(6L, survivors, 0, TxnEgo.makeZero(0).getTxnId());
+        assertTrue(written.get(30, TimeUnit.SECONDS));
+        m_log.shutdown();
+        m_log = null;
+        int faults = 0;
+        for (File file : LogSegment.list(m_dir)) {
+            LogSegment segment = LogSegment.open(file);
+            for (LogSegment.Entry entry : segment.readEntries()) {
+                if (entry.m_type == LogSegment.FAULT_ENTRY) {
+                    assertEquals(6L, entry.m_payload.getLong(0));
+                    faults++;
+                }
+            }
+            segment.close();
+        }
+        assertEquals(1, faults);
+    }
+
+    @Test
+    public void testRestartKeepsUncoveredSegments() throws Exception {
+        start(true, 5, Integer.MAX_VALUE);
+        CountingListener listener = new CountingListener();
+        m_log.registerDurabilityListener(listener);
+        TxnEgo ego = TxnEgo.makeZero(0);
+        for (int i = 0; i < 10; i++) {
+            ego = ego.makeNext();
+            m_log.log(initiate(ego.getTxnId()), ego.getTxnId(), null, listener, mock(TransactionTask.class));
+        }
+        listener.awaitDurable(10);
+        m_log.shutdown();
+
+        // The snapshot the log restarts from has none of them
+        start(true, 5, Integer.MAX_VALUE);
+        assertEquals(10, countLoggedEntries());
+        assertEquals(2, stats().get(CommandLogStats.StatName.IN_USE_SEGMENT_COUNT.name()));
+    }
+
+    @Test
+    public void testNPartitionEntries() throws Exception {
+        final long spHandle = TxnEgo.makeZero(0).makeNext().getTxnId();
+        final ByteBuffer everywhere = GroupCommitCommandLog.serializeInitiate(initiate(spHandle), spHandle,
+                new int[] { 0, 1, 2, 3 });
+        everywhere.position(LogSegment.ENTRY_HEADER_SIZE);
+        assertNull(GroupCommitLogReinitiator.nPartitions(everywhere.slice(), 4));
+
+        final ByteBuffer some = GroupCommitCommandLog.serializeInitiate(initiate(spHandle), spHandle,
+                new int[] { 1, 3 });
+        some.position(LogSegment.ENTRY_HEADER_SIZE);
+        final ByteBuffer payload = some.slice();
+        assertArrayEquals(new int[] { 1, 3 }, GroupCommitLogReinitiator.nPartitions(payload, 4));
+        assertEquals(spHandle, GroupCommitLogReinitiator.decodeInitiate(new VoltDbMessageFactory(), payload)
+                .getTxnId());
+    }
+
+    @Test
+    public void testReplayNeedsTheSamePartitionCount() throws Exception {
+        List<LogSegment.Header> headers = new ArrayList<>();
+        headers.add(new LogSegment.Header(1, new InstanceId(0, 0), Long.MIN_VALUE, 4, new HashMap<Integer, Long>()));
+        headers.add(new LogSegment.Header(2, new InstanceId(0, 0), Long.MIN_VALUE, 4, new HashMap<Integer, Long>()));
+        GroupCommitLogReinitiator.checkPartitionCount(headers, 4);
+
+        headers.add(new LogSegment.Header(3, new InstanceId(0, 0), Long.MIN_VALUE, 6, new HashMap<Integer, Long>()));
+        try {
+            GroupCommitLogReinitiator.checkPartitionCount(headers, 4);
+            fail("Replayed a log written with a different partition count");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("segment 3"));
+        }
+    }
+}
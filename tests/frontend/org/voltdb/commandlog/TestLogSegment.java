@@ -0,0 +1,207 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2018 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.commandlog;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.voltcore.utils.InstanceId;
+import org.voltdb.StoredProcedureInvocation;
+import org.voltdb.iv2.TxnEgo;
+import org.voltdb.messaging.Iv2InitiateTaskMessage;
+import org.voltdb.messaging.VoltDbMessageFactory;
+import org.voltdb.utils.VoltFile;
+
+public class TestLogSegment {
+    private static final long SIZE = 1024 * 1024;
+    private File m_dir;
+
+    @Before
+    public void setUp() throws IOException {
+        m_dir = File.createTempFile("test-logsegment", "");
+        m_dir.delete();
+        assertTrue(m_dir.mkdir());
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        VoltFile.recursivelyDelete(m_dir);
+    }
+
+    private static LogSegment.Header header(long segmentId) {
+        Map<Integer, Long> txnIds = new HashMap<>();
+        txnIds.put(0, TxnEgo.makeZero(0).getTxnId());
+        txnIds.put(1, TxnEgo.makeZero(1).getTxnId());
+        return new LogSegment.Header(segmentId, new InstanceId(3, 12345), 42, 2, txnIds);
+    }
+
+    private static Iv2InitiateTaskMessage initiate(long spHandle, String procName) {
+        StoredProcedureInvocation invocation = new StoredProcedureInvocation();
+        invocation.setProcName(procName);
+        invocation.setParams(1L, "one", 1.5);
+        Iv2InitiateTaskMessage msg = new Iv2InitiateTaskMessage(1, 2, Long.MIN_VALUE, spHandle, spHandle,
+                false, true, invocation, 4, 5, false);
+        msg.setSpHandle(spHandle);
+        return msg;
+    }
+
+    /**
+     * Entries for the SpHandles, framed the way the command log stages them.
+     */
+    private static ByteBuffer entries(long... spHandles) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocateDirect(64 * 1024);
+        for (long spHandle : spHandles) {
+            buf.put(GroupCommitCommandLog.serializeInitiate(initiate(spHandle, "proc" + spHandle), spHandle, null));
+        }
+        buf.flip();
+        return buf;
+    }
+
+    private static long spHandle(int partition, int sequence) {
+        TxnEgo ego = TxnEgo.makeZero(partition);
+        for (int i = 0; i < sequence; i++) {
+            ego = ego.makeNext();
+        }
+        return ego.getTxnId();
+    }
+
+    private List<LogSegment.Entry> readBack(long segmentId) throws IOException {
+        LogSegment segment = LogSegment.open(new File(m_dir, LogSegment.fileName(segmentId)));
+        try {
+            return segment.readEntries();
+        } finally {
+            segment.close();
+        }
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        LogSegment segment = LogSegment.create(m_dir, header(7), SIZE);
+        segment.write(entries(spHandle(0, 1), spHandle(1, 1)));
+        segment.write(entries(spHandle(0, 2)));
+        assertEquals(SIZE - LogSegment.HEADER_SIZE - 2 * LogSegment.PAGE_SIZE, segment.remaining());
+        segment.force();
+        segment.close();
+
+        assertEquals(SIZE, new File(m_dir, LogSegment.fileName(7)).length());
+        LogSegment read = LogSegment.open(new File(m_dir, LogSegment.fileName(7)));
+        assertEquals(7, read.getHeader().m_segmentId);
+        assertEquals(new InstanceId(3, 12345), read.getHeader().m_instanceId);
+        assertEquals(42, read.getHeader().m_truncationTxnId);
+        assertEquals(2, read.getHeader().m_partitionCount);
+        assertEquals(header(7).m_truncationTxnIds, read.getHeader().m_truncationTxnIds);
+
+        List<LogSegment.Entry> entries = read.readEntries();
+        read.close();
+        assertEquals(3, entries.size());
+        VoltDbMessageFactory factory = new VoltDbMessageFactory();
+        long[] expected = new long[] { spHandle(0, 1), spHandle(1, 1), spHandle(0, 2) };
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(LogSegment.INITIATE_ENTRY, entries.get(i).m_type);
+            assertEquals(0, GroupCommitLogReinitiator.involvedPartitions(entries.get(i).m_payload));
+            Iv2InitiateTaskMessage msg = GroupCommitLogReinitiator.decodeInitiate(factory, entries.get(i).m_payload);
+            assertEquals(expected[i], msg.getTxnId());
+            assertEquals("proc" + expected[i], msg.getStoredProcedureInvocation().getProcName());
+        }
+        assertEquals(spHandle(0, 2), read.m_maxSpHandles.get(0).longValue());
+        assertEquals(spHandle(1, 1), read.m_maxSpHandles.get(1).longValue());
+    }
+
+    @Test
+    public void testTornWrite() throws IOException {
+        LogSegment segment = LogSegment.create(m_dir, header(1), SIZE);
+        segment.write(entries(spHandle(0, 1)));
+        segment.write(entries(spHandle(0, 2), spHandle(0, 3)));
+        segment.close();
+
+        // Flip a byte in the last entry of the second batch
+        try (RandomAccessFile raf = new RandomAccessFile(new File(m_dir, LogSegment.fileName(1)), "rw")) {
+            final long pos = LogSegment.HEADER_SIZE + LogSegment.PAGE_SIZE + LogSegment.BATCH_HEADER_SIZE + 100;
+            raf.seek(pos);
+            final int b = raf.read();
+            raf.seek(pos);
+            raf.write(b ^ 0xff);
+        }
+        List<LogSegment.Entry> entries = readBack(1);
+        // The entries before the damaged one are still good
+        assertTrue(entries.size() < 3);
+        assertEquals(spHandle(0, 1), entries.get(0).m_payload.getLong(0));
+    }
+
+    @Test
+    public void testRecycledSegment() throws IOException {
+        LogSegment segment = LogSegment.create(m_dir, header(1), SIZE);
+        segment.write(entries(spHandle(0, 1)));
+        segment.write(entries(spHandle(0, 2)));
+        segment.write(entries(spHandle(0, 3)));
+        LogSegment recycled = segment.recycle(m_dir, header(2));
+        assertFalse(new File(m_dir, LogSegment.fileName(1)).exists());
+        recycled.write(entries(spHandle(0, 4)));
+        recycled.close();
+
+        // The batches left over from segment 1 are not read as part of segment 2
+        List<LogSegment.Entry> entries = readBack(2);
+        assertEquals(1, entries.size());
+        assertEquals(spHandle(0, 4), entries.get(0).m_payload.getLong(0));
+    }
+
+    @Test
+    public void testCoveredBySnapshot() throws IOException {
+        LogSegment segment = LogSegment.create(m_dir, header(1), SIZE);
+        segment.noteSpHandle(spHandle(0, 5));
+        segment.noteSpHandle(spHandle(1, 3));
+        segment.close();
+
+        Map<Integer, Long> snapshot = new HashMap<>();
+        snapshot.put(0, spHandle(0, 5));
+        assertFalse(segment.isCoveredBy(snapshot));
+        snapshot.put(1, spHandle(1, 2));
+        assertFalse(segment.isCoveredBy(snapshot));
+        snapshot.put(1, spHandle(1, 3));
+        assertTrue(segment.isCoveredBy(snapshot));
+    }
+
+    @Test
+    public void testList() throws IOException {
+        LogSegment.create(m_dir, header(10), LogSegment.HEADER_SIZE).close();
+        LogSegment.create(m_dir, header(9), LogSegment.HEADER_SIZE).close();
+        assertTrue(new File(m_dir, "other.txt").createNewFile());
+        List<File> files = LogSegment.list(m_dir);
+        assertEquals(2, files.size());
+        assertEquals(9, LogSegment.segmentId(files.get(0).getName()));
+        assertEquals(10, LogSegment.segmentId(files.get(1).getName()));
+    }
+}
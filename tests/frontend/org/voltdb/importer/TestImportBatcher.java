@@ -0,0 +1,136 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2018 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.importer;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.List;
+import java.util.function.Function;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.voltdb.client.ClientResponse;
+import org.voltdb.client.ProcedureCallback;
+
+@RunWith(MockitoJUnitRunner.class)
+public class TestImportBatcher {
+
+    private ImporterServerAdapter m_adapter;
+    private AbstractImporter m_importer;
+    private ImportBatcher m_batcher;
+    private final Function<Integer, Boolean> m_predicate = (x) -> true;
+
+    @Captor
+    private ArgumentCaptor<List<Object[]>> m_records;
+    @Captor
+    private ArgumentCaptor<List<ProcedureCallback>> m_callbacks;
+
+    @Before
+    public void setUp() {
+        m_adapter = mock(ImporterServerAdapter.class);
+        m_importer = mock(AbstractImporter.class);
+        // No periodic flush, the tests flush explicitly
+        m_batcher = new ImportBatcher(m_importer, m_adapter, m_predicate, 3, 5);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testFullBatchIsSent() {
+        ProcedureCallback cb = mock(ProcedureCallback.class);
+        m_batcher.add("T.insert", 1, new Object[] { 1 }, cb);
+        m_batcher.add("T.insert", 1, new Object[] { 2 }, null);
+        verify(m_adapter, never()).callProcedureBatch(any(AbstractImporter.class), any(Function.class),
+                anyString(), anyInt(), anyListOf(Object[].class), anyListOf(ProcedureCallback.class));
+
+        m_batcher.add("T.insert", 1, new Object[] { 3 }, cb);
+        verify(m_adapter).callProcedureBatch(eq(m_importer), eq(m_predicate), eq("T.insert"), eq(1),
+                m_records.capture(), m_callbacks.capture());
+        assertEquals(3, m_records.getValue().size());
+        assertEquals(3, m_callbacks.getValue().size());
+        assertEquals(null, m_callbacks.getValue().get(1));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testGroupedByProcedureAndPartition() {
+        m_batcher.add("T.insert", 1, new Object[] { 1 }, null);
+        m_batcher.add("T.insert", 2, new Object[] { 2 }, null);
+        m_batcher.add("U.insert", 1, new Object[] { 3 }, null);
+        m_batcher.add("T.insert", 1, new Object[] { 4 }, null);
+
+        // Nothing is old enough yet
+        m_batcher.flush(0);
+        verify(m_adapter, never()).callProcedureBatch(any(AbstractImporter.class), any(Function.class),
+                anyString(), anyInt(), anyListOf(Object[].class), anyListOf(ProcedureCallback.class));
+
+        m_batcher.close();
+        verify(m_adapter).callProcedureBatch(eq(m_importer), eq(m_predicate), eq("T.insert"), eq(1),
+                m_records.capture(), anyListOf(ProcedureCallback.class));
+        assertEquals(2, m_records.getValue().size());
+        verify(m_adapter).callProcedureBatch(eq(m_importer), eq(m_predicate), eq("T.insert"), eq(2),
+                anyListOf(Object[].class), anyListOf(ProcedureCallback.class));
+        verify(m_adapter).callProcedureBatch(eq(m_importer), eq(m_predicate), eq("U.insert"), eq(1),
+                anyListOf(Object[].class), anyListOf(ProcedureCallback.class));
+        verify(m_adapter, times(3)).callProcedureBatch(any(AbstractImporter.class), any(Function.class),
+                anyString(), anyInt(), anyListOf(Object[].class), anyListOf(ProcedureCallback.class));
+
+        // Closed batches are not sent twice
+        m_batcher.flush(Long.MAX_VALUE);
+        verify(m_adapter, times(3)).callProcedureBatch(any(AbstractImporter.class), any(Function.class),
+                anyString(), anyInt(), anyListOf(Object[].class), anyListOf(ProcedureCallback.class));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testFailedSendRunsCallbacks() throws Exception {
+        doThrow(new RuntimeException("no adapter")).when(m_adapter).callProcedureBatch(any(AbstractImporter.class),
+                any(Function.class), anyString(), anyInt(), anyListOf(Object[].class), anyListOf(ProcedureCallback.class));
+        ProcedureCallback cb1 = mock(ProcedureCallback.class);
+        ProcedureCallback cb2 = mock(ProcedureCallback.class);
+        m_batcher.add("T.insert", 1, new Object[] { 1 }, cb1);
+        m_batcher.add("T.insert", 1, new Object[] { 2 }, null);
+        m_batcher.add("T.insert", 1, new Object[] { 3 }, cb2);
+
+        // Every record is reported as failed, and each callback hears about it
+        verify(m_adapter, times(3)).reportFailure(any(), eq("T.insert"), eq(true));
+        ArgumentCaptor<ClientResponse> response = ArgumentCaptor.forClass(ClientResponse.class);
+        verify(cb1).clientCallback(response.capture());
+        assertEquals(ClientResponse.UNEXPECTED_FAILURE, response.getValue().getStatus());
+        verify(cb2).clientCallback(any(ClientResponse.class));
+    }
+}
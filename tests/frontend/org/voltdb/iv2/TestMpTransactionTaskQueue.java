@@ -106,6 +106,67 @@ public class TestMpTransactionTaskQueue extends TestCase
 
     }
 
+    // Reads waiting for a free site are reported to the pool so it can size itself
+    @Test
+    public void testQueuedReadsReportedToPool()
+    {
+        TxnEgo txnId = TxnEgo.makeZero(MpInitiator.MP_INIT_PID);
+        when(m_MPpool.canAcceptWork()).thenReturn(false);
+        for (int i = 0; i < 3; i++) {
+            txnId = txnId.makeNext();
+            m_dut.offer(makeTransactionTask(txnId.getTxnId(), true));
+        }
+        verify(m_MPpool).updateQueueDepth(3);
+        // Reads queued behind a write are not waiting on the pool
+        txnId = txnId.makeNext();
+        m_dut.offer(makeTransactionTask(txnId.getTxnId(), false));
+        txnId = txnId.makeNext();
+        m_dut.offer(makeTransactionTask(txnId.getTxnId(), true));
+        verify(m_MPpool, times(3)).updateQueueDepth(3);
+    }
+
+    @Test
+    public void testPoolDemandTracking()
+    {
+        MpRoSitePool.DemandTracker demand = new MpRoSitePool.DemandTracker(8, 8);
+        assertEquals(MpRoSitePool.INITIAL_POOL_SIZE, demand.targetSize());
+        demand.sample(4, 2);
+        assertEquals(6, demand.targetSize());
+        // Never beyond the configured maximum
+        demand.sample(8, 20);
+        assertEquals(8, demand.targetSize());
+        assertEquals(8, demand.sizeLimit());
+        // Decays back to the floor once the burst is over
+        for (int i = 0; i < 100; i++) {
+            demand.sample(0, 0);
+        }
+        assertEquals(MpRoSitePool.INITIAL_POOL_SIZE, demand.targetSize());
+    }
+
+    @Test
+    public void testPoolGrowsWhileReadsBackUp()
+    {
+        MpRoSitePool.DemandTracker demand = new MpRoSitePool.DemandTracker(4, 6);
+        assertEquals(4, demand.sizeLimit());
+        // Reads waiting behind a write don't grow the pool
+        demand.sample(2, 0);
+        assertEquals(4, demand.sizeLimit());
+        // One more site for every sample that finds the allowed sites all busy and reads waiting
+        demand.sample(4, 3);
+        assertEquals(5, demand.sizeLimit());
+        demand.sample(5, 2);
+        assertEquals(6, demand.sizeLimit());
+        demand.sample(6, 1);
+        assertEquals(6, demand.sizeLimit());
+        assertEquals(6, demand.targetSize());
+        // Back to the configured size once the backlog is gone
+        for (int i = 0; i < 100; i++) {
+            demand.sample(1, 0);
+        }
+        assertEquals(4, demand.sizeLimit());
+        assertEquals(1, demand.targetSize());
+    }
+
     // Single write completes before any more reads are executed but after pending reads finish
     @Test
     public void testReadWriteBlocking()
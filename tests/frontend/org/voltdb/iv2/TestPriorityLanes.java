@@ -0,0 +1,105 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2018 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.iv2;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import org.junit.Test;
+import org.voltdb.StoredProcedureInvocation;
+import org.voltdb.client.ProcedureInvocationExtensions;
+import org.voltdb.messaging.Iv2InitiateTaskMessage;
+
+public class TestPriorityLanes {
+
+    private static final long MAX_WAIT = 1000;
+
+    private static Iv2InitiateTaskMessage makeInitiate(int priority)
+    {
+        Iv2InitiateTaskMessage m = mock(Iv2InitiateTaskMessage.class);
+        StoredProcedureInvocation invocation = mock(StoredProcedureInvocation.class);
+        when(invocation.getPriority()).thenReturn(priority);
+        when(m.getStoredProcedureInvocation()).thenReturn(invocation);
+        return m;
+    }
+
+    @Test
+    public void testMostUrgentFirst()
+    {
+        PriorityLanes lanes = new PriorityLanes(MAX_WAIT);
+        Iv2InitiateTaskMessage low1 = makeInitiate(ProcedureInvocationExtensions.LOWEST_PRIORITY);
+        Iv2InitiateTaskMessage low2 = makeInitiate(ProcedureInvocationExtensions.LOWEST_PRIORITY);
+        Iv2InitiateTaskMessage normal = makeInitiate(ProcedureInvocationExtensions.DEFAULT_PRIORITY);
+        Iv2InitiateTaskMessage high = makeInitiate(ProcedureInvocationExtensions.HIGHEST_PRIORITY);
+        lanes.offer(low1, 0);
+        lanes.offer(normal, 1);
+        lanes.offer(low2, 2);
+        lanes.offer(high, 3);
+        assertEquals(4, lanes.size());
+
+        assertEquals(high, lanes.poll(10));
+        assertEquals(normal, lanes.poll(10));
+        // same priority keeps arrival order
+        assertEquals(low1, lanes.poll(10));
+        assertEquals(low2, lanes.poll(10));
+        assertTrue(lanes.isEmpty());
+        assertNull(lanes.poll(10));
+    }
+
+    @Test
+    public void testStarvationProtection()
+    {
+        PriorityLanes lanes = new PriorityLanes(MAX_WAIT);
+        Iv2InitiateTaskMessage low = makeInitiate(ProcedureInvocationExtensions.LOWEST_PRIORITY);
+        Iv2InitiateTaskMessage normal = makeInitiate(ProcedureInvocationExtensions.DEFAULT_PRIORITY);
+        Iv2InitiateTaskMessage high1 = makeInitiate(ProcedureInvocationExtensions.HIGHEST_PRIORITY);
+        Iv2InitiateTaskMessage high2 = makeInitiate(ProcedureInvocationExtensions.HIGHEST_PRIORITY);
+        lanes.offer(low, 0);
+        lanes.offer(normal, 500);
+        lanes.offer(high1, 900);
+        lanes.offer(high2, 900);
+
+        // nothing has waited too long yet
+        assertEquals(high1, lanes.poll(999));
+        // the oldest call past the limit goes next, whatever its priority
+        assertEquals(low, lanes.poll(1600));
+        assertEquals(normal, lanes.poll(1600));
+        assertEquals(high2, lanes.poll(1600));
+    }
+
+    @Test
+    public void testOutOfRangePriority()
+    {
+        PriorityLanes lanes = new PriorityLanes(MAX_WAIT);
+        Iv2InitiateTaskMessage tooLow = makeInitiate(ProcedureInvocationExtensions.LOWEST_PRIORITY + 5);
+        Iv2InitiateTaskMessage high = makeInitiate(ProcedureInvocationExtensions.HIGHEST_PRIORITY);
+        lanes.offer(tooLow, 0);
+        lanes.offer(high, 1);
+        assertEquals(high, lanes.poll(2));
+        assertEquals(tooLow, lanes.poll(2));
+    }
+}
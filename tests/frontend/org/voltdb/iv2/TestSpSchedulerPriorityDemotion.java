@@ -0,0 +1,110 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2018 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.iv2;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.voltcore.messaging.Mailbox;
+import org.voltdb.CommandLog;
+import org.voltdb.MockVoltDB;
+import org.voltdb.ParameterSet;
+import org.voltdb.SnapshotCompletionMonitor;
+import org.voltdb.StarvationTracker;
+import org.voltdb.StoredProcedureInvocation;
+import org.voltdb.VoltDB;
+import org.voltdb.messaging.Iv2InitiateTaskMessage;
+
+public class TestSpSchedulerPriorityDemotion
+{
+    Mailbox mbox;
+    SiteTaskerQueue queue;
+    SpScheduler dut;
+    private static MockVoltDB s_mockVoltDB = new MockVoltDB();
+
+    static final String MockSPName = "MOCKSP";
+    static final long dut_hsid = 11223344l;
+    static final long ci_hsid = 5555l;
+
+    @BeforeClass
+    public static void setupClass() {
+        VoltDB.replaceVoltDBInstanceForTest(s_mockVoltDB);
+    }
+
+    @Before
+    public void setup() {
+        s_mockVoltDB.setKFactor(0);
+        mbox = mock(Mailbox.class);
+        when(mbox.getHSId()).thenReturn(dut_hsid);
+        queue = new SiteTaskerQueue(0);
+        queue.setStarvationTracker(new StarvationTracker(0));
+        queue.setupQueueDepthTracker(0);
+        final CommandLog cl = mock(CommandLog.class);
+        when(cl.canOfferTask()).thenReturn(true);
+        dut = new SpScheduler(0, queue, mock(SnapshotCompletionMonitor.class), false);
+        dut.setMailbox(mbox);
+        dut.setCommandLog(cl);
+        dut.setLock(mbox);
+        dut.setLeaderState(true);
+    }
+
+    private static Iv2InitiateTaskMessage createWrite()
+    {
+        StoredProcedureInvocation spi = mock(StoredProcedureInvocation.class);
+        when(spi.getProcName()).thenReturn(MockSPName);
+        when(spi.getParams()).thenReturn(mock(ParameterSet.class));
+        return new Iv2InitiateTaskMessage(ci_hsid, // initHSID
+                                          Long.MIN_VALUE, // coordHSID
+                                          Long.MIN_VALUE, // truncationHandle
+                                          Long.MIN_VALUE, // txnId
+                                          UniqueIdGenerator.makeIdFromComponents(System.currentTimeMillis(), 0, 0),
+                                          false, // readonly
+                                          true, // single-part
+                                          spi, // invocation
+                                          Long.MAX_VALUE, // client interface handle
+                                          Long.MAX_VALUE, // connectionId
+                                          false); // isForReplay
+    }
+
+    @Test
+    public void testDemotionSequencesHeldCalls()
+    {
+        for (int i = 0; i < SpScheduler.PRIORITY_ADMISSION_DEPTH; i++) {
+            dut.deliver(createWrite());
+        }
+        assertEquals(SpScheduler.PRIORITY_ADMISSION_DEPTH, queue.size());
+
+        // The backlog is full, these two wait in a lane behind a wakeup task
+        dut.deliver(createWrite());
+        dut.deliver(createWrite());
+        assertEquals(SpScheduler.PRIORITY_ADMISSION_DEPTH + 1, queue.size());
+
+        dut.setLeaderState(false);
+        assertEquals(SpScheduler.PRIORITY_ADMISSION_DEPTH + 3, queue.size());
+    }
+}
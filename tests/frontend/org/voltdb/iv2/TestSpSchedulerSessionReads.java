@@ -0,0 +1,189 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2018 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.iv2;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyObject;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.voltcore.messaging.Mailbox;
+import org.voltcore.messaging.VoltMessage;
+import org.voltdb.CommandLog;
+import org.voltdb.MockVoltDB;
+import org.voltdb.ParameterSet;
+import org.voltdb.SnapshotCompletionMonitor;
+import org.voltdb.StarvationTracker;
+import org.voltdb.StoredProcedureInvocation;
+import org.voltdb.VoltDB;
+import org.voltdb.client.ClientResponse;
+import org.voltdb.messaging.InitiateResponseMessage;
+import org.voltdb.messaging.Iv2InitiateTaskMessage;
+
+public class TestSpSchedulerSessionReads
+{
+    Mailbox mbox;
+    SiteTaskerQueue queue;
+    SpScheduler dut;
+    private static MockVoltDB s_mockVoltDB = new MockVoltDB();
+
+    static final String MockSPName = "MOCKSP";
+    static final long dut_hsid = 11223344l;
+    static final long ci_hsid = 5555l;
+    static final long primary_hsid = 1111l;
+
+    @BeforeClass
+    public static void setupClass() {
+        VoltDB.replaceVoltDBInstanceForTest(s_mockVoltDB);
+    }
+
+    @Before
+    public void setup() {
+        s_mockVoltDB.setKFactor(1);
+        mbox = mock(Mailbox.class);
+        when(mbox.getHSId()).thenReturn(dut_hsid);
+        queue = new SiteTaskerQueue(0);
+        queue.setStarvationTracker(new StarvationTracker(0));
+        queue.setupQueueDepthTracker(0);
+        final CommandLog cl = mock(CommandLog.class);
+        when(cl.canOfferTask()).thenReturn(true);
+        dut = new SpScheduler(0, queue, mock(SnapshotCompletionMonitor.class), false);
+        dut.setMailbox(mbox);
+        dut.setCommandLog(cl);
+        dut.setLock(mbox);
+    }
+
+    private static Iv2InitiateTaskMessage createRead(long readAfter)
+    {
+        StoredProcedureInvocation spi = mock(StoredProcedureInvocation.class);
+        when(spi.getProcName()).thenReturn(MockSPName);
+        when(spi.getParams()).thenReturn(mock(ParameterSet.class));
+        when(spi.hasReadAfterSpHandle()).thenReturn(true);
+        when(spi.getReadAfterSpHandle()).thenReturn(readAfter);
+        return new Iv2InitiateTaskMessage(ci_hsid, // initHSID
+                                          Long.MIN_VALUE, // coordHSID
+                                          Long.MIN_VALUE, // truncationHandle
+                                          Long.MIN_VALUE, // txnId
+                                          UniqueIdGenerator.makeIdFromComponents(System.currentTimeMillis(), 0, 0),
+                                          true, // readonly
+                                          true, // single-part
+                                          spi, // invocation
+                                          Long.MAX_VALUE, // client interface handle
+                                          Long.MAX_VALUE, // connectionId
+                                          false); // isForReplay
+    }
+
+    // A write the leader sends on to this replica
+    private static Iv2InitiateTaskMessage createReplicatedWrite(long spHandle)
+    {
+        StoredProcedureInvocation spi = mock(StoredProcedureInvocation.class);
+        when(spi.getProcName()).thenReturn(MockSPName);
+        when(spi.getParams()).thenReturn(mock(ParameterSet.class));
+        Iv2InitiateTaskMessage task =
+            new Iv2InitiateTaskMessage(primary_hsid, // initHSID
+                                       Long.MIN_VALUE, // coordHSID
+                                       spHandle - 1, // truncationHandle
+                                       spHandle, // txnId
+                                       UniqueIdGenerator.makeIdFromComponents(System.currentTimeMillis(), 0, 0),
+                                       false, // readonly
+                                       true, // single-part
+                                       spi, // invocation
+                                       Long.MAX_VALUE, // client interface handle
+                                       Long.MAX_VALUE, // connectionId
+                                       false); // isForReplay
+        task.setSpHandle(spHandle);
+        return task;
+    }
+
+    @Test
+    public void testCaughtUpReadRunsRightAway()
+    {
+        dut.deliver(createRead(TxnEgo.makeZero(0).getTxnId()));
+        assertEquals(1, queue.size());
+    }
+
+    @Test
+    public void testReadParksUntilReplicaCatchesUp()
+    {
+        final long first = TxnEgo.makeZero(0).makeNext().getTxnId();
+        final long second = TxnEgo.makeZero(0).makeNext().makeNext().getTxnId();
+        dut.deliver(createRead(second));
+        assertEquals(0, queue.size());
+
+        // Not far enough yet
+        dut.deliver(createReplicatedWrite(first));
+        assertEquals(1, queue.size());
+
+        // The write the client saw arrives, the read runs after it
+        dut.deliver(createReplicatedWrite(second));
+        assertEquals(3, queue.size());
+    }
+
+    @Test
+    public void testReadFromAnotherPartitionIsNotParked()
+    {
+        dut.deliver(createRead(TxnEgo.makeZero(1).makeNext().makeNext().getTxnId()));
+        assertEquals(1, queue.size());
+    }
+
+    @Test
+    public void testPromotionReleasesParkedReads()
+    {
+        dut.deliver(createRead(TxnEgo.makeZero(0).makeNext().makeNext().getTxnId()));
+        assertEquals(0, queue.size());
+        dut.setLeaderState(true);
+        assertEquals(1, queue.size());
+    }
+
+    @Test
+    public void testParkedReadTimesOut()
+    {
+        final Iv2InitiateTaskMessage read = createRead(TxnEgo.makeZero(0).makeNext().makeNext().getTxnId());
+        dut.deliver(read);
+
+        // Too early
+        dut.checkParkedSessionReads(System.nanoTime());
+        verify(mbox, times(0)).send(anyLong(), (VoltMessage)anyObject());
+
+        dut.checkParkedSessionReads(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(SpScheduler.SESSION_READ_MAX_PARK_MS));
+        ArgumentCaptor<InitiateResponseMessage> response = ArgumentCaptor.forClass(InitiateResponseMessage.class);
+        verify(mbox, times(1)).send(eq(ci_hsid), response.capture());
+        assertEquals(ClientResponse.GRACEFUL_FAILURE, response.getValue().getClientResponseData().getStatus());
+        assertEquals(0, queue.size());
+
+        // Gone for good
+        dut.setLeaderState(true);
+        assertEquals(0, queue.size());
+    }
+}
@@ -0,0 +1,61 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2018 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.anyVararg;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.junit.Test;
+import org.voltdb.jdbc.JDBC4Statement.VoltSQL;
+
+public class TestJDBC4StatementBatch {
+
+    @Test
+    public void testProcedureCallsArePartitioned() throws Exception {
+        final JDBC4ClientConnection connection = mock(JDBC4ClientConnection.class);
+        final Object[] params = new Object[] { 7, "seven" };
+        when(connection.getPartitionForProcedure("InsertItem", params)).thenReturn(3);
+
+        final VoltSQL call = VoltSQL.parseCall("{call InsertItem(?, ?)}").getExecutableQuery(params);
+        assertEquals(3, call.getPartition(connection));
+    }
+
+    @Test
+    public void testSqlStatementsAreNotPartitioned() throws Exception {
+        final JDBC4ClientConnection connection = mock(JDBC4ClientConnection.class);
+        when(connection.getPartitionForProcedure(anyString(), anyVararg())).thenReturn(3);
+
+        // prepared DML runs through @AdHoc, the client doesn't know its partition
+        final VoltSQL insert = VoltSQL.parseSQL("insert into items values (?, ?)").getExecutableQuery(7, "seven");
+        assertEquals(-1, insert.getPartition(connection));
+        final VoltSQL upsert = VoltSQL.parseSQL("upsert into items values (?, ?)").getExecutableQuery(7, "seven");
+        assertEquals(-1, upsert.getPartition(connection));
+        verify(connection, never()).getPartitionForProcedure(anyString(), anyVararg());
+    }
+}
@@ -30,6 +30,7 @@ import static org.junit.Assert.fail;
 
 import java.io.File;
 import java.math.BigDecimal;
+import java.sql.BatchUpdateException;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.Date;
@@ -712,6 +713,57 @@ public class TestJDBCQueries {
 
     }
 
+    @Test
+    public void testPipelinedQueryBatch() throws Exception
+    {
+        String url = "jdbc:voltdb://localhost:21212?jdbc.batchpipelining=true";
+        if (ClientConfig.ENABLE_SSL_FOR_TEST) {
+            url += "&" + JDBCTestCommons.SSL_URL_SUFFIX;
+        }
+        Connection pipelined = DriverManager.getConnection(url);
+        try {
+            String q = String.format("insert into %s(id) values(?)", data[2].tablename);
+            PreparedStatement pStmt = pipelined.prepareStatement(q);
+            for (int i = 1; i <= 100; i++) {
+                pStmt.setInt(1, 1000 + i);
+                pStmt.addBatch();
+            }
+            int[] resultCodes = pStmt.executeBatch();
+            assertEquals(100, resultCodes.length);
+            for (int code : resultCodes) {
+                assertEquals(1, code);
+            }
+            assertEquals(100, pStmt.getUpdateCount());
+
+            // A failed entry doesn't stop the others, and is reported in its own slot
+            pStmt.setInt(1, 2001);
+            pStmt.addBatch();
+            pStmt.setString(1, "not a number");
+            pStmt.addBatch();
+            pStmt.setInt(1, 2002);
+            pStmt.addBatch();
+            try {
+                pStmt.executeBatch();
+                fail();
+            }
+            catch (BatchUpdateException e) {
+                int[] counts = e.getUpdateCounts();
+                assertEquals(3, counts.length);
+                assertEquals(1, counts[0]);
+                assertEquals(Statement.EXECUTE_FAILED, counts[1]);
+                assertEquals(1, counts[2]);
+            }
+
+            ResultSet rs = conn.createStatement().executeQuery(
+                    String.format("select count(*) from %s", data[2].tablename));
+            assertTrue(rs.next());
+            assertEquals(data[2].good.length + 102, rs.getInt(1));
+        }
+        finally {
+            pipelined.close();
+        }
+    }
+
     @Test
     public void testParameterizedQueries() throws Exception
     {
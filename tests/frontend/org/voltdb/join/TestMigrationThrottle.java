@@ -0,0 +1,192 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2018 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.join;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.voltdb.VoltTable;
+import org.voltdb.VoltTable.ColumnInfo;
+
+public class TestMigrationThrottle {
+    private static final int MAX_CHUNK = 2 * 1024 * 1024;
+    private static final long SLO_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long STEP = MigrationThrottle.ADJUST_INTERVAL_NANOS;
+
+    private MigrationThrottle newThrottle(int minDelayMs) {
+        MigrationThrottle throttle = new MigrationThrottle(0, 1, 10, MAX_CHUNK, minDelayMs, 0);
+        throttle.start(3);
+        return throttle;
+    }
+
+    @Test
+    public void testBacksOffChunksThenFrequency() {
+        MigrationThrottle throttle = newThrottle(5);
+        long now = STEP;
+        throttle.observe(now, SLO_NANOS * 2);
+        assertEquals(MAX_CHUNK / 2, throttle.getChunkBytes(0));
+        assertEquals(5, throttle.getDelayMs());
+
+        // adjusts at most once per interval
+        throttle.observe(now + 1, SLO_NANOS * 2);
+        assertEquals(MAX_CHUNK / 2, throttle.getChunkBytes(0));
+
+        while (throttle.getChunkBytes(0) > MigrationThrottle.MIN_CHUNK_BYTES) {
+            now += STEP;
+            throttle.observe(now, SLO_NANOS * 2);
+        }
+        assertEquals(5, throttle.getDelayMs());
+        now += STEP;
+        throttle.observe(now, SLO_NANOS * 2);
+        assertEquals(10, throttle.getDelayMs());
+        for (int i = 0; i < 20; i++) {
+            now += STEP;
+            throttle.observe(now, SLO_NANOS * 2);
+        }
+        assertEquals(MigrationThrottle.MAX_DELAY_MS, throttle.getDelayMs());
+        assertEquals(MigrationThrottle.MIN_CHUNK_BYTES, throttle.getChunkBytes(0));
+    }
+
+    @Test
+    public void testRecoversInReverseOrder() {
+        MigrationThrottle throttle = newThrottle(0);
+        long now = 0;
+        for (int i = 0; i < 10; i++) {
+            now += STEP;
+            throttle.observe(now, SLO_NANOS * 2);
+        }
+        assertTrue(throttle.getDelayMs() > 0);
+
+        // between half the target and the target nothing changes
+        now += STEP;
+        final int delay = throttle.getDelayMs();
+        throttle.observe(now, SLO_NANOS * 3 / 4);
+        assertEquals(delay, throttle.getDelayMs());
+
+        // the wait between chunks goes back to the minimum before chunks grow
+        while (throttle.getDelayMs() > 0) {
+            assertEquals(MigrationThrottle.MIN_CHUNK_BYTES, throttle.getChunkBytes(0));
+            now += STEP;
+            throttle.observe(now, 0);
+        }
+        for (int i = 0; i < 20; i++) {
+            now += STEP;
+            throttle.observe(now, 0);
+        }
+        assertEquals(MAX_CHUNK, throttle.getChunkBytes(0));
+        assertEquals(0, throttle.getDelayMs());
+    }
+
+    @Test
+    public void testKeepsMinimumRate() {
+        // 1 MB a second is 512 KB an interval
+        MigrationThrottle throttle = new MigrationThrottle(0, 1, 10, MAX_CHUNK, 0, 1024 * 1024);
+        throttle.start(1);
+        long now = STEP;
+        throttle.observe(now, SLO_NANOS * 2);
+        assertEquals(MAX_CHUNK / 2, throttle.getChunkBytes(0));
+
+        // fast enough, keeps backing off
+        throttle.migrated(1024 * 1024, 10, 100);
+        now += STEP;
+        throttle.observe(now, SLO_NANOS * 2);
+        assertEquals(MAX_CHUNK / 4, throttle.getChunkBytes(0));
+
+        // too slow, opens up even though the waits are over the target
+        throttle.migrated(100 * 1024, 1, 99);
+        now += STEP;
+        throttle.observe(now, SLO_NANOS * 2);
+        assertEquals(MAX_CHUNK / 4 + MAX_CHUNK / 8, throttle.getChunkBytes(0));
+    }
+
+    @Test
+    public void testChunkFitsLargestRow() {
+        MigrationThrottle throttle = newThrottle(0);
+        long now = 0;
+        for (int i = 0; i < 10; i++) {
+            now += STEP;
+            throttle.observe(now, SLO_NANOS * 2);
+        }
+        assertEquals(MigrationThrottle.MIN_CHUNK_BYTES, throttle.getChunkBytes(100));
+        assertEquals(500 * 1024 + MigrationThrottle.ROW_SLACK_BYTES, throttle.getChunkBytes(500 * 1024));
+        assertEquals(MAX_CHUNK, throttle.getChunkBytes(MAX_CHUNK));
+    }
+
+    @Test
+    public void testInactiveDoesNotThrottle() {
+        MigrationThrottle disabled = new MigrationThrottle(0, 1, 0, MAX_CHUNK, 5, 0);
+        disabled.start(1);
+        assertFalse(disabled.isActive());
+        disabled.observe(STEP, SLO_NANOS * 2);
+        assertEquals(MAX_CHUNK, disabled.getChunkBytes(0));
+
+        MigrationThrottle throttle = newThrottle(5);
+        throttle.observe(STEP, SLO_NANOS * 2);
+        throttle.finish();
+        assertFalse(throttle.isActive());
+        assertEquals(MAX_CHUNK, throttle.getChunkBytes(0));
+
+        // a new transfer starts from the top
+        throttle.start(2);
+        assertEquals(MAX_CHUNK, throttle.getChunkBytes(0));
+        assertEquals(5, throttle.getDelayMs());
+    }
+
+    @Test
+    public void testStatistics() {
+        MigrationThrottle throttle = newThrottle(0);
+        throttle.migrated(1000, 10, 90);
+        throttle.migrated(1000, 10, 80);
+        throttle.observe(STEP, SLO_NANOS * 2);
+
+        VoltTable stats = stats(throttle);
+        assertEquals(1, stats.getRowCount());
+        assertEquals(1, stats.getLong("PARTITION_ID"));
+        assertEquals(1, stats.getLong("ACTIVE"));
+        assertEquals(2000, stats.getLong("BYTES_MIGRATED"));
+        assertEquals(20, stats.getLong("ROWS_MIGRATED"));
+        assertEquals(80, stats.getLong("ROWS_REMAINING"));
+        assertEquals(3, stats.getLong("TABLES_REMAINING"));
+        assertEquals(MAX_CHUNK / 2, stats.getLong("CHUNK_BYTES"));
+        assertEquals(SLO_NANOS * 2 / 1000, stats.getLong("QUEUE_WAIT"));
+
+        throttle.tableDone();
+        stats = stats(throttle);
+        assertEquals(0, stats.getLong("ROWS_REMAINING"));
+        assertEquals(2, stats.getLong("TABLES_REMAINING"));
+    }
+
+    private static VoltTable stats(MigrationThrottle throttle) {
+        VoltTable table = new VoltTable(throttle.getColumnSchema().toArray(new ColumnInfo[0]));
+        for (Object[] row : throttle.getStatsRows(false, 0L)) {
+            table.addRow(row);
+        }
+        table.advanceRow();
+        return table;
+    }
+}
@@ -0,0 +1,208 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2018 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.largequery;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.voltdb.VoltTable;
+import org.voltdb.VoltType;
+import org.voltdb.utils.VoltFile;
+
+public class TestResultCursorManager {
+    private static final String USER = "alice";
+    private static final long CONNECTION = 42;
+
+    private Path m_tempDir;
+    private ResultCursorManager m_cursors;
+
+    @Before
+    public void setUp() throws IOException {
+        m_tempDir = Files.createTempDirectory("TestResultCursorManager");
+        LargeBlockManager.startup(m_tempDir);
+        m_cursors = LargeBlockManager.getInstance().getResultCursors();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        LargeBlockManager.shutdown();
+        VoltFile.recursivelyDelete(m_tempDir.toFile());
+    }
+
+    private static VoltTable makeTable(int rows) {
+        final VoltTable table = new VoltTable(
+                new VoltTable.ColumnInfo("ID", VoltType.BIGINT),
+                new VoltTable.ColumnInfo("PAYLOAD", VoltType.STRING));
+        for (int i = 0; i < rows; i++) {
+            table.addRow(i, String.format("%0100d", i));
+        }
+        return table;
+    }
+
+    private int swapFileCount() throws IOException {
+        int count = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(m_tempDir)) {
+            for (@SuppressWarnings("unused") Path file : files) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Test
+    public void testFetchAll() throws IOException {
+        // more than a few blocks
+        final int rowCount = 40000;
+        final long cursorId = m_cursors.open(7, USER, CONNECTION, makeTable(rowCount), 0);
+        assertEquals(7, ResultCursorManager.getHostId(cursorId));
+        assertEquals(rowCount, m_cursors.getRemainingRows(cursorId));
+        assertTrue(swapFileCount() > 1);
+
+        int next = 0;
+        VoltTable rows;
+        while ((rows = m_cursors.fetch(cursorId, USER, CONNECTION, 999, 0)) != null) {
+            assertTrue(rows.getRowCount() <= 999);
+            while (rows.advanceRow()) {
+                assertEquals(next, rows.getLong(0));
+                assertEquals(String.format("%0100d", next), rows.getString(1));
+                next++;
+            }
+            assertEquals(rowCount - next, m_cursors.getRemainingRows(cursorId));
+        }
+        assertEquals(rowCount, next);
+
+        // the cursor closed itself after the last row
+        assertEquals(0, m_cursors.getOpenCursorCount());
+        assertFalse(m_cursors.close(cursorId, USER, CONNECTION));
+        assertEquals(0, swapFileCount());
+    }
+
+    @Test
+    public void testClose() throws IOException {
+        final long first = m_cursors.open(1, USER, CONNECTION, makeTable(20000), 0);
+        final long second = m_cursors.open(1, USER, CONNECTION, makeTable(10), 0);
+        assertTrue(first != second);
+        assertEquals(2, m_cursors.getOpenCursorCount());
+
+        assertEquals(100, m_cursors.fetch(first, USER, CONNECTION, 100, 0).getRowCount());
+        assertTrue(m_cursors.close(first, USER, CONNECTION));
+        assertNull(m_cursors.fetch(first, USER, CONNECTION, 100, 0));
+        assertEquals(0, m_cursors.getRemainingRows(first));
+        assertEquals(1, m_cursors.getOpenCursorCount());
+
+        assertEquals(10, m_cursors.fetch(second, USER, CONNECTION, 100, 0).getRowCount());
+        assertEquals(0, m_cursors.getOpenCursorCount());
+        assertEquals(0, swapFileCount());
+    }
+
+    @Test
+    public void testOwner() throws IOException {
+        final long cursorId = m_cursors.open(3, USER, CONNECTION, makeTable(20000), 0);
+
+        // other users and connections can't see the cursor
+        assertNull(m_cursors.fetch(cursorId, "mallory", CONNECTION, 100, 0));
+        assertNull(m_cursors.fetch(cursorId, USER, CONNECTION + 1, 100, 0));
+        assertNull(m_cursors.fetch(cursorId, null, CONNECTION, 100, 0));
+        assertFalse(m_cursors.close(cursorId, "mallory", CONNECTION));
+        assertFalse(m_cursors.close(cursorId, USER, CONNECTION + 1));
+        assertEquals(20000, m_cursors.getRemainingRows(cursorId));
+
+        assertEquals(100, m_cursors.fetch(cursorId, USER, CONNECTION, 100, 0).getRowCount());
+        assertTrue(m_cursors.close(cursorId, USER, CONNECTION));
+        assertEquals(0, swapFileCount());
+    }
+
+    @Test
+    public void testIdsAreNotSequential() throws IOException {
+        final long first = m_cursors.open(5, USER, CONNECTION, makeTable(20), 0);
+        final long second = m_cursors.open(5, USER, CONNECTION, makeTable(20), 0);
+        assertEquals(5, ResultCursorManager.getHostId(first));
+        assertEquals(5, ResultCursorManager.getHostId(second));
+        assertTrue(Math.abs(second - first) > 1);
+        assertTrue(m_cursors.close(first, USER, CONNECTION));
+        assertTrue(m_cursors.close(second, USER, CONNECTION));
+    }
+
+    @Test
+    public void testTimeout() throws IOException {
+        final long idle = m_cursors.open(1, USER, CONNECTION, makeTable(20000), 0);
+        final long busy = m_cursors.open(1, USER, CONNECTION, makeTable(20000), 0);
+        m_cursors.fetch(busy, USER, CONNECTION, 10, ResultCursorManager.TIMEOUT_MS);
+
+        // opening or fetching closes the cursors that timed out
+        assertEquals(10, m_cursors.fetch(busy, USER, CONNECTION, 10, ResultCursorManager.TIMEOUT_MS + 1).getRowCount());
+        assertNull(m_cursors.fetch(idle, USER, CONNECTION, 10, ResultCursorManager.TIMEOUT_MS + 1));
+        assertEquals(1, m_cursors.getOpenCursorCount());
+        assertTrue(m_cursors.close(busy, USER, CONNECTION));
+        assertEquals(0, swapFileCount());
+    }
+
+    @Test
+    public void testCloseConnection() throws IOException {
+        final long first = m_cursors.open(1, USER, CONNECTION, makeTable(20000), 0);
+        final long second = m_cursors.open(1, USER, CONNECTION, makeTable(20000), 0);
+        final long other = m_cursors.open(1, USER, CONNECTION + 1, makeTable(20000), 0);
+        assertEquals(3, m_cursors.getOpenCursorCount());
+
+        m_cursors.closeConnection(CONNECTION);
+        assertNull(m_cursors.fetch(first, USER, CONNECTION, 10, 0));
+        assertNull(m_cursors.fetch(second, USER, CONNECTION, 10, 0));
+        assertEquals(1, m_cursors.getOpenCursorCount());
+        assertEquals(10, m_cursors.fetch(other, USER, CONNECTION + 1, 10, 0).getRowCount());
+        assertTrue(m_cursors.close(other, USER, CONNECTION + 1));
+        assertEquals(0, swapFileCount());
+    }
+
+    @Test
+    public void testConnectionLimit() throws IOException {
+        for (int i = 0; i < ResultCursorManager.MAX_CURSORS_PER_CONNECTION; i++) {
+            m_cursors.open(1, USER, CONNECTION, makeTable(20), 0);
+        }
+        try {
+            m_cursors.open(1, USER, CONNECTION, makeTable(20), 0);
+            fail();
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage().contains("on this connection"));
+        }
+        // other connections are not held back
+        final long other = m_cursors.open(1, USER, CONNECTION + 1, makeTable(20), 0);
+        assertEquals(ResultCursorManager.MAX_CURSORS_PER_CONNECTION + 1, m_cursors.getOpenCursorCount());
+
+        m_cursors.closeConnection(CONNECTION);
+        assertEquals(1, m_cursors.getOpenCursorCount());
+        assertTrue(m_cursors.close(other, USER, CONNECTION + 1));
+        assertEquals(0, swapFileCount());
+    }
+}
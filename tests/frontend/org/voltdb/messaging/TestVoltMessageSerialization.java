@@ -36,10 +36,12 @@ import org.voltcore.utils.Pair;
 import org.voltdb.ClientResponseImpl;
 import org.voltdb.DependencyPair;
 import org.voltdb.ParameterSet;
+import org.voltdb.PrivateVoltTableFactory;
 import org.voltdb.StoredProcedureInvocation;
 import org.voltdb.VoltTable;
 import org.voltdb.VoltType;
 import org.voltdb.client.ClientResponse;
+import org.voltdb.client.ProcedureInvocationExtensions;
 import org.voltdb.exceptions.EEException;
 import org.voltdb.iv2.TxnEgo;
 
@@ -160,6 +162,144 @@ public class TestVoltMessageSerialization extends TestCase {
         assertTrue(iresponse2.isReadOnly());
     }
 
+    public void testInitiateResponseWithPackedResults() throws IOException {
+        StoredProcedureInvocation spi = new StoredProcedureInvocation();
+        spi.setClientHandle(25);
+        spi.setProcName("elmerfudd");
+        spi.setParams(57, "wrascallywabbit");
+
+        Iv2InitiateTaskMessage itask = new Iv2InitiateTaskMessage(23, 8, 10L, 100045, 99, true, false, spi, 2101, 3101, true);
+
+        VoltTable table = new VoltTable(
+                new VoltTable.ColumnInfo("foobar", VoltType.STRING),
+                new VoltTable.ColumnInfo("count", VoltType.BIGINT)
+        );
+        table.addRow("howmanylicksdoesittaketogettothecenterofatootsiepop", 3);
+        table.addRow("theworldmayneverknow", 1);
+
+        // Lay the tables out in a direct buffer the way the EE returns them
+        ByteBuffer eeBuffer = ByteBuffer.allocateDirect(table.getSerializedSize() * 2);
+        table.flattenToBuffer(eeBuffer);
+        table.flattenToBuffer(eeBuffer);
+        eeBuffer.flip();
+        VoltTable first = PrivateVoltTableFactory.createVoltTableFromSharedBuffer(eeBuffer);
+        VoltTable second = PrivateVoltTableFactory.createVoltTableFromSharedBuffer(eeBuffer);
+
+        ClientResponseImpl packedResponse = new ClientResponseImpl(ClientResponse.SUCCESS,
+                new VoltTable[] { first, second }, null);
+        assertTrue(packedResponse.packResultTables());
+        assertNotNull(packedResponse.getPackedResults());
+
+        // The EE reuses its buffer for the next batch
+        eeBuffer.clear();
+        while (eeBuffer.hasRemaining()) {
+            eeBuffer.put((byte) 0x7f);
+        }
+        assertEquals(table, first);
+        assertEquals(table, second);
+
+        // Packed and unpacked responses are serialized identically
+        ClientResponseImpl plainResponse = new ClientResponseImpl(ClientResponse.SUCCESS,
+                new VoltTable[] { table, table }, null);
+        assertFalse(plainResponse.packResultTables());
+        assertNull(plainResponse.getPackedResults());
+        ByteBuffer packedBuf = ByteBuffer.allocate(packedResponse.getSerializedSize());
+        packedResponse.flattenToBuffer(packedBuf).flip();
+        ByteBuffer plainBuf = ByteBuffer.allocate(plainResponse.getSerializedSize());
+        plainResponse.flattenToBuffer(plainBuf).flip();
+        assertEquals(plainBuf, packedBuf);
+
+        InitiateResponseMessage iresponse = new InitiateResponseMessage(itask);
+        iresponse.setResults(packedResponse);
+        iresponse.setClientHandle(99);
+
+        InitiateResponseMessage iresponse2 = (InitiateResponseMessage) checkVoltMessage(iresponse);
+        assertEquals(table, iresponse2.getClientResponseData().getResults()[1]);
+
+        // Replacing a table invalidates the packed copy
+        packedResponse.getResults()[0] = table;
+        assertNull(packedResponse.getPackedResults());
+
+        // Also when the response is flattened without being sized first
+        eeBuffer.clear();
+        table.flattenToBuffer(eeBuffer);
+        table.flattenToBuffer(eeBuffer);
+        eeBuffer.flip();
+        ClientResponseImpl swappedResponse = new ClientResponseImpl(ClientResponse.SUCCESS,
+                new VoltTable[] { PrivateVoltTableFactory.createVoltTableFromSharedBuffer(eeBuffer),
+                                  PrivateVoltTableFactory.createVoltTableFromSharedBuffer(eeBuffer) }, null);
+        assertTrue(swappedResponse.packResultTables());
+        VoltTable other = new VoltTable(new VoltTable.ColumnInfo("other", VoltType.INTEGER));
+        other.addRow(5);
+        swappedResponse.getResults()[0] = other;
+        ByteBuffer swappedBuf = ByteBuffer.allocate(plainBuf.capacity() * 2);
+        swappedResponse.flattenToBuffer(swappedBuf).flip();
+        ClientResponseImpl expectedResponse = new ClientResponseImpl(ClientResponse.SUCCESS,
+                new VoltTable[] { other, table }, null);
+        ByteBuffer expectedBuf = ByteBuffer.allocate(expectedResponse.getSerializedSize());
+        expectedResponse.flattenToBuffer(expectedBuf).flip();
+        assertEquals(expectedBuf, swappedBuf);
+    }
+
+    public void testInitiateWithPriority() throws IOException {
+        StoredProcedureInvocation spi = new StoredProcedureInvocation();
+        spi.setClientHandle(25);
+        spi.setProcName("elmerfudd");
+        spi.setParams(57, "wrascallywabbit");
+        spi.setPriority(ProcedureInvocationExtensions.LOWEST_PRIORITY);
+
+        Iv2InitiateTaskMessage itask = new Iv2InitiateTaskMessage(23, 8, 10L, 100045, 99, true, true, spi, 2101, 3101, false);
+        Iv2InitiateTaskMessage itask2 = (Iv2InitiateTaskMessage) checkVoltMessage(itask);
+        assertEquals(ProcedureInvocationExtensions.LOWEST_PRIORITY, itask2.getStoredProcedureInvocation().getPriority());
+        assertEquals(ProcedureInvocationExtensions.LOWEST_PRIORITY,
+                itask2.getStoredProcedureInvocation().getShallowCopy().getPriority());
+
+        // The default priority is not sent
+        StoredProcedureInvocation plain = spi.getShallowCopy();
+        plain.setPriority(ProcedureInvocationExtensions.DEFAULT_PRIORITY);
+        assertEquals(spi.getSerializedSize() - 3, plain.getSerializedSize());
+    }
+
+    public void testSessionConsistentInitiateAndResponse() throws IOException {
+        StoredProcedureInvocation spi = new StoredProcedureInvocation();
+        spi.setClientHandle(25);
+        spi.setProcName("elmerfudd");
+        spi.setParams(57, "wrascallywabbit");
+        spi.setReadAfterSpHandle(31337);
+
+        Iv2InitiateTaskMessage itask = new Iv2InitiateTaskMessage(23, 8, 10L, 100045, 99, true, true, spi, 2101, 3101, false);
+        Iv2InitiateTaskMessage itask2 = (Iv2InitiateTaskMessage) checkVoltMessage(itask);
+        assertTrue(itask2.getStoredProcedureInvocation().hasReadAfterSpHandle());
+        assertEquals(31337, itask2.getStoredProcedureInvocation().getReadAfterSpHandle());
+        assertEquals(31337, itask2.getStoredProcedureInvocation().getShallowCopy().getReadAfterSpHandle());
+
+        VoltTable table = new VoltTable(
+                new VoltTable.ColumnInfo("foobar", VoltType.STRING)
+        );
+        table.addRow("howmanylicksdoesittaketogettothecenterofatootsiepop");
+
+        ClientResponseImpl response = new ClientResponseImpl(ClientResponse.SUCCESS,
+                new VoltTable[] { table }, "knockknockbananna");
+        response.setSpHandle(31338);
+        InitiateResponseMessage iresponse = new InitiateResponseMessage(itask);
+        iresponse.setResults(response);
+        iresponse.setClientHandle(99);
+
+        InitiateResponseMessage iresponse2 = (InitiateResponseMessage) checkVoltMessage(iresponse);
+        ClientResponseImpl response2 = iresponse2.getClientResponseData();
+        assertEquals(31338, response2.getSpHandle());
+        assertEquals("knockknockbananna", response2.getStatusString());
+        assertEquals(table, response2.getResults()[0]);
+
+        // Responses to ordinary invocations don't carry it
+        ClientResponseImpl plain = new ClientResponseImpl(ClientResponse.SUCCESS, new VoltTable[] { table }, null);
+        ByteBuffer buf = ByteBuffer.allocate(plain.getSerializedSize());
+        plain.flattenToBuffer(buf).flip();
+        ClientResponseImpl plain2 = new ClientResponseImpl();
+        plain2.initFromBuffer(buf);
+        assertEquals(ClientResponseImpl.NO_SPHANDLE, plain2.getSpHandle());
+    }
+
     public void testMispartitionedResponse() throws IOException {
         StoredProcedureInvocation spi = new StoredProcedureInvocation();
         spi.setClientHandle(25);
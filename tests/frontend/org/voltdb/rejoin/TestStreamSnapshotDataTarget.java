@@ -25,6 +25,7 @@ package org.voltdb.rejoin;
 
 import static junit.framework.Assert.assertEquals;
 import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertTrue;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
@@ -41,6 +42,7 @@ import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
 import org.voltcore.messaging.MockMailbox;
+import org.voltcore.messaging.VoltMessage;
 import org.voltcore.utils.CoreUtils;
 import org.voltcore.utils.DBBPool;
 import org.voltcore.utils.Pair;
@@ -52,6 +54,7 @@ import com.google.common.primitives.Longs;
 import com.google_voltpatches.common.collect.Maps;
 import com.google_voltpatches.common.primitives.Ints;
 import com.google_voltpatches.common.util.concurrent.Callables;
+import com.google_voltpatches.common.util.concurrent.SettableFuture;
 
 public class TestStreamSnapshotDataTarget {
     private MockMailbox m_mb;
@@ -102,7 +105,7 @@ public class TestStreamSnapshotDataTarget {
         }
 
         return new StreamSnapshotDataTarget(destHSId, lowestSite, new HashSet<Long>(Arrays.asList(destHSId)),
-                hashinatorBytes, m_schemas, m_sender, m_ack);
+                hashinatorBytes, m_schemas, m_sender, m_ack, false);
     }
 
     private Callable<DBBPool.BBContainer> makeTuples()
@@ -270,4 +273,87 @@ public class TestStreamSnapshotDataTarget {
 
         closeStream(dut);
     }
+
+    @Test
+    public void testParallelSendersKeepOrderWithinWindow() throws Exception
+    {
+        // room for two data blocks that haven't been acked
+        final int blockBytes = StreamSnapshotDataTarget.contentOffset;
+        StreamSnapshotDataTarget.SnapshotSender sender = new StreamSnapshotDataTarget.SnapshotSender(
+                m_mb, new StreamSnapshotBase.DefaultMessageFactory(), 2 * blockBytes);
+        for (int i = 0; i < 4; i++) {
+            new Thread(sender, "test sender " + i).start();
+        }
+        final StreamSnapshotDataTarget dut = new StreamSnapshotDataTarget(1000, false,
+                new HashSet<Long>(Arrays.asList(1000L)), null, m_schemas, sender, m_ack, false);
+
+        // schema and five data blocks
+        for (int i = 0; i < 5; i++) {
+            dut.write(makeTuples(), 0);
+        }
+
+        // the schema doesn't count against the window, the first two data blocks fit
+        verifyData((RejoinDataMessage) waitForMessage(), dut.m_targetId, StreamSnapshotMessageType.SCHEMA, 0, 0);
+        verifyData((RejoinDataMessage) waitForMessage(), dut.m_targetId, StreamSnapshotMessageType.DATA, 0, 1);
+        verifyData((RejoinDataMessage) waitForMessage(), dut.m_targetId, StreamSnapshotMessageType.DATA, 0, 2);
+        Thread.sleep(200);
+        assertTrue(m_mb.noSentMessages());
+        assertEquals(2 * blockBytes, sender.m_streams.get(dut.m_targetId).getInFlightBytes());
+
+        // each ack lets the next block out, in order
+        ack(false, dut.m_targetId, 0);
+        ack(false, dut.m_targetId, 1);
+        verifyData((RejoinDataMessage) waitForMessage(), dut.m_targetId, StreamSnapshotMessageType.DATA, 0, 3);
+        ack(false, dut.m_targetId, 2);
+        verifyData((RejoinDataMessage) waitForMessage(), dut.m_targetId, StreamSnapshotMessageType.DATA, 0, 4);
+        ack(false, dut.m_targetId, 3);
+        verifyData((RejoinDataMessage) waitForMessage(), dut.m_targetId, StreamSnapshotMessageType.DATA, 0, 5);
+        ack(false, dut.m_targetId, 4);
+        ack(false, dut.m_targetId, 5);
+        while (dut.m_outstandingWorkCount.get() > 0) {
+            Thread.yield();
+        }
+        assertEquals(0, sender.m_streams.get(dut.m_targetId).getInFlightBytes());
+        assertTrue(sender.m_streams.get(dut.m_targetId).getCreditStallNanos() > 0);
+        assertEquals(5 * blockBytes, sender.m_streams.get(dut.m_targetId).m_rawBytes.get());
+
+        closeStream(dut);
+    }
+
+    @Test
+    public void testUnsentBlocksDontCount() throws Exception
+    {
+        final StreamSnapshotDataTarget.TargetStream stream = new StreamSnapshotDataTarget.TargetStream(1, 1024);
+        final StreamSnapshotBase.MessageFactory factory = new StreamSnapshotBase.DefaultMessageFactory();
+
+        // a block that was discarded before it was compressed is skipped
+        final StreamSnapshotDataTarget.SendWork discarded = new StreamSnapshotDataTarget.SendWork(
+                StreamSnapshotMessageType.DATA, 1, 1000, null,
+                DBBPool.wrapBB(ByteBuffer.allocate(100)), SettableFuture.<Boolean>create());
+        stream.assign(discarded);
+        discarded.discard();
+        discarded.compress();
+        assertEquals(0, stream.ready(discarded, m_mb, factory));
+        assertTrue(m_mb.noSentMessages());
+        assertEquals(0, stream.getInFlightBytes());
+        assertEquals(0, stream.m_rawBytes.get());
+
+        final StreamSnapshotDataTarget.SendWork sent = new StreamSnapshotDataTarget.SendWork(
+                StreamSnapshotMessageType.DATA, 1, 1000, null,
+                DBBPool.wrapBB(ByteBuffer.allocate(100)), SettableFuture.<Boolean>create());
+        stream.assign(sent);
+        sent.compress();
+        assertTrue(stream.ready(sent, m_mb, factory) > 0);
+        assertNotNull(waitForMessage());
+        assertEquals(100, stream.getInFlightBytes());
+        assertEquals(100, stream.m_rawBytes.get());
+    }
+
+    private VoltMessage waitForMessage()
+    {
+        while (m_mb.noSentMessages()) {
+            Thread.yield();
+        }
+        return m_mb.pollMessage();
+    }
 }
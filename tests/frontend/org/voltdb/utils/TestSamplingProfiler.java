@@ -0,0 +1,190 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2018 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.Selector;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class TestSamplingProfiler {
+
+    private static volatile boolean s_spin;
+
+    private static long spin() {
+        long x = 0;
+        while (s_spin) {
+            x += System.nanoTime() % 7;
+        }
+        return x;
+    }
+
+    @Test
+    public void testCollapse() {
+        StackTraceElement[] frames = new StackTraceElement[] {
+                new StackTraceElement("a.Leaf", "work", null, 0),
+                new StackTraceElement("a.Middle", "call", null, 0),
+                new StackTraceElement("a.Root", "run", null, 0)
+        };
+        String root = SamplingProfiler.threadRoot("SP 3 Site - 0:3");
+        assertEquals("SP_#_Site_-_#:#", root);
+        assertEquals(root + ";a.Root.run;a.Middle.call;a.Leaf.work", SamplingProfiler.collapse(root, frames));
+    }
+
+    @Test
+    public void testIdleFrames() {
+        // native methods have line number -2
+        StackTraceElement[] selecting = new StackTraceElement[] {
+                new StackTraceElement("sun.nio.ch.EPollArrayWrapper", "epollWait", null, -2),
+                new StackTraceElement("sun.nio.ch.SelectorImpl", "select", null, 0)
+        };
+        assertTrue(SamplingProfiler.isIdle(selecting));
+        StackTraceElement[] working = new StackTraceElement[] {
+                new StackTraceElement("org.voltdb.jni.ExecutionEngineJNI", "nativeExecutePlanFragments", null, -2),
+                new StackTraceElement("org.voltdb.iv2.Site", "run", null, 0)
+        };
+        assertFalse(SamplingProfiler.isIdle(working));
+        assertFalse(SamplingProfiler.isIdle(new StackTraceElement[0]));
+    }
+
+    @Test
+    public void testSkipsThreadsWaitingInSelect() throws Exception {
+        final Selector selector = Selector.open();
+        Thread selecting = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    selector.select();
+                } catch (IOException e) {
+                }
+            }
+        };
+        selecting.setName("Volt Network - 0");
+        selecting.setDaemon(true);
+        selecting.start();
+        try {
+            // wait until the thread is in the selector
+            final long deadline = System.currentTimeMillis() + 10000;
+            while (!SamplingProfiler.isIdle(selecting.getStackTrace()) && System.currentTimeMillis() < deadline) {
+                Thread.sleep(1);
+            }
+            assertTrue(SamplingProfiler.isIdle(selecting.getStackTrace()));
+            assertEquals(Thread.State.RUNNABLE, selecting.getState());
+
+            SamplingProfiler profiler = new SamplingProfiler(10, SamplingProfiler.DEFAULT_THREADS);
+            long now = System.currentTimeMillis();
+            for (int i = 0; i < 5; i++) {
+                profiler.sample(now + i);
+            }
+            assertTrue(profiler.getCollapsedStacks().isEmpty());
+        } finally {
+            selector.wakeup();
+            selecting.join();
+            selector.close();
+        }
+    }
+
+    @Test
+    public void testRingOfWindows() {
+        SamplingProfiler profiler = new SamplingProfiler(10, ".*");
+        long now = System.currentTimeMillis();
+        List<String> stacks = Arrays.asList("t;a", "t;a", "t;b");
+        profiler.record(now, stacks);
+        profiler.record(now + 1, stacks);
+        Map<String, Long> counts = profiler.getCollapsedStacks();
+        assertEquals(4L, (long) counts.get("t;a"));
+        assertEquals(2L, (long) counts.get("t;b"));
+
+        // once every window has been reused the oldest samples are gone
+        for (int i = 1; i <= SamplingProfiler.WINDOWS; i++) {
+            profiler.record(now + i * SamplingProfiler.WINDOW_MS, Arrays.asList("t;c"));
+        }
+        counts = profiler.getCollapsedStacks();
+        assertFalse(counts.containsKey("t;a"));
+        assertEquals((long) SamplingProfiler.WINDOWS, (long) counts.get("t;c"));
+    }
+
+    @Test
+    public void testSamplesMatchingThreads() throws Exception {
+        s_spin = true;
+        Thread busy = new Thread() {
+            @Override
+            public void run() {
+                spin();
+            }
+        };
+        busy.setName("SP 1 Site - 0:1");
+        busy.setDaemon(true);
+        busy.start();
+        try {
+            SamplingProfiler profiler = new SamplingProfiler(10, SamplingProfiler.DEFAULT_THREADS);
+            long now = System.currentTimeMillis();
+            for (int i = 0; i < 20; i++) {
+                profiler.sample(now + i);
+                Thread.sleep(1);
+            }
+            long busySamples = 0;
+            for (Map.Entry<String, Long> e : profiler.getCollapsedStacks().entrySet()) {
+                // nothing but the site thread matches in this JVM
+                assertTrue(e.getKey(), e.getKey().startsWith("SP_#_Site_-_#:#;"));
+                if (e.getKey().contains("TestSamplingProfiler.spin")) {
+                    busySamples += e.getValue();
+                }
+            }
+            assertTrue(busySamples > 0);
+        } finally {
+            s_spin = false;
+            busy.join();
+        }
+    }
+
+    @Test
+    public void testStartDumpStop() throws Exception {
+        File dir = Files.createTempDirectory("profile").toFile();
+        SamplingProfiler.start(5);
+        try {
+            assertTrue(SamplingProfiler.status().startsWith("profiler sampling every 5 ms"));
+            String path = SamplingProfiler.dump(dir.getAbsolutePath());
+            assertNotNull(path);
+            assertTrue(new File(path).exists());
+        } finally {
+            SamplingProfiler.stop();
+        }
+        assertEquals("profiler off", SamplingProfiler.status());
+        for (File f : dir.listFiles()) {
+            f.delete();
+        }
+        dir.delete();
+    }
+}
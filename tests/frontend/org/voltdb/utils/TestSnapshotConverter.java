@@ -30,6 +30,10 @@ import java.io.LineNumberReader;
 import java.util.Calendar;
 import java.util.Random;
 
+import org.apache.avro.file.DataFileReader;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericRecord;
+
 import org.voltdb.BackendTarget;
 import org.voltdb.VoltTable;
 import org.voltdb.client.Client;
@@ -105,6 +109,29 @@ public class TestSnapshotConverter extends SaveRestoreBase
         // this test will fail frequently with different lines before ENG-8609
         assertEquals(expectedLines,countLines(spFile));
         spFile.deleteOnExit();
+
+        // convert the SP snapshot to avro, rows of all partitions end up in one file
+        String[] argsAvro = {"--table", "T_SP", "--type", "AVRO", "--dir", TMPDIR, "--outdir",TMPDIR, TESTNONCE};
+        try  {
+            SnapshotConverter.main(argsAvro);
+        } catch (Exception ex) {
+            fail();
+        }
+        File avroFile = new File(TMPDIR+"/T_SP.avro");
+        DataFileReader<GenericRecord> reader =
+                new DataFileReader<GenericRecord>(avroFile, new GenericDatumReader<GenericRecord>());
+        int avroRows = 0;
+        try {
+            while (reader.hasNext()) {
+                GenericRecord record = reader.next();
+                assertEquals("blab", record.get("a3").toString());
+                avroRows++;
+            }
+        } finally {
+            reader.close();
+        }
+        assertEquals(expectedLines, avroRows);
+        avroFile.deleteOnExit();
     }
 
     //
@@ -0,0 +1,105 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2018 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class TestSpaceSavingSketch {
+
+    @Test
+    public void testExactUnderCapacity() {
+        SpaceSavingSketch sketch = new SpaceSavingSketch(8);
+        for (int i = 0; i < 5; i++) {
+            for (int j = 0; j <= i; j++) {
+                sketch.offer("k" + i);
+            }
+        }
+        assertEquals(15, sketch.getTotal());
+        List<SpaceSavingSketch.Counter> top = sketch.top(3);
+        assertEquals(3, top.size());
+        assertEquals("k4", top.get(0).m_key);
+        assertEquals(5, top.get(0).m_count);
+        assertEquals(0, top.get(0).m_error);
+        assertEquals("k3", top.get(1).m_key);
+        assertEquals("k2", top.get(2).m_key);
+    }
+
+    @Test
+    public void testSkewedStream() {
+        // 3 hot keys among many cold ones
+        SpaceSavingSketch sketch = new SpaceSavingSketch(32);
+        Map<String, Long> exact = new HashMap<>();
+        Random random = new Random(0);
+        final int n = 100000;
+        for (int i = 0; i < n; i++) {
+            final int r = random.nextInt(100);
+            final String key = r < 20 ? "hot0" : r < 30 ? "hot1" : r < 35 ? "hot2" : "cold" + random.nextInt(10000);
+            sketch.offer(key);
+            final Long count = exact.get(key);
+            exact.put(key, count == null ? 1 : count + 1);
+        }
+        List<SpaceSavingSketch.Counter> top = sketch.top(3);
+        assertEquals("hot0", top.get(0).m_key);
+        assertEquals("hot1", top.get(1).m_key);
+        assertEquals("hot2", top.get(2).m_key);
+        for (SpaceSavingSketch.Counter c : top) {
+            // never under, over by at most the error, and the error is bounded
+            assertTrue(c.m_count >= exact.get(c.m_key));
+            assertTrue(c.m_count - c.m_error <= exact.get(c.m_key));
+            assertTrue(c.m_error <= n / 32);
+        }
+    }
+
+    @Test
+    public void testMerge() {
+        SpaceSavingSketch first = new SpaceSavingSketch(2);
+        SpaceSavingSketch second = new SpaceSavingSketch(2);
+        first.offer("a", 10);
+        first.offer("b", 5);
+        second.offer("a", 3);
+        second.offer("c", 7);
+
+        List<SpaceSavingSketch.Counter> top = SpaceSavingSketch.top(Arrays.asList(first, second), 3);
+        assertEquals(3, top.size());
+        assertEquals("a", top.get(0).m_key);
+        assertEquals(13, top.get(0).m_count);
+        assertEquals(0, top.get(0).m_error);
+        // c may have been up to 5 in the first sketch, b up to 3 in the second
+        assertEquals("c", top.get(1).m_key);
+        assertEquals(12, top.get(1).m_count);
+        assertEquals(5, top.get(1).m_error);
+        assertEquals("b", top.get(2).m_key);
+        assertEquals(8, top.get(2).m_count);
+        assertEquals(3, top.get(2).m_error);
+    }
+}
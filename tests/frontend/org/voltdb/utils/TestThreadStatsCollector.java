@@ -0,0 +1,159 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2018 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.voltdb.utils.ThreadStatsCollector.Counters;
+import org.voltdb.utils.ThreadStatsCollector.Kind;
+import org.voltdb.utils.ThreadStatsCollector.Sample;
+
+public class TestThreadStatsCollector {
+
+    private static volatile boolean s_spin;
+
+    @Test
+    public void testParseStat() {
+        Counters counters = new Counters();
+        assertTrue(ThreadStatsCollector.parseStat(
+                "4242 (SP 1 Site (x)) S 1 4200 4200 0 -1 4194368 20 0 0 0 150 27 0 0 20 0 90 0 123 0 0",
+                counters));
+        assertEquals("SP 1 Site (x)", counters.m_comm);
+        assertEquals(150, counters.m_userTicks);
+        assertEquals(27, counters.m_systemTicks);
+
+        assertFalse(ThreadStatsCollector.parseStat("4242 (java S 1", new Counters()));
+        assertFalse(ThreadStatsCollector.parseStat("4242 (java) S 1 2 3", new Counters()));
+    }
+
+    @Test
+    public void testParseStatusAndIo() {
+        Counters counters = new Counters();
+        ThreadStatsCollector.parseStatus(
+                "Name:\tjava\nState:\tS (sleeping)\nVmRSS:\t  123456 kB\n" +
+                "voluntary_ctxt_switches:\t1001\nnonvoluntary_ctxt_switches:\t17\n", counters);
+        assertEquals(1001, counters.m_voluntarySwitches);
+        assertEquals(17, counters.m_involuntarySwitches);
+        assertEquals(123456, ThreadStatsCollector.field("Name:\tjava\nVmRSS:\t  123456 kB\n", "VmRSS"));
+        assertEquals(0, ThreadStatsCollector.field("Name:\tjava\n", "VmRSS"));
+
+        ThreadStatsCollector.parseIo(
+                "rchar: 3980\nwchar: 12\nsyscr: 9\nsyscw: 1\nread_bytes: 4096\nwrite_bytes: 8192\n" +
+                "cancelled_write_bytes: 0\n", counters);
+        assertEquals(3980, counters.m_readBytes);
+        assertEquals(12, counters.m_writeBytes);
+        assertEquals(4096, counters.m_diskReadBytes);
+        assertEquals(8192, counters.m_diskWriteBytes);
+    }
+
+    @Test
+    public void testMatchKernelNames() {
+        Map<Integer, String> comms = new HashMap<>();
+        comms.put(1, "java");
+        comms.put(2, "Periodic Work");
+        comms.put(3, "SP 3 Site - 0:3");
+        comms.put(4, "Volt Network - ");
+        comms.put(5, "ExportDataSourc");
+        List<String> javaNames = Arrays.asList("main", "Periodic Work", "SP 3 Site - 0:3", "SP 3 Site - 0:31",
+                "Volt Network - 12", "ExportDataSource for table A", "ExportDataSource for table B");
+        Map<Integer, String> names = ThreadStatsCollector.matchKernelNames(comms, javaNames);
+        assertEquals(3, names.size());
+        assertEquals("Periodic Work", names.get(2));
+        assertEquals("SP 3 Site - 0:3", names.get(3));
+        assertEquals("Volt Network - 12", names.get(4));
+    }
+
+    @Test
+    public void testKind() {
+        assertEquals(Kind.SITE, Kind.of("SP 3 Site - 0:3"));
+        assertEquals(Kind.SITE, Kind.of("MP Site - 0:16"));
+        assertEquals(Kind.SITE, Kind.of("RO MP Site - 0:16 - 2"));
+        assertEquals(Kind.NETWORK, Kind.of("Volt Network - 1"));
+        assertEquals(Kind.NETWORK, Kind.of("Pico Network - ZooKeeperServer"));
+        assertEquals(Kind.EXPORT, Kind.of("ExportDataSource for table T partition 1"));
+        assertEquals(Kind.SNAPSHOT, Kind.of("Snapshot write thread for /tmp/x.vpt"));
+        assertEquals(Kind.SNAPSHOT, Kind.of("SnapshotDaemon"));
+        assertEquals(Kind.PLANNER, Kind.of("NTPServiceThread-0"));
+        assertEquals(Kind.OTHER, Kind.of("Periodic Work"));
+    }
+
+    @Test
+    public void testPercentCpu() {
+        // 50 ticks of 10ms in one second is half a CPU
+        assertEquals(50.0, ThreadStatsCollector.percentCpu(100, 150, 1000000000L), 0.001);
+        assertEquals(0.0, ThreadStatsCollector.percentCpu(-1, 150, 1000000000L), 0.001);
+        assertEquals(0.0, ThreadStatsCollector.percentCpu(100, 150, 0), 0.001);
+    }
+
+    @Test
+    public void testSampleThisProcess() throws Exception {
+        assumeTrue(ThreadStatsCollector.isSupported());
+        assertTrue(ThreadStatsCollector.getRSS() > 0);
+
+        s_spin = true;
+        Thread spinner = new Thread("Volt Test Network - 7") {
+            @Override
+            public void run() {
+                while (s_spin) {
+                }
+            }
+        };
+        spinner.start();
+        try {
+            // the kernel knows the thread as "Volt Test Netwo"
+            ThreadStatsCollector collector = new ThreadStatsCollector(ThreadStatsCollector.PROC_SELF);
+            collector.sample();
+            Thread.sleep(500);
+            collector.sample();
+
+            Sample process = collector.getSamples().get(0);
+            assertEquals(Kind.PROCESS, process.m_kind);
+            assertTrue(process.m_tid > 0);
+
+            Sample spinning = null;
+            for (Sample sample : collector.getSamples()) {
+                if (sample.m_name.equals("Volt Test Network - 7")) {
+                    spinning = sample;
+                }
+            }
+            assertNotNull(spinning);
+            assertEquals(Kind.NETWORK, spinning.m_kind);
+            assertTrue(spinning.m_userMs + spinning.m_systemMs > 0);
+            assertTrue(spinning.m_percentCpu > 0);
+        } finally {
+            s_spin = false;
+            spinner.join();
+        }
+    }
+}